@@ -0,0 +1,158 @@
+package de.zalando.pequod.benchmark;
+
+import java.net.InetSocketAddress;
+
+import java.nio.ByteBuffer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.avro.ipc.NettyServer;
+import org.apache.avro.ipc.Server;
+import org.apache.avro.ipc.specific.SpecificResponder;
+
+import org.apache.flume.source.avro.AvroFlumeEvent;
+import org.apache.flume.source.avro.AvroSourceProtocol;
+import org.apache.flume.source.avro.Status;
+
+import com.google.common.base.Objects;
+
+import de.zalando.pequod.flume.instrumentation.LatencyHistogram;
+
+/**
+ * In-process stand-in for the Avro source of the next hop. Acks every batch immediately and measures the end-to-end
+ * latency of each event from the write time in header {@link #HEADER_WRITE_TIME} or, if the header is missing, at the
+ * start of its body (see {@link de.zalando.pequod.benchmark.RateLimitedLogWriter}).
+ */
+final class AvroReceiver implements AvroSourceProtocol {
+
+    private final AtomicLong receivedEvents;
+    private final AtomicLong receivedBytes;
+    private final LatencyHistogram latency;
+
+    private Server server;
+
+    /**
+     * header carrying the write time if the mapped fields are encoded into the body.
+     */
+    static final String HEADER_WRITE_TIME = "write_time";
+
+    private static final long AWAIT_POLL_INTERVAL_IN_MS = 10L;
+
+    AvroReceiver() {
+        this.receivedEvents = new AtomicLong();
+        this.receivedBytes = new AtomicLong();
+        this.latency = new LatencyHistogram();
+    }
+
+    /**
+     * Starts listening on an ephemeral port of the loopback interface.
+     *
+     * @return  the port
+     */
+    int start() {
+        server = new NettyServer(new SpecificResponder(AvroSourceProtocol.class, this),
+                new InetSocketAddress("localhost", 0));
+        server.start();
+        return server.getPort();
+    }
+
+    void stop() {
+        if (server != null) {
+            server.close();
+            server = null;
+        }
+    }
+
+    @Override
+    public Status append(final AvroFlumeEvent event) {
+        receive(event, System.nanoTime());
+        return Status.OK;
+    }
+
+    @Override
+    public Status appendBatch(final List<AvroFlumeEvent> events) {
+        final long now = System.nanoTime();
+        for (final AvroFlumeEvent event : events) {
+            receive(event, now);
+        }
+
+        return Status.OK;
+    }
+
+    private void receive(final AvroFlumeEvent event, final long now) {
+        final ByteBuffer body = event.getBody();
+
+        // NOTE: headers and body make up the event on the wire, the header chars are ASCII
+        long eventBytes = body.remaining();
+        CharSequence writeTime = null;
+        for (final Map.Entry<CharSequence, CharSequence> header : event.getHeaders().entrySet()) {
+            eventBytes += header.getKey().length() + header.getValue().length();
+            if (HEADER_WRITE_TIME.contentEquals(header.getKey())) {
+                writeTime = header.getValue();
+            }
+        }
+
+        receivedBytes.addAndGet(eventBytes);
+        latency.record(now - (writeTime == null ? parseWriteTime(body) : Long.parseLong(writeTime.toString())));
+        receivedEvents.incrementAndGet();
+    }
+
+    /**
+     * Parses the leading (possibly negative) decimal number of the body without moving its position.
+     */
+    private static long parseWriteTime(final ByteBuffer body) {
+        int index = body.position();
+        final boolean isNegative = index < body.limit() && body.get(index) == '-';
+        if (isNegative) {
+            index++;
+        }
+
+        long writeTime = 0L;
+        byte digit;
+        while (index < body.limit() && (digit = body.get(index)) >= '0' && digit <= '9') {
+            writeTime = writeTime * 10 + (digit - '0');
+            index++;
+        }
+
+        return isNegative ? -writeTime : writeTime;
+    }
+
+    /**
+     * Waits until the given number of events has been received.
+     *
+     * @return  false if the timeout has elapsed before
+     */
+    boolean awaitEvents(final long numberOfEvents, final long timeoutInMs) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutInMs;
+        while (receivedEvents.get() < numberOfEvents) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+
+            TimeUnit.MILLISECONDS.sleep(AWAIT_POLL_INTERVAL_IN_MS);
+        }
+
+        return true;
+    }
+
+    long getReceivedEvents() {
+        return receivedEvents.get();
+    }
+
+    long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("server", server).add("receivedEvents", receivedEvents)
+                      .add("receivedBytes", receivedBytes).toString();
+    }
+}
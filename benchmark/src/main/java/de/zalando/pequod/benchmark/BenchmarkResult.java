@@ -0,0 +1,85 @@
+package de.zalando.pequod.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Objects;
+
+import de.zalando.pequod.flume.instrumentation.LatencyHistogram;
+
+/**
+ * Outcome of a single benchmark run.
+ */
+final class BenchmarkResult {
+
+    private static final String ROW_FORMAT = "%-24s %12s %14s %12s %12s %12s %8s %10s%n";
+
+    private final BenchmarkScenario scenario;
+    private final long receivedLines;
+    private final long receivedBytes;
+    private final long elapsedTimeInNs;
+    private final long latencyMedianInMicros;
+    private final long latency99thPercentileInMicros;
+    private final long latencyMaxInMicros;
+    private final GcStatistics gcStatistics;
+    private final boolean isComplete;
+
+    /**
+     * @param  scenario         parameters of the run
+     * @param  receivedLines    number of lines which have arrived at the receiver
+     * @param  receivedBytes    number of event bytes (headers and body) which have arrived at the receiver
+     * @param  elapsedTimeInNs  time from the first write until the last line has arrived
+     * @param  latency          end-to-end latency of the received lines
+     * @param  gcStatistics     collections during the run
+     * @param  isComplete       false if the run has timed out before all lines have arrived
+     */
+    BenchmarkResult(final BenchmarkScenario scenario, final long receivedLines, final long receivedBytes,
+            final long elapsedTimeInNs, final LatencyHistogram latency, final GcStatistics gcStatistics,
+            final boolean isComplete) {
+        this.scenario = scenario;
+        this.receivedLines = receivedLines;
+        this.receivedBytes = receivedBytes;
+        this.elapsedTimeInNs = elapsedTimeInNs;
+        this.latencyMedianInMicros = latency.getValueAtPercentileInMicros(50.0);
+        this.latency99thPercentileInMicros = latency.getValueAtPercentileInMicros(99.0);
+        this.latencyMaxInMicros = latency.getMaxInMicros();
+        this.gcStatistics = gcStatistics;
+        this.isComplete = isComplete;
+    }
+
+    BenchmarkScenario getScenario() {
+        return scenario;
+    }
+
+    boolean isComplete() {
+        return isComplete;
+    }
+
+    long getLinesPerSecond() {
+        return elapsedTimeInNs == 0L ? 0L : receivedLines * TimeUnit.SECONDS.toNanos(1L) / elapsedTimeInNs;
+    }
+
+    long getBytesPerSecond() {
+        return elapsedTimeInNs == 0L ? 0L : receivedBytes * TimeUnit.SECONDS.toNanos(1L) / elapsedTimeInNs;
+    }
+
+    static String formatHeader() {
+        return String.format(ROW_FORMAT, "scenario", "lines/s", "bytes/s", "p50 (us)", "p99 (us)", "max (us)", "gc",
+                "gc (ms)");
+    }
+
+    String formatRow() {
+        return String.format(ROW_FORMAT, scenario.getName() + (isComplete ? "" : " (timeout)"), getLinesPerSecond(),
+                getBytesPerSecond(), latencyMedianInMicros, latency99thPercentileInMicros, latencyMaxInMicros,
+                gcStatistics.getCollectionCount(), gcStatistics.getCollectionTimeInMs());
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("scenario", scenario).add("receivedLines", receivedLines)
+                      .add("receivedBytes", receivedBytes).add("elapsedTimeInNs", elapsedTimeInNs)
+                      .add("latencyMedianInMicros", latencyMedianInMicros)
+                      .add("latency99thPercentileInMicros", latency99thPercentileInMicros)
+                      .add("latencyMaxInMicros", latencyMaxInMicros).add("gcStatistics", gcStatistics)
+                      .add("isComplete", isComplete).toString();
+    }
+}
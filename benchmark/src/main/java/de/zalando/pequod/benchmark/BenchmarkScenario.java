@@ -0,0 +1,151 @@
+package de.zalando.pequod.benchmark;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Parameters of a single benchmark run. Scenarios are grouped into sets which vary one parameter of the baseline.
+ */
+final class BenchmarkScenario {
+
+    private static final int BASELINE_CONSUMERS = 2;
+    private static final int BASELINE_BATCH_SIZE = 100;
+    private static final int BASELINE_LINE_SIZE = 200;
+    private static final String BASELINE_BODY_FORMAT = "line";
+
+    private final String name;
+    private final int numberOfConsumers;
+    private final int batchSize;
+    private final int lineSize;
+    private final boolean preserveLineBytes;
+    private final String bodyFormat;
+
+    /**
+     * @param  name               name printed in the report
+     * @param  numberOfConsumers  number of consumers of the source
+     * @param  batchSize          event batch size of the source and batch size of the sink
+     * @param  lineSize           number of bytes per line including the line terminator
+     * @param  preserveLineBytes  whether the source passes the line bytes on as event body (config parameter
+     *                            "preserveLineBytes")
+     * @param  bodyFormat         where the source stores the mapped fields (config parameter "bodyFormat")
+     */
+    BenchmarkScenario(final String name, final int numberOfConsumers, final int batchSize, final int lineSize,
+            final boolean preserveLineBytes, final String bodyFormat) {
+        checkArgument(numberOfConsumers > 0, "number of consumers must not be lower than 1. Got %s",
+            numberOfConsumers);
+        checkArgument(batchSize > 0, "batch size must not be lower than 1. Got %s", batchSize);
+        checkArgument(lineSize >= RateLimitedLogWriter.MIN_LINE_SIZE, "line size must not be lower than %s. Got %s",
+            RateLimitedLogWriter.MIN_LINE_SIZE, lineSize);
+
+        this.name = name;
+        this.numberOfConsumers = numberOfConsumers;
+        this.batchSize = batchSize;
+        this.lineSize = lineSize;
+        this.preserveLineBytes = preserveLineBytes;
+        this.bodyFormat = bodyFormat;
+    }
+
+    /**
+     * @param   setName  "baseline", "consumers", "batchSize", "lineSize", "lineBytes", "bodyFormat" or
+     *                   "all"
+     *
+     * @return  the scenarios of the given set
+     *
+     * @throws  IllegalArgumentException  if the set is unknown
+     */
+    static List<BenchmarkScenario> forSet(final String setName) {
+        switch (setName) {
+
+            case "baseline" :
+                return ImmutableList.of(baseline());
+
+            case "consumers" :
+                return ImmutableList.of(withConsumers(1), withConsumers(2), withConsumers(4), withConsumers(8));
+
+            case "batchSize" :
+                return ImmutableList.of(withBatchSize(10), withBatchSize(100), withBatchSize(1000));
+
+            case "lineSize" :
+                return ImmutableList.of(withLineSize(100), withLineSize(1000), withLineSize(10000));
+
+            case "lineBytes" :
+                return ImmutableList.of(withPreserveLineBytes(false), withPreserveLineBytes(true));
+
+            case "bodyFormat" :
+                return ImmutableList.of(withBodyFormat("line"), withBodyFormat("json"), withBodyFormat("avro"));
+
+            case "all" :
+                return ImmutableList.<BenchmarkScenario>builder().addAll(forSet("consumers"))
+                                    .addAll(forSet("batchSize")).addAll(forSet("lineSize"))
+                                    .addAll(forSet("lineBytes")).addAll(forSet("bodyFormat")).build();
+
+            default :
+                throw new IllegalArgumentException("unknown scenario set: " + setName);
+        }
+    }
+
+    private static BenchmarkScenario baseline() {
+        return new BenchmarkScenario("baseline", BASELINE_CONSUMERS, BASELINE_BATCH_SIZE, BASELINE_LINE_SIZE, false,
+                BASELINE_BODY_FORMAT);
+    }
+
+    private static BenchmarkScenario withConsumers(final int numberOfConsumers) {
+        return new BenchmarkScenario("consumers=" + numberOfConsumers, numberOfConsumers, BASELINE_BATCH_SIZE,
+                BASELINE_LINE_SIZE, false, BASELINE_BODY_FORMAT);
+    }
+
+    private static BenchmarkScenario withBatchSize(final int batchSize) {
+        return new BenchmarkScenario("batchSize=" + batchSize, BASELINE_CONSUMERS, batchSize, BASELINE_LINE_SIZE,
+                false, BASELINE_BODY_FORMAT);
+    }
+
+    private static BenchmarkScenario withLineSize(final int lineSize) {
+        return new BenchmarkScenario("lineSize=" + lineSize, BASELINE_CONSUMERS, BASELINE_BATCH_SIZE, lineSize,
+                false, BASELINE_BODY_FORMAT);
+    }
+
+    private static BenchmarkScenario withPreserveLineBytes(final boolean preserveLineBytes) {
+        return new BenchmarkScenario("preserveLineBytes=" + preserveLineBytes, BASELINE_CONSUMERS,
+                BASELINE_BATCH_SIZE, BASELINE_LINE_SIZE, preserveLineBytes, BASELINE_BODY_FORMAT);
+    }
+
+    private static BenchmarkScenario withBodyFormat(final String bodyFormat) {
+        return new BenchmarkScenario("bodyFormat=" + bodyFormat, BASELINE_CONSUMERS, BASELINE_BATCH_SIZE,
+                BASELINE_LINE_SIZE, false, bodyFormat);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getNumberOfConsumers() {
+        return numberOfConsumers;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    int getLineSize() {
+        return lineSize;
+    }
+
+    boolean isPreservingLineBytes() {
+        return preserveLineBytes;
+    }
+
+    String getBodyFormat() {
+        return bodyFormat;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("name", name).add("numberOfConsumers", numberOfConsumers)
+                      .add("batchSize", batchSize).add("lineSize", lineSize)
+                      .add("preserveLineBytes", preserveLineBytes).add("bodyFormat", bodyFormat).toString();
+    }
+}
@@ -0,0 +1,55 @@
+package de.zalando.pequod.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import com.google.common.base.Objects;
+
+/**
+ * Number of collections and accumulated collection time of all garbage collectors of the JVM.
+ */
+final class GcStatistics {
+
+    private final long collectionCount;
+    private final long collectionTimeInMs;
+
+    private GcStatistics(final long collectionCount, final long collectionTimeInMs) {
+        this.collectionCount = collectionCount;
+        this.collectionTimeInMs = collectionTimeInMs;
+    }
+
+    static GcStatistics current() {
+        long collectionCount = 0L;
+        long collectionTimeInMs = 0L;
+        for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+
+            // NOTE: collectors report -1 if the value is not available
+            collectionCount += Math.max(0L, collector.getCollectionCount());
+            collectionTimeInMs += Math.max(0L, collector.getCollectionTime());
+        }
+
+        return new GcStatistics(collectionCount, collectionTimeInMs);
+    }
+
+    /**
+     * @return  the collections which happened between the given earlier statistics and these
+     */
+    GcStatistics since(final GcStatistics earlier) {
+        return new GcStatistics(collectionCount - earlier.collectionCount,
+                collectionTimeInMs - earlier.collectionTimeInMs);
+    }
+
+    long getCollectionCount() {
+        return collectionCount;
+    }
+
+    long getCollectionTimeInMs() {
+        return collectionTimeInMs;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("collectionCount", collectionCount)
+                      .add("collectionTimeInMs", collectionTimeInMs).toString();
+    }
+}
@@ -0,0 +1,197 @@
+package de.zalando.pequod.benchmark;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.flume.Context;
+import org.apache.flume.SinkRunner;
+import org.apache.flume.channel.ChannelProcessor;
+import org.apache.flume.channel.ReplicatingChannelSelector;
+import org.apache.flume.conf.Configurables;
+import org.apache.flume.sink.DefaultSinkProcessor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+import de.zalando.pequod.flume.channel.InsistentMemoryChannel;
+import de.zalando.pequod.flume.sink.InsistentAvroSink;
+import de.zalando.pequod.flume.source.TailFileSource;
+
+/**
+ * Runs the pipeline TailFileSource -> InsistentMemoryChannel -> InsistentAvroSink against an in-process Avro receiver
+ * and reports throughput, end-to-end latency and garbage collections per scenario. Arguments are comma separated
+ * names of scenario sets (see {@link de.zalando.pequod.benchmark.BenchmarkScenario#forSet(String)}). The run is
+ * controlled by the following system properties:
+ *
+ * <ul>
+ *   <li>benchmark.lines: number of lines per scenario (default 200000)</li>
+ *   <li>benchmark.warmupLines: number of lines of the unreported warm-up run of the first scenario (default 50000)
+ *   </li>
+ *   <li>benchmark.linesPerSecond: max write rate, 0 to write as fast as possible (default 0)</li>
+ *   <li>benchmark.timeoutInMs: max time per scenario until all lines have to be received (default 300000)</li>
+ *   <li>benchmark.minLinesPerSecond: exits with status 1 if a scenario is slower (default 0)</li>
+ *   <li>benchmark.patternDirectory: URL of the logstash patterns (default the patterns of the grok-mapper module)
+ *   </li>
+ * </ul>
+ */
+public final class PipelineBenchmark {
+
+    private static final String DEFAULT_PATTERN_DIRECTORY = "file:../grok-mapper/src/main/resources/logstash_patterns";
+
+    private static final int CHANNEL_CAPACITY = 100000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineBenchmark.class);
+
+    private final long numberOfLines;
+    private final long linesPerSecond;
+    private final long timeoutInMs;
+    private final String patternDirectory;
+
+    private PipelineBenchmark(final long numberOfLines, final long linesPerSecond, final long timeoutInMs,
+            final String patternDirectory) {
+        this.numberOfLines = numberOfLines;
+        this.linesPerSecond = linesPerSecond;
+        this.timeoutInMs = timeoutInMs;
+        this.patternDirectory = patternDirectory;
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final List<BenchmarkScenario> scenarios = Lists.newArrayList();
+        for (final String arg : args.length == 0 ? new String[] {"baseline"} : args) {
+            for (final String setName : Splitter.on(',').trimResults().omitEmptyStrings().split(arg)) {
+                scenarios.addAll(BenchmarkScenario.forSet(setName));
+            }
+        }
+
+        final long numberOfLines = Long.getLong("benchmark.lines", 200000L);
+        final long warmupLines = Long.getLong("benchmark.warmupLines", 50000L);
+        final long linesPerSecond = Long.getLong("benchmark.linesPerSecond", 0L);
+        final long timeoutInMs = Long.getLong("benchmark.timeoutInMs", 300000L);
+        final long minLinesPerSecond = Long.getLong("benchmark.minLinesPerSecond", 0L);
+        final String patternDirectory = System.getProperty("benchmark.patternDirectory", DEFAULT_PATTERN_DIRECTORY);
+
+        if (warmupLines > 0L) {
+            LOGGER.warn("warming up with [numberOfLines={}]...", warmupLines);
+            new PipelineBenchmark(warmupLines, linesPerSecond, timeoutInMs, patternDirectory).run(scenarios.get(0));
+        }
+
+        final PipelineBenchmark benchmark = new PipelineBenchmark(numberOfLines, linesPerSecond, timeoutInMs,
+                patternDirectory);
+
+        boolean hasPassed = true;
+        System.out.print(BenchmarkResult.formatHeader());
+        for (final BenchmarkScenario scenario : scenarios) {
+            final BenchmarkResult result = benchmark.run(scenario);
+            System.out.print(result.formatRow());
+            hasPassed &= result.isComplete() && result.getLinesPerSecond() >= minLinesPerSecond;
+        }
+
+        if (!hasPassed) {
+            System.out.printf("at least one scenario has timed out or is slower than %s lines/s%n",
+                minLinesPerSecond);
+            System.exit(1);
+        }
+    }
+
+    private BenchmarkResult run(final BenchmarkScenario scenario) throws IOException, InterruptedException {
+        final Path directory = Files.createTempDirectory("pequod-benchmark");
+        final Path logFile = Files.createFile(directory.resolve("benchmark.log"));
+
+        final AvroReceiver receiver = new AvroReceiver();
+        final int port = receiver.start();
+
+        final InsistentMemoryChannel channel = createChannel(scenario);
+        final SinkRunner sinkRunner = createSinkRunner(scenario, channel, port);
+        final TailFileSource source = createSource(scenario, channel, logFile);
+
+        channel.start();
+        sinkRunner.start();
+        source.start();
+
+        final RateLimitedLogWriter writer = new RateLimitedLogWriter(logFile, numberOfLines, scenario.getLineSize(),
+                linesPerSecond);
+        final Thread writerThread = new Thread(writer, "benchmark-writer");
+
+        final GcStatistics gcStatisticsBefore = GcStatistics.current();
+        final long startTime = System.nanoTime();
+        writerThread.start();
+
+        final boolean isComplete = receiver.awaitEvents(numberOfLines, timeoutInMs);
+        final long elapsedTimeInNs = System.nanoTime() - startTime;
+        final GcStatistics gcStatistics = GcStatistics.current().since(gcStatisticsBefore);
+
+        writerThread.join();
+        source.stop();
+        sinkRunner.stop();
+        channel.stop();
+        receiver.stop();
+
+        Files.deleteIfExists(logFile);
+        Files.deleteIfExists(directory);
+
+        if (writer.getFailure() != null) {
+            throw writer.getFailure();
+        }
+
+        return new BenchmarkResult(scenario, receiver.getReceivedEvents(), receiver.getReceivedBytes(),
+                elapsedTimeInNs, receiver.getLatency(), gcStatistics, isComplete);
+    }
+
+    private InsistentMemoryChannel createChannel(final BenchmarkScenario scenario) {
+        final Context context = new Context();
+        context.put("capacity", String.valueOf(CHANNEL_CAPACITY));
+        context.put("transactionCapacity", String.valueOf(scenario.getBatchSize()));
+
+        final InsistentMemoryChannel channel = new InsistentMemoryChannel();
+        channel.setName("benchmarkChannel");
+        Configurables.configure(channel, context);
+        return channel;
+    }
+
+    private SinkRunner createSinkRunner(final BenchmarkScenario scenario, final InsistentMemoryChannel channel,
+            final int port) {
+        final Context context = new Context();
+        context.put("hostname", "localhost");
+        context.put("port", String.valueOf(port));
+        context.put("batch-size", String.valueOf(scenario.getBatchSize()));
+
+        final InsistentAvroSink sink = new InsistentAvroSink();
+        sink.setName("benchmarkSink");
+        sink.setChannel(channel);
+        Configurables.configure(sink, context);
+
+        final DefaultSinkProcessor sinkProcessor = new DefaultSinkProcessor();
+        sinkProcessor.setSinks(Collections.singletonList(sink));
+        return new SinkRunner(sinkProcessor);
+    }
+
+    private TailFileSource createSource(final BenchmarkScenario scenario, final InsistentMemoryChannel channel,
+            final Path logFile) {
+        final Context context = new Context();
+        context.put("file", logFile.toString());
+        context.put("patternDirectory", patternDirectory);
+        context.put("fileRecordMapping", RateLimitedLogWriter.RECORD_MAPPING);
+        context.put("numberOfConsumers", String.valueOf(scenario.getNumberOfConsumers()));
+        context.put("eventBatchSize", String.valueOf(scenario.getBatchSize()));
+        context.put("preserveLineBytes", String.valueOf(scenario.isPreservingLineBytes()));
+        context.put("bodyFormat", scenario.getBodyFormat());
+        context.put("routingHeaderFields", AvroReceiver.HEADER_WRITE_TIME);
+
+        final ReplicatingChannelSelector selector = new ReplicatingChannelSelector();
+        selector.setChannels(Collections.singletonList(channel));
+
+        final TailFileSource source = new TailFileSource();
+        source.setName("benchmarkSource");
+        Configurables.configure(source, context);
+        source.setChannelProcessor(new ChannelProcessor(selector));
+        return source;
+    }
+}
@@ -0,0 +1,124 @@
+package de.zalando.pequod.benchmark;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+
+/**
+ * Appends a fixed number of lines of a fixed size to a log file, at most [linesPerSecond] lines per second. Each line
+ * starts with the {@link System#nanoTime()} of its write, so that the receiver can compute the end-to-end latency of
+ * the line within the same JVM:
+ *
+ * <pre>
+ *   [write time in ns] INFO xxxxxxxx...
+ * </pre>
+ */
+final class RateLimitedLogWriter implements Runnable {
+
+    /**
+     * the grok mapping matching the written lines.
+     */
+    static final String RECORD_MAPPING = "%{NUMBER:write_time} %{LOGLEVEL:level} %{GREEDYDATA:message}";
+
+    /**
+     * smallest line size which leaves room for the write time, the level and a message.
+     */
+    static final int MIN_LINE_SIZE = 32;
+
+    private static final String LEVEL = " INFO ";
+
+    private final Path file;
+    private final long numberOfLines;
+    private final int lineSize;
+    private final long linesPerSecond;
+
+    private final char[] padding;
+
+    private volatile long writtenLines;
+    private volatile IOException failure;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitedLogWriter.class);
+
+    /**
+     * @param  file            file the lines are appended to
+     * @param  numberOfLines   number of lines to write
+     * @param  lineSize        number of bytes per line including the line terminator
+     * @param  linesPerSecond  max write rate, 0 to write as fast as possible
+     */
+    RateLimitedLogWriter(final Path file, final long numberOfLines, final int lineSize, final long linesPerSecond) {
+        checkArgument(file != null, "file must not be null");
+        checkArgument(numberOfLines > 0L, "number of lines must not be lower than 1. Got %s", numberOfLines);
+        checkArgument(lineSize >= MIN_LINE_SIZE, "line size must not be lower than %s. Got %s", MIN_LINE_SIZE,
+            lineSize);
+        checkArgument(linesPerSecond >= 0L, "lines per second must not be lower than 0. Got %s", linesPerSecond);
+
+        this.file = file;
+        this.numberOfLines = numberOfLines;
+        this.lineSize = lineSize;
+        this.linesPerSecond = linesPerSecond;
+        this.padding = new char[lineSize];
+        Arrays.fill(padding, 'x');
+    }
+
+    @Override
+    public void run() {
+        final long intervalInNs = linesPerSecond == 0L ? 0L : TimeUnit.SECONDS.toNanos(1L) / linesPerSecond;
+
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII, StandardOpenOption.APPEND)) {
+            final long startTime = System.nanoTime();
+            String prefix;
+            long waitTimeInNs;
+            for (long line = 0L; line < numberOfLines; line++) {
+
+                // NOTE: buffered lines are flushed before waiting, so that the pacing is visible to the tailer
+                waitTimeInNs = startTime + line * intervalInNs - System.nanoTime();
+                if (waitTimeInNs > 0L) {
+                    writer.flush();
+                    LockSupport.parkNanos(waitTimeInNs);
+                }
+
+                prefix = System.nanoTime() + LEVEL;
+                writer.write(prefix);
+                writer.write(padding, 0, lineSize - prefix.length() - 1);
+                writer.write('\n');
+                writtenLines = line + 1;
+            }
+        } catch (final IOException e) {
+            LOGGER.error("could not write to [file={}]", file, e);
+            failure = e;
+        }
+    }
+
+    long getWrittenLines() {
+        return writtenLines;
+    }
+
+    /**
+     * @return  the error which has stopped the writer, null if there was none
+     */
+    IOException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("file", file).add("numberOfLines", numberOfLines)
+                      .add("lineSize", lineSize).add("linesPerSecond", linesPerSecond)
+                      .add("writtenLines", writtenLines).toString();
+    }
+}
@@ -0,0 +1,69 @@
+package de.zalando.pequod.benchmark.generator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+
+/**
+ * Weighted choice of the format of the next record.
+ */
+final class FormatMix {
+
+    private final LineFormat[] formats;
+    private final int[] cumulativeWeights;
+
+    private FormatMix(final LineFormat[] formats, final int[] cumulativeWeights) {
+        this.formats = formats;
+        this.cumulativeWeights = cumulativeWeights;
+    }
+
+    /**
+     * @param   spec  comma separated list of [format]:[weight], e.g. "haproxy:5,syslog:3,java_stacktrace:1". The
+     *                weight may be omitted and defaults to 1.
+     *
+     * @throws  IllegalArgumentException  if the spec is invalid
+     */
+    static FormatMix parse(final String spec) {
+        final List<LineFormat> formats = Lists.newArrayList();
+        final List<Integer> cumulativeWeights = Lists.newArrayList();
+        int totalWeight = 0;
+        for (final String entry : Splitter.on(',').trimResults().omitEmptyStrings().split(spec)) {
+            final List<String> parts = Lists.newArrayList(Splitter.on(':').trimResults().split(entry));
+            checkArgument(parts.size() <= 2, "expected [format]:[weight]. Got %s", entry);
+
+            final int weight = parts.size() == 1 ? 1 : Integer.parseInt(parts.get(1));
+            checkArgument(weight > 0, "weight of [format=%s] must not be lower than 1. Got %s", parts.get(0), weight);
+
+            formats.add(LineFormat.valueOf(parts.get(0).toUpperCase()));
+            totalWeight += weight;
+            cumulativeWeights.add(totalWeight);
+        }
+
+        checkArgument(!formats.isEmpty(), "format mix must not be empty");
+
+        return new FormatMix(formats.toArray(new LineFormat[formats.size()]), Ints.toArray(cumulativeWeights));
+    }
+
+    LineFormat next(final Random random) {
+        final int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int index = 0;
+        while (cumulativeWeights[index] <= value) {
+            index++;
+        }
+
+        return formats[index];
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("formats", Arrays.toString(formats))
+                      .add("cumulativeWeights", Arrays.toString(cumulativeWeights)).toString();
+    }
+}
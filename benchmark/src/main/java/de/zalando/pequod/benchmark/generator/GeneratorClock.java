@@ -0,0 +1,82 @@
+package de.zalando.pequod.benchmark.generator;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Strings;
+
+/**
+ * Timestamps in the formats of the generated lines. The formatted timestamps are cached per second, because formatting
+ * a date per line would limit the write rate of the generator.
+ */
+final class GeneratorClock {
+
+    private static final DateTimeFormatter SYSLOG_FORMAT = DateTimeFormatter.ofPattern("MMM ppd HH:mm:ss",
+            Locale.ENGLISH);
+    private static final DateTimeFormatter HAPROXY_FORMAT = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss",
+            Locale.ENGLISH);
+    private static final DateTimeFormatter REDIS_FORMAT = DateTimeFormatter.ofPattern("dd MMM HH:mm:ss",
+            Locale.ENGLISH);
+
+    private final ZoneId zone;
+
+    private long timeInMs;
+    private long second;
+    private String syslogTimestamp;
+    private String haproxyDate;
+    private String redisTimestamp;
+
+    GeneratorClock(final ZoneId zone) {
+        this.zone = zone;
+        this.second = Long.MIN_VALUE;
+    }
+
+    /**
+     * Sets the time of the next lines.
+     */
+    void setTime(final long timeInMs) {
+        this.timeInMs = timeInMs;
+
+        final long currentSecond = TimeUnit.MILLISECONDS.toSeconds(timeInMs);
+        if (currentSecond != second) {
+            second = currentSecond;
+
+            final ZonedDateTime time = ZonedDateTime.ofInstant(Instant.ofEpochSecond(currentSecond), zone);
+            syslogTimestamp = SYSLOG_FORMAT.format(time);
+            haproxyDate = HAPROXY_FORMAT.format(time);
+            redisTimestamp = REDIS_FORMAT.format(time);
+        }
+    }
+
+    /**
+     * @return  e.g. "Sep  4 10:23:45"
+     */
+    String getSyslogTimestamp() {
+        return syslogTimestamp;
+    }
+
+    /**
+     * @return  e.g. "04/Sep/2015:10:23:45.123"
+     */
+    String getHaproxyDate() {
+        return haproxyDate + '.' + Strings.padStart(String.valueOf(timeInMs % 1000L), 3, '0');
+    }
+
+    /**
+     * @return  e.g. "04 Sep 10:23:45.123"
+     */
+    String getRedisTimestamp() {
+        return redisTimestamp + '.' + Strings.padStart(String.valueOf(timeInMs % 1000L), 3, '0');
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("zone", zone).add("timeInMs", timeInMs).toString();
+    }
+}
@@ -0,0 +1,112 @@
+package de.zalando.pequod.benchmark.generator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+/**
+ * Distribution of the message lengths (in chars) of the generated lines.
+ */
+final class LengthDistribution {
+
+    private enum Type {
+        FIXED,
+        UNIFORM,
+        LOGNORMAL
+    }
+
+    /**
+     * upper bound of all lengths, so that a long tail cannot produce lines larger than the input buffer of the source.
+     */
+    static final int MAX_LENGTH = 65536;
+
+    private final Type type;
+    private final int min;
+    private final int max;
+    private final double median;
+    private final double sigma;
+
+    private LengthDistribution(final Type type, final int min, final int max, final double median,
+            final double sigma) {
+        this.type = type;
+        this.min = min;
+        this.max = max;
+        this.median = median;
+        this.sigma = sigma;
+    }
+
+    static LengthDistribution fixed(final int length) {
+        checkArgument(length >= 0 && length <= MAX_LENGTH, "length must be within [0, %s]. Got %s", MAX_LENGTH,
+            length);
+        return new LengthDistribution(Type.FIXED, length, length, length, 0.0);
+    }
+
+    static LengthDistribution uniform(final int min, final int max) {
+        checkArgument(min >= 0 && min <= max && max <= MAX_LENGTH,
+            "lengths must satisfy 0 <= min <= max <= %s. Got [min=%s, max=%s]", MAX_LENGTH, min, max);
+        return new LengthDistribution(Type.UNIFORM, min, max, (min + max) / 2.0, 0.0);
+    }
+
+    /**
+     * Log-normal distribution, i.e. most messages are short while a few are very long, as in most production logs.
+     *
+     * @param  median  median length
+     * @param  sigma   standard deviation of the logarithm of the length, e.g. 1.0 for a long tail
+     */
+    static LengthDistribution logNormal(final double median, final double sigma) {
+        checkArgument(median >= 1.0 && median <= MAX_LENGTH, "median must be within [1, %s]. Got %s", MAX_LENGTH,
+            median);
+        checkArgument(sigma >= 0.0, "sigma must not be negative. Got %s", sigma);
+        return new LengthDistribution(Type.LOGNORMAL, 0, MAX_LENGTH, median, sigma);
+    }
+
+    /**
+     * @param   spec  "fixed:[length]", "uniform:[min]:[max]" or "lognormal:[median]:[sigma]"
+     *
+     * @throws  IllegalArgumentException  if the spec is invalid
+     */
+    static LengthDistribution parse(final String spec) {
+        final List<String> parts = Lists.newArrayList(Splitter.on(':').trimResults().split(spec));
+        final Type type = Type.valueOf(parts.get(0).toUpperCase());
+        switch (type) {
+
+            case FIXED :
+                checkArgument(parts.size() == 2, "expected fixed:[length]. Got %s", spec);
+                return fixed(Integer.parseInt(parts.get(1)));
+
+            case UNIFORM :
+                checkArgument(parts.size() == 3, "expected uniform:[min]:[max]. Got %s", spec);
+                return uniform(Integer.parseInt(parts.get(1)), Integer.parseInt(parts.get(2)));
+
+            default :
+                checkArgument(parts.size() == 3, "expected lognormal:[median]:[sigma]. Got %s", spec);
+                return logNormal(Double.parseDouble(parts.get(1)), Double.parseDouble(parts.get(2)));
+        }
+    }
+
+    int next(final Random random) {
+        switch (type) {
+
+            case FIXED :
+                return min;
+
+            case UNIFORM :
+                return min + random.nextInt(max - min + 1);
+
+            default :
+                final long length = Math.round(median * Math.exp(sigma * random.nextGaussian()));
+                return (int) Math.min(length, max);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("type", type).add("min", min).add("max", max).add("median", median)
+                      .add("sigma", sigma).toString();
+    }
+}
@@ -0,0 +1,177 @@
+package de.zalando.pequod.benchmark.generator;
+
+import java.util.Random;
+
+/**
+ * Formats of the generated lines. Each format matches one of the bundled logstash patterns, see
+ * {@link #getRecordMapping()}.
+ */
+enum LineFormat {
+
+    /**
+     * HTTP log of haproxy via syslog, the message is used as query string. The mapping is HAPROXYHTTP with the request
+     * matched as NOTSPACE, because the bundled URIPATH pattern cannot be compiled by joni.
+     */
+    HAPROXY("%{SYSLOGTIMESTAMP:syslog_timestamp} %{IPORHOST:syslog_server} %{SYSLOGPROG}: "
+            + "%{IP:client_ip}:%{INT:client_port} \\[%{HAPROXYDATE:accept_date}\\] %{NOTSPACE:frontend_name} "
+            + "%{NOTSPACE:backend_name}/%{NOTSPACE:server_name} %{INT:time_request}/%{INT:time_queue}/"
+            + "%{INT:time_backend_connect}/%{INT:time_backend_response}/%{NOTSPACE:time_duration} "
+            + "%{INT:http_status_code} %{NOTSPACE:bytes_read} %{DATA:captured_request_cookie} "
+            + "%{DATA:captured_response_cookie} %{NOTSPACE:termination_state} "
+            + "%{INT:actconn}/%{INT:feconn}/%{INT:beconn}/%{INT:srvconn}/%{NOTSPACE:retries} "
+            + "%{INT:srv_queue}/%{INT:backend_queue} \"%{WORD:http_verb} %{NOTSPACE:http_request} "
+            + "HTTP/%{NUMBER:http_version}\"") {
+        @Override
+        int append(final StringBuilder record, final GeneratorClock clock, final MessageGenerator messages,
+                final Random random) {
+            record.append(clock.getSyslogTimestamp()).append(' ').append(pick(HOSTS, random)).append(" haproxy[")
+                  .append(1000 + random.nextInt(9000)).append("]: 10.").append(random.nextInt(256)).append('.')
+                  .append(random.nextInt(256)).append('.').append(random.nextInt(256)).append(':')
+                  .append(1024 + random.nextInt(64000)).append(" [").append(clock.getHaproxyDate())
+                  .append("] http-in shop/web0").append(random.nextInt(8)).append(' ').append(random.nextInt(20))
+                  .append("/0/").append(random.nextInt(5)).append('/').append(random.nextInt(500)).append('/')
+                  .append(random.nextInt(600)).append(' ').append(pick(HTTP_STATUS_CODES, random)).append(' ')
+                  .append(random.nextInt(100000)).append(" - - ---- ").append(random.nextInt(100)).append('/')
+                  .append(random.nextInt(100)).append("/0/").append(random.nextInt(10)).append("/0 0/0 \"")
+                  .append(pick(HTTP_VERBS, random)).append(' ').append(pick(PATHS, random)).append("?q=")
+                  .append(messages.nextAscii(random).replace(' ', '+')).append(" HTTP/1.1\"\n");
+            return 1;
+        }
+    },
+
+    /**
+     * syslog line of a system daemon.
+     */
+    SYSLOG("%{SYSLOGLINE}") {
+        @Override
+        int append(final StringBuilder record, final GeneratorClock clock, final MessageGenerator messages,
+                final Random random) {
+            record.append(clock.getSyslogTimestamp()).append(' ').append(pick(HOSTS, random)).append(' ');
+
+            final String program = pick(SYSLOG_PROGRAMS, random);
+            record.append(program);
+            if (!"kernel".equals(program)) {
+                record.append('[').append(1 + random.nextInt(32768)).append(']');
+            }
+
+            record.append(": ");
+            messages.append(record, random);
+            record.append('\n');
+            return 1;
+        }
+    },
+
+    /**
+     * Java exception with a stack trace of several lines, optionally with a cause. Only the stack frames match the
+     * mapping.
+     */
+    JAVA_STACKTRACE("%{JAVASTACKTRACEPART}") {
+        @Override
+        int append(final StringBuilder record, final GeneratorClock clock, final MessageGenerator messages,
+                final Random random) {
+            record.append(pick(EXCEPTIONS, random)).append(": ");
+            messages.append(record, random);
+            record.append('\n');
+
+            int lines = 1 + appendFrames(record, random, 3 + random.nextInt(20));
+            if (random.nextBoolean()) {
+                record.append("Caused by: ").append(pick(EXCEPTIONS, random)).append(": ");
+                messages.append(record, random);
+                record.append('\n');
+
+                final int more = 5 + random.nextInt(20);
+                lines += 2 + appendFrames(record, random, 1 + random.nextInt(5));
+                record.append("\t... ").append(more).append(" more\n");
+            }
+
+            return lines;
+        }
+
+        private int appendFrames(final StringBuilder record, final Random random, final int numberOfFrames) {
+            String className;
+            for (int i = 0; i < numberOfFrames; i++) {
+                className = pick(CLASSES, random);
+                record.append("\tat de.zalando.shop.").append(className).append('.').append(pick(METHODS, random))
+                      .append('(').append(className).append(".java:").append(1 + random.nextInt(800)).append(")\n");
+            }
+
+            return numberOfFrames;
+        }
+    },
+
+    /**
+     * log line of a mongod before version 3.
+     */
+    MONGODB("%{MONGO_LOG}") {
+        @Override
+        int append(final StringBuilder record, final GeneratorClock clock, final MessageGenerator messages,
+                final Random random) {
+            record.append(clock.getSyslogTimestamp()).append(" [");
+
+            final String component = pick(MONGO_COMPONENTS, random);
+            record.append(component);
+            if ("conn".equals(component)) {
+                record.append(random.nextInt(10000));
+            }
+
+            record.append("] ");
+            messages.append(record, random);
+            record.append('\n');
+            return 1;
+        }
+    },
+
+    /**
+     * log line of a redis server.
+     */
+    REDIS("%{REDISLOG}%{GREEDYDATA:message}") {
+        @Override
+        int append(final StringBuilder record, final GeneratorClock clock, final MessageGenerator messages,
+                final Random random) {
+            record.append('[').append(1 + random.nextInt(32768)).append("] ").append(clock.getRedisTimestamp())
+                  .append(" * ");
+            messages.append(record, random);
+            record.append('\n');
+            return 1;
+        }
+    };
+
+    private static final String[] HOSTS = {"lb01", "lb02", "app-01", "app-02", "db-master", "10.0.3.17"};
+    private static final String[] HTTP_VERBS = {"GET", "GET", "GET", "POST", "PUT", "DELETE"};
+    private static final String[] HTTP_STATUS_CODES = {"200", "200", "200", "200", "201", "304", "404", "500", "503"};
+    private static final String[] PATHS = {"/", "/catalog/shoes", "/api/cart", "/api/orders/4711", "/checkout/confirm"};
+    private static final String[] SYSLOG_PROGRAMS = {"sshd", "cron", "kernel", "systemd", "nginx", "dhclient"};
+    private static final String[] EXCEPTIONS = {
+        "java.lang.IllegalStateException", "java.lang.NullPointerException", "java.io.IOException",
+        "java.util.concurrent.TimeoutException", "org.springframework.dao.DataAccessResourceFailureException"
+    };
+    private static final String[] CLASSES = {
+        "OrderService", "PaymentClient", "CartController", "ArticleRepository", "CheckoutFlow", "RetryTemplate"
+    };
+    private static final String[] METHODS = {"<init>", "placeOrder", "authorize", "load", "doFilter", "execute"};
+    private static final String[] MONGO_COMPONENTS = {"conn", "conn", "conn", "initandlisten", "TTLMonitor", "rsSync"};
+
+    private final String recordMapping;
+
+    LineFormat(final String recordMapping) {
+        this.recordMapping = recordMapping;
+    }
+
+    /**
+     * @return  grok mapping (config parameter "fileRecordMapping" of the source) matching the lines of this format
+     */
+    String getRecordMapping() {
+        return recordMapping;
+    }
+
+    /**
+     * Appends a record of this format, i.e. one or more lines each terminated by a line feed.
+     *
+     * @return  the number of appended lines
+     */
+    abstract int append(StringBuilder record, GeneratorClock clock, MessageGenerator messages, Random random);
+
+    private static String pick(final String[] values, final Random random) {
+        return values[random.nextInt(values.length)];
+    }
+}
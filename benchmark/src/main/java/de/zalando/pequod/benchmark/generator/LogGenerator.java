@@ -0,0 +1,322 @@
+package de.zalando.pequod.benchmark.generator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.time.ZoneId;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Appends synthetic records in the formats of the bundled logstash patterns (haproxy, syslog, Java stack traces,
+ * mongodb, redis) to a log file. The write rate may contain bursts with a different format mix (e.g. mostly stack
+ * traces during an incident), the message lengths follow a configurable distribution and the file may be rotated by
+ * rename or copytruncate. The generator is started from the command line via {@link #main(String[])} or used within a
+ * benchmark as {@link java.lang.Runnable} built by {@link LogGenerator.Builder}.
+ */
+public final class LogGenerator implements Runnable {
+
+    private final Path file;
+    private final Path rotatedFile;
+    private final FormatMix formatMix;
+    private final FormatMix burstFormatMix;
+    private final MessageGenerator messageGenerator;
+    private final RateProfile rateProfile;
+    private final RotationMode rotationMode;
+    private final long maxFileSizeInBytes;
+    private final long numberOfLines;
+    private final long durationInMs;
+    private final long seed;
+
+    private CountingOutputStream output;
+    private Writer writer;
+    private long rotationOffsetInBytes;
+
+    private volatile boolean isStopped;
+    private volatile long writtenLines;
+    private volatile long rotations;
+
+    /**
+     * a stalled generator does not try to catch up with more than this backlog, so that bursts are not distorted.
+     */
+    private static final long MAX_BACKLOG_IN_NS = TimeUnit.SECONDS.toNanos(1L);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogGenerator.class);
+
+    private LogGenerator(final Builder builder) {
+        this.file = builder.file;
+        this.rotatedFile = builder.file.resolveSibling(builder.file.getFileName() + ".1");
+        this.formatMix = builder.formatMix;
+        this.burstFormatMix = builder.burstFormatMix == null ? builder.formatMix : builder.burstFormatMix;
+        this.messageGenerator = new MessageGenerator(builder.messageLength, builder.utf8Ratio);
+        this.rateProfile = builder.rateProfile;
+        this.rotationMode = builder.rotationMode;
+        this.maxFileSizeInBytes = builder.maxFileSizeInBytes;
+        this.numberOfLines = builder.numberOfLines;
+        this.durationInMs = builder.durationInMs;
+        this.seed = builder.seed;
+    }
+
+    /**
+     * Runs the generator with the configuration given by the system properties "generator.*", see README.
+     */
+    public static void main(final String[] args) {
+        final String file = System.getProperty("generator.file");
+        checkArgument(file != null, "generator.file must be set");
+
+        final long linesPerSecond = Long.getLong("generator.linesPerSecond", 1000L);
+        final RateProfile rateProfile = new RateProfile(linesPerSecond,
+                Long.getLong("generator.burstLinesPerSecond", linesPerSecond),
+                Long.getLong("generator.burstIntervalInMs", 0L), Long.getLong("generator.burstDurationInMs", 0L));
+
+        final FormatMix formatMix = FormatMix.parse(System.getProperty("generator.formats",
+                    "haproxy:4,syslog:3,mongodb:1,redis:1,java_stacktrace:1"));
+        final String burstFormats = System.getProperty("generator.burstFormats");
+        final LengthDistribution messageLength = LengthDistribution.parse(System.getProperty(
+                    "generator.messageLength", "lognormal:60:0.8"));
+        final double utf8Ratio = Double.parseDouble(System.getProperty("generator.utf8Ratio", "0.05"));
+        final RotationMode rotationMode = RotationMode.valueOf(System.getProperty("generator.rotation", "none")
+                    .toUpperCase());
+        final long maxFileSizeInBytes = Long.getLong("generator.maxFileSizeInBytes", 100L * 1024L * 1024L);
+        final long numberOfLines = Long.getLong("generator.lines", 0L);
+        final long durationInMs = Long.getLong("generator.durationInMs", 0L);
+
+        final LogGenerator generator = new Builder(Paths.get(file)).withFormatMix(formatMix)
+                                                                   .withBurstFormatMix(burstFormats == null
+                                                                       ? null : FormatMix.parse(burstFormats))
+                                                                   .withRateProfile(rateProfile)
+                                                                   .withMessageLength(messageLength)
+                                                                   .withUtf8Ratio(utf8Ratio)
+                                                                   .withRotation(rotationMode, maxFileSizeInBytes)
+                                                                   .withNumberOfLines(numberOfLines)
+                                                                   .withDuration(durationInMs)
+                                                                   .withSeed(Long.getLong("generator.seed", 42L))
+                                                                   .build();
+        generator.run();
+    }
+
+    /**
+     * Lets the generator stop after the current record.
+     */
+    public void stop() {
+        isStopped = true;
+    }
+
+    public long getWrittenLines() {
+        return writtenLines;
+    }
+
+    public long getRotations() {
+        return rotations;
+    }
+
+    @Override
+    public void run() {
+        LOGGER.info("generating [file={}] with [generator={}]", file, this);
+
+        final Random random = new Random(seed);
+        final GeneratorClock clock = new GeneratorClock(ZoneId.systemDefault());
+        final StringBuilder record = new StringBuilder();
+
+        final long startTime = System.nanoTime();
+        long nextWriteTime = startTime;
+        long now;
+        long elapsedTimeInMs;
+        long linesPerSecond;
+        int lines;
+        try {
+            open();
+            while (!isStopped && (numberOfLines == 0L || writtenLines < numberOfLines)) {
+                now = System.nanoTime();
+                elapsedTimeInMs = TimeUnit.NANOSECONDS.toMillis(now - startTime);
+                if (durationInMs > 0L && elapsedTimeInMs >= durationInMs) {
+                    break;
+                }
+
+                linesPerSecond = rateProfile.getLinesPerSecond(elapsedTimeInMs);
+                if (linesPerSecond > 0L) {
+                    if (nextWriteTime > now) {
+
+                        // NOTE: buffered lines are flushed before waiting, so that the pacing is visible to the reader
+                        writer.flush();
+                        LockSupport.parkNanos(nextWriteTime - now);
+                    } else if (now - nextWriteTime > MAX_BACKLOG_IN_NS) {
+                        nextWriteTime = now;
+                    }
+                }
+
+                record.setLength(0);
+                clock.setTime(System.currentTimeMillis());
+                lines = (rateProfile.isBurst(elapsedTimeInMs) ? burstFormatMix : formatMix).next(random).append(record,
+                        clock, messageGenerator, random);
+                writer.append(record);
+                writtenLines += lines;
+
+                if (linesPerSecond > 0L) {
+                    nextWriteTime += lines * TimeUnit.SECONDS.toNanos(1L) / linesPerSecond;
+                }
+
+                if (rotationMode != RotationMode.NONE
+                        && output.getCount() - rotationOffsetInBytes >= maxFileSizeInBytes) {
+                    rotate();
+                }
+            }
+
+            writer.close();
+        } catch (final IOException e) {
+            LOGGER.error("could not write to [file={}]", file, e);
+        }
+
+        LOGGER.info("generator has been stopped [writtenLines={}, rotations={}]", writtenLines, rotations);
+    }
+
+    private void open() throws IOException {
+        output = new CountingOutputStream(new FileOutputStream(file.toFile(), true));
+        writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        rotationOffsetInBytes = 0L;
+    }
+
+    private void rotate() throws IOException {
+        if (rotationMode == RotationMode.RENAME) {
+            writer.close();
+            Files.move(file, rotatedFile, StandardCopyOption.REPLACE_EXISTING);
+            open();
+        } else {
+            writer.flush();
+            Files.copy(file, rotatedFile, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(0L);
+            }
+
+            // NOTE: the file is opened in append mode, so the next write starts at the new end of file
+            rotationOffsetInBytes = output.getCount();
+        }
+
+        rotations++;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("file", file).add("formatMix", formatMix)
+                      .add("burstFormatMix", burstFormatMix).add("messageGenerator", messageGenerator)
+                      .add("rateProfile", rateProfile).add("rotationMode", rotationMode)
+                      .add("maxFileSizeInBytes", maxFileSizeInBytes).add("numberOfLines", numberOfLines)
+                      .add("durationInMs", durationInMs).add("seed", seed).toString();
+    }
+
+    /**
+     * {@link de.zalando.pequod.benchmark.generator.LogGenerator} Builder.
+     */
+    static final class Builder {
+
+        private final Path file;
+        private FormatMix formatMix;
+        private FormatMix burstFormatMix;
+        private LengthDistribution messageLength;
+        private double utf8Ratio;
+        private RateProfile rateProfile;
+        private RotationMode rotationMode;
+        private long maxFileSizeInBytes;
+        private long numberOfLines;
+        private long durationInMs;
+        private long seed;
+
+        Builder(final Path file) {
+            checkArgument(file != null, "file must not be null");
+            this.file = file;
+            this.formatMix = FormatMix.parse("syslog");
+            this.messageLength = LengthDistribution.logNormal(60.0, 0.8);
+            this.rateProfile = RateProfile.steady(1000L);
+            this.rotationMode = RotationMode.NONE;
+            this.maxFileSizeInBytes = Long.MAX_VALUE;
+        }
+
+        Builder withFormatMix(final FormatMix mix) {
+            this.formatMix = mix;
+            return this;
+        }
+
+        /**
+         * @param  mix  format mix during bursts
+         */
+        Builder withBurstFormatMix(final FormatMix mix) {
+            this.burstFormatMix = mix;
+            return this;
+        }
+
+        Builder withMessageLength(final LengthDistribution distribution) {
+            this.messageLength = distribution;
+            return this;
+        }
+
+        Builder withUtf8Ratio(final double ratio) {
+            this.utf8Ratio = ratio;
+            return this;
+        }
+
+        Builder withRateProfile(final RateProfile profile) {
+            this.rateProfile = profile;
+            return this;
+        }
+
+        Builder withRotation(final RotationMode mode, final long maxSizeInBytes) {
+            checkArgument(mode != null, "rotation mode must not be null");
+            checkArgument(maxSizeInBytes > 0L, "max file size must not be lower than 1. Got %s", maxSizeInBytes);
+            this.rotationMode = mode;
+            this.maxFileSizeInBytes = maxSizeInBytes;
+            return this;
+        }
+
+        /**
+         * @param  lines  number of lines after which the generator stops, 0 for no limit
+         */
+        Builder withNumberOfLines(final long lines) {
+            checkArgument(lines >= 0L, "number of lines must not be lower than 0. Got %s", lines);
+            this.numberOfLines = lines;
+            return this;
+        }
+
+        /**
+         * @param  timeInMs  time after which the generator stops, 0 for no limit
+         */
+        Builder withDuration(final long timeInMs) {
+            checkArgument(timeInMs >= 0L, "duration must not be lower than 0. Got %s", timeInMs);
+            this.durationInMs = timeInMs;
+            return this;
+        }
+
+        Builder withSeed(final long randomSeed) {
+            this.seed = randomSeed;
+            return this;
+        }
+
+        LogGenerator build() {
+            checkState(formatMix != null, "no format mix set");
+            checkState(rateProfile != null, "no rate profile set");
+            checkState(messageLength != null, "no message length distribution set");
+            return new LogGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package de.zalando.pequod.benchmark.generator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Random;
+
+import com.google.common.base.Objects;
+
+/**
+ * Creates free text messages out of random words. A share of the words contains non-ASCII chars, so that the messages
+ * exercise the UTF-8 decoding of the source.
+ */
+final class MessageGenerator {
+
+    private static final String[] ASCII_WORDS = {
+        "request", "response", "user", "session", "order", "payment", "article", "cart", "checkout", "timeout",
+        "connection", "retry", "failed", "completed", "started", "cache", "miss", "hit", "id=4711", "took", "ms",
+        "status=200", "status=503", "queue", "worker", "shard", "replica", "token", "expired", "GET", "POST"
+    };
+
+    private static final String[] UTF8_WORDS = {
+        "Größe", "Übergröße", "Straße", "café", "naïve", "Zürich", "Kraków", "ñandú", "東京", "日本語", "Привет",
+        "€12,99", "señal", "ünïcödé", "αβγ", "한국어"
+    };
+
+    private final LengthDistribution lengthDistribution;
+    private final double utf8Ratio;
+
+    /**
+     * @param  lengthDistribution  distribution of the message lengths in chars
+     * @param  utf8Ratio           share of words with non-ASCII chars (0.0 to 1.0)
+     */
+    MessageGenerator(final LengthDistribution lengthDistribution, final double utf8Ratio) {
+        checkArgument(lengthDistribution != null, "length distribution must not be null");
+        checkArgument(utf8Ratio >= 0.0 && utf8Ratio <= 1.0, "UTF-8 ratio must be within [0.0, 1.0]. Got %s",
+            utf8Ratio);
+
+        this.lengthDistribution = lengthDistribution;
+        this.utf8Ratio = utf8Ratio;
+    }
+
+    /**
+     * Appends a message of random length.
+     */
+    void append(final StringBuilder line, final Random random) {
+        appendWords(line, random, lengthDistribution.next(random), utf8Ratio);
+    }
+
+    /**
+     * @return  a message of random length which consists of ASCII words only
+     */
+    String nextAscii(final Random random) {
+        final StringBuilder message = new StringBuilder();
+        appendWords(message, random, lengthDistribution.next(random), 0.0);
+        return message.toString();
+    }
+
+    private static void appendWords(final StringBuilder line, final Random random, final int length,
+            final double utf8Ratio) {
+        final int end = line.length() + length;
+        String word;
+        while (line.length() < end) {
+            word = random.nextDouble() < utf8Ratio ? UTF8_WORDS[random.nextInt(UTF8_WORDS.length)]
+                                                   : ASCII_WORDS[random.nextInt(ASCII_WORDS.length)];
+            line.append(word, 0, Math.min(word.length(), end - line.length()));
+            if (line.length() < end) {
+                line.append(' ');
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("lengthDistribution", lengthDistribution)
+                      .add("utf8Ratio", utf8Ratio).toString();
+    }
+}
@@ -0,0 +1,65 @@
+package de.zalando.pequod.benchmark.generator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Objects;
+
+/**
+ * Write rate over time: a base rate which is interrupted by periodic bursts, e.g. to reproduce the traffic of an
+ * incident. A rate of 0 means as fast as possible.
+ */
+final class RateProfile {
+
+    private final long linesPerSecond;
+    private final long burstLinesPerSecond;
+    private final long burstIntervalInMs;
+    private final long burstDurationInMs;
+
+    /**
+     * @param  linesPerSecond       rate outside of bursts
+     * @param  burstLinesPerSecond  rate during bursts
+     * @param  burstIntervalInMs    time from the start of a burst until the start of the next one, 0 for no bursts
+     * @param  burstDurationInMs    duration of a burst
+     */
+    RateProfile(final long linesPerSecond, final long burstLinesPerSecond, final long burstIntervalInMs,
+            final long burstDurationInMs) {
+        checkArgument(linesPerSecond >= 0L, "lines per second must not be lower than 0. Got %s", linesPerSecond);
+        checkArgument(burstLinesPerSecond >= 0L, "burst lines per second must not be lower than 0. Got %s",
+            burstLinesPerSecond);
+        checkArgument(burstIntervalInMs >= 0L, "burst interval must not be lower than 0. Got %s", burstIntervalInMs);
+        checkArgument(burstDurationInMs >= 0L && burstDurationInMs <= burstIntervalInMs,
+            "burst duration must be within [0, burst interval]. Got %s", burstDurationInMs);
+
+        this.linesPerSecond = linesPerSecond;
+        this.burstLinesPerSecond = burstLinesPerSecond;
+        this.burstIntervalInMs = burstIntervalInMs;
+        this.burstDurationInMs = burstDurationInMs;
+    }
+
+    static RateProfile steady(final long linesPerSecond) {
+        return new RateProfile(linesPerSecond, linesPerSecond, 0L, 0L);
+    }
+
+    /**
+     * @param  elapsedTimeInMs  time since the generator has been started
+     */
+    boolean isBurst(final long elapsedTimeInMs) {
+        return burstIntervalInMs > 0L && elapsedTimeInMs % burstIntervalInMs < burstDurationInMs;
+    }
+
+    /**
+     * @param   elapsedTimeInMs  time since the generator has been started
+     *
+     * @return  the rate in lines per second, 0 for as fast as possible
+     */
+    long getLinesPerSecond(final long elapsedTimeInMs) {
+        return isBurst(elapsedTimeInMs) ? burstLinesPerSecond : linesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("linesPerSecond", linesPerSecond)
+                      .add("burstLinesPerSecond", burstLinesPerSecond).add("burstIntervalInMs", burstIntervalInMs)
+                      .add("burstDurationInMs", burstDurationInMs).toString();
+    }
+}
@@ -0,0 +1,24 @@
+package de.zalando.pequod.benchmark.generator;
+
+/**
+ * How the generated log file is rotated once it has reached its max size. The rotated content is kept in
+ * "[file].1", replacing the previous one.
+ */
+enum RotationMode {
+
+    /**
+     * the file grows without limit.
+     */
+    NONE,
+
+    /**
+     * the file is renamed and a new file is created, like logrotate with "create".
+     */
+    RENAME,
+
+    /**
+     * the file is copied and truncated in place, like logrotate with "copytruncate", i.e. the reader has to detect
+     * the truncation.
+     */
+    COPYTRUNCATE
+}
@@ -0,0 +1,74 @@
+package de.zalando.pequod.benchmark.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZoneId;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.zalando.grok.GrokMapper;
+
+public final class LineFormatTest {
+
+    private static final int NUMBER_OF_RECORDS = 200;
+
+    private final GeneratorClock clock = new GeneratorClock(ZoneId.of("UTC"));
+    private final MessageGenerator messages = new MessageGenerator(LengthDistribution.uniform(0, 300), 0.3);
+    private final Random random = new Random(42L);
+
+    @Test
+    public void testSingleLineFormatsMatchTheirMapping() {
+        for (final LineFormat format : new LineFormat[] {
+                    LineFormat.HAPROXY, LineFormat.SYSLOG, LineFormat.MONGODB, LineFormat.REDIS
+                }) {
+            final GrokMapper mapper = createMapper(format);
+            final StringBuilder record = new StringBuilder();
+            for (int i = 0; i < NUMBER_OF_RECORDS; i++) {
+                record.setLength(0);
+                clock.setTime(1441362225000L + i * 997L);
+                assertEquals(1, format.append(record, clock, messages, random));
+
+                final String line = record.substring(0, record.length() - 1);
+                assertFalse(format + " does not match: " + line, mapper.map(line).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testStackFramesMatchTheirMapping() {
+        final GrokMapper mapper = createMapper(LineFormat.JAVA_STACKTRACE);
+        final StringBuilder record = new StringBuilder();
+        for (int i = 0; i < NUMBER_OF_RECORDS; i++) {
+            record.setLength(0);
+
+            final int numberOfLines = LineFormat.JAVA_STACKTRACE.append(record, clock, messages, random);
+            final String[] lines = record.toString().split("\n");
+            assertEquals(numberOfLines, lines.length);
+            for (final String line : lines) {
+                assertEquals(line, line.startsWith("\tat "), !mapper.map(line).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testFormatMixHonorsWeights() {
+        final FormatMix mix = FormatMix.parse("syslog:3, redis");
+        int syslogCount = 0;
+        for (int i = 0; i < 4000; i++) {
+            if (mix.next(random) == LineFormat.SYSLOG) {
+                syslogCount++;
+            }
+        }
+
+        assertTrue("unexpected share of syslog records: " + syslogCount, syslogCount > 2800 && syslogCount < 3200);
+    }
+
+    private static GrokMapper createMapper(final LineFormat format) {
+        return new GrokMapper.Builder().withDefaultPatternDefinitions()
+                                       .withRecordMappingDefinition(format.getRecordMapping()).build();
+    }
+}
@@ -0,0 +1,50 @@
+package de.zalando.pequod.benchmark.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class LogGeneratorTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRenameRotationKeepsAllLines() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("generated.log");
+        final LogGenerator generator = new LogGenerator.Builder(file).withRateProfile(RateProfile.steady(0L))
+                                                                     .withMessageLength(LengthDistribution.fixed(100))
+                                                                     .withRotation(RotationMode.RENAME, 200L * 1024L)
+                                                                     .withNumberOfLines(2000L).build();
+        generator.run();
+
+        assertEquals(1L, generator.getRotations());
+        assertEquals(2000L, lines(file) + lines(file.resolveSibling("generated.log.1")));
+    }
+
+    @Test
+    public void testCopyTruncateRotationTruncatesFileInPlace() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("generated.log");
+        final LogGenerator generator = new LogGenerator.Builder(file).withRateProfile(RateProfile.steady(0L))
+                                                                     .withRotation(RotationMode.COPYTRUNCATE,
+                                                                         16L * 1024L).withNumberOfLines(1000L)
+                                                                     .build();
+        generator.run();
+
+        assertTrue(generator.getRotations() > 0L);
+        assertTrue(Files.size(file) < 16L * 1024L + 8192L);
+    }
+
+    private static long lines(final Path file) throws IOException {
+        return Files.readAllLines(file, StandardCharsets.UTF_8).size();
+    }
+}
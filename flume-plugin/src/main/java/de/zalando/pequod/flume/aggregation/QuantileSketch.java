@@ -0,0 +1,185 @@
+package de.zalando.pequod.flume.aggregation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+import com.google.common.base.Objects;
+
+/**
+ * Estimates quantiles of non-negative values with bounded relative error. Values are counted in logarithmically sized
+ * buckets: bucket i covers (gamma^(i-1), gamma^i] with gamma = (1 + accuracy) / (1 - accuracy), so the estimate of each
+ * quantile is within the configured relative accuracy of the true value. Bucket counts are kept in a primitive array
+ * which grows with the range of the values (about 2000 buckets cover 1 microsecond to 1 hour with 1% accuracy in ms).
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public final class QuantileSketch {
+
+    private final double gamma;
+    private final double logGamma;
+
+    private int[] buckets;
+    private int minIndex;
+    private long zeroCount;
+    private long count;
+    private double min;
+    private double max;
+    private double sum;
+
+    private static final int INITIAL_NUMBER_OF_BUCKETS = 64;
+
+    /**
+     * @param  relativeAccuracy  max relative error of the quantile estimates, e.g. 0.01 for 1%
+     */
+    public QuantileSketch(final double relativeAccuracy) {
+        checkArgument(relativeAccuracy > 0.0 && relativeAccuracy < 1.0,
+            "relative accuracy must be between 0 and 1 (exclusive). Got %s", relativeAccuracy);
+
+        this.gamma = (1.0 + relativeAccuracy) / (1.0 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * @param  value  value to add, negative values are counted as 0
+     */
+    public void add(final double value) {
+        add(value, 1);
+    }
+
+    /**
+     * @param  value        value to add, negative values are counted as 0
+     * @param  occurrences  number of times the value is added
+     */
+    public void add(final double value, final int occurrences) {
+        checkArgument(occurrences > 0, "occurrences must not be lower than 1. Got %s", occurrences);
+
+        final double nonNegativeValue = Math.max(0.0, value);
+        count += occurrences;
+        sum += nonNegativeValue * occurrences;
+        min = Math.min(min, nonNegativeValue);
+        max = Math.max(max, nonNegativeValue);
+
+        if (nonNegativeValue < Double.MIN_NORMAL) {
+            zeroCount += occurrences;
+            return;
+        }
+
+        final int index = (int) Math.ceil(Math.log(nonNegativeValue) / logGamma);
+        ensureCapacity(index);
+        buckets[index - minIndex] += occurrences;
+    }
+
+    /**
+     * Adds all values of another sketch with the same relative accuracy.
+     *
+     * @param  other  sketch to merge, not modified
+     */
+    public void merge(final QuantileSketch other) {
+        checkArgument(other.gamma == gamma, "sketches must have the same relative accuracy");
+        if (other.count == 0L) {
+            return;
+        }
+
+        count += other.count;
+        zeroCount += other.zeroCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        if (other.buckets == null) {
+            return;
+        }
+
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < other.buckets.length; i++) {
+            if (other.buckets[i] > 0) {
+                last = i;
+                if (first < 0) {
+                    first = i;
+                }
+            }
+        }
+
+        if (first < 0) {
+            return;
+        }
+
+        ensureCapacity(other.minIndex + first);
+        ensureCapacity(other.minIndex + last);
+        for (int i = first; i <= last; i++) {
+            buckets[other.minIndex + i - minIndex] += other.buckets[i];
+        }
+    }
+
+    private void ensureCapacity(final int index) {
+        if (buckets == null) {
+            buckets = new int[INITIAL_NUMBER_OF_BUCKETS];
+            minIndex = index - INITIAL_NUMBER_OF_BUCKETS / 2;
+        }
+
+        if (index < minIndex) {
+            final int shift = Math.max(minIndex - index, buckets.length / 2);
+            final int[] grown = new int[buckets.length + shift];
+            System.arraycopy(buckets, 0, grown, shift, buckets.length);
+            buckets = grown;
+            minIndex -= shift;
+        } else if (index - minIndex >= buckets.length) {
+            buckets = Arrays.copyOf(buckets, Math.max(index - minIndex + 1, buckets.length * 3 / 2));
+        }
+    }
+
+    /**
+     * @param   quantile  quantile between 0 and 1, e.g. 0.99
+     *
+     * @return  estimate of the quantile or {@code NaN} if no value has been added
+     */
+    public double getQuantile(final double quantile) {
+        checkArgument(quantile >= 0.0 && quantile <= 1.0, "quantile must be between 0 and 1. Got %s", quantile);
+        if (count == 0L) {
+            return Double.NaN;
+        }
+
+        final long rank = (long) (quantile * (count - 1));
+        if (rank < zeroCount) {
+            return 0.0;
+        }
+
+        long seen = zeroCount;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen > rank) {
+
+                // NOTE: the estimate is the value with equal relative distance to both bucket bounds
+                final double estimate = 2.0 * Math.pow(gamma, minIndex + i) / (gamma + 1.0);
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return count == 0L ? Double.NaN : min;
+    }
+
+    public double getMax() {
+        return count == 0L ? Double.NaN : max;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("gamma", gamma).add("count", count).add("min", getMin())
+                      .add("max", getMax()).toString();
+    }
+}
@@ -0,0 +1,542 @@
+package de.zalando.pequod.flume.aggregation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.math.BigDecimal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.flume.Event;
+import org.apache.flume.event.EventBuilder;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Aggregates mapped records per time window and key. The key consists of the values of the configured key fields
+ * (e.g. logLevel and status code); per key, the number of records and - if a value field is configured - a
+ * {@link de.zalando.pequod.flume.aggregation.QuantileSketch} of the numeric values (e.g. response times) are kept.
+ * When a window has been closed, one summary event per key is created. Windows are aligned to multiples of the window
+ * length.
+ *
+ * <p>The number of keys per window is limited: records with further keys are aggregated under the key value
+ * {@link #OVERFLOW_KEY_VALUE}.</p>
+ *
+ * <p>Instances are shared between the consumers of a source, but records are not added to them directly: each consumer
+ * aggregates into a {@link de.zalando.pequod.flume.aggregation.WindowAggregator.Partial} of its own without locking
+ * and merges it into the shared aggregates once its window has ended. The summary events of a window are created as
+ * soon as all partials have merged it. Aggregates are kept in open addressing tables keyed by a 64 bit hash of the key
+ * values, so a record of a known key is aggregated without any allocation.</p>
+ *
+ * <p>All methods of the shared instance are synchronized.</p>
+ */
+public final class WindowAggregator {
+
+    /**
+     * header of summary events: start of the window in ms since epoch (inclusive).
+     */
+    public static final String HEADER_WINDOW_START = "aggregation_window_start";
+
+    /**
+     * header of summary events: end of the window in ms since epoch (exclusive).
+     */
+    public static final String HEADER_WINDOW_END = "aggregation_window_end";
+
+    /**
+     * header of summary events: number of records with the key of the event in the window. Namespaced like the window
+     * headers, so that it does not collide with a key field.
+     */
+    public static final String HEADER_COUNT = "aggregation_count";
+
+    public static final String OVERFLOW_KEY_VALUE = "__other__";
+
+    static final int MAX_KEYS_PER_WINDOW = 10000;
+
+    private static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * window start of partials which do not aggregate any window.
+     */
+    private static final long NO_WINDOW = Long.MIN_VALUE;
+
+    private final List<String> keyFields;
+    private final String valueField;
+    private final double[] quantiles;
+    private final List<String> quantileHeaders;
+    private final long windowInMs;
+    private final boolean forwardRawEvents;
+
+    /**
+     * merged aggregates by window start, in order of the windows.
+     */
+    private final Map<Long, AggregateTable> windows;
+    private final Set<Partial> partials;
+    private final List<Event> closedWindowEvents;
+
+    /**
+     * end of the last summarized window, so windows of partials cannot be summarized twice.
+     */
+    private long closedUntil;
+
+    /**
+     * @param  keyFields         names of the mapped fields forming the key
+     * @param  valueField        name of the mapped field with numeric values to compute quantiles of (may be
+     *                           {@code null})
+     * @param  quantiles         quantiles to report for the value field, e.g. 0.5, 0.99
+     * @param  windowInMs        window length in ms
+     * @param  forwardRawEvents  true if raw events are put to the channel alongside the summary events
+     */
+    public WindowAggregator(final List<String> keyFields, final String valueField, final double[] quantiles,
+            final long windowInMs, final boolean forwardRawEvents) {
+        checkArgument(keyFields != null && !keyFields.isEmpty(), "there has to be at least 1 key field");
+        for (final String keyField : keyFields) {
+            checkArgument(!keyField.equals(HEADER_COUNT) && !keyField.equals(HEADER_WINDOW_START)
+                    && !keyField.equals(HEADER_WINDOW_END), "key field must not be named like a summary header. Got %s",
+                keyField);
+        }
+
+        checkArgument(quantiles != null, "quantiles must not be null");
+        for (final double quantile : quantiles) {
+            checkArgument(quantile >= 0.0 && quantile <= 1.0, "quantiles must be between 0 and 1. Got %s", quantile);
+        }
+
+        checkArgument(windowInMs > 0L, "window must not be lower than 1 ms. Got %s", windowInMs);
+
+        this.keyFields = ImmutableList.copyOf(keyFields);
+        this.valueField = Strings.emptyToNull(valueField);
+        this.quantiles = quantiles.clone();
+        this.windowInMs = windowInMs;
+        this.forwardRawEvents = forwardRawEvents;
+        this.windows = Maps.newTreeMap();
+        this.partials = Sets.newIdentityHashSet();
+        this.closedWindowEvents = Lists.newArrayList();
+        this.closedUntil = Long.MIN_VALUE;
+
+        final List<String> headers = Lists.newArrayListWithCapacity(quantiles.length);
+        for (final double quantile : quantiles) {
+            headers.add(this.valueField + "_p"
+                    + BigDecimal.valueOf(quantile * 100.0).stripTrailingZeros().toPlainString());
+        }
+
+        this.quantileHeaders = headers;
+    }
+
+    public boolean isForwardingRawEvents() {
+        return forwardRawEvents;
+    }
+
+    /**
+     * @return  new partial aggregation for a single consumer, which has to be closed when the consumer stops
+     */
+    public synchronized Partial createPartial() {
+        final Partial partial = new Partial();
+        partials.add(partial);
+        return partial;
+    }
+
+    private synchronized void merge(final Partial partial, final boolean isClosing) {
+        if (partial.windowStart != NO_WINDOW) {
+            AggregateTable window = windows.get(partial.windowStart);
+            if (window == null) {
+                window = new AggregateTable();
+                windows.put(partial.windowStart, window);
+            }
+
+            final AggregateTable table = partial.table;
+            for (int i = 0; i < table.slots.length; i++) {
+                final Aggregate aggregate = table.slots[i];
+                if (aggregate != null) {
+                    getOrCreateAggregate(window, table.hashes[i], aggregate.keyValues).merge(aggregate);
+                }
+            }
+
+            partial.windowStart = NO_WINDOW;
+        }
+
+        if (isClosing) {
+            partials.remove(partial);
+        }
+    }
+
+    /**
+     * @param   keyValues  key values, copied if a new aggregate is created
+     *
+     * @return  aggregate of the key values or, if the table is full, of the overflow key
+     */
+    private Aggregate getOrCreateAggregate(final AggregateTable table, final long hash, final String[] keyValues) {
+        final Aggregate aggregate = table.get(hash, keyValues);
+        if (aggregate != null) {
+            return aggregate;
+        }
+
+        if (table.size < MAX_KEYS_PER_WINDOW) {
+            return table.getOrCreate(hash, keyValues);
+        }
+
+        final String[] overflowKeyValues = new String[keyFields.size()];
+        Arrays.fill(overflowKeyValues, OVERFLOW_KEY_VALUE);
+        return table.getOrCreate(hash(overflowKeyValues), overflowKeyValues);
+    }
+
+    /**
+     * Starts the window of the partial which contains the given time or, if that window has already been summarized,
+     * the next window which has not.
+     *
+     * @param  now  current time in ms since epoch
+     */
+    private synchronized void startWindow(final Partial partial, final long now) {
+        partial.windowStart = Math.max(now - now % windowInMs, closedUntil);
+    }
+
+    /**
+     * Returns the summary events of all windows which have ended until now and have been merged by all partials.
+     *
+     * @param   now  current time in ms since epoch
+     *
+     * @return  summary events, empty if no window has been closed since the last call
+     */
+    public synchronized List<Event> pollClosedWindowEvents(final long now) {
+        closeWindows(now, false);
+        if (closedWindowEvents.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Event> events = Lists.newArrayList(closedWindowEvents);
+        closedWindowEvents.clear();
+        return events;
+    }
+
+    /**
+     * Closes all merged windows regardless of their end and returns all pending summary events. Aggregates of partials
+     * which have not been merged yet are not included.
+     *
+     * @return  summary events
+     */
+    public synchronized List<Event> closeAll() {
+        closeWindows(Long.MAX_VALUE, true);
+        return pollClosedWindowEvents(Long.MIN_VALUE);
+    }
+
+    private void closeWindows(final long now, final boolean isClosingAll) {
+        final Iterator<Map.Entry<Long, AggregateTable>> iterator = windows.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Long, AggregateTable> window = iterator.next();
+            final long windowStart = window.getKey();
+            if (!isClosingAll && (windowStart + windowInMs > now || isPending(windowStart))) {
+                break;
+            }
+
+            final AggregateTable table = window.getValue();
+            for (final Aggregate aggregate : table.slots) {
+                if (aggregate != null) {
+                    closedWindowEvents.add(createEvent(windowStart, aggregate));
+                }
+            }
+
+            if (!isClosingAll) {
+                closedUntil = Math.max(closedUntil, windowStart + windowInMs);
+            }
+
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @return  true if a partial still aggregates the given or an earlier window
+     */
+    private boolean isPending(final long windowStart) {
+        for (final Partial partial : partials) {
+            if (partial.windowStart != NO_WINDOW && partial.windowStart <= windowStart) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Event createEvent(final long windowStart, final Aggregate aggregate) {
+        final Map<String, String> headers = Maps.newHashMap();
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < keyFields.size(); i++) {
+            headers.put(keyFields.get(i), aggregate.keyValues[i]);
+            body.append(i == 0 ? "" : " ").append(keyFields.get(i)).append('=').append(aggregate.keyValues[i]);
+        }
+
+        headers.put(HEADER_WINDOW_START, String.valueOf(windowStart));
+        headers.put(HEADER_WINDOW_END, String.valueOf(windowStart + windowInMs));
+        headers.put(HEADER_COUNT, String.valueOf(aggregate.count));
+
+        final QuantileSketch sketch = aggregate.sketch;
+        if (sketch != null && sketch.getCount() > 0L) {
+            headers.put(valueField + "_min", String.valueOf(sketch.getMin()));
+            headers.put(valueField + "_max", String.valueOf(sketch.getMax()));
+            headers.put(valueField + "_sum", String.valueOf(sketch.getSum()));
+            for (int i = 0; i < quantiles.length; i++) {
+                headers.put(quantileHeaders.get(i), String.valueOf(sketch.getQuantile(quantiles[i])));
+            }
+        }
+
+        return EventBuilder.withBody(body.toString(), Charsets.UTF_8, headers);
+    }
+
+    private static long hash(final String[] keyValues) {
+        long hash = FNV_OFFSET_BASIS;
+        for (final String keyValue : keyValues) {
+            for (int i = 0; i < keyValue.length(); i++) {
+                hash = (hash ^ keyValue.charAt(i)) * FNV_PRIME;
+            }
+
+            // NOTE: separates the values, so that ("ab", "c") and ("a", "bc") differ
+            hash = (hash ^ 0xffff) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return Objects.toStringHelper(this).add("keyFields", keyFields).add("valueField", valueField)
+                      .add("quantileHeaders", quantileHeaders).add("windowInMs", windowInMs)
+                      .add("forwardRawEvents", forwardRawEvents).add("numberOfWindows", windows.size())
+                      .add("numberOfPartials", partials.size()).toString();
+    }
+
+    /**
+     * Aggregates of the current window of a single consumer. Not thread-safe.
+     */
+    public final class Partial {
+
+        private final AggregateTable table;
+        private final String[] keyValues;
+
+        /**
+         * written by the consumer under the lock of the aggregator and read by other consumers under that lock.
+         */
+        private long windowStart;
+
+        /**
+         * true if a window has been merged since the last poll, so its summary events may be due.
+         */
+        private boolean hasMergedWindow;
+
+        private Partial() {
+            this.table = new AggregateTable();
+            this.keyValues = new String[keyFields.size()];
+            this.windowStart = NO_WINDOW;
+        }
+
+        /**
+         * @param  fields       mapped fields of a record
+         * @param  occurrences  number of records the fields stand for, e.g. the repetitions of a repeat summary
+         * @param  now          current time in ms since epoch
+         */
+        public void add(final Map<String, String> fields, final int occurrences, final long now) {
+            if (windowStart != NO_WINDOW && now - windowStart >= windowInMs) {
+                mergeWindow();
+            }
+
+            if (windowStart == NO_WINDOW) {
+                startWindow(this, now);
+            }
+
+            for (int i = 0; i < keyValues.length; i++) {
+                keyValues[i] = Strings.nullToEmpty(fields.get(keyFields.get(i)));
+            }
+
+            final Aggregate aggregate = getOrCreateAggregate(table, hash(keyValues), keyValues);
+            aggregate.count += occurrences;
+
+            if (valueField != null) {
+                final String value = fields.get(valueField);
+                if (!Strings.isNullOrEmpty(value)) {
+                    try {
+                        aggregate.getSketch().add(Double.parseDouble(value), occurrences);
+                    } catch (final NumberFormatException e) {
+                        // only the count is aggregated
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param   now  current time in ms since epoch
+         *
+         * @return  time in ms until the current window has to be merged, 0 if it is overdue or if a merged window
+         *          has not been polled yet
+         */
+        public long getTimeUntilWindowCloseInMs(final long now) {
+            if (hasMergedWindow) {
+                return 0L;
+            }
+
+            if (windowStart == NO_WINDOW) {
+                return windowInMs;
+            }
+
+            return Math.max(0L, windowStart + windowInMs - now);
+        }
+
+        /**
+         * Merges the current window if it has ended and returns the summary events of all windows which have been
+         * closed until now.
+         *
+         * @param   now  current time in ms since epoch
+         *
+         * @return  summary events, empty if no window has been closed since the last call
+         */
+        public List<Event> pollClosedWindowEvents(final long now) {
+            if (windowStart != NO_WINDOW && now - windowStart >= windowInMs) {
+                mergeWindow();
+            }
+
+            hasMergedWindow = false;
+            return WindowAggregator.this.pollClosedWindowEvents(now);
+        }
+
+        private void mergeWindow() {
+            merge(this, false);
+            table.clear();
+            hasMergedWindow = true;
+        }
+
+        /**
+         * Merges the current window regardless of its end and detaches the partial from the aggregator.
+         */
+        public void close() {
+            merge(this, true);
+            table.clear();
+        }
+
+        @Override
+        public String toString() {
+            return Objects.toStringHelper(this).add("windowStart", windowStart).add("numberOfKeys", table.size)
+                          .toString();
+        }
+    }
+
+    /**
+     * Open addressing table of aggregates with linear probing, keyed by the hash of the key values.
+     */
+    private static final class AggregateTable {
+
+        private long[] hashes;
+        private Aggregate[] slots;
+        private int size;
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        AggregateTable() {
+            hashes = new long[INITIAL_CAPACITY];
+            slots = new Aggregate[INITIAL_CAPACITY];
+        }
+
+        Aggregate get(final long hash, final String[] keyValues) {
+            final int mask = slots.length - 1;
+            for (int i = (int) (hash ^ (hash >>> 32)) & mask; slots[i] != null; i = (i + 1) & mask) {
+                if (hashes[i] == hash && Arrays.equals(slots[i].keyValues, keyValues)) {
+                    return slots[i];
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * @param  keyValues  key values, copied if a new aggregate is created
+         */
+        Aggregate getOrCreate(final long hash, final String[] keyValues) {
+            final Aggregate existing = get(hash, keyValues);
+            if (existing != null) {
+                return existing;
+            }
+
+            // NOTE: the load factor is kept at 0.5 at most
+            if ((size + 1) * 2 > slots.length) {
+                resize(slots.length * 2);
+            }
+
+            final Aggregate aggregate = new Aggregate(keyValues.clone());
+            insert(hash, aggregate);
+            size++;
+            return aggregate;
+        }
+
+        private void insert(final long hash, final Aggregate aggregate) {
+            final int mask = slots.length - 1;
+            int i = (int) (hash ^ (hash >>> 32)) & mask;
+            while (slots[i] != null) {
+                i = (i + 1) & mask;
+            }
+
+            hashes[i] = hash;
+            slots[i] = aggregate;
+        }
+
+        private void resize(final int capacity) {
+            final long[] oldHashes = hashes;
+            final Aggregate[] oldSlots = slots;
+            hashes = new long[capacity];
+            slots = new Aggregate[capacity];
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != null) {
+                    insert(oldHashes[i], oldSlots[i]);
+                }
+            }
+        }
+
+        void clear() {
+            if (size == 0) {
+                return;
+            }
+
+            // NOTE: a table which has grown for a burst of keys is not kept at that size
+            if (slots.length > INITIAL_CAPACITY * 16) {
+                hashes = new long[INITIAL_CAPACITY];
+                slots = new Aggregate[INITIAL_CAPACITY];
+            } else {
+                Arrays.fill(slots, null);
+            }
+
+            size = 0;
+        }
+    }
+
+    private static final class Aggregate {
+
+        private final String[] keyValues;
+        private long count;
+        private QuantileSketch sketch;
+
+        Aggregate(final String[] keyValues) {
+            this.keyValues = keyValues;
+        }
+
+        QuantileSketch getSketch() {
+            if (sketch == null) {
+                sketch = new QuantileSketch(RELATIVE_ACCURACY);
+            }
+
+            return sketch;
+        }
+
+        void merge(final Aggregate other) {
+            count += other.count;
+            if (other.sketch != null) {
+                getSketch().merge(other.sketch);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package de.zalando.pequod.flume.batch;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Objects;
+
+/**
+ * Resizes event batches between configured bounds so that filling and committing a batch takes about the configured
+ * target latency. After each completed batch, the time per event needed for filling (inverse arrival rate) and for
+ * committing (channel transaction or RPC round trip) is smoothed. The next batch size is the number of events which
+ * fit into the target latency with these costs: high load leads to large batches, idle phases to small ones.
+ */
+public final class AdaptiveBatchSizer {
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetLatencyInNs;
+
+    private boolean hasSamples;
+    private double fillTimePerEventInNs;
+    private double commitTimePerEventInNs;
+
+    private volatile int batchSize;
+
+    private static final double SMOOTHING_FACTOR = 0.2;
+
+    /**
+     * @param  minBatchSize       lower bound of the batch size
+     * @param  maxBatchSize       upper bound of the batch size
+     * @param  initialBatchSize   batch size used until the first batch has been completed
+     * @param  targetLatencyInMs  time in ms which filling plus committing a batch should take
+     */
+    public AdaptiveBatchSizer(final int minBatchSize, final int maxBatchSize, final int initialBatchSize,
+            final long targetLatencyInMs) {
+        checkArgument(minBatchSize > 0, "min batch size must not be lower than 1. Got %s", minBatchSize);
+        checkArgument(maxBatchSize >= minBatchSize, "max batch size must not be lower than min batch size %s. Got %s",
+            minBatchSize, maxBatchSize);
+        checkArgument(targetLatencyInMs > 0L, "target latency must not be lower than 1 ms. Got %s", targetLatencyInMs);
+
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.targetLatencyInNs = TimeUnit.MILLISECONDS.toNanos(targetLatencyInMs);
+        this.batchSize = clamp(initialBatchSize);
+    }
+
+    /**
+     * Returns the size the next batch should have.
+     *
+     * @return  batch size between min and max batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Adapts the batch size according to the costs of the completed batch.
+     *
+     * @param  numberOfEvents  number of events in the completed batch
+     * @param  fillTimeInNs    time since the previous batch has been completed
+     * @param  commitTimeInNs  time needed to hand over the batch (channel commit, RPC round trip)
+     */
+    public synchronized void onBatchCompleted(final int numberOfEvents, final long fillTimeInNs,
+            final long commitTimeInNs) {
+        if (numberOfEvents < 1) {
+            return;
+        }
+
+        final double fillTimePerEvent = Math.max(0L, fillTimeInNs) / (double) numberOfEvents;
+        final double commitTimePerEvent = Math.max(0L, commitTimeInNs) / (double) numberOfEvents;
+
+        if (hasSamples) {
+            fillTimePerEventInNs += SMOOTHING_FACTOR * (fillTimePerEvent - fillTimePerEventInNs);
+            commitTimePerEventInNs += SMOOTHING_FACTOR * (commitTimePerEvent - commitTimePerEventInNs);
+        } else {
+            fillTimePerEventInNs = fillTimePerEvent;
+            commitTimePerEventInNs = commitTimePerEvent;
+            hasSamples = true;
+        }
+
+        final double timePerEvent = fillTimePerEventInNs + commitTimePerEventInNs;
+        if (timePerEvent < 1.0) {
+            batchSize = maxBatchSize;
+        } else {
+            batchSize = clamp((int) Math.min(Integer.MAX_VALUE, targetLatencyInNs / timePerEvent));
+        }
+    }
+
+    private int clamp(final int size) {
+        return Math.max(minBatchSize, Math.min(maxBatchSize, size));
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("minBatchSize", minBatchSize).add("maxBatchSize", maxBatchSize)
+                      .add("targetLatencyInNs", targetLatencyInNs).add("batchSize", batchSize).toString();
+    }
+}
@@ -0,0 +1,332 @@
+package de.zalando.pequod.flume.channel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_KEEP_ALIVE;
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_TRANSACTION_CAPACITY;
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS;
+import static de.zalando.pequod.flume.channel.ChannelConstants.DEFAULT_KEEP_ALIVE;
+import static de.zalando.pequod.flume.channel.ChannelConstants.DEFAULT_TRANSACTION_CAPACITY;
+import static de.zalando.pequod.flume.channel.ChannelConstants.DEFAULT_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS;
+
+import java.io.IOException;
+
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.flume.ChannelException;
+import org.apache.flume.Context;
+import org.apache.flume.Event;
+import org.apache.flume.FlumeException;
+import org.apache.flume.channel.BasicChannelSemantics;
+import org.apache.flume.channel.BasicTransactionSemantics;
+import org.apache.flume.conf.Configurable;
+import org.apache.flume.instrumentation.ChannelCounter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Base of the insistent channels with their own event store. Transactions behave like those of the
+ * {@link org.apache.flume.channel.MemoryChannel}: puts become visible on commit, events taken by a rolled back
+ * transaction are returned to the head of the channel. Like the
+ * {@link de.zalando.pequod.flume.channel.InsistentMemoryChannel}, the channel shuts down as soon as all committed
+ * events have been taken, but waits at most until no operation has been performed on it for
+ * [waitTimeSinceLastPutBeforeStopInMs] ms.
+ *
+ * <p>All methods of the store are called while holding the queue lock.</p>
+ *
+ * @param  <E>  form in which put events are kept until commit
+ */
+abstract class AbstractInsistentChannel<E> extends BasicChannelSemantics implements DrainableChannel, Configurable {
+
+    private final Object queueLock;
+    private final DrainTracker drainTracker;
+
+    /**
+     * taken events of rolled back transactions, served before the events of the store.
+     */
+    private final Deque<Event> returnedEvents;
+
+    /**
+     * number of events in the store, returned events and events taken by open transactions.
+     */
+    private int reservedCount;
+
+    private int transactionCapacity;
+    private int keepAliveInSeconds;
+    private long waitTimeSinceLastPutBeforeStopInMs;
+
+    private ChannelCounter channelCounter;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractInsistentChannel.class);
+
+    AbstractInsistentChannel() {
+        queueLock = new Object();
+        drainTracker = new DrainTracker();
+        returnedEvents = Lists.newLinkedList();
+    }
+
+    @Override
+    public void configure(final Context context) {
+        transactionCapacity = context.getInteger(CONFIG_TRANSACTION_CAPACITY, DEFAULT_TRANSACTION_CAPACITY);
+        checkArgument(transactionCapacity > 0, "transaction capacity [configKey=%s] must not be lower than 1. Got %s",
+            CONFIG_TRANSACTION_CAPACITY, transactionCapacity);
+
+        keepAliveInSeconds = context.getInteger(CONFIG_KEEP_ALIVE, DEFAULT_KEEP_ALIVE);
+        checkArgument(keepAliveInSeconds > -1, "keep alive [configKey=%s] must not be lower than 0. Got %s",
+            CONFIG_KEEP_ALIVE, keepAliveInSeconds);
+
+        waitTimeSinceLastPutBeforeStopInMs = context.getLong(CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS,
+                DEFAULT_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS);
+        checkArgument(waitTimeSinceLastPutBeforeStopInMs > -1L,
+            "wait time since last put before stop [configKey=%s] must not be lower than 0. Got %s",
+            CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS, waitTimeSinceLastPutBeforeStopInMs);
+
+        if (channelCounter == null) {
+            channelCounter = new ChannelCounter(getName());
+        }
+    }
+
+    int getTransactionCapacity() {
+        return transactionCapacity;
+    }
+
+    /**
+     * @return  number of events in the store, returned events and events taken by open transactions
+     */
+    int getReservedCount() {
+        return reservedCount;
+    }
+
+    /**
+     * Opens the store.
+     *
+     * @return  number of events the store already contains (e.g. recovered from disk)
+     *
+     * @throws  IOException  if the store cannot be opened
+     */
+    abstract int openStore() throws IOException;
+
+    /**
+     * Closes the store after the channel has been drained or the wait time has passed.
+     */
+    abstract void closeStore();
+
+    /**
+     * @param   event  event which is put
+     *
+     * @return  form in which the event is kept until commit
+     *
+     * @throws  ChannelException  if the event cannot be stored at all
+     */
+    abstract E prepare(Event event);
+
+    /**
+     * @param   entries        prepared events of a transaction to be committed
+     * @param   numberOfTakes  number of events taken by the same transaction, which are released by the commit
+     *
+     * @return  true if all entries can be stored
+     */
+    abstract boolean hasSpaceFor(List<E> entries, int numberOfTakes);
+
+    /**
+     * @param   entries  prepared events of a committed transaction
+     *
+     * @throws  IOException  if the entries cannot be stored
+     */
+    abstract void store(List<E> entries) throws IOException;
+
+    /**
+     * @return  oldest stored event or {@code null} if the store is empty
+     */
+    abstract Event poll();
+
+    /**
+     * @return  true if the store contains no events
+     */
+    abstract boolean isStoreEmpty();
+
+    @Override
+    public synchronized void start() {
+        LOGGER.debug("starting channel...");
+
+        final int numberOfStoredEvents;
+        synchronized (queueLock) {
+            try {
+                numberOfStoredEvents = openStore();
+            } catch (final IOException e) {
+                throw new FlumeException("could not open event store of channel " + getName(), e);
+            }
+
+            returnedEvents.clear();
+            reservedCount = numberOfStoredEvents;
+        }
+
+        drainTracker.reset();
+        drainTracker.onCommit(numberOfStoredEvents, 0);
+
+        channelCounter.start();
+        channelCounter.setChannelSize(numberOfStoredEvents);
+        super.start();
+
+        LOGGER.debug("channel has been started");
+    }
+
+    @Override
+    public synchronized void stop() {
+        LOGGER.debug("stopping channel...");
+
+        final long pendingEventCount = drainTracker.awaitStopAllowed(waitTimeSinceLastPutBeforeStopInMs);
+        if (pendingEventCount > 0L) {
+            LOGGER.warn("stopping channel with [pendingEventCount={}]", pendingEventCount);
+        }
+
+        synchronized (queueLock) {
+            closeStore();
+            returnedEvents.clear();
+        }
+
+        channelCounter.setChannelSize(0L);
+        channelCounter.stop();
+        super.stop();
+
+        LOGGER.debug("channel has been stopped");
+    }
+
+    @Override
+    protected BasicTransactionSemantics createTransaction() {
+        return new StoreTransaction();
+    }
+
+    @Override
+    public long getPendingEventCount() {
+        return drainTracker.getPendingEventCount();
+    }
+
+    @Override
+    public boolean awaitDrained(final long timeoutInMs) throws InterruptedException {
+        return drainTracker.awaitDrained(timeoutInMs);
+    }
+
+    /**
+     * @return  string representation of the state shared by all insistent channels, for use in {@link #toString()}
+     */
+    String toStateString() {
+        synchronized (queueLock) {
+            return "numberOfReturnedEvents=" + returnedEvents.size() + ", reservedCount=" + reservedCount
+                    + ", transactionCapacity=" + transactionCapacity + ", drainTracker=" + drainTracker
+                    + ", waitTimeSinceLastPutBeforeStopInMs=" + waitTimeSinceLastPutBeforeStopInMs;
+        }
+    }
+
+    private final class StoreTransaction extends BasicTransactionSemantics {
+
+        private final List<E> putList;
+        private final List<Event> takeList;
+
+        private StoreTransaction() {
+            putList = Lists.newArrayListWithCapacity(transactionCapacity);
+            takeList = Lists.newArrayListWithCapacity(transactionCapacity);
+        }
+
+        @Override
+        protected void doPut(final Event event) {
+            channelCounter.incrementEventPutAttemptCount();
+            if (putList.size() == transactionCapacity) {
+                throw new ChannelException(String.format(
+                        "put list of transaction is full [transactionCapacity=%s]. Consider committing more "
+                            + "frequently or increasing the transaction capacity", transactionCapacity));
+            }
+
+            putList.add(prepare(event));
+            drainTracker.touch();
+        }
+
+        @Override
+        protected Event doTake() throws InterruptedException {
+            channelCounter.incrementEventTakeAttemptCount();
+            if (takeList.size() == transactionCapacity) {
+                throw new ChannelException(String.format(
+                        "take list of transaction is full [transactionCapacity=%s]. Consider committing more "
+                            + "frequently or increasing the transaction capacity", transactionCapacity));
+            }
+
+            final Event event;
+            synchronized (queueLock) {
+                final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(keepAliveInSeconds);
+                long remainingTimeInMs = deadline - System.currentTimeMillis();
+                while (returnedEvents.isEmpty() && isStoreEmpty() && remainingTimeInMs > 0L) {
+                    queueLock.wait(remainingTimeInMs);
+                    remainingTimeInMs = deadline - System.currentTimeMillis();
+                }
+
+                event = returnedEvents.isEmpty() ? poll() : returnedEvents.pollFirst();
+            }
+
+            if (event != null) {
+                takeList.add(event);
+                drainTracker.touch();
+            }
+
+            return event;
+        }
+
+        @Override
+        protected void doCommit() throws InterruptedException {
+            final int numberOfPuts = putList.size();
+            final int numberOfTakes = takeList.size();
+
+            synchronized (queueLock) {
+                if (numberOfPuts > 0) {
+                    final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(keepAliveInSeconds);
+                    long remainingTimeInMs = deadline - System.currentTimeMillis();
+                    while (!hasSpaceFor(putList, numberOfTakes) && remainingTimeInMs > 0L) {
+                        queueLock.wait(remainingTimeInMs);
+                        remainingTimeInMs = deadline - System.currentTimeMillis();
+                    }
+
+                    if (!hasSpaceFor(putList, numberOfTakes)) {
+                        throw new ChannelException(String.format(
+                                "space for commit to channel %s could not be acquired. Sinks are likely not keeping "
+                                    + "up with sources", getName()));
+                    }
+
+                    try {
+                        store(putList);
+                    } catch (final IOException e) {
+                        throw new ChannelException("could not store events of channel " + getName(), e);
+                    }
+                }
+
+                reservedCount += numberOfPuts - numberOfTakes;
+                channelCounter.setChannelSize(reservedCount);
+                queueLock.notifyAll();
+            }
+
+            channelCounter.addToEventPutSuccessCount(numberOfPuts);
+            channelCounter.addToEventTakeSuccessCount(numberOfTakes);
+            drainTracker.onCommit(numberOfPuts, numberOfTakes);
+
+            putList.clear();
+            takeList.clear();
+        }
+
+        @Override
+        protected void doRollback() {
+            synchronized (queueLock) {
+                for (int i = takeList.size() - 1; i >= 0; i--) {
+                    returnedEvents.addFirst(takeList.get(i));
+                }
+
+                queueLock.notifyAll();
+            }
+
+            putList.clear();
+            takeList.clear();
+        }
+    }
+}
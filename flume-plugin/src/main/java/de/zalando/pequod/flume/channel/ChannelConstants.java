@@ -5,13 +5,66 @@ final class ChannelConstants {
     // -- config keys
 
     /**
-     * time to wait after last event receive in ms before the channel stops (after having received a kill signal).
+     * max time in ms without any put or take before the channel stops (after having received a kill signal).
      */
     public static final String CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS = "waitTimeSinceLastPutBeforeStopInMs";
 
+    /**
+     * max number of events in the channel (same meaning as for the memory channel).
+     */
+    public static final String CONFIG_CAPACITY = "capacity";
+
+    /**
+     * max number of events put or taken per transaction (same meaning as for the memory channel).
+     */
+    public static final String CONFIG_TRANSACTION_CAPACITY = "transactionCapacity";
+
+    /**
+     * time in s to wait for space on commit of puts or for an event on take (same meaning as for the memory channel).
+     */
+    public static final String CONFIG_KEEP_ALIVE = "keepAlive";
+
+    /**
+     * max number of bytes of serialized events kept outside the heap.
+     */
+    public static final String CONFIG_OFF_HEAP_CAPACITY_IN_BYTES = "offHeapCapacityInBytes";
+
+    /**
+     * size of the direct buffers (segments) in bytes. A serialized event must fit into a single segment.
+     */
+    public static final String CONFIG_SEGMENT_SIZE_IN_BYTES = "segmentSizeInBytes";
+
+    /**
+     * directory of the spill segment files.
+     */
+    public static final String CONFIG_SPILL_DIRECTORY = "spillDirectory";
+
+    /**
+     * size of each spill segment file in bytes. A serialized event must fit into a single segment.
+     */
+    public static final String CONFIG_SPILL_SEGMENT_SIZE_IN_BYTES = "spillSegmentSizeInBytes";
+
+    /**
+     * max size of all spill segment files in bytes.
+     */
+    public static final String CONFIG_SPILL_CAPACITY_IN_BYTES = "spillCapacityInBytes";
+
+    /**
+     * file the remaining events are saved to on stop and restored from on the next start. If not set, the channel
+     * waits on stop until its events have been taken.
+     */
+    public static final String CONFIG_SNAPSHOT_FILE = "snapshotFile";
+
     // -- default values
 
     public static final long DEFAULT_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS = 5000L;
+    public static final int DEFAULT_CAPACITY = 100;
+    public static final int DEFAULT_TRANSACTION_CAPACITY = 100;
+    public static final int DEFAULT_KEEP_ALIVE = 3;
+    public static final long DEFAULT_OFF_HEAP_CAPACITY_IN_BYTES = 64L * 1024L * 1024L;
+    public static final int DEFAULT_SEGMENT_SIZE_IN_BYTES = 1024 * 1024;
+    public static final int DEFAULT_SPILL_SEGMENT_SIZE_IN_BYTES = 64 * 1024 * 1024;
+    public static final long DEFAULT_SPILL_CAPACITY_IN_BYTES = 1024L * 1024L * 1024L;
 
     private ChannelConstants() { }
 }
@@ -0,0 +1,287 @@
+package de.zalando.pequod.flume.channel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.util.List;
+
+import org.apache.flume.Channel;
+import org.apache.flume.ChannelException;
+import org.apache.flume.Event;
+import org.apache.flume.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+/**
+ * Saves the events of a channel to a file when the channel stops and puts them back when it starts again. The file
+ * starts with {@link #MAGIC} and a version, followed by the length-prefixed events in the form of
+ * {@link de.zalando.pequod.flume.channel.EventCodec}. Events are taken and put in transactions of the given batch
+ * size, so the snapshot works on top of any channel.
+ */
+final class ChannelSnapshot {
+
+    private final Path file;
+    private final int batchSize;
+
+    private static final int MAGIC = 0x50455153;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4;
+    private static final int LENGTH_PREFIX_SIZE = 4;
+    private static final int END_OF_FILE = -1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    private static final String FAILED_FILE_SUFFIX = ".failed";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChannelSnapshot.class);
+
+    /**
+     * @param  file       snapshot file
+     * @param  batchSize  number of events taken or put per transaction, must not exceed the transaction capacity
+     */
+    ChannelSnapshot(final Path file, final int batchSize) {
+        checkArgument(file != null, "file must not be null");
+        checkArgument(batchSize > 0, "batch size must not be lower than 1. Got %s", batchSize);
+        this.file = file;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Takes the given number of events from the channel and writes them to the snapshot file. The file is written
+     * completely before it replaces an existing one. Each batch is committed as taken only after it has been forced to
+     * disk; if writing fails, the current batch is rolled back and the file is truncated to the previous batches, which
+     * are kept as snapshot.
+     *
+     * @param   channel         started channel without concurrent users
+     * @param   numberOfEvents  number of committed events in the channel
+     *
+     * @return  number of saved events
+     *
+     * @throws  IOException  if the snapshot cannot be written
+     */
+    long save(final Channel channel, final long numberOfEvents) throws IOException {
+        final Path temporaryFile = file.resolveSibling(file.getFileName() + TEMPORARY_FILE_SUFFIX);
+        long numberOfSavedEvents = 0L;
+        long savedSize = 0L;
+        try (final FileChannel fileChannel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                        Channels.newOutputStream(fileChannel), BUFFER_SIZE));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+
+            boolean isChannelEmpty = false;
+            while (numberOfSavedEvents < numberOfEvents && !isChannelEmpty) {
+                final Transaction transaction = channel.getTransaction();
+                transaction.begin();
+                try {
+                    int numberOfTakes = 0;
+                    while (numberOfTakes < batchSize && numberOfSavedEvents + numberOfTakes < numberOfEvents) {
+                        final Event event = channel.take();
+                        if (event == null) {
+                            isChannelEmpty = true;
+                            break;
+                        }
+
+                        final byte[] entry = EventCodec.encode(event);
+                        output.writeInt(entry.length);
+                        output.write(entry);
+                        numberOfTakes++;
+                    }
+
+                    output.flush();
+                    fileChannel.force(false);
+                    transaction.commit();
+                    numberOfSavedEvents += numberOfTakes;
+                    savedSize = fileChannel.position();
+                } catch (final IOException | RuntimeException e) {
+                    transaction.rollback();
+                    throw e;
+                } finally {
+                    transaction.close();
+                }
+            }
+
+            output.flush();
+            fileChannel.force(true);
+        } catch (final IOException | RuntimeException e) {
+            keepPartialSnapshot(temporaryFile, numberOfSavedEvents, savedSize);
+            throw e;
+        }
+
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return numberOfSavedEvents;
+    }
+
+    /**
+     * Truncates the temporary file to the committed batches and moves it to the snapshot file, so these events are
+     * restored on the next start. The temporary file is deleted if there are no committed batches.
+     */
+    private void keepPartialSnapshot(final Path temporaryFile, final long numberOfSavedEvents, final long savedSize) {
+        try {
+            if (numberOfSavedEvents == 0L) {
+                Files.deleteIfExists(temporaryFile);
+                return;
+            }
+
+            try (final FileChannel fileChannel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                fileChannel.truncate(savedSize);
+                fileChannel.force(true);
+            }
+
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.warn("could not write snapshot completely -> kept [numberOfEvents={}] in [file={}]",
+                numberOfSavedEvents, file);
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.error("could not keep partial snapshot -> lost [numberOfEvents={}] unless [file={}] is restored",
+                new Object[] {numberOfSavedEvents, temporaryFile, e});
+        }
+    }
+
+    /**
+     * Puts the events of the snapshot file back to the channel and deletes the file. If the events do not fit into
+     * the channel, the events which have not been put back are kept in a snapshot file named by the time of the
+     * restore and the suffix {@link #FAILED_FILE_SUFFIX}, so they are neither restored twice nor lost. The same applies to the remainder of a
+     * truncated file, whose complete events are restored.
+     *
+     * @param   channel  started channel
+     *
+     * @return  number of restored events, 0 if there is no snapshot
+     *
+     * @throws  IOException  if the snapshot cannot be read
+     */
+    long restore(final Channel channel) throws IOException {
+        if (!Files.exists(file)) {
+            return 0L;
+        }
+
+        long numberOfRestoredEvents = 0L;
+
+        // NOTE: offset of the first event which has not been put back
+        long restoredSize = HEADER_SIZE;
+        try (final DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file),
+                                BUFFER_SIZE))) {
+            checkArgument(input.readInt() == MAGIC && input.readInt() == VERSION, "[file=%s] is no channel snapshot",
+                file);
+
+            final List<Event> batch = Lists.newArrayListWithCapacity(batchSize);
+            long batchSizeInBytes = 0L;
+            boolean isTruncated = false;
+            int length = readLength(input);
+            while (length != END_OF_FILE) {
+                final byte[] entry = new byte[length];
+                try {
+                    input.readFully(entry);
+                    batch.add(EventCodec.decode(ByteBuffer.wrap(entry)));
+                    batchSizeInBytes += LENGTH_PREFIX_SIZE + length;
+                    length = readLength(input);
+                } catch (final EOFException e) {
+                    isTruncated = true;
+                    length = END_OF_FILE;
+                }
+
+                if (batch.size() == batchSize || length == END_OF_FILE) {
+                    put(channel, batch);
+                    numberOfRestoredEvents += batch.size();
+                    restoredSize += batchSizeInBytes;
+                    batch.clear();
+                    batchSizeInBytes = 0L;
+                }
+            }
+
+            if (isTruncated) {
+                keepRemainder(restoredSize, numberOfRestoredEvents,
+                    new EOFException("snapshot is truncated after [offset=" + restoredSize + "]"));
+                return numberOfRestoredEvents;
+            }
+        } catch (final ChannelException e) {
+            keepRemainder(restoredSize, numberOfRestoredEvents, e);
+            return numberOfRestoredEvents;
+        }
+
+        Files.delete(file);
+        return numberOfRestoredEvents;
+    }
+
+    /**
+     * Writes the events of the snapshot file starting at the given offset to a new snapshot file
+     * "[snapshot file].[time in ms]{@link #FAILED_FILE_SUFFIX}" and deletes the snapshot file. Files of earlier failed
+     * restores are never overwritten.
+     */
+    private void keepRemainder(final long offset, final long numberOfRestoredEvents, final Exception cause)
+        throws IOException {
+        final Path failedFile = file.resolveSibling(file.getFileName() + "." + System.currentTimeMillis()
+                    + FAILED_FILE_SUFFIX);
+        try (final FileChannel input = FileChannel.open(file, StandardOpenOption.READ);
+                final FileChannel output = FileChannel.open(failedFile, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) {
+                output.write(header);
+            }
+
+            long position = offset;
+            while (position < input.size()) {
+                position += input.transferTo(position, input.size() - position, output);
+            }
+
+            output.force(true);
+        }
+
+        Files.delete(file);
+        LOGGER.error("could not restore snapshot completely [restoredEvents={}] -> kept remaining events as [file={}]",
+            new Object[] {numberOfRestoredEvents, failedFile, cause});
+    }
+
+    /**
+     * @return  length of the next event or {@link #END_OF_FILE}
+     */
+    private static int readLength(final DataInputStream input) throws IOException {
+        try {
+            return input.readInt();
+        } catch (final EOFException e) {
+            return END_OF_FILE;
+        }
+    }
+
+    private static void put(final Channel channel, final List<Event> events) {
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+        try {
+            for (final Event event : events) {
+                channel.put(event);
+            }
+
+            transaction.commit();
+        } catch (final ChannelException e) {
+            transaction.rollback();
+            throw e;
+        } finally {
+            transaction.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("file", file).add("batchSize", batchSize).toString();
+    }
+}
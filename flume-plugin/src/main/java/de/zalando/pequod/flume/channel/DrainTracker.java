@@ -0,0 +1,102 @@
+package de.zalando.pequod.flume.channel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+
+/**
+ * Keeps track of the committed events of a channel which have not been taken yet and of the last time the channel
+ * has been used, so that the insistent channels can stop as soon as they have been drained.
+ */
+final class DrainTracker {
+
+    /**
+     * written on every put and take, so it is not guarded by the monitor.
+     */
+    private volatile long lastUsageTime;
+    private long pendingEventCount;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DrainTracker.class);
+
+    /**
+     * Resets the pending event count and sets the last usage time to now.
+     */
+    synchronized void reset() {
+        lastUsageTime = System.currentTimeMillis();
+        pendingEventCount = 0L;
+    }
+
+    /**
+     * Updates last usage time to now.
+     */
+    void touch() {
+        lastUsageTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @param  numberOfPuts   number of events put by a committed transaction
+     * @param  numberOfTakes  number of events taken by a committed transaction
+     */
+    synchronized void onCommit(final int numberOfPuts, final int numberOfTakes) {
+        pendingEventCount += numberOfPuts - numberOfTakes;
+        if (numberOfTakes > 0) {
+            notifyAll();
+        }
+    }
+
+    synchronized long getPendingEventCount() {
+        return pendingEventCount;
+    }
+
+    long getLastUsageTime() {
+        return lastUsageTime;
+    }
+
+    /**
+     * @see  de.zalando.pequod.flume.channel.DrainableChannel#awaitDrained(long)
+     */
+    synchronized boolean awaitDrained(final long timeoutInMs) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutInMs;
+        long remainingTimeInMs = timeoutInMs;
+        while (pendingEventCount > 0L && remainingTimeInMs > 0L) {
+            wait(remainingTimeInMs);
+            remainingTimeInMs = deadline - System.currentTimeMillis();
+        }
+
+        return pendingEventCount <= 0L;
+    }
+
+    /**
+     * Waits until all committed events have been taken. The wait ends early if the channel has not been used for the
+     * given time, e.g. because the sinks have already been stopped.
+     *
+     * @param   waitTimeSinceLastUsageInMs  max time in ms without any put or take
+     *
+     * @return  number of events which are still pending
+     */
+    synchronized long awaitStopAllowed(final long waitTimeSinceLastUsageInMs) {
+        long remainingTimeInMs = lastUsageTime + waitTimeSinceLastUsageInMs - System.currentTimeMillis();
+        while (pendingEventCount > 0L && remainingTimeInMs > 0L) {
+            LOGGER.debug("waiting for channel to be drained...[pendingEventCount={}, remainingTimeInMs={}]",
+                pendingEventCount, remainingTimeInMs);
+
+            try {
+                wait(remainingTimeInMs);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            remainingTimeInMs = lastUsageTime + waitTimeSinceLastUsageInMs - System.currentTimeMillis();
+        }
+
+        return pendingEventCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return Objects.toStringHelper(this).add("lastUsageTime", lastUsageTime)
+                      .add("pendingEventCount", pendingEventCount).toString();
+    }
+}
@@ -0,0 +1,32 @@
+package de.zalando.pequod.flume.channel;
+
+import org.apache.flume.Channel;
+
+/**
+ * Channel which knows how many committed events have not been taken yet, so that components shutting down can wait
+ * exactly until the channel has been drained instead of waiting for a fixed period.
+ */
+public interface DrainableChannel extends Channel {
+
+    /**
+     * @return  number of events which have been committed by a put but not yet by a take
+     */
+    long getPendingEventCount();
+
+    /**
+     * @return  max number of committed events which fit into the channel, 0 if the channel is not limited by a number
+     *          of events
+     */
+    long getCapacity();
+
+    /**
+     * Blocks until all committed events have been taken or the timeout has passed.
+     *
+     * @param   timeoutInMs  max time to wait in ms
+     *
+     * @return  true if the channel has been drained, false if the timeout has passed before
+     *
+     * @throws  InterruptedException  if interrupted while waiting
+     */
+    boolean awaitDrained(long timeoutInMs) throws InterruptedException;
+}
@@ -0,0 +1,128 @@
+package de.zalando.pequod.flume.channel;
+
+import java.nio.ByteBuffer;
+
+import java.util.Map;
+
+import org.apache.flume.Event;
+import org.apache.flume.event.EventBuilder;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+
+/**
+ * Compact binary form of an {@link org.apache.flume.Event}:
+ *
+ * <pre>
+   [int number of headers] ([int key length][key UTF-8] [int value length][value UTF-8])* [int body length][body]
+ * </pre>
+ *
+ * <p>All ints are big endian. The format carries no length prefix of its own, users add one if needed.</p>
+ */
+final class EventCodec {
+
+    private EventCodec() { }
+
+    /**
+     * @param   event  event to encode
+     *
+     * @return  encoded event
+     */
+    static byte[] encode(final Event event) {
+        final Map<String, String> headers = event.getHeaders();
+        final byte[] body = event.getBody() == null ? new byte[0] : event.getBody();
+
+        final byte[][] headerBytes = new byte[headers.size() * 2][];
+        int size = 4 + 4 + body.length;
+        int i = 0;
+        for (final Map.Entry<String, String> header : headers.entrySet()) {
+            headerBytes[i] = header.getKey().getBytes(Charsets.UTF_8);
+            headerBytes[i + 1] = header.getValue() == null ? new byte[0] : header.getValue().getBytes(Charsets.UTF_8);
+            size += 4 + headerBytes[i].length + 4 + headerBytes[i + 1].length;
+            i += 2;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(headers.size());
+        for (final byte[] bytes : headerBytes) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+
+        buffer.putInt(body.length).put(body);
+        return buffer.array();
+    }
+
+    /**
+     * @param   event  event to encode
+     *
+     * @return  size of the encoded event in bytes
+     */
+    static int getEncodedSize(final Event event) {
+        int size = 4 + 4 + (event.getBody() == null ? 0 : event.getBody().length);
+        for (final Map.Entry<String, String> header : event.getHeaders().entrySet()) {
+            size += 4 + getUtf8Length(header.getKey()) + 4 + getUtf8Length(header.getValue());
+        }
+
+        return size;
+    }
+
+    private static int getUtf8Length(final String value) {
+        if (value == null) {
+            return 0;
+        }
+
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+
+                // NOTE: unpaired surrogates are encoded as '?'
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Decodes the event starting at the current position of the buffer and advances the position behind it.
+     *
+     * @param   buffer  buffer containing the encoded event
+     *
+     * @return  decoded event
+     */
+    static Event decode(final ByteBuffer buffer) {
+        final int numberOfHeaders = buffer.getInt();
+        final Map<String, String> headers = Maps.newHashMapWithExpectedSize(numberOfHeaders);
+        for (int i = 0; i < numberOfHeaders; i++) {
+            final String key = readString(buffer);
+            headers.put(key, readString(buffer));
+        }
+
+        final byte[] body = new byte[buffer.getInt()];
+        buffer.get(body);
+        return EventBuilder.withBody(body, headers);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (buffer.hasArray()) {
+            final String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    Charsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+}
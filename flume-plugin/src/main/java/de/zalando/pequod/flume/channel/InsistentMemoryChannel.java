@@ -2,11 +2,24 @@ package de.zalando.pequod.flume.channel;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_CAPACITY;
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_SNAPSHOT_FILE;
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_TRANSACTION_CAPACITY;
 import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS;
+import static de.zalando.pequod.flume.channel.ChannelConstants.DEFAULT_CAPACITY;
+import static de.zalando.pequod.flume.channel.ChannelConstants.DEFAULT_TRANSACTION_CAPACITY;
 import static de.zalando.pequod.flume.channel.ChannelConstants.DEFAULT_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS;
 
+import java.io.IOException;
+
+import java.nio.file.FileSystems;
+
 import org.apache.flume.Context;
 import org.apache.flume.Event;
+import org.apache.flume.FlumeException;
+import org.apache.flume.Transaction;
 import org.apache.flume.channel.MemoryChannel;
 
 import org.slf4j.Logger;
@@ -14,21 +27,36 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Objects;
 
+import de.zalando.pequod.flume.instrumentation.ChannelOperationCounter;
+
 /**
- * {@link org.apache.flume.channel.MemoryChannel} extension which shuts down only if no operation has been performed on
- * it since [waitTimeSinceLastPutBeforeStopInMs] ms.
+ * {@link org.apache.flume.channel.MemoryChannel} extension which shuts down as soon as all committed events have been
+ * taken, but waits at most until no operation has been performed on it for [waitTimeSinceLastPutBeforeStopInMs] ms.
+ *
+ * <p>If a [snapshotFile] is configured, the channel does not wait on stop. Instead, the remaining events are written
+ * to the snapshot file (see {@link de.zalando.pequod.flume.channel.ChannelSnapshot}) and put back to the channel on
+ * the next start, before any other event.</p>
+ *
+ * <p>Counts and latencies of puts, takes and commits as well as the fill level are registered via JMX as
+ * "org.apache.flume.other:type=[channel name]" (see
+ * {@link de.zalando.pequod.flume.instrumentation.ChannelOperationCounter}).</p>
  */
-public final class InsistentMemoryChannel extends MemoryChannel {
+public final class InsistentMemoryChannel extends MemoryChannel implements DrainableChannel {
 
-    private long lastUsageTime;
+    private final DrainTracker drainTracker;
     private long waitTimeSinceLastPutBeforeStopInMs;
+    private ChannelSnapshot snapshot;
+    private int capacity;
+    private ChannelOperationCounter operationCounter;
+
+    private final ThreadLocal<CountingTransaction> currentTransaction;
 
-    private static final long WAIT_FOR_ALLOWED_KILL_DELAY_IN_MS = 1000L;
     private static final Logger LOGGER = LoggerFactory.getLogger(InsistentMemoryChannel.class);
 
     public InsistentMemoryChannel() {
-        lastUsageTime = 0L;
+        drainTracker = new DrainTracker();
         waitTimeSinceLastPutBeforeStopInMs = 0L;
+        currentTransaction = new ThreadLocal<>();
     }
 
     @Override
@@ -40,27 +68,53 @@ public final class InsistentMemoryChannel extends MemoryChannel {
         checkArgument(waitTimeSinceLastPutBeforeStopInMs > -1L,
             "wait time since last put before stop [configKey=%s] must not be lower than 0. Got %s",
             CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS, waitTimeSinceLastPutBeforeStopInMs);
+
+        // NOTE: the memory channel has already validated the capacity
+        capacity = context.getInteger(CONFIG_CAPACITY, DEFAULT_CAPACITY);
+        if (operationCounter == null) {
+            operationCounter = new ChannelOperationCounter(getName());
+        }
+
+        final String snapshotFile = context.getString(CONFIG_SNAPSHOT_FILE);
+        if (isNullOrEmpty(snapshotFile)) {
+            snapshot = null;
+        } else {
+
+            // NOTE: the memory channel has already validated the transaction capacity
+            snapshot = new ChannelSnapshot(FileSystems.getDefault().getPath(snapshotFile),
+                    context.getInteger(CONFIG_TRANSACTION_CAPACITY, DEFAULT_TRANSACTION_CAPACITY));
+        }
     }
 
     @Override
     public void put(final Event event) {
+        final long startTime = System.nanoTime();
         super.put(event);
+        operationCounter.onPut(System.nanoTime() - startTime);
 
-        synchronized (this) {
-            lastUsageTime = System.currentTimeMillis();
+        final CountingTransaction transaction = currentTransaction.get();
+        if (transaction != null) {
+            transaction.numberOfPuts++;
         }
 
+        drainTracker.touch();
+
         LOGGER.debug("put event {}", event);
     }
 
     @Override
     public Event take() {
+        final long startTime = System.nanoTime();
         final Event event = super.take();
+        operationCounter.onTake(System.nanoTime() - startTime, event != null);
 
         if (event != null) {
-            synchronized (this) {
-                lastUsageTime = System.currentTimeMillis();
+            final CountingTransaction transaction = currentTransaction.get();
+            if (transaction != null) {
+                transaction.numberOfTakes++;
             }
+
+            drainTracker.touch();
         }
 
         LOGGER.debug("took event {}", event);
@@ -68,13 +122,56 @@ public final class InsistentMemoryChannel extends MemoryChannel {
         return event;
     }
 
+    @Override
+    public Transaction getTransaction() {
+        final Transaction transaction = super.getTransaction();
+
+        CountingTransaction countingTransaction = currentTransaction.get();
+        if (countingTransaction == null || countingTransaction.delegate != transaction) {
+            countingTransaction = new CountingTransaction(transaction);
+            currentTransaction.set(countingTransaction);
+        }
+
+        return countingTransaction;
+    }
+
+    @Override
+    public long getPendingEventCount() {
+        return drainTracker.getPendingEventCount();
+    }
+
+    @Override
+    public long getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean awaitDrained(final long timeoutInMs) throws InterruptedException {
+        return drainTracker.awaitDrained(timeoutInMs);
+    }
+
+    ChannelOperationCounter getOperationCounter() {
+        return operationCounter;
+    }
+
     @Override
     public void start() {
         LOGGER.debug("starting channel...");
         super.start();
 
-        synchronized (this) {
-            lastUsageTime = System.currentTimeMillis();
+        drainTracker.reset();
+        operationCounter.start();
+        operationCounter.setChannelFill(0L, capacity);
+
+        if (snapshot != null) {
+            try {
+                final long numberOfRestoredEvents = snapshot.restore(this);
+                if (numberOfRestoredEvents > 0L) {
+                    LOGGER.info("restored [numberOfEvents={}] from snapshot", numberOfRestoredEvents);
+                }
+            } catch (final IOException e) {
+                throw new FlumeException("could not restore snapshot of channel " + getName(), e);
+            }
         }
 
         LOGGER.debug("channel has been started");
@@ -84,36 +181,86 @@ public final class InsistentMemoryChannel extends MemoryChannel {
     public void stop() {
         LOGGER.debug("stopping channel...");
 
-        blockUntilStopIsAllowed();
+        if (snapshot == null || !saveSnapshot()) {
+            final long pendingEventCount = drainTracker.awaitStopAllowed(waitTimeSinceLastPutBeforeStopInMs);
+            if (pendingEventCount > 0L) {
+                LOGGER.warn("stopping channel with [pendingEventCount={}]", pendingEventCount);
+            }
+        }
+
         super.stop();
+        operationCounter.stop();
 
         LOGGER.debug("channel has been stopped");
     }
 
-    private void blockUntilStopIsAllowed() {
-        while (!isWaitTimeForNextPutExpired()) {
-            try {
-
-                if (LOGGER.isDebugEnabled()) {
-                    final long approximateWaitTimeInMs = System.currentTimeMillis() - lastUsageTime;
-                    LOGGER.debug("waiting for allowed channel stop...[approximateWaitTimeInMs={}]",
-                        approximateWaitTimeInMs);
-                }
-
-                Thread.sleep(WAIT_FOR_ALLOWED_KILL_DELAY_IN_MS);
-            } catch (final InterruptedException e) {
-                // do nothing
-            }
+    /**
+     * @return  true if the remaining events have been saved, false if the channel has to wait for them being taken
+     */
+    private boolean saveSnapshot() {
+        try {
+            final long numberOfSavedEvents = snapshot.save(this, drainTracker.getPendingEventCount());
+            LOGGER.info("saved [numberOfEvents={}] to snapshot", numberOfSavedEvents);
+            return true;
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.error("could not save snapshot -> waiting for remaining events to be taken", e);
+            return false;
         }
     }
 
-    private boolean isWaitTimeForNextPutExpired() {
-        return System.currentTimeMillis() - lastUsageTime >= waitTimeSinceLastPutBeforeStopInMs;
-    }
-
     @Override
     public String toString() {
-        return Objects.toStringHelper(this).add("lastUsageTime", lastUsageTime)
-                      .add("waitTimeSinceLastPutBeforeStopInMs", waitTimeSinceLastPutBeforeStopInMs).toString();
+        return Objects.toStringHelper(this).add("drainTracker", drainTracker)
+                      .add("waitTimeSinceLastPutBeforeStopInMs", waitTimeSinceLastPutBeforeStopInMs)
+                      .add("snapshot", snapshot).toString();
+    }
+
+    /**
+     * Transaction applying the puts and takes performed within it to the pending event count once it has been
+     * committed and recording the commit latency.
+     */
+    private final class CountingTransaction implements Transaction {
+
+        private final Transaction delegate;
+
+        private int numberOfPuts;
+        private int numberOfTakes;
+
+        private CountingTransaction(final Transaction delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void begin() {
+            delegate.begin();
+            numberOfPuts = 0;
+            numberOfTakes = 0;
+        }
+
+        @Override
+        public void commit() {
+            final long startTime = System.nanoTime();
+            delegate.commit();
+            operationCounter.onCommit(System.nanoTime() - startTime);
+
+            drainTracker.onCommit(numberOfPuts, numberOfTakes);
+            operationCounter.setChannelFill(drainTracker.getPendingEventCount(), capacity);
+            numberOfPuts = 0;
+            numberOfTakes = 0;
+        }
+
+        @Override
+        public void rollback() {
+            delegate.rollback();
+            operationCounter.onRollback();
+            numberOfPuts = 0;
+            numberOfTakes = 0;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+            currentTransaction.remove();
+        }
     }
 }
@@ -0,0 +1,112 @@
+package de.zalando.pequod.flume.channel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_CAPACITY;
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_OFF_HEAP_CAPACITY_IN_BYTES;
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_SEGMENT_SIZE_IN_BYTES;
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_TRANSACTION_CAPACITY;
+import static de.zalando.pequod.flume.channel.ChannelConstants.DEFAULT_CAPACITY;
+import static de.zalando.pequod.flume.channel.ChannelConstants.DEFAULT_OFF_HEAP_CAPACITY_IN_BYTES;
+import static de.zalando.pequod.flume.channel.ChannelConstants.DEFAULT_SEGMENT_SIZE_IN_BYTES;
+
+import java.util.List;
+
+import org.apache.flume.ChannelException;
+import org.apache.flume.Context;
+import org.apache.flume.Event;
+
+import com.google.common.base.Objects;
+
+/**
+ * Memory channel keeping its events serialized in direct buffers outside the heap (see
+ * {@link de.zalando.pequod.flume.channel.OffHeapEventRing}), so that a full channel neither fills the old generation
+ * nor prolongs GC pauses. Events are serialized on put and deserialized on take; only the events of open transactions
+ * live on the heap. See {@link de.zalando.pequod.flume.channel.AbstractInsistentChannel} for transactions and stop.
+ */
+public final class InsistentOffHeapChannel extends AbstractInsistentChannel<byte[]> {
+
+    private OffHeapEventRing ring;
+
+    private int capacity;
+    private long offHeapCapacityInBytes;
+    private int segmentSizeInBytes;
+
+    @Override
+    public void configure(final Context context) {
+        super.configure(context);
+
+        capacity = context.getInteger(CONFIG_CAPACITY, DEFAULT_CAPACITY);
+        checkArgument(capacity >= getTransactionCapacity(),
+            "capacity [configKey=%s] must not be lower than transaction capacity [configKey=%s] %s. Got %s",
+            CONFIG_CAPACITY, CONFIG_TRANSACTION_CAPACITY, getTransactionCapacity(), capacity);
+
+        segmentSizeInBytes = context.getInteger(CONFIG_SEGMENT_SIZE_IN_BYTES, DEFAULT_SEGMENT_SIZE_IN_BYTES);
+        checkArgument(segmentSizeInBytes >= 1024, "segment size [configKey=%s] must not be lower than 1024. Got %s",
+            CONFIG_SEGMENT_SIZE_IN_BYTES, segmentSizeInBytes);
+
+        offHeapCapacityInBytes = context.getLong(CONFIG_OFF_HEAP_CAPACITY_IN_BYTES,
+                DEFAULT_OFF_HEAP_CAPACITY_IN_BYTES);
+        checkArgument(offHeapCapacityInBytes >= segmentSizeInBytes,
+            "off heap capacity [configKey=%s] must not be lower than segment size %s. Got %s",
+            CONFIG_OFF_HEAP_CAPACITY_IN_BYTES, segmentSizeInBytes, offHeapCapacityInBytes);
+    }
+
+    @Override
+    int openStore() {
+        ring = new OffHeapEventRing(offHeapCapacityInBytes, segmentSizeInBytes);
+        return 0;
+    }
+
+    @Override
+    void closeStore() {
+
+        // NOTE: releases the direct buffers
+        ring = null;
+    }
+
+    @Override
+    byte[] prepare(final Event event) {
+        final byte[] entry = EventCodec.encode(event);
+        if (entry.length > segmentSizeInBytes - OffHeapEventRing.LENGTH_PREFIX_SIZE) {
+            throw new ChannelException(String.format(
+                    "serialized event of [size=%s] does not fit into a segment [configKey=%s, value=%s]",
+                    entry.length, CONFIG_SEGMENT_SIZE_IN_BYTES, segmentSizeInBytes));
+        }
+
+        return entry;
+    }
+
+    @Override
+    boolean hasSpaceFor(final List<byte[]> entries, final int numberOfTakes) {
+        return getReservedCount() - numberOfTakes + entries.size() <= capacity && ring.hasSpaceFor(entries);
+    }
+
+    @Override
+    void store(final List<byte[]> entries) {
+        for (int i = 0; i < entries.size(); i++) {
+            ring.write(entries.get(i));
+        }
+    }
+
+    @Override
+    Event poll() {
+        return ring.read();
+    }
+
+    @Override
+    boolean isStoreEmpty() {
+        return ring.isEmpty();
+    }
+
+    @Override
+    public long getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("name", getName()).add("ring", ring).add("capacity", capacity)
+                      .add("offHeapCapacityInBytes", offHeapCapacityInBytes).addValue(toStateString()).toString();
+    }
+}
@@ -0,0 +1,175 @@
+package de.zalando.pequod.flume.channel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_CAPACITY;
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_SPILL_CAPACITY_IN_BYTES;
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_SPILL_DIRECTORY;
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_SPILL_SEGMENT_SIZE_IN_BYTES;
+import static de.zalando.pequod.flume.channel.ChannelConstants.CONFIG_TRANSACTION_CAPACITY;
+import static de.zalando.pequod.flume.channel.ChannelConstants.DEFAULT_CAPACITY;
+import static de.zalando.pequod.flume.channel.ChannelConstants.DEFAULT_SPILL_CAPACITY_IN_BYTES;
+import static de.zalando.pequod.flume.channel.ChannelConstants.DEFAULT_SPILL_SEGMENT_SIZE_IN_BYTES;
+
+import java.io.IOException;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.flume.ChannelException;
+import org.apache.flume.Context;
+import org.apache.flume.Event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+/**
+ * Memory channel which spills to disk under backpressure. As long as fewer than [capacity] events are in memory,
+ * events are kept on the heap like in the {@link org.apache.flume.channel.MemoryChannel}. If a commit would exceed
+ * this high-water mark, the channel starts spilling: the events of this and all following commits are appended to
+ * memory mapped segment files (see {@link de.zalando.pequod.flume.channel.SpillSegmentLog}) until all spilled events
+ * have been taken again, so the order of the events is kept. Segments are deleted once they have been taken.
+ *
+ * <p>Spilled events which have not been taken by a committed transaction when the channel stops are recovered on the
+ * next start. See {@link de.zalando.pequod.flume.channel.AbstractInsistentChannel} for transactions and stop.</p>
+ */
+public final class InsistentSpillableChannel extends AbstractInsistentChannel<Event> {
+
+    private Deque<Event> memoryQueue;
+    private SpillSegmentLog spillLog;
+    private boolean isSpilling;
+
+    private int capacity;
+    private Path spillDirectory;
+    private int spillSegmentSizeInBytes;
+    private long spillCapacityInBytes;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InsistentSpillableChannel.class);
+
+    @Override
+    public void configure(final Context context) {
+        super.configure(context);
+
+        capacity = context.getInteger(CONFIG_CAPACITY, DEFAULT_CAPACITY);
+        checkArgument(capacity >= getTransactionCapacity(),
+            "capacity [configKey=%s] must not be lower than transaction capacity [configKey=%s] %s. Got %s",
+            CONFIG_CAPACITY, CONFIG_TRANSACTION_CAPACITY, getTransactionCapacity(), capacity);
+
+        final String directory = context.getString(CONFIG_SPILL_DIRECTORY);
+        checkArgument(!isNullOrEmpty(directory), "spill directory [configKey=%s] must not be null or empty",
+            CONFIG_SPILL_DIRECTORY);
+        spillDirectory = FileSystems.getDefault().getPath(directory);
+
+        spillSegmentSizeInBytes = context.getInteger(CONFIG_SPILL_SEGMENT_SIZE_IN_BYTES,
+                DEFAULT_SPILL_SEGMENT_SIZE_IN_BYTES);
+        checkArgument(spillSegmentSizeInBytes >= 1024,
+            "spill segment size [configKey=%s] must not be lower than 1024. Got %s",
+            CONFIG_SPILL_SEGMENT_SIZE_IN_BYTES, spillSegmentSizeInBytes);
+
+        spillCapacityInBytes = context.getLong(CONFIG_SPILL_CAPACITY_IN_BYTES, DEFAULT_SPILL_CAPACITY_IN_BYTES);
+        checkArgument(spillCapacityInBytes >= spillSegmentSizeInBytes,
+            "spill capacity [configKey=%s] must not be lower than spill segment size %s. Got %s",
+            CONFIG_SPILL_CAPACITY_IN_BYTES, spillSegmentSizeInBytes, spillCapacityInBytes);
+    }
+
+    @Override
+    int openStore() throws IOException {
+        memoryQueue = Lists.newLinkedList();
+        spillLog = new SpillSegmentLog(spillDirectory, spillSegmentSizeInBytes, spillCapacityInBytes);
+        isSpilling = !spillLog.isEmpty();
+        return spillLog.size();
+    }
+
+    @Override
+    void closeStore() {
+
+        // NOTE: events of open transactions and rolled back ones are the last polled events, because the memory queue
+        // is not served while spilled events are pending
+        spillLog.close(getReservedCount() - memoryQueue.size() - spillLog.size());
+        memoryQueue.clear();
+    }
+
+    @Override
+    Event prepare(final Event event) {
+        if (EventCodec.getEncodedSize(event) > spillLog.getMaxEntrySize()) {
+            throw new ChannelException(String.format(
+                    "serialized event of [size=%s] does not fit into a spill segment [configKey=%s, value=%s]",
+                    EventCodec.getEncodedSize(event), CONFIG_SPILL_SEGMENT_SIZE_IN_BYTES, spillSegmentSizeInBytes));
+        }
+
+        return event;
+    }
+
+    @Override
+    boolean hasSpaceFor(final List<Event> entries, final int numberOfTakes) {
+        if (!isSpilling && memoryQueue.size() + entries.size() <= capacity) {
+            return true;
+        }
+
+        final int[] entrySizes = new int[entries.size()];
+        for (int i = 0; i < entrySizes.length; i++) {
+            entrySizes[i] = EventCodec.getEncodedSize(entries.get(i));
+        }
+
+        return spillLog.hasSpaceFor(entrySizes);
+    }
+
+    @Override
+    void store(final List<Event> entries) throws IOException {
+        if (!isSpilling && memoryQueue.size() + entries.size() <= capacity) {
+            memoryQueue.addAll(entries);
+            return;
+        }
+
+        if (!isSpilling) {
+            LOGGER.info("memory of channel is full -> spilling to [spillDirectory={}, memoryQueueSize={}]",
+                spillDirectory, memoryQueue.size());
+            isSpilling = true;
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            spillLog.append(EventCodec.encode(entries.get(i)));
+        }
+    }
+
+    @Override
+    Event poll() {
+        if (!memoryQueue.isEmpty()) {
+            return memoryQueue.pollFirst();
+        }
+
+        final Event event = spillLog.poll();
+        if (isSpilling && spillLog.isEmpty()) {
+            LOGGER.info("spilled events have been taken -> channel is served from memory again");
+            isSpilling = false;
+        }
+
+        return event;
+    }
+
+    @Override
+    boolean isStoreEmpty() {
+        return memoryQueue.isEmpty() && spillLog.isEmpty();
+    }
+
+    /**
+     * @return  0, because spilled events are limited by their size in bytes
+     */
+    @Override
+    public long getCapacity() {
+        return 0L;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("name", getName()).add("capacity", capacity)
+                      .add("spillLog", spillLog).add("isSpilling", isSpilling).addValue(toStateString()).toString();
+    }
+}
@@ -0,0 +1,172 @@
+package de.zalando.pequod.flume.channel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+
+import java.util.List;
+
+import org.apache.flume.Event;
+
+import com.google.common.base.Objects;
+
+/**
+ * FIFO of encoded events (see {@link de.zalando.pequod.flume.channel.EventCodec}) in direct buffers outside the heap.
+ * The buffers form a ring of equally sized segments which are allocated on first use. Each entry is prefixed by its
+ * length and never spans two segments: if an entry does not fit into the rest of a segment, the rest is skipped
+ * (marked by the length {@link #SKIP_MARKER} if there is room for it) and the entry starts at the next segment.
+ *
+ * <p>Read and write positions grow monotonically and are mapped to a segment and an offset, so the ring is full if
+ * the write position is a whole ring ahead of the read position.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+final class OffHeapEventRing {
+
+    private final ByteBuffer[] segments;
+    private final int segmentSize;
+    private final long capacityInBytes;
+
+    private long readPosition;
+    private long writePosition;
+    private int size;
+
+    static final int LENGTH_PREFIX_SIZE = 4;
+    private static final int SKIP_MARKER = -1;
+
+    /**
+     * @param  capacityInBytes  total size of all segments, rounded up to a multiple of the segment size
+     * @param  segmentSize      size of each segment in bytes
+     */
+    OffHeapEventRing(final long capacityInBytes, final int segmentSize) {
+        checkArgument(segmentSize > LENGTH_PREFIX_SIZE, "segment size must be greater than %s. Got %s",
+            LENGTH_PREFIX_SIZE, segmentSize);
+        checkArgument(capacityInBytes >= segmentSize, "capacity must not be lower than segment size %s. Got %s",
+            segmentSize, capacityInBytes);
+
+        final long numberOfSegments = (capacityInBytes + segmentSize - 1) / segmentSize;
+        checkArgument(numberOfSegments <= Integer.MAX_VALUE, "too many segments: %s", numberOfSegments);
+
+        this.segments = new ByteBuffer[(int) numberOfSegments];
+        this.segmentSize = segmentSize;
+        this.capacityInBytes = numberOfSegments * segmentSize;
+    }
+
+    /**
+     * @return  max size of a single encoded event
+     */
+    int getMaxEntrySize() {
+        return segmentSize - LENGTH_PREFIX_SIZE;
+    }
+
+    /**
+     * @return  number of events in the ring
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param   entries  encoded events
+     *
+     * @return  true if all entries can be written
+     */
+    boolean hasSpaceFor(final List<byte[]> entries) {
+        long position = writePosition;
+        for (int i = 0; i < entries.size(); i++) {
+            position = getEntryStart(position, entries.get(i).length) + LENGTH_PREFIX_SIZE + entries.get(i).length;
+        }
+
+        return position - readPosition <= capacityInBytes;
+    }
+
+    private long getEntryStart(final long position, final int length) {
+        final int offset = (int) (position % segmentSize);
+        return offset + LENGTH_PREFIX_SIZE + length > segmentSize ? position + segmentSize - offset : position;
+    }
+
+    /**
+     * Appends an encoded event. The caller has to make sure there is enough space (see {@link #hasSpaceFor(List)}).
+     *
+     * @param  entry  encoded event
+     */
+    void write(final byte[] entry) {
+        checkArgument(entry.length <= getMaxEntrySize(), "entry must not be larger than %s bytes. Got %s",
+            getMaxEntrySize(), entry.length);
+
+        final long entryStart = getEntryStart(writePosition, entry.length);
+        if (entryStart != writePosition) {
+            final int offset = (int) (writePosition % segmentSize);
+            if (segmentSize - offset >= LENGTH_PREFIX_SIZE) {
+                getSegment(writePosition).putInt(offset, SKIP_MARKER);
+            }
+
+            writePosition = entryStart;
+        }
+
+        final ByteBuffer segment = getSegment(writePosition).duplicate();
+        segment.position((int) (writePosition % segmentSize));
+        segment.putInt(entry.length).put(entry);
+        writePosition += LENGTH_PREFIX_SIZE + entry.length;
+        size++;
+    }
+
+    /**
+     * Removes and decodes the oldest event.
+     *
+     * @return  oldest event or {@code null} if the ring is empty
+     */
+    Event read() {
+        if (size == 0) {
+            return null;
+        }
+
+        int offset = (int) (readPosition % segmentSize);
+        if (segmentSize - offset < LENGTH_PREFIX_SIZE || getSegment(readPosition).getInt(offset) == SKIP_MARKER) {
+            readPosition += segmentSize - offset;
+            offset = 0;
+        }
+
+        final ByteBuffer segment = getSegment(readPosition).duplicate();
+        final int length = segment.getInt(offset);
+        segment.limit(offset + LENGTH_PREFIX_SIZE + length).position(offset + LENGTH_PREFIX_SIZE);
+
+        final Event event = EventCodec.decode(segment);
+        readPosition += LENGTH_PREFIX_SIZE + length;
+        size--;
+
+        // NOTE: positions are reset whenever possible, so that the next entries start at the beginning of a segment
+        if (size == 0) {
+            readPosition = 0L;
+            writePosition = 0L;
+        }
+
+        return event;
+    }
+
+    private ByteBuffer getSegment(final long position) {
+        final int index = (int) ((position / segmentSize) % segments.length);
+        if (segments[index] == null) {
+            segments[index] = ByteBuffer.allocateDirect(segmentSize);
+        }
+
+        return segments[index];
+    }
+
+    /**
+     * @return  number of bytes in use including skipped segment ends
+     */
+    long getUsedBytes() {
+        return writePosition - readPosition;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("numberOfSegments", segments.length).add("segmentSize", segmentSize)
+                      .add("size", size).add("usedBytes", getUsedBytes()).toString();
+    }
+}
@@ -0,0 +1,417 @@
+package de.zalando.pequod.flume.channel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.flume.Event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+/**
+ * Append-only FIFO of encoded events (see {@link de.zalando.pequod.flume.channel.EventCodec}) in memory mapped segment
+ * files. Entries are prefixed by their length and never span two segments. A length of {@code 0} marks the end of the
+ * written entries (segment files are zero-filled), a length of {@link #SEGMENT_CLOSED_MARKER} marks a segment which
+ * has been closed because the next entry did not fit. Segments are deleted as soon as all their entries have been
+ * read.
+ *
+ * <p>Segments found in the directory on creation are recovered, so events spilled before a stop or crash of the agent
+ * are not lost. On {@link #close(int)}, the position of the first event which has not been taken by a committed
+ * transaction is written to the position file {@link #POSITION_FILE_NAME}, so recovery continues there. The position
+ * file is deleted on recovery, so after a crash the partially read first segment is read from its start and its
+ * events taken before the crash are delivered again. Segments are forced to disk when they are closed, so only the
+ * current segment depends on the page cache.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+final class SpillSegmentLog {
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxNumberOfSegments;
+    private final Deque<Segment> segments;
+
+    private long nextSequence;
+    private int size;
+
+    private static final int LENGTH_PREFIX_SIZE = 4;
+    private static final int SEGMENT_CLOSED_MARKER = -1;
+
+    /**
+     * sequence of the first segment followed by the read offset within it.
+     */
+    private static final int POSITION_FILE_SIZE = 8 + 4;
+
+    private static final String SEGMENT_FILE_PREFIX = "spill-";
+    private static final String SEGMENT_FILE_SUFFIX = ".seg";
+    private static final String POSITION_FILE_NAME = "spill.position";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillSegmentLog.class);
+
+    /**
+     * @param   directory        directory of the segment files, created if it does not exist
+     * @param   segmentSize      size of each segment file in bytes
+     * @param   capacityInBytes  max size of all segment files, rounded down to a multiple of the segment size
+     *
+     * @throws  IOException  if existing segments cannot be recovered
+     */
+    SpillSegmentLog(final Path directory, final int segmentSize, final long capacityInBytes) throws IOException {
+        checkArgument(segmentSize > LENGTH_PREFIX_SIZE, "segment size must be greater than %s. Got %s",
+            LENGTH_PREFIX_SIZE, segmentSize);
+        checkArgument(capacityInBytes >= segmentSize, "capacity must not be lower than segment size %s. Got %s",
+            segmentSize, capacityInBytes);
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxNumberOfSegments = (int) Math.min(Integer.MAX_VALUE, capacityInBytes / segmentSize);
+        this.segments = Lists.newLinkedList();
+
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    private void recover() throws IOException {
+        final List<Path> segmentFiles = Lists.newArrayList();
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                        SEGMENT_FILE_PREFIX + "*" + SEGMENT_FILE_SUFFIX)) {
+            for (final Path file : files) {
+                segmentFiles.add(file);
+            }
+        }
+
+        final Path positionFile = directory.resolve(POSITION_FILE_NAME);
+        long positionSequence = -1L;
+        int positionOffset = 0;
+        if (Files.exists(positionFile)) {
+            final ByteBuffer position = ByteBuffer.wrap(Files.readAllBytes(positionFile));
+            if (position.remaining() == POSITION_FILE_SIZE) {
+                positionSequence = position.getLong();
+                positionOffset = position.getInt();
+            } else {
+                LOGGER.warn("ignoring invalid spill position [file={}]", positionFile);
+            }
+        }
+
+        // NOTE: sequences are zero-padded, so the names sort in creation order
+        Collections.sort(segmentFiles);
+        for (final Path file : segmentFiles) {
+            final String name = file.getFileName().toString();
+            final long sequence = Long.parseLong(name.substring(SEGMENT_FILE_PREFIX.length(),
+                        name.length() - SEGMENT_FILE_SUFFIX.length()));
+            final Segment segment = new Segment(sequence, file, map(file));
+
+            // NOTE: the position only applies to the segment it has been saved for, which has to be the first one
+            size += segment.recover(segments.isEmpty() && sequence == positionSequence ? positionOffset : 0);
+            segments.addLast(segment);
+            nextSequence = sequence + 1;
+        }
+
+        // NOTE: the position is only valid until the first segment is read again
+        Files.deleteIfExists(positionFile);
+
+        if (!segments.isEmpty()) {
+            LOGGER.info("recovered [numberOfEvents={}] from [numberOfSegments={}] in [directory={}]",
+                new Object[] {size, segments.size(), directory});
+        }
+    }
+
+    private MappedByteBuffer map(final Path file) throws IOException {
+        try (final FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+            return fileChannel.map(FileChannel.MapMode.READ_WRITE, 0L, segmentSize);
+        }
+    }
+
+    /**
+     * @return  max size of a single encoded event
+     */
+    int getMaxEntrySize() {
+        return segmentSize - LENGTH_PREFIX_SIZE;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param   entrySizes  sizes of encoded events
+     *
+     * @return  true if all entries can be appended without exceeding the capacity
+     */
+    boolean hasSpaceFor(final int[] entrySizes) {
+        final Segment current = segments.peekLast();
+        int numberOfSegments = segments.size();
+        int offset = current == null || current.isClosed ? segmentSize : current.writeOffset;
+        for (int i = 0; i < entrySizes.length; i++) {
+            final int entrySize = LENGTH_PREFIX_SIZE + entrySizes[i];
+            if (offset + entrySize > segmentSize) {
+                numberOfSegments++;
+                offset = 0;
+            }
+
+            offset += entrySize;
+        }
+
+        return numberOfSegments <= maxNumberOfSegments;
+    }
+
+    /**
+     * Appends an encoded event. The caller has to make sure there is enough space (see {@link #hasSpaceFor(int[])}).
+     *
+     * @param   entry  encoded event
+     *
+     * @throws  IOException  if a new segment file cannot be created
+     */
+    void append(final byte[] entry) throws IOException {
+        checkArgument(entry.length <= getMaxEntrySize(), "entry must not be larger than %s bytes. Got %s",
+            getMaxEntrySize(), entry.length);
+
+        Segment current = segments.peekLast();
+        if (current != null && !current.isClosed && current.writeOffset + LENGTH_PREFIX_SIZE + entry.length
+                > segmentSize) {
+            current.close();
+        }
+
+        if (current == null || current.isClosed) {
+            final Path file = directory.resolve(String.format("%s%019d%s", SEGMENT_FILE_PREFIX, nextSequence,
+                        SEGMENT_FILE_SUFFIX));
+            current = new Segment(nextSequence, file, map(file));
+            segments.addLast(current);
+            nextSequence++;
+            LOGGER.debug("created spill segment [file={}]", file);
+        }
+
+        current.append(entry);
+        size++;
+    }
+
+    /**
+     * Removes and decodes the oldest event. Segments which have been read completely are deleted.
+     *
+     * @return  oldest event or {@code null} if there are no spilled events
+     */
+    Event poll() {
+        if (size == 0) {
+            return null;
+        }
+
+        Segment oldest = segments.peekFirst();
+        while (!oldest.hasUnreadEntries()) {
+            delete(segments.pollFirst());
+            oldest = segments.peekFirst();
+        }
+
+        final Event event = oldest.read();
+        size--;
+
+        if (size == 0) {
+
+            // NOTE: the next spill starts with a new segment, so all segments can be deleted
+            while (!segments.isEmpty()) {
+                delete(segments.pollFirst());
+            }
+        }
+
+        return event;
+    }
+
+    private void delete(final Segment segment) {
+        try {
+            Files.deleteIfExists(segment.file);
+            LOGGER.debug("deleted spill segment [file={}]", segment.file);
+        } catch (final IOException e) {
+            LOGGER.warn("could not delete spill segment [file={}]", segment.file, e);
+        }
+    }
+
+    /**
+     * Forces all segments to disk and releases them. The segment files are kept to be recovered on the next start,
+     * which continues after the events of the first segment that have been taken by committed transactions.
+     *
+     * @param  numberOfUncommittedReads  upper bound of the number of the last polled events which have not been taken
+     *                                   by a committed transaction (e.g. because it has been rolled back), so they are
+     *                                   recovered unless their segment has already been deleted
+     */
+    void close(final int numberOfUncommittedReads) {
+        checkArgument(numberOfUncommittedReads >= 0, "number of uncommitted reads must not be lower than 0. Got %s",
+            numberOfUncommittedReads);
+
+        final Segment oldest = segments.peekFirst();
+        if (oldest != null) {
+            savePosition(oldest.sequence, oldest.getOffsetOfReadEntry(oldest.numberOfReadEntries
+                        - numberOfUncommittedReads));
+        }
+
+        for (final Segment segment : segments) {
+            segment.buffer.force();
+        }
+
+        segments.clear();
+        size = 0;
+    }
+
+    private void savePosition(final long sequence, final int offset) {
+        final Path positionFile = directory.resolve(POSITION_FILE_NAME);
+        final Path temporaryFile = directory.resolve(POSITION_FILE_NAME + TEMPORARY_FILE_SUFFIX);
+        try {
+            try (final FileChannel fileChannel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                final ByteBuffer position = ByteBuffer.allocate(POSITION_FILE_SIZE);
+                position.putLong(sequence).putInt(offset).flip();
+                while (position.hasRemaining()) {
+                    fileChannel.write(position);
+                }
+
+                fileChannel.force(true);
+            }
+
+            Files.move(temporaryFile, positionFile, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+
+            // NOTE: the events taken from the first segment are delivered again after the next start
+            LOGGER.warn("could not save spill position [file={}]", positionFile, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("directory", directory).add("segmentSize", segmentSize)
+                      .add("maxNumberOfSegments", maxNumberOfSegments).add("numberOfSegments", segments.size())
+                      .add("size", size).toString();
+    }
+
+    private final class Segment {
+
+        private final long sequence;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+
+        private int writeOffset;
+        private int readOffset;
+        private int numberOfReadEntries;
+        private boolean isClosed;
+
+        private Segment(final long sequence, final Path file, final MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @param   savedReadOffset  offset of the first unread entry, ignored if it is no entry boundary
+         *
+         * @return  number of unread entries found in the segment
+         */
+        private int recover(final int savedReadOffset) {
+            int numberOfEntries = 0;
+            while (segmentSize - writeOffset >= LENGTH_PREFIX_SIZE) {
+                if (writeOffset == savedReadOffset) {
+                    readOffset = writeOffset;
+                    numberOfReadEntries = numberOfEntries;
+                }
+
+                final int length = buffer.getInt(writeOffset);
+                if (length == SEGMENT_CLOSED_MARKER) {
+                    isClosed = true;
+                    break;
+                }
+
+                if (length <= 0 || writeOffset + LENGTH_PREFIX_SIZE + length > segmentSize) {
+                    break;
+                }
+
+                writeOffset += LENGTH_PREFIX_SIZE + length;
+                numberOfEntries++;
+            }
+
+            if (segmentSize - writeOffset < LENGTH_PREFIX_SIZE) {
+                isClosed = true;
+            }
+
+            if (savedReadOffset > 0 && savedReadOffset == writeOffset) {
+                readOffset = writeOffset;
+                numberOfReadEntries = numberOfEntries;
+            } else if (savedReadOffset > 0 && readOffset == 0) {
+                LOGGER.warn("ignoring spill position [offset={}] which is no entry of [file={}]", savedReadOffset,
+                    file);
+            }
+
+            return numberOfEntries - numberOfReadEntries;
+        }
+
+        /**
+         * @param   index  index of an entry, clamped to the entries of the segment
+         *
+         * @return  offset of the entry
+         */
+        private int getOffsetOfReadEntry(final int index) {
+            int offset = 0;
+            for (int i = 0; i < index && offset < readOffset; i++) {
+                offset += LENGTH_PREFIX_SIZE + buffer.getInt(offset);
+            }
+
+            return offset;
+        }
+
+        private void append(final byte[] entry) {
+            final ByteBuffer view = buffer.duplicate();
+            view.position(writeOffset);
+            view.putInt(entry.length).put(entry);
+            writeOffset += LENGTH_PREFIX_SIZE + entry.length;
+        }
+
+        private boolean hasUnreadEntries() {
+            return readOffset < writeOffset;
+        }
+
+        private Event read() {
+            final ByteBuffer view = buffer.duplicate();
+            final int length = view.getInt(readOffset);
+            view.limit(readOffset + LENGTH_PREFIX_SIZE + length).position(readOffset + LENGTH_PREFIX_SIZE);
+
+            final Event event = EventCodec.decode(view);
+            readOffset += LENGTH_PREFIX_SIZE + length;
+            numberOfReadEntries++;
+            return event;
+        }
+
+        private void close() {
+            if (segmentSize - writeOffset >= LENGTH_PREFIX_SIZE) {
+                buffer.putInt(writeOffset, SEGMENT_CLOSED_MARKER);
+            }
+
+            buffer.force();
+            isClosed = true;
+        }
+
+        @Override
+        public String toString() {
+            return Objects.toStringHelper(this).add("sequence", sequence).add("file", file)
+                          .add("writeOffset", writeOffset).add("readOffset", readOffset)
+                          .add("numberOfReadEntries", numberOfReadEntries).add("isClosed", isClosed).toString();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package de.zalando.pequod.flume.instrumentation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.flume.instrumentation.MonitoredCounterGroup;
+
+/**
+ * Counts and latencies of the put, take and commit operations on a channel and its fill level, registered via JMX as
+ * "org.apache.flume.other:type=[name]" and thereby also reported by Flume's monitoring (e.g. the HTTP JSON reporter).
+ * Counts are kept in {@link java.util.concurrent.atomic.LongAdder}s and latencies in
+ * {@link de.zalando.pequod.flume.instrumentation.LatencyHistogram}s, so that concurrent sources and sinks do not
+ * contend on a single counter.
+ */
+public final class ChannelOperationCounter extends MonitoredCounterGroup implements ChannelOperationCounterMBean {
+
+    private final LongAdder putCount;
+    private final LongAdder takeCount;
+    private final LongAdder emptyTakeCount;
+    private final LongAdder rollbackCount;
+
+    private final LatencyHistogram putLatency;
+    private final LatencyHistogram takeLatency;
+    private final LatencyHistogram commitLatency;
+
+    private volatile long channelSize;
+    private volatile long channelCapacity;
+
+    private static final double MEDIAN = 50.0;
+    private static final double PERCENTILE_99 = 99.0;
+
+    public ChannelOperationCounter(final String name) {
+        super(Type.OTHER, name);
+
+        putCount = new LongAdder();
+        takeCount = new LongAdder();
+        emptyTakeCount = new LongAdder();
+        rollbackCount = new LongAdder();
+        putLatency = new LatencyHistogram();
+        takeLatency = new LatencyHistogram();
+        commitLatency = new LatencyHistogram();
+    }
+
+    /**
+     * @param  latencyInNs  duration of a put
+     */
+    public void onPut(final long latencyInNs) {
+        putCount.increment();
+        putLatency.record(latencyInNs);
+    }
+
+    /**
+     * @param  latencyInNs  duration of a take
+     * @param  hasEvent     false if the take has returned no event
+     */
+    public void onTake(final long latencyInNs, final boolean hasEvent) {
+        if (hasEvent) {
+            takeCount.increment();
+        } else {
+            emptyTakeCount.increment();
+        }
+
+        takeLatency.record(latencyInNs);
+    }
+
+    /**
+     * @param  latencyInNs  duration of a commit
+     */
+    public void onCommit(final long latencyInNs) {
+        commitLatency.record(latencyInNs);
+    }
+
+    public void onRollback() {
+        rollbackCount.increment();
+    }
+
+    /**
+     * @param  size      number of committed events in the channel
+     * @param  capacity  max number of events in the channel, 0 if unknown
+     */
+    public void setChannelFill(final long size, final long capacity) {
+        channelSize = size;
+        channelCapacity = capacity;
+    }
+
+    @Override
+    public long getPutCount() {
+        return putCount.sum();
+    }
+
+    @Override
+    public long getTakeCount() {
+        return takeCount.sum();
+    }
+
+    @Override
+    public long getEmptyTakeCount() {
+        return emptyTakeCount.sum();
+    }
+
+    @Override
+    public long getCommitCount() {
+        return commitLatency.getCount();
+    }
+
+    @Override
+    public long getRollbackCount() {
+        return rollbackCount.sum();
+    }
+
+    @Override
+    public long getPutLatencyMedianInMicros() {
+        return putLatency.getValueAtPercentileInMicros(MEDIAN);
+    }
+
+    @Override
+    public long getPutLatency99thPercentileInMicros() {
+        return putLatency.getValueAtPercentileInMicros(PERCENTILE_99);
+    }
+
+    @Override
+    public long getPutLatencyMaxInMicros() {
+        return putLatency.getMaxInMicros();
+    }
+
+    @Override
+    public long getTakeLatencyMedianInMicros() {
+        return takeLatency.getValueAtPercentileInMicros(MEDIAN);
+    }
+
+    @Override
+    public long getTakeLatency99thPercentileInMicros() {
+        return takeLatency.getValueAtPercentileInMicros(PERCENTILE_99);
+    }
+
+    @Override
+    public long getTakeLatencyMaxInMicros() {
+        return takeLatency.getMaxInMicros();
+    }
+
+    @Override
+    public long getCommitLatencyMedianInMicros() {
+        return commitLatency.getValueAtPercentileInMicros(MEDIAN);
+    }
+
+    @Override
+    public long getCommitLatency99thPercentileInMicros() {
+        return commitLatency.getValueAtPercentileInMicros(PERCENTILE_99);
+    }
+
+    @Override
+    public long getCommitLatencyMaxInMicros() {
+        return commitLatency.getMaxInMicros();
+    }
+
+    @Override
+    public long getChannelSize() {
+        return channelSize;
+    }
+
+    @Override
+    public long getChannelCapacity() {
+        return channelCapacity;
+    }
+
+    @Override
+    public double getChannelFillPercentage() {
+        final long capacity = channelCapacity;
+        return capacity == 0L ? 0.0 : channelSize * 100.0 / capacity;
+    }
+}
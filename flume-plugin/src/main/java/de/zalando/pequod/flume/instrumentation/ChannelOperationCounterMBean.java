@@ -0,0 +1,47 @@
+package de.zalando.pequod.flume.instrumentation;
+
+/**
+ * JMX view of {@link de.zalando.pequod.flume.instrumentation.ChannelOperationCounter}.
+ */
+public interface ChannelOperationCounterMBean {
+
+    long getPutCount();
+
+    long getTakeCount();
+
+    long getEmptyTakeCount();
+
+    long getCommitCount();
+
+    long getRollbackCount();
+
+    long getPutLatencyMedianInMicros();
+
+    long getPutLatency99thPercentileInMicros();
+
+    long getPutLatencyMaxInMicros();
+
+    long getTakeLatencyMedianInMicros();
+
+    long getTakeLatency99thPercentileInMicros();
+
+    long getTakeLatencyMaxInMicros();
+
+    long getCommitLatencyMedianInMicros();
+
+    long getCommitLatency99thPercentileInMicros();
+
+    long getCommitLatencyMaxInMicros();
+
+    long getChannelSize();
+
+    long getChannelCapacity();
+
+    double getChannelFillPercentage();
+
+    long getStartTime();
+
+    long getStopTime();
+
+    String getType();
+}
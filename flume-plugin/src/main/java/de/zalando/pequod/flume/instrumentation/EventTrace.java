@@ -0,0 +1,98 @@
+package de.zalando.pequod.flume.instrumentation;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.flume.Event;
+
+/**
+ * Per-event latency tracing within an agent. The source stamps a sample of the read records with the monotonic time
+ * ({@link System#nanoTime()}) at which they have been read and carries it as compact header
+ * {@link #HEADER_READ_TIME} on the event. Each stage which sees a traced event records the time since it has been read
+ * in a {@link de.zalando.pequod.flume.instrumentation.LatencyHistogram} of its own. The monotonic time is meaningless
+ * outside of the agent, so the sink removes the header before delivery.
+ *
+ * <p>Events may outlive the JVM which has stamped them (e.g. in a channel snapshot or spill segment), so the header
+ * value is prefixed with an id of the JVM and stamps of other JVMs are treated as not traced.</p>
+ */
+public final class EventTrace {
+
+    /**
+     * event header: monotonic read time in ns, in radix 36.
+     */
+    public static final String HEADER_READ_TIME = "pequod_read_time";
+
+    /**
+     * read time of records which are not traced.
+     */
+    public static final long NOT_TRACED = Long.MIN_VALUE;
+
+    /**
+     * random id of this JVM, terminated by a separator which does not occur in radix 36.
+     */
+    private static final String JVM_ID = Integer.toString(new Random().nextInt() & Integer.MAX_VALUE,
+            Character.MAX_RADIX) + ".";
+
+    private EventTrace() { }
+
+    /**
+     * @param   readTimeInNs  monotonic read time
+     *
+     * @return  value of the read time header
+     */
+    public static String encode(final long readTimeInNs) {
+        return JVM_ID + Long.toString(readTimeInNs, Character.MAX_RADIX);
+    }
+
+    /**
+     * @param   event  event which may be traced
+     *
+     * @return  monotonic read time of the event or {@link #NOT_TRACED} if it is not traced or has been stamped by another
+     *          JVM
+     */
+    public static long getReadTime(final Event event) {
+        final String readTime = event.getHeaders().get(HEADER_READ_TIME);
+        return readTime == null ? NOT_TRACED : decode(readTime);
+    }
+
+    /**
+     * Removes the read time header from the event.
+     *
+     * @param   event  event which may be traced
+     *
+     * @return  monotonic read time of the event or {@link #NOT_TRACED} if it is not traced or has been stamped by another
+     *          JVM
+     */
+    public static long removeReadTime(final Event event) {
+        final String readTime = event.getHeaders().remove(HEADER_READ_TIME);
+        return readTime == null ? NOT_TRACED : decode(readTime);
+    }
+
+    private static long decode(final String readTime) {
+        if (!readTime.startsWith(JVM_ID)) {
+            return NOT_TRACED;
+        }
+
+        try {
+            return Long.parseLong(readTime.substring(JVM_ID.length()), Character.MAX_RADIX);
+        } catch (final NumberFormatException e) {
+            return NOT_TRACED;
+        }
+    }
+
+    /**
+     * Records the time since the read time of each traced event of the batch.
+     *
+     * @param  events     events which may be traced
+     * @param  histogram  latencies of the stage the events have passed
+     */
+    public static void recordLatencies(final List<Event> events, final LatencyHistogram histogram) {
+        final long now = System.nanoTime();
+        for (int i = 0; i < events.size(); i++) {
+            final long readTime = getReadTime(events.get(i));
+            if (readTime != NOT_TRACED) {
+                histogram.record(now - readTime);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package de.zalando.pequod.flume.instrumentation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.Objects;
+
+/**
+ * Lock-free latency histogram in the style of HdrHistogram. Latencies in ns are counted in log-linear buckets: values
+ * below 32 have a bucket of their own, every further power of two is split into 16 buckets, so the reported
+ * percentiles are at most 1/16 (6.25%) above the true value. The whole range of long values fits into 960 buckets.
+ *
+ * <p>Recording is wait-free except for a new max, so the histogram can be updated on every channel operation.
+ * Percentiles are computed from a non-atomic view of the buckets, which is sufficient for monitoring. Threads
+ * recording in a hot loop use a {@link LatencyHistogram.Recorder} instead, which is merged into the histogram in
+ * batches.</p>
+ */
+public final class LatencyHistogram {
+
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int NUMBER_OF_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF_COUNT;
+
+    public LatencyHistogram() {
+        buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+        count = new LongAdder();
+        sum = new LongAdder();
+        max = new AtomicLong();
+    }
+
+    /**
+     * @param  latencyInNs  latency to record, negative values are counted as 0
+     */
+    public void record(final long latencyInNs) {
+        final long value = Math.max(0L, latencyInNs);
+        buckets.incrementAndGet(getBucketIndex(value));
+        count.increment();
+        sum.add(value);
+        updateMax(value);
+    }
+
+    private void updateMax(final long value) {
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * @return  recorder of a single thread which adds its latencies to this histogram on flush
+     */
+    public Recorder newRecorder() {
+        return new Recorder();
+    }
+
+    static int getBucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        final int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * @return  highest value counted in the bucket with the given index
+     */
+    static long getBucketUpperBound(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+        final long lowerBound = (long) (index % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT) << shift;
+        return lowerBound + (1L << shift) - 1L;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return  mean latency in µs, 0 if nothing has been recorded
+     */
+    public long getMeanInMicros() {
+        final long numberOfValues = count.sum();
+        return numberOfValues == 0L ? 0L : TimeUnit.NANOSECONDS.toMicros(sum.sum() / numberOfValues);
+    }
+
+    /**
+     * @return  max latency in µs
+     */
+    public long getMaxInMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(max.get());
+    }
+
+    /**
+     * @param   percentile  percentile between 0 (exclusive) and 100 (inclusive), e.g. 99.9
+     *
+     * @return  latency in µs which the given percentage of the recorded latencies does not exceed, 0 if nothing has
+     *          been recorded
+     */
+    public long getValueAtPercentileInMicros(final double percentile) {
+        checkArgument(percentile > 0.0 && percentile <= 100.0, "percentile must be in (0, 100]. Got %s", percentile);
+
+        long total = 0L;
+        final long[] counts = new long[NUMBER_OF_BUCKETS];
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        final long rank = (long) Math.ceil(percentile / 100.0 * total);
+        long accumulatedCount = 0L;
+        for (int i = 0; i < NUMBER_OF_BUCKETS && total > 0L; i++) {
+            accumulatedCount += counts[i];
+            if (accumulatedCount >= rank) {
+                return TimeUnit.NANOSECONDS.toMicros(Math.min(getBucketUpperBound(i), max.get()));
+            }
+        }
+
+        return 0L;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("count", getCount()).add("meanInMicros", getMeanInMicros())
+                      .add("maxInMicros", getMaxInMicros()).toString();
+    }
+
+    /**
+     * Counts the latencies of a single thread in plain buckets and adds them to the shared histogram on
+     * {@link #flush()}, so that recording does not touch any shared state. Not thread-safe.
+     */
+    public final class Recorder {
+
+        private final long[] localBuckets;
+        private long localCount;
+        private long localSum;
+        private long localMax;
+        private int lowestIndex;
+        private int highestIndex;
+
+        private Recorder() {
+            localBuckets = new long[NUMBER_OF_BUCKETS];
+            reset();
+        }
+
+        /**
+         * @param  latencyInNs  latency to record, negative values are counted as 0
+         */
+        public void record(final long latencyInNs) {
+            final long value = Math.max(0L, latencyInNs);
+            final int index = getBucketIndex(value);
+            localBuckets[index]++;
+            lowestIndex = Math.min(lowestIndex, index);
+            highestIndex = Math.max(highestIndex, index);
+            localCount++;
+            localSum += value;
+            localMax = Math.max(localMax, value);
+        }
+
+        /**
+         * Adds the latencies recorded since the last flush to the histogram.
+         */
+        public void flush() {
+            if (localCount == 0L) {
+                return;
+            }
+
+            for (int i = lowestIndex; i <= highestIndex; i++) {
+                if (localBuckets[i] != 0L) {
+                    buckets.addAndGet(i, localBuckets[i]);
+                    localBuckets[i] = 0L;
+                }
+            }
+
+            count.add(localCount);
+            sum.add(localSum);
+            updateMax(localMax);
+            reset();
+        }
+
+        private void reset() {
+            localCount = 0L;
+            localSum = 0L;
+            localMax = 0L;
+            lowestIndex = NUMBER_OF_BUCKETS;
+            highestIndex = -1;
+        }
+    }
+}
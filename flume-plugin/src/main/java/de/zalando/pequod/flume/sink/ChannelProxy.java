@@ -2,6 +2,8 @@ package de.zalando.pequod.flume.sink;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import java.util.List;
+
 import org.apache.flume.Channel;
 import org.apache.flume.ChannelException;
 import org.apache.flume.Event;
@@ -11,39 +13,85 @@ import org.apache.flume.lifecycle.LifecycleState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
+import de.zalando.pequod.flume.batch.AdaptiveBatchSizer;
+import de.zalando.pequod.flume.channel.DrainableChannel;
+import de.zalando.pequod.flume.instrumentation.ChannelOperationCounter;
+import de.zalando.pequod.flume.instrumentation.EventTrace;
+
 /**
- * Proxy to record time of last utilization..
+ * Proxy to record time of last utilization and the counts and latencies of the channel operations of the sink. If a
+ * batch sizer is set, the costs of each committed batch are reported to it. The number of events per transaction is
+ * limited by the sink itself (see {@link de.zalando.pequod.flume.sink.PipelinedDelivery}), so a take only returns null
+ * if the channel is empty.
  */
 final class ChannelProxy implements Channel {
 
-    private long lastUsageTime;
+    /**
+     * written on every put and take, so it is not guarded by a monitor.
+     */
+    private volatile long lastUsageTime;
     private final Channel channel;
+    private final InsistentAvroSinkCounter counter;
+    private final ChannelOperationCounter operationCounter;
+    private final AdaptiveBatchSizer batchSizer;
+    private final ThreadLocal<InstrumentedTransaction> currentTransaction;
+
+    private volatile long lastBatchCompletionTime;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ChannelProxy.class);
 
-    public ChannelProxy(final Channel channel) {
+    /**
+     * @param  channel           proxied channel
+     * @param  counter           metrics of the sink
+     * @param  operationCounter  metrics of the channel operations of the sink
+     * @param  batchSizer        controller adapting the number of events per transaction, null if the batch size is
+     *                           not adapted
+     */
+    public ChannelProxy(final Channel channel, final InsistentAvroSinkCounter counter,
+            final ChannelOperationCounter operationCounter, final AdaptiveBatchSizer batchSizer) {
         checkArgument(channel != null, "channel must not be null");
+        checkArgument(counter != null, "counter must not be null");
+        checkArgument(operationCounter != null, "operation counter must not be null");
         this.channel = channel;
+        this.counter = counter;
+        this.operationCounter = operationCounter;
+        this.batchSizer = batchSizer;
+        this.currentTransaction = new ThreadLocal<>();
         this.lastUsageTime = System.currentTimeMillis();
+        this.lastBatchCompletionTime = System.nanoTime();
     }
 
     @Override
     public void put(final Event event) throws ChannelException {
+        final long startTime = System.nanoTime();
         channel.put(event);
+        operationCounter.onPut(System.nanoTime() - startTime);
 
-        synchronized (this) {
-            lastUsageTime = System.currentTimeMillis();
-        }
+        lastUsageTime = System.currentTimeMillis();
 
         LOGGER.debug("put event {}", event);
     }
 
     @Override
     public Event take() throws ChannelException {
+        final InstrumentedTransaction transaction = currentTransaction.get();
+        final long startTime = System.nanoTime();
         final Event event = channel.take();
+        final long endTime = System.nanoTime();
+        operationCounter.onTake(endTime - startTime, event != null);
         if (event != null) {
-            synchronized (this) {
-                lastUsageTime = System.currentTimeMillis();
+            lastUsageTime = System.currentTimeMillis();
+
+            // NOTE: the monotonic read time is meaningless to the next hop
+            final long readTime = EventTrace.removeReadTime(event);
+            if (readTime != EventTrace.NOT_TRACED) {
+                counter.getTraceTakeLatency().record(endTime - readTime);
+            }
+
+            if (transaction != null) {
+                transaction.onTake(readTime);
             }
         }
 
@@ -53,7 +101,15 @@ final class ChannelProxy implements Channel {
 
     @Override
     public Transaction getTransaction() {
-        return channel.getTransaction();
+        final Transaction transaction = channel.getTransaction();
+
+        InstrumentedTransaction instrumentedTransaction = currentTransaction.get();
+        if (instrumentedTransaction == null || instrumentedTransaction.delegate != transaction) {
+            instrumentedTransaction = new InstrumentedTransaction(transaction);
+            currentTransaction.set(instrumentedTransaction);
+        }
+
+        return instrumentedTransaction;
     }
 
     @Override
@@ -61,10 +117,7 @@ final class ChannelProxy implements Channel {
         LOGGER.debug("starting channel proxy...");
 
         channel.start();
-
-        synchronized (this) {
-            lastUsageTime = System.currentTimeMillis();
-        }
+        lastUsageTime = System.currentTimeMillis();
 
         LOGGER.debug("channel proxy has been started");
     }
@@ -74,10 +127,7 @@ final class ChannelProxy implements Channel {
         LOGGER.debug("stopping channel proxy...");
 
         channel.stop();
-
-        synchronized (this) {
-            lastUsageTime = System.currentTimeMillis();
-        }
+        lastUsageTime = System.currentTimeMillis();
 
         LOGGER.debug("channel proxy has been stopped");
     }
@@ -97,10 +147,17 @@ final class ChannelProxy implements Channel {
         return channel.getName();
     }
 
+    /**
+     * @return  proxied channel
+     */
+    public Channel getChannel() {
+        return channel;
+    }
+
     /**
      * Updates last usage time to now.
      */
-    public synchronized void touch() {
+    public void touch() {
         lastUsageTime = System.currentTimeMillis();
     }
 
@@ -109,7 +166,90 @@ final class ChannelProxy implements Channel {
      *
      * @return  last usage time in ms
      */
-    public synchronized long getLastUsageTime() {
+    public long getLastUsageTime() {
         return lastUsageTime;
     }
+
+    /**
+     * Transaction recording the commit latency. If a batch sizer is set, it reports the costs of each committed batch
+     * to the batch sizer.
+     */
+    private final class InstrumentedTransaction implements Transaction {
+
+        private final Transaction delegate;
+
+        private int numberOfTakes;
+        private long beginTime;
+        private long lastTakeTime;
+
+        /**
+         * read times of the traced events taken by this transaction.
+         */
+        private final List<Long> readTimes;
+
+        private InstrumentedTransaction(final Transaction delegate) {
+            this.delegate = delegate;
+            this.readTimes = Lists.newArrayList();
+        }
+
+        @Override
+        public void begin() {
+            delegate.begin();
+
+            numberOfTakes = 0;
+            beginTime = System.nanoTime();
+            lastTakeTime = beginTime;
+            readTimes.clear();
+        }
+
+        private void onTake(final long readTime) {
+            numberOfTakes++;
+            lastTakeTime = System.nanoTime();
+            if (readTime != EventTrace.NOT_TRACED) {
+                readTimes.add(readTime);
+            }
+        }
+
+        @Override
+        public void commit() {
+
+            // NOTE: the sink commits as soon as the next hop has acked the taken events
+            final long startTime = System.nanoTime();
+            for (int i = 0; i < readTimes.size(); i++) {
+                counter.getTraceAckLatency().record(startTime - readTimes.get(i));
+            }
+
+            readTimes.clear();
+
+            delegate.commit();
+            operationCounter.onCommit(System.nanoTime() - startTime);
+
+            if (channel instanceof DrainableChannel) {
+                final DrainableChannel drainableChannel = (DrainableChannel) channel;
+                operationCounter.setChannelFill(drainableChannel.getPendingEventCount(),
+                    drainableChannel.getCapacity());
+            }
+
+            if (batchSizer != null && numberOfTakes > 0) {
+                final long commitTime = System.nanoTime();
+                batchSizer.onBatchCompleted(numberOfTakes, beginTime - lastBatchCompletionTime,
+                    commitTime - lastTakeTime);
+                lastBatchCompletionTime = commitTime;
+                counter.setBatchSize(batchSizer.getBatchSize());
+            }
+        }
+
+        @Override
+        public void rollback() {
+            delegate.rollback();
+            operationCounter.onRollback();
+            readTimes.clear();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+            currentTransaction.remove();
+        }
+    }
 }
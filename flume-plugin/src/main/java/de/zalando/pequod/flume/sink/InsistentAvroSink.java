@@ -2,23 +2,78 @@ package de.zalando.pequod.flume.sink;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import static de.zalando.pequod.flume.sink.SinkConstants.CONFIG_ADAPTIVE_BATCH_SIZING;
+import static de.zalando.pequod.flume.sink.SinkConstants.CONFIG_CONNECTIONS;
+import static de.zalando.pequod.flume.sink.SinkConstants.CONFIG_MAX_IN_FLIGHT_BATCHES;
+import static de.zalando.pequod.flume.sink.SinkConstants.CONFIG_MIN_BATCH_SIZE;
+import static de.zalando.pequod.flume.sink.SinkConstants.CONFIG_TARGET_BATCH_LATENCY_IN_MS;
 import static de.zalando.pequod.flume.sink.SinkConstants.CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS;
+import static de.zalando.pequod.flume.sink.SinkConstants.DEFAULT_ADAPTIVE_BATCH_SIZING;
+import static de.zalando.pequod.flume.sink.SinkConstants.DEFAULT_CONNECTIONS;
+import static de.zalando.pequod.flume.sink.SinkConstants.DEFAULT_MAX_IN_FLIGHT_BATCHES;
+import static de.zalando.pequod.flume.sink.SinkConstants.DEFAULT_MIN_BATCH_SIZE;
+import static de.zalando.pequod.flume.sink.SinkConstants.DEFAULT_TARGET_BATCH_LATENCY_IN_MS;
 import static de.zalando.pequod.flume.sink.SinkConstants.DEFAULT_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
 import org.apache.flume.Channel;
 import org.apache.flume.Context;
+import org.apache.flume.Event;
+import org.apache.flume.EventDeliveryException;
+import org.apache.flume.Sink.Status;
+import org.apache.flume.api.RpcClient;
+import org.apache.flume.api.RpcClientConfigurationConstants;
+import org.apache.flume.instrumentation.SinkCounter;
 import org.apache.flume.sink.AvroSink;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.zalando.pequod.flume.batch.AdaptiveBatchSizer;
+import de.zalando.pequod.flume.channel.DrainableChannel;
+import de.zalando.pequod.flume.instrumentation.ChannelOperationCounter;
+
+/**
+ * {@link org.apache.flume.sink.AvroSink} extension which delivers the remaining events of the channel before it stops.
+ * With [maxInFlightBatches] &gt; 1, batches are delivered over [connections] pooled connections without waiting for
+ * the ack of the previous batch (see {@link de.zalando.pequod.flume.sink.PipelinedDelivery}). With adaptive batch
+ * sizing, batches are delivered the same way, since the Avro sink always takes [batch-size] events per batch. The
+ * Avro sink itself then does not connect to the next hop.
+ */
 public final class InsistentAvroSink extends AvroSink {
 
     private ChannelProxy channelProxy;
+    private InsistentAvroSinkCounter counter;
+    private ChannelOperationCounter operationCounter;
+    private AdaptiveBatchSizer batchSizer;
+    private PipelinedDelivery pipelinedDelivery;
+    private SinkCounter pipelinedSinkCounter;
 
     private long waitTimeSinceLastPutBeforeStopInMs;
+    private int maxBatchSize;
+    private int connections;
+    private int maxInFlightBatches;
+    private boolean isDeliveringPipelined;
+    private Properties clientProperties;
+
+    /**
+     * time to wait before retrying a failed delivery while draining the channel.
+     */
+    private static final long DRAIN_RETRY_DELAY_IN_MS = 100L;
+
+    /**
+     * the metrics of the channel operations of the sink are registered as "[sink name]-channel".
+     */
+    private static final String CHANNEL_OPERATION_COUNTER_SUFFIX = "-channel";
 
-    private static final long WAIT_FOR_ALLOWED_KILL_DELAY_IN_MS = 1000L;
+    /**
+     * the standard metrics of the pipelined delivery are registered as "[sink name]-delivery", so that they do not
+     * replace the ones of the Avro sink.
+     */
+    private static final String PIPELINED_SINK_COUNTER_SUFFIX = "-delivery";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AvroSink.class);
 
@@ -32,6 +87,71 @@ public final class InsistentAvroSink extends AvroSink {
         checkArgument(waitTimeSinceLastPutBeforeStopInMs > -1L,
             "configured wait time since last put in ms [configKey=%s] must not be < 0. Got %s",
             CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS, waitTimeSinceLastPutBeforeStopInMs);
+
+        if (counter == null) {
+            counter = new InsistentAvroSinkCounter(getName());
+        }
+
+        if (operationCounter == null) {
+            operationCounter = new ChannelOperationCounter(getName() + CHANNEL_OPERATION_COUNTER_SUFFIX);
+        }
+
+        maxBatchSize = context.getInteger(RpcClientConfigurationConstants.CONFIG_BATCH_SIZE,
+                RpcClientConfigurationConstants.DEFAULT_BATCH_SIZE);
+        if (context.getBoolean(CONFIG_ADAPTIVE_BATCH_SIZING, DEFAULT_ADAPTIVE_BATCH_SIZING)) {
+            batchSizer = new AdaptiveBatchSizer(context.getInteger(CONFIG_MIN_BATCH_SIZE, DEFAULT_MIN_BATCH_SIZE),
+                    maxBatchSize, maxBatchSize,
+                    context.getLong(CONFIG_TARGET_BATCH_LATENCY_IN_MS, DEFAULT_TARGET_BATCH_LATENCY_IN_MS));
+        }
+
+        counter.setBatchSize(batchSizer == null ? maxBatchSize : batchSizer.getBatchSize());
+
+        connections = context.getInteger(CONFIG_CONNECTIONS, DEFAULT_CONNECTIONS);
+        checkArgument(connections > 0, "connections [configKey=%s] must not be lower than 1. Got %s",
+            CONFIG_CONNECTIONS, connections);
+
+        maxInFlightBatches = context.getInteger(CONFIG_MAX_IN_FLIGHT_BATCHES, DEFAULT_MAX_IN_FLIGHT_BATCHES);
+        checkArgument(maxInFlightBatches > 0, "max in flight batches [configKey=%s] must not be lower than 1. Got %s",
+            CONFIG_MAX_IN_FLIGHT_BATCHES, maxInFlightBatches);
+        isDeliveringPipelined = maxInFlightBatches > 1 || batchSizer != null;
+
+        // NOTE: same client properties as those of the connection created by the Avro sink
+        clientProperties = new Properties();
+        clientProperties.setProperty(RpcClientConfigurationConstants.CONFIG_HOSTS, "h1");
+        clientProperties.setProperty(RpcClientConfigurationConstants.CONFIG_HOSTS_PREFIX + "h1",
+            context.getString("hostname") + ":" + context.getInteger("port"));
+        for (final Map.Entry<String, String> parameter : context.getParameters().entrySet()) {
+            clientProperties.setProperty(parameter.getKey(), parameter.getValue());
+        }
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        counter.start();
+        operationCounter.start();
+
+        if (isDeliveringPipelined) {
+            pipelinedSinkCounter = new SinkCounter(getName() + PIPELINED_SINK_COUNTER_SUFFIX);
+            pipelinedSinkCounter.start();
+            pipelinedDelivery = new PipelinedDelivery(getChannel(), () -> super.initializeRpcClient(clientProperties),
+                    connections, maxInFlightBatches, maxBatchSize, batchSizer, counter, pipelinedSinkCounter);
+            LOGGER.info("delivering batches pipelined {}", pipelinedDelivery);
+        }
+    }
+
+    /**
+     * Hands a disconnected client to the Avro sink if batches are delivered pipelined, since the sink would otherwise
+     * keep an idle connection to the next hop.
+     */
+    @Override
+    protected RpcClient initializeRpcClient(final Properties properties) {
+        return isDeliveringPipelined ? new DisconnectedClient(maxBatchSize) : super.initializeRpcClient(properties);
+    }
+
+    @Override
+    public Status process() throws EventDeliveryException {
+        return pipelinedDelivery == null ? super.process() : pipelinedDelivery.process();
     }
 
     @Override
@@ -41,34 +161,64 @@ public final class InsistentAvroSink extends AvroSink {
 
         if (channelProxy == null) {
             LOGGER.debug("channelProxy is null -> immediately initiating stop");
+            stopPipelinedDelivery();
             super.stop();
         } else {
 
             // it might have been some time since the last batch was received. so we give it a fair chance
-            // to receive other last events. this works because when TailFileSource receives the
-            // kill() call, batching is disabled and everything is flushed immediately.
+            // to deliver the last events: the sink runner has already been stopped, so the remaining events
+            // are delivered from here until the channel has been drained.
             channelProxy.touch();
-            blockUntilStopIsAllowed();
+            drainChannel();
+            stopPipelinedDelivery();
             super.stop();
         }
 
+        counter.stop();
+        operationCounter.stop();
+
         LOGGER.debug("sink has been stopped");
     }
 
-    private void blockUntilStopIsAllowed() {
+    private void stopPipelinedDelivery() {
+        if (pipelinedDelivery != null) {
+            pipelinedDelivery.stop();
+            pipelinedDelivery = null;
+            pipelinedSinkCounter.stop();
+        }
+    }
+
+    /**
+     * Delivers events until the channel is empty. Gives up if no event could be delivered for
+     * [waitTimeSinceLastPutInMs] ms.
+     */
+    private void drainChannel() {
+        final Channel channel = channelProxy.getChannel();
         while (!isWaitTimeForNextEventTransmissionExpired()) {
-            try {
 
-                if (LOGGER.isDebugEnabled()) {
-                    final long approximateWaitTime = System.currentTimeMillis() - channelProxy.getLastUsageTime();
-                    LOGGER.debug("waiting for allowed sink stop...[approximateWaitTime={}]", approximateWaitTime);
-                }
+            // NOTE: a take on an empty channel may block for the keep alive time of the channel
+            if (channel instanceof DrainableChannel && ((DrainableChannel) channel).getPendingEventCount() <= 0L) {
+                LOGGER.debug("channel has been drained");
+                return;
+            }
 
-                Thread.sleep(WAIT_FOR_ALLOWED_KILL_DELAY_IN_MS);
-            } catch (final InterruptedException e) {
-                // do nothing
+            try {
+                if (process() == Status.BACKOFF) {
+                    LOGGER.debug("channel has been drained");
+                    return;
+                }
+            } catch (final EventDeliveryException e) {
+                LOGGER.warn("could not deliver events while draining channel -> retrying", e);
+                try {
+                    Thread.sleep(DRAIN_RETRY_DELAY_IN_MS);
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
             }
         }
+
+        LOGGER.warn("stopping sink before channel has been drained");
     }
 
     private boolean isWaitTimeForNextEventTransmissionExpired() {
@@ -78,9 +228,44 @@ public final class InsistentAvroSink extends AvroSink {
     @Override
     public synchronized Channel getChannel() {
         if (channelProxy == null) {
-            channelProxy = new ChannelProxy(super.getChannel());
+            channelProxy = new ChannelProxy(super.getChannel(), counter, operationCounter, batchSizer);
         }
 
         return channelProxy;
     }
+
+    /**
+     * Placeholder client of the Avro sink while batches are delivered pipelined. Rejects all events.
+     */
+    private static final class DisconnectedClient implements RpcClient {
+
+        private final int batchSize;
+
+        private DisconnectedClient(final int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        @Override
+        public void append(final Event event) throws EventDeliveryException {
+            throw new EventDeliveryException("events are delivered pipelined");
+        }
+
+        @Override
+        public void appendBatch(final List<Event> events) throws EventDeliveryException {
+            throw new EventDeliveryException("events are delivered pipelined");
+        }
+
+        @Override
+        public boolean isActive() {
+            return false;
+        }
+
+        @Override
+        public void close() { }
+    }
 }
@@ -0,0 +1,94 @@
+package de.zalando.pequod.flume.sink;
+
+import org.apache.flume.instrumentation.MonitoredCounterGroup;
+
+import de.zalando.pequod.flume.instrumentation.LatencyHistogram;
+
+/**
+ * Metrics of an {@link de.zalando.pequod.flume.sink.InsistentAvroSink} complementing the usual sink metrics, registered
+ * via JMX as "org.apache.flume.other:type=[sink name]".
+ */
+public final class InsistentAvroSinkCounter extends MonitoredCounterGroup implements InsistentAvroSinkCounterMBean {
+
+    private static final String COUNTER_BATCH_SIZE = "sink.batch.size";
+
+    private static final String COUNTER_IN_FLIGHT_BATCH_COUNT = "sink.batches.in.flight";
+
+    private static final String[] ATTRIBUTES = {COUNTER_BATCH_SIZE, COUNTER_IN_FLIGHT_BATCH_COUNT};
+
+    /**
+     * time from read until a traced event is taken from the channel by the sink.
+     */
+    private final LatencyHistogram traceTakeLatency;
+
+    /**
+     * time from read until a traced event has been acked by the next hop.
+     */
+    private final LatencyHistogram traceAckLatency;
+
+    private static final double MEDIAN = 50.0;
+    private static final double PERCENTILE_99 = 99.0;
+
+    public InsistentAvroSinkCounter(final String name) {
+        super(Type.OTHER, name, ATTRIBUTES);
+
+        traceTakeLatency = new LatencyHistogram();
+        traceAckLatency = new LatencyHistogram();
+    }
+
+    public LatencyHistogram getTraceTakeLatency() {
+        return traceTakeLatency;
+    }
+
+    public LatencyHistogram getTraceAckLatency() {
+        return traceAckLatency;
+    }
+
+    @Override
+    public long getBatchSize() {
+        return get(COUNTER_BATCH_SIZE);
+    }
+
+    public void setBatchSize(final long batchSize) {
+        set(COUNTER_BATCH_SIZE, batchSize);
+    }
+
+    @Override
+    public long getInFlightBatchCount() {
+        return get(COUNTER_IN_FLIGHT_BATCH_COUNT);
+    }
+
+    public void setInFlightBatchCount(final long inFlightBatchCount) {
+        set(COUNTER_IN_FLIGHT_BATCH_COUNT, inFlightBatchCount);
+    }
+
+    @Override
+    public long getTraceTakeLatencyMedianInMicros() {
+        return traceTakeLatency.getValueAtPercentileInMicros(MEDIAN);
+    }
+
+    @Override
+    public long getTraceTakeLatency99thPercentileInMicros() {
+        return traceTakeLatency.getValueAtPercentileInMicros(PERCENTILE_99);
+    }
+
+    @Override
+    public long getTraceTakeLatencyMaxInMicros() {
+        return traceTakeLatency.getMaxInMicros();
+    }
+
+    @Override
+    public long getTraceAckLatencyMedianInMicros() {
+        return traceAckLatency.getValueAtPercentileInMicros(MEDIAN);
+    }
+
+    @Override
+    public long getTraceAckLatency99thPercentileInMicros() {
+        return traceAckLatency.getValueAtPercentileInMicros(PERCENTILE_99);
+    }
+
+    @Override
+    public long getTraceAckLatencyMaxInMicros() {
+        return traceAckLatency.getMaxInMicros();
+    }
+}
@@ -0,0 +1,29 @@
+package de.zalando.pequod.flume.sink;
+
+/**
+ * JMX view of {@link de.zalando.pequod.flume.sink.InsistentAvroSinkCounter}.
+ */
+public interface InsistentAvroSinkCounterMBean {
+
+    long getBatchSize();
+
+    long getInFlightBatchCount();
+
+    long getTraceTakeLatencyMedianInMicros();
+
+    long getTraceTakeLatency99thPercentileInMicros();
+
+    long getTraceTakeLatencyMaxInMicros();
+
+    long getTraceAckLatencyMedianInMicros();
+
+    long getTraceAckLatency99thPercentileInMicros();
+
+    long getTraceAckLatencyMaxInMicros();
+
+    long getStartTime();
+
+    long getStopTime();
+
+    String getType();
+}
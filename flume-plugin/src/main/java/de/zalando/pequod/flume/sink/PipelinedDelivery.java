@@ -0,0 +1,374 @@
+package de.zalando.pequod.flume.sink;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.flume.Channel;
+import org.apache.flume.Event;
+import org.apache.flume.EventDeliveryException;
+import org.apache.flume.FlumeException;
+import org.apache.flume.Sink.Status;
+import org.apache.flume.Transaction;
+import org.apache.flume.api.RpcClient;
+import org.apache.flume.instrumentation.SinkCounter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import de.zalando.pequod.flume.batch.AdaptiveBatchSizer;
+
+/**
+ * Delivers batches over a pool of connections with up to [maxInFlightBatches] batches in flight at the same time.
+ * Flume binds a transaction to the thread which has begun it, so each batch is taken, sent and committed by a worker
+ * thread of its own. Batches are taken one after another and get a ticket in take order; each batch is acked
+ * independently, but the transactions are committed (or rolled back) strictly in ticket order.
+ *
+ * <p>If the delivery of a batch fails, its transaction is rolled back and its events are returned to the head of the
+ * channel. Batches taken after it may already have been delivered, so events may be reordered after a failure. A batch
+ * always completes its turn once it has got a ticket, whatever fails, so that a failed batch never blocks the commits
+ * of the batches after it.</p>
+ *
+ * <p>If a batch sizer is set, each batch takes at most as many events as the adaptive batch size allows when the batch
+ * begins, and a batch is only counted as underflow if it has not reached that size.</p>
+ *
+ * <p>The standard drain and connection metrics are kept in a {@link org.apache.flume.instrumentation.SinkCounter} of
+ * its own, because the one of the Avro sink only sees the connection of the sink itself.</p>
+ */
+final class PipelinedDelivery {
+
+    private final Channel channel;
+    private final Supplier<RpcClient> clientFactory;
+    private final RpcClient[] clients;
+    private final int maxInFlightBatches;
+    private final int batchSize;
+    private final AdaptiveBatchSizer batchSizer;
+    private final InsistentAvroSinkCounter counter;
+    private final SinkCounter sinkCounter;
+
+    private final ExecutorService executor;
+    private final Semaphore inFlightPermits;
+
+    /**
+     * serializes taking of batches, so that the ticket order is the order of the events in the channel.
+     */
+    private final Object takeLock;
+    private long nextTicket;
+
+    private final Object commitLock;
+    private long nextCommitTicket;
+
+    private final AtomicReference<EventDeliveryException> failure;
+    private final AtomicBoolean hasSeenEmptyChannel;
+
+    private static final long STOP_TIMEOUT_IN_MS = 30000L;
+
+    private static final long NO_TICKET = -1L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelinedDelivery.class);
+
+    /**
+     * @param  channel             channel the batches are taken from
+     * @param  clientFactory       creates a connection to the next hop
+     * @param  numberOfClients     number of pooled connections
+     * @param  maxInFlightBatches  max number of batches sent but not yet committed
+     * @param  batchSize           max number of events per batch
+     * @param  batchSizer          controller adapting the number of events per batch, null if each batch may take
+     *                             [batchSize] events
+     * @param  counter             metrics of the sink
+     * @param  sinkCounter         standard metrics of the sink
+     */
+    PipelinedDelivery(final Channel channel, final Supplier<RpcClient> clientFactory, final int numberOfClients,
+            final int maxInFlightBatches, final int batchSize, final AdaptiveBatchSizer batchSizer,
+            final InsistentAvroSinkCounter counter, final SinkCounter sinkCounter) {
+        checkArgument(channel != null, "channel must not be null");
+        checkArgument(clientFactory != null, "client factory must not be null");
+        checkArgument(numberOfClients > 0, "number of clients must not be lower than 1. Got %s", numberOfClients);
+        checkArgument(maxInFlightBatches > 0, "max in flight batches must not be lower than 1. Got %s",
+            maxInFlightBatches);
+        checkArgument(batchSize > 0, "batch size must not be lower than 1. Got %s", batchSize);
+        checkArgument(counter != null, "counter must not be null");
+        checkArgument(sinkCounter != null, "sink counter must not be null");
+
+        this.channel = channel;
+        this.clientFactory = clientFactory;
+        this.clients = new RpcClient[numberOfClients];
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.batchSize = batchSize;
+        this.batchSizer = batchSizer;
+        this.counter = counter;
+        this.sinkCounter = sinkCounter;
+
+        this.executor = Executors.newFixedThreadPool(maxInFlightBatches,
+                new ThreadFactoryBuilder().setNameFormat("pequod-delivery-%d").setDaemon(true).build());
+        this.inFlightPermits = new Semaphore(maxInFlightBatches);
+        this.takeLock = new Object();
+        this.commitLock = new Object();
+        this.failure = new AtomicReference<>();
+        this.hasSeenEmptyChannel = new AtomicBoolean();
+    }
+
+    /**
+     * Starts the delivery of the next batch as soon as fewer than [maxInFlightBatches] batches are in flight. Reports
+     * the outcome of batches completed since the last call.
+     *
+     * @return  {@link org.apache.flume.Sink.Status#BACKOFF} if a batch has found the channel empty,
+     *          {@link org.apache.flume.Sink.Status#READY} otherwise
+     *
+     * @throws  EventDeliveryException  if a batch could not be delivered
+     */
+    Status process() throws EventDeliveryException {
+        final EventDeliveryException lastFailure = failure.getAndSet(null);
+        if (lastFailure != null) {
+            throw lastFailure;
+        }
+
+        if (hasSeenEmptyChannel.getAndSet(false)) {
+            return Status.BACKOFF;
+        }
+
+        try {
+            inFlightPermits.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Status.BACKOFF;
+        }
+
+        counter.setInFlightBatchCount(maxInFlightBatches - inFlightPermits.availablePermits());
+        executor.execute(new BatchDelivery());
+        return Status.READY;
+    }
+
+    /**
+     * Waits until all batches in flight have been committed or rolled back and closes the connections.
+     */
+    void stop() {
+        try {
+            if (!inFlightPermits.tryAcquire(maxInFlightBatches, STOP_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("stopping delivery with batches in flight [timeoutInMs={}]", STOP_TIMEOUT_IN_MS);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        executor.shutdownNow();
+        for (int i = 0; i < clients.length; i++) {
+            resetClient(i);
+        }
+
+        counter.setInFlightBatchCount(0L);
+    }
+
+    private synchronized RpcClient getClient(final int index) {
+        if (clients[index] == null || !clients[index].isActive()) {
+            resetClient(index);
+            try {
+                clients[index] = clientFactory.get();
+            } catch (final FlumeException e) {
+                sinkCounter.incrementConnectionFailedCount();
+                throw e;
+            }
+
+            sinkCounter.incrementConnectionCreatedCount();
+        }
+
+        return clients[index];
+    }
+
+    private synchronized void resetClient(final int index) {
+        if (clients[index] != null) {
+            try {
+                clients[index].close();
+            } catch (final FlumeException e) {
+                LOGGER.warn("could not close connection", e);
+            }
+
+            clients[index] = null;
+            sinkCounter.incrementConnectionClosedCount();
+        }
+    }
+
+    /**
+     * Waits until all batches with a lower ticket have been committed or rolled back. Ignores interrupts, because an
+     * open transaction must be finished before the next batch may commit.
+     */
+    private void awaitTurn(final long ticket) {
+        boolean isInterrupted = false;
+        synchronized (commitLock) {
+            while (nextCommitTicket != ticket) {
+                try {
+                    commitLock.wait();
+                } catch (final InterruptedException e) {
+                    isInterrupted = true;
+                }
+            }
+        }
+
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void completeTurn() {
+        synchronized (commitLock) {
+            nextCommitTicket++;
+            commitLock.notifyAll();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("numberOfClients", clients.length)
+                      .add("maxInFlightBatches", maxInFlightBatches).add("batchSize", batchSize)
+                      .add("batchSizer", batchSizer).toString();
+    }
+
+    /**
+     * Takes, sends and commits a single batch.
+     */
+    private final class BatchDelivery implements Runnable {
+
+        @Override
+        public void run() {
+            long ticket = NO_TICKET;
+            Transaction transaction = null;
+            boolean isAcked = false;
+            try {
+                final List<Event> events;
+                final int maxEvents;
+                synchronized (takeLock) {
+                    maxEvents = batchSizer == null ? batchSize : batchSizer.getBatchSize();
+                    events = Lists.newArrayListWithCapacity(maxEvents);
+                    ticket = nextTicket++;
+                    transaction = channel.getTransaction();
+                    transaction.begin();
+                    for (Event event = channel.take(); event != null; event = channel.take()) {
+                        events.add(event);
+                        if (events.size() == maxEvents) {
+                            break;
+                        }
+                    }
+                }
+
+                countBatch(events.size(), maxEvents);
+                isAcked = send(ticket, events);
+                if (isAcked) {
+                    isAcked = finish(ticket, transaction, true);
+                    ticket = NO_TICKET;
+                    if (isAcked) {
+                        sinkCounter.addToEventDrainSuccessCount(events.size());
+                    }
+                }
+            } catch (final RuntimeException e) {
+                LOGGER.error("could not deliver batch [ticket={}]", ticket, e);
+                failure.set(new EventDeliveryException("could not deliver batch", e));
+            } finally {
+                try {
+
+                    // NOTE: a batch which has got a ticket must complete its turn, otherwise all later batches hang
+                    if (ticket != NO_TICKET) {
+                        finish(ticket, transaction, false);
+                    }
+                } finally {
+                    inFlightPermits.release();
+                    counter.setInFlightBatchCount(maxInFlightBatches - inFlightPermits.availablePermits());
+                }
+            }
+        }
+
+        private void countBatch(final int numberOfEvents, final int maxEvents) {
+            if (numberOfEvents == 0) {
+                sinkCounter.incrementBatchEmptyCount();
+            } else if (numberOfEvents < maxEvents) {
+                sinkCounter.incrementBatchUnderflowCount();
+            } else {
+                sinkCounter.incrementBatchCompleteCount();
+            }
+
+            sinkCounter.addToEventDrainAttemptCount(numberOfEvents);
+        }
+
+        /**
+         * @return  true if the events have been acked
+         */
+        private boolean send(final long ticket, final List<Event> events) {
+            if (events.isEmpty()) {
+                hasSeenEmptyChannel.set(true);
+                return true;
+            }
+
+            final int clientIndex = (int) (ticket % clients.length);
+            try {
+                getClient(clientIndex).appendBatch(events);
+                return true;
+            } catch (final EventDeliveryException | RuntimeException e) {
+                LOGGER.warn("could not deliver batch [ticket={}, numberOfEvents={}] -> rolling back",
+                    new Object[] {ticket, events.size(), e});
+                resetClient(clientIndex);
+                failure.set(e instanceof EventDeliveryException
+                        ? (EventDeliveryException) e : new EventDeliveryException("could not deliver batch", e));
+                return false;
+            }
+        }
+
+        /**
+         * Commits or rolls back the transaction in ticket order and completes the turn of the batch. Never throws, so
+         * that the turn is completed in any case.
+         *
+         * @param   transaction  transaction of the batch, null if it could not be created
+         *
+         * @return  true if the transaction has been committed
+         */
+        private boolean finish(final long ticket, final Transaction transaction, final boolean commit) {
+            awaitTurn(ticket);
+            try {
+                if (transaction == null) {
+                    return false;
+                }
+
+                if (commit) {
+                    transaction.commit();
+                    return true;
+                }
+
+                transaction.rollback();
+                return false;
+            } catch (final RuntimeException e) {
+                LOGGER.error("could not {} batch [ticket={}]",
+                    new Object[] {commit ? "commit" : "roll back", ticket, e});
+                failure.set(new EventDeliveryException("could not finish batch", e));
+                rollbackQuietly(transaction);
+                return false;
+            } finally {
+                try {
+                    if (transaction != null) {
+                        transaction.close();
+                    }
+                } catch (final RuntimeException e) {
+                    LOGGER.warn("could not close transaction [ticket={}]", ticket, e);
+                } finally {
+                    completeTurn();
+                }
+            }
+        }
+
+        private void rollbackQuietly(final Transaction transaction) {
+            try {
+                transaction.rollback();
+            } catch (final RuntimeException e) {
+                LOGGER.debug("could not roll back transaction", e);
+            }
+        }
+    }
+}
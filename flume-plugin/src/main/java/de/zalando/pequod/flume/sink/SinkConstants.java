@@ -5,13 +5,45 @@ final class SinkConstants {
     // -- config keys
 
     /**
-     * time to wait after last read in ms before the sink stops (after having received a kill signal).
+     * max time in ms without a delivered event before the sink stops (after having received a kill signal).
      */
     public static final String CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS = "waitTimeSinceLastPutInMs";
 
+    /**
+     * set to true to adapt the number of events per RPC between minBatchSize and batch-size according to the RPC round
+     * trip time.
+     */
+    public static final String CONFIG_ADAPTIVE_BATCH_SIZING = "adaptiveBatchSizing";
+
+    /**
+     * lower bound of the adaptive batch size.
+     */
+    public static final String CONFIG_MIN_BATCH_SIZE = "minBatchSize";
+
+    /**
+     * time in ms which taking and sending an adaptive batch should take.
+     */
+    public static final String CONFIG_TARGET_BATCH_LATENCY_IN_MS = "targetBatchLatencyInMs";
+
+    /**
+     * number of pooled connections to the next hop used when more than one batch may be in flight.
+     */
+    public static final String CONFIG_CONNECTIONS = "connections";
+
+    /**
+     * max number of batches sent but not yet acked. Batches are acked independently, transactions are committed in
+     * take order. 1 delivers batch by batch like the usual Avro sink.
+     */
+    public static final String CONFIG_MAX_IN_FLIGHT_BATCHES = "maxInFlightBatches";
+
     // -- default values
 
     public static final long DEFAULT_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS = 5000L;
+    public static final boolean DEFAULT_ADAPTIVE_BATCH_SIZING = false;
+    public static final int DEFAULT_MIN_BATCH_SIZE = 1;
+    public static final long DEFAULT_TARGET_BATCH_LATENCY_IN_MS = 100L;
+    public static final int DEFAULT_CONNECTIONS = 1;
+    public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 1;
 
     private SinkConstants() { }
 }
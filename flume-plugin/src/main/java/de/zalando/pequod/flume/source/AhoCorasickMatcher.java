@@ -0,0 +1,185 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+
+/**
+ * Finds out in a single pass whether a text contains at least one of several literals (Aho-Corasick). The automaton is
+ * compiled into a deterministic transition table over the chars occurring in the literals, so matching a text costs
+ * one table lookup per char, independent of the number of literals.
+ *
+ * <p>Instances are immutable and can be shared between threads.</p>
+ */
+final class AhoCorasickMatcher {
+
+    /**
+     * chars which do not occur in any literal.
+     */
+    private static final int OTHER_CHAR_CLASS = 0;
+
+    private static final int ROOT_STATE = 0;
+
+    private static final int ASCII_TABLE_SIZE = 128;
+
+    private final List<String> literals;
+
+    /**
+     * char class of all chars lower than 128.
+     */
+    private final int[] asciiCharClasses;
+
+    /**
+     * sorted non ASCII chars occurring in the literals, their char class is their index + the number of ASCII classes.
+     */
+    private final char[] nonAsciiChars;
+    private final int nonAsciiCharClassOffset;
+    private final int numberOfCharClasses;
+
+    /**
+     * transitions[state * numberOfCharClasses + charClass] -> next state.
+     */
+    private final int[] transitions;
+
+    /**
+     * true if at least one literal ends in the state (directly or via its failure link).
+     */
+    private final boolean[] isMatchState;
+
+    /**
+     * @param  literals  literals to search for, must not be empty
+     */
+    AhoCorasickMatcher(final Collection<String> literals) {
+        checkArgument(literals != null && !literals.isEmpty(), "there has to be at least 1 literal");
+        for (final String literal : literals) {
+            checkArgument(!Strings.isNullOrEmpty(literal), "literals must not be null or empty");
+        }
+
+        this.literals = Lists.newArrayList(literals);
+
+        // -- char classes
+
+        final TreeSet<Character> asciiChars = new TreeSet<>();
+        final TreeSet<Character> otherChars = new TreeSet<>();
+        for (final String literal : literals) {
+            for (int i = 0; i < literal.length(); i++) {
+                final char c = literal.charAt(i);
+                (c < ASCII_TABLE_SIZE ? asciiChars : otherChars).add(c);
+            }
+        }
+
+        asciiCharClasses = new int[ASCII_TABLE_SIZE];
+
+        int charClass = OTHER_CHAR_CLASS + 1;
+        for (final char c : asciiChars) {
+            asciiCharClasses[c] = charClass++;
+        }
+
+        nonAsciiCharClassOffset = charClass;
+        nonAsciiChars = new char[otherChars.size()];
+
+        int i = 0;
+        for (final char c : otherChars) {
+            nonAsciiChars[i++] = c;
+        }
+
+        numberOfCharClasses = nonAsciiCharClassOffset + nonAsciiChars.length;
+
+        // -- trie
+
+        int maxNumberOfStates = 1;
+        for (final String literal : literals) {
+            maxNumberOfStates += literal.length();
+        }
+
+        final int[] trie = new int[maxNumberOfStates * numberOfCharClasses];
+        final boolean[] isTerminal = new boolean[maxNumberOfStates];
+        int numberOfStates = 1;
+        for (final String literal : literals) {
+            int state = ROOT_STATE;
+            for (int j = 0; j < literal.length(); j++) {
+                final int index = state * numberOfCharClasses + charClassOf(literal.charAt(j));
+                if (trie[index] == ROOT_STATE) {
+                    trie[index] = numberOfStates++;
+                }
+
+                state = trie[index];
+            }
+
+            isTerminal[state] = true;
+        }
+
+        // -- failure links resolved into a deterministic transition table (breadth first)
+
+        transitions = Arrays.copyOf(trie, numberOfStates * numberOfCharClasses);
+        isMatchState = Arrays.copyOf(isTerminal, numberOfStates);
+
+        final int[] failure = new int[numberOfStates];
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < numberOfCharClasses; c++) {
+            final int next = transitions[c];
+            if (next != ROOT_STATE) {
+                failure[next] = ROOT_STATE;
+                queue.add(next);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            isMatchState[state] |= isMatchState[failure[state]];
+
+            for (int c = 0; c < numberOfCharClasses; c++) {
+                final int index = state * numberOfCharClasses + c;
+                final int next = transitions[index];
+                final int fallback = transitions[failure[state] * numberOfCharClasses + c];
+                if (next == ROOT_STATE) {
+                    transitions[index] = fallback;
+                } else {
+                    failure[next] = fallback;
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    private int charClassOf(final char c) {
+        if (c < ASCII_TABLE_SIZE) {
+            return asciiCharClasses[c];
+        }
+
+        final int index = Arrays.binarySearch(nonAsciiChars, c);
+        return index < 0 ? OTHER_CHAR_CLASS : nonAsciiCharClassOffset + index;
+    }
+
+    /**
+     * @param   text  text to scan
+     *
+     * @return  true if the text contains at least one of the literals
+     */
+    boolean matches(final CharSequence text) {
+        int state = ROOT_STATE;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * numberOfCharClasses + charClassOf(text.charAt(i))];
+            if (isMatchState[state]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("literals", literals).add("numberOfStates", isMatchState.length)
+                      .toString();
+    }
+}
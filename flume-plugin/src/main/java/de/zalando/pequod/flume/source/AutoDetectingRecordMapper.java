@@ -0,0 +1,78 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.charset.Charset;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * {@link de.zalando.pequod.flume.source.RecordMapper} choosing the mapper by the first byte of each record: records
+ * starting with '{' are mapped as JSON object, all other records and records which are no JSON object by the fallback
+ * mapper (GROK or logfmt), so that a file may mix both kinds of records.
+ */
+final class AutoDetectingRecordMapper implements RecordMapper {
+
+    private final RecordMapper jsonMapper;
+    private final RecordMapper fallbackMapper;
+    private final List<String> fieldNames;
+
+    AutoDetectingRecordMapper(final RecordMapper jsonMapper, final RecordMapper fallbackMapper) {
+        checkArgument(jsonMapper != null, "JSON mapper must not be null");
+        checkArgument(fallbackMapper != null, "fallback mapper must not be null");
+
+        this.jsonMapper = jsonMapper;
+        this.fallbackMapper = fallbackMapper;
+
+        // NOTE: if the fields of one of the mappers are not known in advance, neither are those of the records
+        if (jsonMapper.getFieldNames().isEmpty() || fallbackMapper.getFieldNames().isEmpty()) {
+            this.fieldNames = ImmutableList.of();
+        } else {
+            this.fieldNames = ImmutableList.copyOf(ImmutableSet.<String>builder().addAll(jsonMapper.getFieldNames())
+                                                               .addAll(fallbackMapper.getFieldNames()).build());
+        }
+    }
+
+    @Override
+    public Map<String, String> map(final String line) {
+        checkArgument(line != null, "line must not be null");
+
+        final byte[] bytes = line.getBytes(Charsets.UTF_8);
+        return map(bytes, 0, bytes.length, Charsets.UTF_8);
+    }
+
+    @Override
+    public Map<String, String> map(final byte[] input, final int offset, final int length, final Charset charset) {
+        final int end = offset + length;
+        int position = offset;
+        while (position < end && (input[position] == ' ' || input[position] == '\t')) {
+            position++;
+        }
+
+        if (position < end && input[position] == '{') {
+            final Map<String, String> mappings = jsonMapper.map(input, offset, length, charset);
+            if (!mappings.isEmpty()) {
+                return mappings;
+            }
+        }
+
+        return fallbackMapper.map(input, offset, length, charset);
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("jsonMapper", jsonMapper).add("fallbackMapper", fallbackMapper)
+                      .toString();
+    }
+}
@@ -0,0 +1,56 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Objects;
+
+/**
+ * {@link de.zalando.pequod.flume.source.RecordQueue} backed by a fair {@link java.util.concurrent.ArrayBlockingQueue}.
+ *
+ * @param  <E>  element type
+ */
+final class BlockingRecordQueue<E> implements RecordQueue<E> {
+
+    private final ArrayBlockingQueue<E> queue;
+    private final int capacity;
+
+    public BlockingRecordQueue(final int capacity) {
+        checkArgument(capacity > 0, "capacity must not be lower than 1. Got %s", capacity);
+
+        this.queue = new ArrayBlockingQueue<>(capacity, true);
+        this.capacity = capacity;
+    }
+
+    @Override
+    public boolean offer(final E element, final long timeout, final TimeUnit unit) throws InterruptedException {
+        return queue.offer(element, timeout, unit);
+    }
+
+    @Override
+    public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("capacity", capacity).add("size", size()).toString();
+    }
+}
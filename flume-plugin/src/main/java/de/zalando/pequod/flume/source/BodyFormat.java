@@ -0,0 +1,47 @@
+package de.zalando.pequod.flume.source;
+
+/**
+ * Defines how a {@link de.zalando.pequod.flume.source.RecordConsumer} stores the mapped fields of a record in its event
+ * (see config parameter {@link de.zalando.pequod.flume.source.SourceConstants#CONFIG_BODY_FORMAT}).
+ */
+enum BodyFormat {
+
+    /**
+     * the line is the body, each mapped field is a header.
+     */
+    LINE("line"),
+
+    /**
+     * the mapped fields are the body, encoded as JSON object. Fields which have not been mapped are omitted.
+     */
+    JSON("json"),
+
+    /**
+     * the mapped fields are the body, encoded as Avro binary record of optional strings in the order of the mapping.
+     */
+    AVRO("avro");
+
+    private final String configValue;
+
+    BodyFormat(final String configValue) {
+        this.configValue = configValue;
+    }
+
+    /**
+     * Returns whether the mapped fields are encoded into the body instead of the headers.
+     */
+    boolean isStructured() {
+        return this != LINE;
+    }
+
+    public static BodyFormat fromConfigValue(final String configValue) {
+        for (final BodyFormat format : values()) {
+            if (format.configValue.equals(configValue)) {
+                return format;
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("unknown body format [configKey=%s] -> '%s'",
+                SourceConstants.CONFIG_BODY_FORMAT, configValue));
+    }
+}
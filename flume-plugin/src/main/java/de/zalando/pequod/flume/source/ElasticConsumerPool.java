@@ -0,0 +1,270 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+/**
+ * Grows and shrinks the set of {@link de.zalando.pequod.flume.source.RecordConsumer}s of a source between min and
+ * max bounds. Once per scaling interval the fill level of the shared queue and the busy time of the consumers are
+ * sampled:
+ *
+ * <ul>
+ *   <li>a queue filled above {@link #SCALE_UP_QUEUE_FILL_RATIO} doubles the number of consumers (a burst gets all
+ *     available consumers within a few intervals)</li>
+ *   <li>consumers busy for more than {@link #SCALE_UP_BUSY_RATIO} of the interval add 1 consumer</li>
+ *   <li>an almost empty queue and mostly idle consumers for {@link #SCALE_DOWN_INTERVALS} consecutive intervals retire
+ *     1 consumer</li>
+ * </ul>
+ *
+ * <p>The gap between the scale up and scale down thresholds and the required number of idle intervals prevent the
+ * pool from oscillating.</p>
+ */
+final class ElasticConsumerPool implements Runnable {
+
+    private final RecordQueue<Record> queue;
+    private final Supplier<RecordConsumer> consumerFactory;
+    private final int minNumberOfConsumers;
+    private final int maxNumberOfConsumers;
+    private final long scalingIntervalInMs;
+    private final TailFileSourceCounter counter;
+
+    private final List<RecordConsumer> consumers;
+    private final List<Future<?>> consumerTasks;
+    private final CountDownLatch killSignal;
+
+    private ExecutorService executor;
+    private long lastSampleTime;
+    private long lastBusyTimeInNs;
+    private int idleIntervals;
+
+    static final double SCALE_UP_QUEUE_FILL_RATIO = 0.5;
+    static final double SCALE_UP_BUSY_RATIO = 0.9;
+    static final double SCALE_DOWN_QUEUE_FILL_RATIO = 0.1;
+    static final double SCALE_DOWN_BUSY_RATIO = 0.5;
+    static final int SCALE_DOWN_INTERVALS = 3;
+
+    private static final long AWAIT_TERMINATION_WAIT_TIME = 500L;
+
+    private static final String THREAD_NAME_TEMPLATE = ElasticConsumerPool.class.getSimpleName() + "(%s)";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ElasticConsumerPool.class);
+
+    /**
+     * @param  queue                 queue shared between the reader and the consumers
+     * @param  initialConsumers      configured consumers which are always running (min number of consumers)
+     * @param  consumerFactory       creates additional configured consumers which are ready to run
+     * @param  maxNumberOfConsumers  max number of consumers running at the same time
+     * @param  scalingIntervalInMs   time in ms between two scaling decisions
+     * @param  counter               metrics of the source
+     */
+    ElasticConsumerPool(final RecordQueue<Record> queue, final List<RecordConsumer> initialConsumers,
+            final Supplier<RecordConsumer> consumerFactory, final int maxNumberOfConsumers,
+            final long scalingIntervalInMs, final TailFileSourceCounter counter) {
+        checkArgument(queue != null, "queue must not be null");
+        checkArgument(initialConsumers != null && !initialConsumers.isEmpty(),
+            "there has to be at least 1 initial consumer");
+        checkArgument(consumerFactory != null, "consumer factory must not be null");
+        checkArgument(maxNumberOfConsumers >= initialConsumers.size(),
+            "max number of consumers must not be lower than min number of consumers %s. Got %s",
+            initialConsumers.size(), maxNumberOfConsumers);
+        checkArgument(scalingIntervalInMs > 0L, "scaling interval must not be lower than 1 ms. Got %s",
+            scalingIntervalInMs);
+        checkArgument(counter != null, "counter must not be null");
+
+        this.queue = queue;
+        this.consumerFactory = consumerFactory;
+        this.minNumberOfConsumers = initialConsumers.size();
+        this.maxNumberOfConsumers = maxNumberOfConsumers;
+        this.scalingIntervalInMs = scalingIntervalInMs;
+        this.counter = counter;
+        this.consumers = Lists.newArrayList(initialConsumers);
+        this.consumerTasks = Lists.newArrayList();
+        this.killSignal = new CountDownLatch(1);
+    }
+
+    /**
+     * Starts the initial consumers. The pool itself has to be submitted to the same executor afterwards.
+     *
+     * @param  executor  executor running the consumers
+     */
+    void start(final ExecutorService executor) {
+        checkArgument(executor != null, "executor must not be null");
+        checkState(this.executor == null, "pool has already been started");
+
+        this.executor = executor;
+        for (final RecordConsumer consumer : consumers) {
+            consumerTasks.add(executor.submit(consumer));
+        }
+
+        counter.setNumberOfConsumers(consumers.size());
+        lastSampleTime = System.nanoTime();
+    }
+
+    /**
+     * Stops scaling and lets all consumers stop as soon as no more records are available in the queue.
+     */
+    void kill() {
+        killSignal.countDown();
+    }
+
+    private void setThreadName() {
+        final Thread currentThread = Thread.currentThread();
+        final String currentName = currentThread.getName();
+        currentThread.setName(String.format(THREAD_NAME_TEMPLATE, currentName));
+    }
+
+    @Override
+    public void run() {
+        try {
+            setThreadName();
+            checkState(executor != null, "pool has not been started");
+            LOGGER.info("consumer pool has been started with [numberOfConsumers={}]", consumers.size());
+
+            while (!killSignal.await(scalingIntervalInMs, TimeUnit.MILLISECONDS)) {
+                scale();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final RuntimeException e) {
+            LOGGER.error("an unexpected error occurred while scaling consumers", e);
+        } finally {
+            stopConsumers();
+        }
+
+        LOGGER.info("consumer pool has been stopped");
+    }
+
+    /**
+     * Makes one scaling decision according to the current queue fill level and consumer busy time.
+     */
+    void scale() {
+        final long now = System.nanoTime();
+        final long busyTimeInNs = getBusyTimeInNs();
+        final double busyRatio = (busyTimeInNs - lastBusyTimeInNs)
+                / (double) ((now - lastSampleTime) * consumers.size());
+        final double queueFillRatio = queue.size() / (double) queue.capacity();
+        lastSampleTime = now;
+
+        if (queueFillRatio >= SCALE_UP_QUEUE_FILL_RATIO) {
+            idleIntervals = 0;
+            addConsumers(consumers.size());
+        } else if (busyRatio >= SCALE_UP_BUSY_RATIO) {
+            idleIntervals = 0;
+            addConsumers(1);
+        } else if (queueFillRatio <= SCALE_DOWN_QUEUE_FILL_RATIO && busyRatio < SCALE_DOWN_BUSY_RATIO) {
+            if (++idleIntervals >= SCALE_DOWN_INTERVALS) {
+                idleIntervals = 0;
+                retireConsumer();
+            }
+        } else {
+            idleIntervals = 0;
+        }
+
+        // NOTE: started and retired consumers must not distort the next busy ratio
+        lastBusyTimeInNs = getBusyTimeInNs();
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("scaled consumers [queueFillRatio={}, busyRatio={}] -> [numberOfConsumers={}]",
+                new Object[] {queueFillRatio, busyRatio, consumers.size()});
+        }
+    }
+
+    int getNumberOfConsumers() {
+        return consumers.size();
+    }
+
+    private long getBusyTimeInNs() {
+        long busyTimeInNs = 0L;
+        for (final RecordConsumer consumer : consumers) {
+            busyTimeInNs += consumer.getBusyTimeInNs();
+        }
+
+        return busyTimeInNs;
+    }
+
+    private void addConsumers(final int numberOfConsumers) {
+        final int newNumberOfConsumers = Math.min(maxNumberOfConsumers, consumers.size() + numberOfConsumers);
+        if (newNumberOfConsumers == consumers.size()) {
+            return;
+        }
+
+        pruneFinishedTasks();
+        while (consumers.size() < newNumberOfConsumers) {
+            final RecordConsumer consumer = consumerFactory.get();
+            consumers.add(consumer);
+            consumerTasks.add(executor.submit(consumer));
+        }
+
+        counter.setNumberOfConsumers(consumers.size());
+        LOGGER.info("scaled up to [numberOfConsumers={}]", consumers.size());
+    }
+
+    private void retireConsumer() {
+        if (consumers.size() <= minNumberOfConsumers) {
+            return;
+        }
+
+        consumers.remove(consumers.size() - 1).retire();
+        counter.setNumberOfConsumers(consumers.size());
+        LOGGER.info("scaled down to [numberOfConsumers={}]", consumers.size());
+    }
+
+    private void pruneFinishedTasks() {
+        final Iterator<Future<?>> taskIterator = consumerTasks.iterator();
+        while (taskIterator.hasNext()) {
+            if (taskIterator.next().isDone()) {
+                taskIterator.remove();
+            }
+        }
+    }
+
+    private void stopConsumers() {
+        for (final RecordConsumer consumer : consumers) {
+            consumer.kill();
+        }
+
+        // NOTE: retired consumers may still be flushing their last batch
+        for (final Future<?> consumerTask : consumerTasks) {
+            while (!consumerTask.isDone()) {
+                LOGGER.debug("waiting for consumers to stop...");
+                try {
+                    consumerTask.get(AWAIT_TERMINATION_WAIT_TIME, TimeUnit.MILLISECONDS);
+                } catch (final TimeoutException e) {
+                    // check again
+                } catch (final ExecutionException e) {
+                    LOGGER.warn("consumer terminated abnormally", e.getCause());
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        consumers.clear();
+        consumerTasks.clear();
+        counter.setNumberOfConsumers(0L);
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("minNumberOfConsumers", minNumberOfConsumers)
+                      .add("maxNumberOfConsumers", maxNumberOfConsumers)
+                      .add("scalingIntervalInMs", scalingIntervalInMs).add("numberOfConsumers", consumers.size())
+                      .toString();
+    }
+}
@@ -0,0 +1,130 @@
+package de.zalando.pequod.flume.source;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Defines on which threads the log file reader and the record consumers of a
+ * {@link de.zalando.pequod.flume.source.TailFileSource} run (see config parameter
+ * {@link de.zalando.pequod.flume.source.SourceConstants#CONFIG_EXECUTION_MODE}).
+ */
+enum ExecutionMode {
+
+    /**
+     * one platform thread per reader and consumer, owned by the source.
+     */
+    FIXED("fixed") {
+        @Override
+        ExecutorService newExecutor(final int numberOfTasks) {
+            return Executors.newFixedThreadPool(numberOfTasks);
+        }
+
+        @Override
+        boolean isShared() {
+            return false;
+        }
+    },
+
+    /**
+     * one virtual thread per reader and consumer, owned by the source. Blocking in tailer sleeps and queue polls only
+     * parks the virtual thread, so thousands of sources do not need thousands of OS threads. Falls back to
+     * {@link #FIXED} if the JVM does not provide virtual threads.
+     */
+    VIRTUAL("virtual") {
+        @Override
+        ExecutorService newExecutor(final int numberOfTasks) {
+            final ExecutorService executor = newVirtualThreadExecutor();
+            return executor == null ? FIXED.newExecutor(numberOfTasks) : executor;
+        }
+
+        @Override
+        boolean isShared() {
+            return false;
+        }
+    },
+
+    /**
+     * one agent-wide executor shared by all sources: virtual threads if the JVM provides them, otherwise a cached pool
+     * of daemon threads which are reused when sources are stopped and started again.
+     */
+    SHARED("shared") {
+        @Override
+        ExecutorService newExecutor(final int numberOfTasks) {
+            return SharedExecutorHolder.EXECUTOR;
+        }
+
+        @Override
+        boolean isShared() {
+            return true;
+        }
+    };
+
+    private final String configValue;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionMode.class);
+
+    ExecutionMode(final String configValue) {
+        this.configValue = configValue;
+    }
+
+    /**
+     * Returns the executor which runs the given number of long running tasks of a single source.
+     *
+     * @param   numberOfTasks  number of reader and consumer tasks
+     *
+     * @return  executor to submit the tasks to
+     */
+    abstract ExecutorService newExecutor(int numberOfTasks);
+
+    /**
+     * Returns whether the executor is shared with other sources and must therefore not be shut down by a single
+     * source.
+     */
+    abstract boolean isShared();
+
+    public static ExecutionMode fromConfigValue(final String configValue) {
+        for (final ExecutionMode executionMode : values()) {
+            if (executionMode.configValue.equals(configValue)) {
+                return executionMode;
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("unknown execution mode [configKey=%s] -> '%s'",
+                SourceConstants.CONFIG_EXECUTION_MODE, configValue));
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread per task. The plugin is compiled for JDK 8, so the
+     * factory method is looked up reflectively.
+     *
+     * @return  executor or {@code null} if virtual threads are not available
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final ReflectiveOperationException | UnsupportedOperationException e) {
+            LOGGER.warn("virtual threads are not available on this JVM -> falling back to platform threads");
+            return null;
+        }
+    }
+
+    private static final class SharedExecutorHolder {
+
+        private static final ExecutorService EXECUTOR = createExecutor();
+
+        private static ExecutorService createExecutor() {
+            final ExecutorService executor = newVirtualThreadExecutor();
+            if (executor != null) {
+                return executor;
+            }
+
+            return Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("pequod-shared-%d")
+                                                                          .setDaemon(true).build());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.charset.Charset;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Fields a {@link de.zalando.pequod.flume.source.RecordMapper} extracts from a record (see config parameter
+ * {@link de.zalando.pequod.flume.source.SourceConstants#CONFIG_RECORD_FIELDS}), all fields if the projection is empty.
+ * The field names are compared with the encoded keys of a record, so that the keys of fields which are not projected
+ * are never decoded.
+ */
+final class FieldProjection {
+
+    private final List<String> fieldNames;
+    private final ConcurrentMap<Charset, byte[][]> encodedFieldNames;
+
+    /**
+     * @param  fieldNames  names of the projected fields, empty for all fields
+     */
+    FieldProjection(final List<String> fieldNames) {
+        checkArgument(fieldNames != null, "field names must not be null");
+        this.fieldNames = ImmutableList.copyOf(ImmutableSet.copyOf(fieldNames));
+        this.encodedFieldNames = new ConcurrentHashMap<>();
+    }
+
+    boolean isEmpty() {
+        return fieldNames.isEmpty();
+    }
+
+    List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    /**
+     * @return  projected field names encoded with given charset, in order of {@link #getFieldNames()}
+     */
+    byte[][] encode(final Charset charset) {
+        byte[][] encoded = encodedFieldNames.get(charset);
+        if (encoded == null) {
+            encoded = new byte[fieldNames.size()][];
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = fieldNames.get(i).getBytes(charset);
+            }
+
+            encodedFieldNames.putIfAbsent(charset, encoded);
+        }
+
+        return encoded;
+    }
+
+    /**
+     * @param   encodedNames  result of {@link #encode(Charset)}
+     * @param   input         buffer containing the encoded key
+     * @param   start         start of the key in the buffer
+     * @param   end           end of the key in the buffer (exclusive)
+     *
+     * @return  index of the projected field with given key or -1
+     */
+    static int indexOf(final byte[][] encodedNames, final byte[] input, final int start, final int end) {
+        byte[] name;
+        int i;
+        for (int index = 0; index < encodedNames.length; index++) {
+            name = encodedNames[index];
+            if (name.length != end - start) {
+                continue;
+            }
+
+            i = 0;
+            while (i < name.length && name[i] == input[start + i]) {
+                i++;
+            }
+
+            if (i == name.length) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("fieldNames", fieldNames).toString();
+    }
+}
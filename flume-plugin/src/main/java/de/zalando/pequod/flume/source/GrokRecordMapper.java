@@ -0,0 +1,46 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.charset.Charset;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Objects;
+
+import de.zalando.grok.GrokMapper;
+
+/**
+ * {@link de.zalando.pequod.flume.source.RecordMapper} matching records against a GROK mapping (see config parameter
+ * {@link de.zalando.pequod.flume.source.SourceConstants#CONFIG_FILE_RECORD_MAPPING}).
+ */
+final class GrokRecordMapper implements RecordMapper {
+
+    private final GrokMapper grokMapper;
+
+    GrokRecordMapper(final GrokMapper grokMapper) {
+        checkArgument(grokMapper != null, "grok mapper must not be null");
+        this.grokMapper = grokMapper;
+    }
+
+    @Override
+    public Map<String, String> map(final String line) {
+        return grokMapper.map(line);
+    }
+
+    @Override
+    public Map<String, String> map(final byte[] input, final int offset, final int length, final Charset charset) {
+        return grokMapper.map(input, offset, length, charset);
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return grokMapper.getFieldNames();
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("grokMapper", grokMapper).toString();
+    }
+}
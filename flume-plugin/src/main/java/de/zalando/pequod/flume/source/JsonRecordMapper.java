@@ -0,0 +1,327 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.charset.Charset;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+
+/**
+ * {@link de.zalando.pequod.flume.source.RecordMapper} for records which are a JSON object, e.g.
+ * {@code {"level":"info","status":200,"user":{"id":7}}}. The members of the object are extracted in a single pass over
+ * the bytes of the record without building a tree: strings are unescaped, other values are kept as their JSON text
+ * (i.e. nested objects and arrays are not flattened) and members with value null are omitted. If fields are projected,
+ * the values of other members are skipped without decoding and the rest of the record is not parsed once all projected
+ * fields have been found. Records which are no JSON object cannot be mapped.
+ */
+final class JsonRecordMapper implements RecordMapper {
+
+    /**
+     * result of the parse methods if the record is no valid JSON.
+     */
+    private static final int INVALID = -1;
+
+    private final FieldProjection projection;
+
+    /**
+     * @param  fieldNames  names of the members to extract, empty for all members
+     */
+    JsonRecordMapper(final List<String> fieldNames) {
+        this.projection = new FieldProjection(fieldNames);
+    }
+
+    @Override
+    public Map<String, String> map(final String line) {
+        checkArgument(line != null, "line must not be null");
+
+        final byte[] bytes = line.getBytes(Charsets.UTF_8);
+        return map(bytes, 0, bytes.length, Charsets.UTF_8);
+    }
+
+    @Override
+    public Map<String, String> map(final byte[] input, final int offset, final int length, final Charset charset) {
+        final byte[][] projectedNames = projection.isEmpty() ? null : projection.encode(charset);
+        final int end = offset + length;
+
+        int position = skipSpaces(input, offset, end);
+        if (position == end || input[position] != '{') {
+            return Collections.emptyMap();
+        }
+
+        final HashMap<String, String> mappings = new HashMap<>();
+        position = skipSpaces(input, position + 1, end);
+        if (position < end && input[position] == '}') {
+            return Collections.emptyMap();
+        }
+
+        int keyStart;
+        int keyEnd;
+        int valueStart;
+        int valueEnd;
+        int index;
+        String name;
+        while (position < end) {
+            if (input[position] != '"') {
+                return Collections.emptyMap();
+            }
+
+            keyStart = position + 1;
+            keyEnd = skipString(input, keyStart, end);
+            if (keyEnd == INVALID) {
+                return Collections.emptyMap();
+            }
+
+            position = skipSpaces(input, keyEnd + 1, end);
+            if (position == end || input[position] != ':') {
+                return Collections.emptyMap();
+            }
+
+            valueStart = skipSpaces(input, position + 1, end);
+            valueEnd = skipValue(input, valueStart, end);
+            if (valueEnd == INVALID) {
+                return Collections.emptyMap();
+            }
+
+            if (projectedNames == null) {
+                name = decodeString(input, keyStart, keyEnd, charset);
+            } else {
+                index = FieldProjection.indexOf(projectedNames, input, keyStart, keyEnd);
+                name = index < 0 ? null : projection.getFieldNames().get(index);
+            }
+
+            if (name != null && !isNull(input, valueStart, valueEnd)) {
+                mappings.put(name,
+                    input[valueStart] == '"' ? decodeString(input, valueStart + 1, valueEnd - 1, charset)
+                                             : new String(input, valueStart, valueEnd - valueStart, charset));
+
+                if (projectedNames != null && mappings.size() == projectedNames.length) {
+                    return mappings;
+                }
+            }
+
+            position = skipSpaces(input, valueEnd, end);
+            if (position < end && input[position] == '}') {
+                return mappings.isEmpty() ? Collections.<String, String>emptyMap() : mappings;
+            }
+
+            if (position == end || input[position] != ',') {
+                return Collections.emptyMap();
+            }
+
+            position = skipSpaces(input, position + 1, end);
+        }
+
+        return Collections.emptyMap();
+    }
+
+    /**
+     * @param   start  position after the opening quote
+     *
+     * @return  position of the closing quote or {@link #INVALID}
+     */
+    private static int skipString(final byte[] input, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (input[i] == '\\') {
+                i++;
+            } else if (input[i] == '"') {
+                return i;
+            }
+        }
+
+        return INVALID;
+    }
+
+    /**
+     * @return  position after the value or {@link #INVALID}
+     */
+    private static int skipValue(final byte[] input, final int start, final int end) {
+        if (start == end) {
+            return INVALID;
+        }
+
+        if (input[start] == '"') {
+            final int closingQuote = skipString(input, start + 1, end);
+            return closingQuote == INVALID ? INVALID : closingQuote + 1;
+        }
+
+        if (input[start] == '{' || input[start] == '[') {
+            return skipNested(input, start, end);
+        }
+
+        int i = start;
+        while (i < end && input[i] != ',' && input[i] != '}' && !isSpace(input[i])) {
+            i++;
+        }
+
+        return i == start ? INVALID : i;
+    }
+
+    /**
+     * @return  position after the nested object or array or {@link #INVALID}
+     */
+    private static int skipNested(final byte[] input, final int start, final int end) {
+        int depth = 0;
+        for (int i = start; i < end; i++) {
+            switch (input[i]) {
+
+                // NOTE: strings are skipped as a whole, so that brackets within them are not counted
+                case '"' :
+                    i = skipString(input, i + 1, end);
+                    if (i == INVALID) {
+                        return INVALID;
+                    }
+
+                    break;
+
+                case '{' :
+                case '[' :
+                    depth++;
+                    break;
+
+                case '}' :
+                case ']' :
+                    if (--depth == 0) {
+                        return i + 1;
+                    }
+
+                    break;
+
+                default :
+            }
+        }
+
+        return INVALID;
+    }
+
+    private static boolean isNull(final byte[] input, final int start, final int end) {
+        return end - start == 4 && input[start] == 'n' && input[start + 1] == 'u' && input[start + 2] == 'l'
+                && input[start + 3] == 'l';
+    }
+
+    /**
+     * @param  start  position after the opening quote
+     * @param  end    position of the closing quote
+     */
+    private static String decodeString(final byte[] input, final int start, final int end, final Charset charset) {
+        int escape = start;
+        while (escape < end && input[escape] != '\\') {
+            escape++;
+        }
+
+        if (escape == end) {
+            return new String(input, start, end - start, charset);
+        }
+
+        final StringBuilder value = new StringBuilder(end - start);
+        int segmentStart = start;
+        int i = escape;
+        while (i < end) {
+            if (input[i] != '\\') {
+                i++;
+                continue;
+            }
+
+            value.append(new String(input, segmentStart, i - segmentStart, charset));
+            i = appendEscape(value, input, i + 1, end);
+            segmentStart = i;
+        }
+
+        return value.append(new String(input, segmentStart, end - segmentStart, charset)).toString();
+    }
+
+    /**
+     * @param   start  position after the backslash
+     *
+     * @return  position after the escape sequence
+     */
+    private static int appendEscape(final StringBuilder value, final byte[] input, final int start, final int end) {
+        if (start == end) {
+            return end;
+        }
+
+        switch (input[start]) {
+
+            case 'b' :
+                value.append('\b');
+                break;
+
+            case 'f' :
+                value.append('\f');
+                break;
+
+            case 'n' :
+                value.append('\n');
+                break;
+
+            case 'r' :
+                value.append('\r');
+                break;
+
+            case 't' :
+                value.append('\t');
+                break;
+
+            case 'u' :
+                final int codeUnit = start + 5 <= end ? parseHex(input, start + 1, start + 5) : INVALID;
+                if (codeUnit != INVALID) {
+                    value.append((char) codeUnit);
+                    return start + 5;
+                }
+
+                value.append('u');
+                break;
+
+            default :
+                value.append((char) input[start]);
+        }
+
+        return start + 1;
+    }
+
+    /**
+     * @return  value of the hex digits or {@link #INVALID}
+     */
+    private static int parseHex(final byte[] input, final int start, final int end) {
+        int value = 0;
+        int digit;
+        for (int i = start; i < end; i++) {
+            digit = Character.digit(input[i], 16);
+            if (digit < 0) {
+                return INVALID;
+            }
+
+            value = value * 16 + digit;
+        }
+
+        return value;
+    }
+
+    private static int skipSpaces(final byte[] input, final int start, final int end) {
+        int i = start;
+        while (i < end && isSpace(input[i])) {
+            i++;
+        }
+
+        return i;
+    }
+
+    private static boolean isSpace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return projection.getFieldNames();
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("projection", projection).toString();
+    }
+}
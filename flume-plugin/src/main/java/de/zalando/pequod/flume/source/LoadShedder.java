@@ -0,0 +1,126 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+
+/**
+ * Decides which records the {@link de.zalando.pequod.flume.source.LogFileReader} drops instead of waiting for free
+ * space in the shared queue. Shedding starts when the queue size reaches the high watermark and stops when it falls
+ * below the low watermark again. While shedding, records matching the priority pattern are always kept; all other
+ * records are dropped according to the configured {@link de.zalando.pequod.flume.source.SheddingPolicy}.
+ *
+ * <p>Only used by the reader thread, so this class is not thread-safe.</p>
+ */
+final class LoadShedder {
+
+    private final SheddingPolicy policy;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final int sampleRate;
+    private final LogLevel minLevel;
+    private final Pattern priorityPattern;
+    private final TailFileSourceCounter counter;
+
+    private boolean isShedding;
+    private long sampleCount;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadShedder.class);
+
+    /**
+     * @param  policy           which records to drop while shedding
+     * @param  highWatermark    queue size at which shedding starts
+     * @param  lowWatermark     queue size below which shedding stops
+     * @param  sampleRate       keep 1 in sampleRate records (policy {@link SheddingPolicy#SAMPLE})
+     * @param  minLevel         lowest level which is kept (policy {@link SheddingPolicy#LEVEL})
+     * @param  priorityPattern  records matching this pattern are never dropped (may be {@code null})
+     * @param  counter          counter for shed records
+     */
+    LoadShedder(final SheddingPolicy policy, final int highWatermark, final int lowWatermark, final int sampleRate,
+            final LogLevel minLevel, final Pattern priorityPattern, final TailFileSourceCounter counter) {
+        checkArgument(policy != null, "shedding policy must not be null");
+        checkArgument(highWatermark > 0, "high watermark must be greater than 0. Got %s", highWatermark);
+        checkArgument(lowWatermark >= 0 && lowWatermark <= highWatermark,
+            "low watermark must be between 0 and high watermark %s. Got %s", highWatermark, lowWatermark);
+        checkArgument(sampleRate > 0, "sample rate must be greater than 0. Got %s", sampleRate);
+        checkArgument(minLevel != null, "min level must not be null");
+        checkArgument(counter != null, "counter must not be null");
+
+        this.policy = policy;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.sampleRate = sampleRate;
+        this.minLevel = minLevel;
+        this.priorityPattern = priorityPattern;
+        this.counter = counter;
+    }
+
+    /**
+     * @param   record     record which has just been read
+     * @param   queueSize  current size of the shared queue
+     *
+     * @return  true if the record should be dropped
+     */
+    boolean shed(final String record, final int queueSize) {
+        updateState(queueSize);
+
+        if (!isShedding || policy == SheddingPolicy.NONE) {
+            return false;
+        }
+
+        if (priorityPattern != null && priorityPattern.matcher(record).find()) {
+            counter.incrementShedPriorityKeptCount();
+            return false;
+        }
+
+        switch (policy) {
+
+            case SAMPLE :
+                if (sampleCount++ % sampleRate == 0) {
+                    return false;
+                }
+
+                counter.incrementShedSampledCount();
+                return true;
+
+            case LEVEL :
+
+                final LogLevel level = LogLevel.find(record);
+                if (level == null || level.compareTo(minLevel) >= 0) {
+                    return false;
+                }
+
+                counter.incrementShedLevelCount();
+                return true;
+
+            default :
+                return false;
+        }
+    }
+
+    private void updateState(final int queueSize) {
+        if (!isShedding && queueSize >= highWatermark) {
+            isShedding = true;
+            sampleCount = 0L;
+            counter.setShedding(true);
+            LOGGER.warn("shared queue reached high watermark [queueSize={}] -> start shedding according to [policy={}]",
+                queueSize, policy);
+        } else if (isShedding && queueSize < lowWatermark) {
+            isShedding = false;
+            counter.setShedding(false);
+            LOGGER.info("shared queue fell below low watermark [queueSize={}] -> stop shedding", queueSize);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("policy", policy).add("highWatermark", highWatermark)
+                      .add("lowWatermark", lowWatermark).add("sampleRate", sampleRate).add("minLevel", minLevel)
+                      .add("priorityPattern", priorityPattern).add("isShedding", isShedding).toString();
+    }
+}
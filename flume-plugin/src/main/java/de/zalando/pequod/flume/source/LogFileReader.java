@@ -8,11 +8,13 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Strings.isNullOrEmpty;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.input.Tailer;
@@ -28,34 +30,84 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 
+import de.zalando.pequod.flume.instrumentation.EventTrace;
+
 /**
  * Reads target file according to tail semantics and puts each read record to the a queue which is shared with at least
  * 1 {@link de.zalando.pequod.flume.source.RecordConsumer}.
+ *
+ * <p>If repeated records are suppressed, the tailer runs in its own thread, while the thread of the reader emits the
+ * summaries of expired repeat windows when no records arrive, because the tailer does not notify its listener when it
+ * is idle.</p>
  */
 final class LogFileReader extends TailerListenerAdapter implements Runnable, Configurable {
 
-    private final BlockingQueue<String> outputQueue;
+    private final RecordQueue<Record> outputQueue;
+    private final RecordFilter recordFilter;
+    private final RepeatSuppressor repeatSuppressor;
+    private final LoadShedder loadShedder;
+    private final TailFileSourceCounter counter;
 
     private Tailer tailer;
     private String inputFile;
+    private File inputFileHandle;
+    private boolean tailerStartsFromEnd;
     private int inputBufferSize;
     private boolean isConfigured;
 
     private long lastRecordReadTime;
+    private long nextSequence;
     private long lastReadWaitTimeForKillInMs;
+    private long caughtUpQuietPeriodInMs;
+    private int traceSamplingInterval;
+
+    /**
+     * approximate number of bytes of the current file which have been read, i.e. each line plus its terminator.
+     */
+    private volatile long readPosition;
+
+    /**
+     * length of the line terminator of the current file ("\n" or "\r\n"), 0 until it has been probed at the end of
+     * the first read line.
+     */
+    private int lineTerminatorLength;
+
+    private volatile boolean hasStarted;
+    private volatile boolean dropsPendingRecords;
+    private final CountDownLatch stopped;
 
     private static final long QUEUE_OFFER_TIMEOUT_IN_MS = 1000L;
-    private static final long WAIT_FOR_ALLOWED_KILL_DELAY_IN_MS = 1000L;
+    private static final long STOP_TIMEOUT_IN_MS = 30000L;
+
+    /**
+     * number of tailer checks without new records after which the reader is considered to have reached the end of file.
+     */
+    private static final int CAUGHT_UP_TAILER_CHECKS = 2;
 
     private static final String THREAD_NAME_TEMPLATE = LogFileReader.class.getSimpleName() + "(%s)";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LogFileReader.class);
 
-    public LogFileReader(final BlockingQueue<String> outputQueue) {
+    /**
+     * @param  outputQueue       queue shared with the consumers
+     * @param  recordFilter      drops records before mapping (may be {@code null} to pass on all records)
+     * @param  repeatSuppressor  replaces repeated records by summaries (may be {@code null} to pass on repetitions)
+     * @param  loadShedder       drops records while the queue is too full (may be {@code null} to never drop records)
+     * @param  counter           metrics of the source
+     */
+    public LogFileReader(final RecordQueue<Record> outputQueue, final RecordFilter recordFilter,
+            final RepeatSuppressor repeatSuppressor, final LoadShedder loadShedder,
+            final TailFileSourceCounter counter) {
 
         checkArgument(outputQueue != null, "output queue must not be null");
+        checkArgument(counter != null, "counter must not be null");
         this.outputQueue = outputQueue;
+        this.recordFilter = recordFilter;
+        this.repeatSuppressor = repeatSuppressor;
+        this.loadShedder = loadShedder;
+        this.counter = counter;
         this.isConfigured = false;
+        this.stopped = new CountDownLatch(1);
     }
 
     @Override
@@ -85,13 +137,22 @@ final class LogFileReader extends TailerListenerAdapter implements Runnable, Con
             "configured time to wait after last read before kill [configKey=%s] must not be lower than 0",
             SourceConstants.CONFIG_LAST_READ_WAIT_TIME_FOR_KILL_IN_MS);
 
-        final boolean tailerStartsFromEnd = context.getBoolean(SourceConstants.CONFIG_TAILER_START_FROM_END,
+        caughtUpQuietPeriodInMs = Math.min(CAUGHT_UP_TAILER_CHECKS * tailerDelayMs, lastReadWaitTimeForKillInMs);
+
+        traceSamplingInterval = context.getInteger(SourceConstants.CONFIG_TRACE_SAMPLING_INTERVAL,
+                SourceConstants.DEFAULT_TRACE_SAMPLING_INTERVAL);
+        Preconditions.checkArgument(traceSamplingInterval > -1,
+            "trace sampling interval [configKey=%s] must not be lower than 0. Got %s",
+            SourceConstants.CONFIG_TRACE_SAMPLING_INTERVAL, traceSamplingInterval);
+
+        tailerStartsFromEnd = context.getBoolean(SourceConstants.CONFIG_TAILER_START_FROM_END,
                 SourceConstants.DEFAULT_TAILER_START_FROM_END);
 
         final boolean tailerReopen = context.getBoolean(SourceConstants.CONFIG_TAILER_REOPEN,
                 SourceConstants.DEFAULT_TAILER_REOPEN);
 
-        tailer = Tailer.create(new File(inputFile), this, tailerDelayMs, tailerStartsFromEnd, tailerReopen,
+        inputFileHandle = new File(inputFile);
+        tailer = new Tailer(inputFileHandle, this, tailerDelayMs, tailerStartsFromEnd, tailerReopen,
                 inputBufferSize);
 
         isConfigured = true;
@@ -125,10 +186,17 @@ final class LogFileReader extends TailerListenerAdapter implements Runnable, Con
     @Override
     public void fileRotated() {
         LOGGER.info("[inputFile={}] has rotated", inputFile);
+        readPosition = 0L;
+        lineTerminatorLength = 0;
     }
 
     @Override
     public void handle(final String line) {
+        if (lineTerminatorLength == 0) {
+            lineTerminatorLength = probeLineTerminatorLength(readPosition + line.length());
+        }
+
+        readPosition += line.length() + lineTerminatorLength;
         enqueueEvent(line);
     }
 
@@ -138,25 +206,76 @@ final class LogFileReader extends TailerListenerAdapter implements Runnable, Con
             new Object[] {inputFile, toString()}, ex);
     }
 
-    public synchronized void kill() {
-        blockUntilStopIsAllowed();
-        tailer.stop();
+    /**
+     * Reads the terminator of the first line, since the tailer passes on lines without it.
+     *
+     * @param   terminatorPosition  file offset right behind the line
+     *
+     * @return  2 for "\r\n", 1 otherwise
+     */
+    private int probeLineTerminatorLength(final long terminatorPosition) {
+        try (final RandomAccessFile file = new RandomAccessFile(inputFileHandle, "r")) {
+            file.seek(terminatorPosition);
+            return file.read() == '\r' && file.read() == '\n' ? 2 : 1;
+        } catch (final IOException e) {
+            LOGGER.warn("could not probe line terminator of [inputFile={}] -> assuming LF", inputFile, e);
+            return 1;
+        }
+    }
+
+    /**
+     * Returns how far the reader is behind the end of the file. The read position is derived from the lengths of the
+     * read lines (the tailer maps each byte to a char) plus the terminator length of the first line each, so the lag
+     * is only approximate for files with mixed line endings.
+     */
+    public long getReadLagInBytes() {
+        return inputFileHandle == null ? 0L : Math.max(0L, inputFileHandle.length() - readPosition);
     }
 
+    public void kill() {
+        synchronized (this) {
+            blockUntilStopIsAllowed();
+            tailer.stop();
+        }
+
+        // NOTE: pending repeat summaries are enqueued when the reader stops, i.e. before the consumers are killed
+        if (hasStarted && !awaitStopped()) {
+            LOGGER.warn("log file reader has not stopped within [timeoutInMs={}] -> dropping pending records",
+                STOP_TIMEOUT_IN_MS);
+            dropsPendingRecords = true;
+        }
+    }
+
+    private boolean awaitStopped() {
+        try {
+            return stopped.await(STOP_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Waits until the reader has caught up with the end of file, i.e. the tailer has checked the file
+     * {@link #CAUGHT_UP_TAILER_CHECKS} times without finding new records. The wait ends after
+     * [lastReadWaitTimeForKillInMs] ms at the latest, even if records are still being appended. Must be called while
+     * holding the monitor of the reader, which is released while waiting so that records can still be read.
+     */
     private void blockUntilStopIsAllowed() {
+        final long deadline = System.currentTimeMillis() + lastReadWaitTimeForKillInMs;
 
-        while (!isWaitTimeForNextRecordExpired()) {
+        long now = System.currentTimeMillis();
+        while (hasStarted && now - lastRecordReadTime < caughtUpQuietPeriodInMs && now < deadline) {
+            LOGGER.debug("waiting for reader to catch up with end of file...");
             try {
-                LOGGER.debug("waiting for allowed reader stop...");
-                Thread.sleep(WAIT_FOR_ALLOWED_KILL_DELAY_IN_MS);
+                wait(Math.min(lastRecordReadTime + caughtUpQuietPeriodInMs, deadline) - now);
             } catch (final InterruptedException e) {
-                // do nothing
+                Thread.currentThread().interrupt();
+                return;
             }
-        }
-    }
 
-    private boolean isWaitTimeForNextRecordExpired() {
-        return System.currentTimeMillis() - lastRecordReadTime >= lastReadWaitTimeForKillInMs;
+            now = System.currentTimeMillis();
+        }
     }
 
     private void setThreadName() {
@@ -167,6 +286,7 @@ final class LogFileReader extends TailerListenerAdapter implements Runnable, Con
 
     @Override
     public void run() {
+        hasStarted = true;
         try {
             setThreadName();
             LOGGER.info("start reading [inputFile={}]", inputFile);
@@ -175,33 +295,115 @@ final class LogFileReader extends TailerListenerAdapter implements Runnable, Con
                 lastRecordReadTime = System.currentTimeMillis();
             }
 
-            tailer.run(); // no need for extra thread because LogFileReader is already executed in its own thread
+            readPosition = tailerStartsFromEnd ? inputFileHandle.length() : 0L;
+            lineTerminatorLength = 0;
+            if (repeatSuppressor == null) {
+                tailer.run(); // no need for extra thread because LogFileReader is already executed in its own thread
+            } else {
+                tailAndFlushExpiredRepeats();
+            }
 
             LOGGER.info("log file reader has been stopped");
         } catch (final RuntimeException e) {
             LOGGER.error("an unexpected error occurred while reading [inputFile={}]", inputFile, e);
+        } finally {
+            stopped.countDown();
         }
     }
 
-    private void enqueueEvent(final String record) {
+    /**
+     * Runs the tailer in an extra thread and emits the summaries of expired repeat windows every window while the
+     * tailer waits for new records. Pending summaries are emitted once the tailer has stopped.
+     */
+    private void tailAndFlushExpiredRepeats() {
+        final Thread tailerThread = new Thread(tailer, Thread.currentThread().getName() + "-tailer");
+        tailerThread.setDaemon(true);
+        tailerThread.setUncaughtExceptionHandler((thread, e) ->
+                LOGGER.error("an unexpected error occurred while reading [inputFile={}]", inputFile, e));
+        tailerThread.start();
+
         try {
-            while (!outputQueue.offer(record, QUEUE_OFFER_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS)) {
-                LOGGER.debug("waiting for sufficient space in shared queue...");
+            while (tailerThread.isAlive()) {
+                tailerThread.join(repeatSuppressor.getWindowInMs());
+                synchronized (repeatSuppressor) {
+                    repeatSuppressor.flushExpired(System.currentTimeMillis(), this::enqueue);
+                }
             }
+        } catch (final InterruptedException e) {
+            tailer.stop();
+            Thread.currentThread().interrupt();
+        }
 
-            synchronized (this) {
-                lastRecordReadTime = System.currentTimeMillis();
+        synchronized (repeatSuppressor) {
+            repeatSuppressor.flushAll(this::enqueue);
+        }
+    }
+
+    private void enqueueEvent(final String record) {
+        if (repeatSuppressor == null) {
+            enqueueIfAccepted(record);
+        } else {
+
+            // NOTE: the lock is uncontended except for the sweep of the reader thread once per repeat window
+            synchronized (repeatSuppressor) {
+                enqueueIfAccepted(record);
             }
+        }
+
+        synchronized (this) {
+            lastRecordReadTime = System.currentTimeMillis();
+        }
+    }
 
+    private void enqueueIfAccepted(final String record) {
+        if (isAccepted(record)) {
+            enqueue(record, 0);
+        }
+    }
+
+    private void enqueue(final String record, final int repeatCount) {
+        try {
+            final boolean isTraced = traceSamplingInterval > 0 && nextSequence % traceSamplingInterval == 0;
+            final Record sequencedRecord = new Record(nextSequence, record, repeatCount,
+                    isTraced ? System.nanoTime() : EventTrace.NOT_TRACED);
+            while (!outputQueue.offer(sequencedRecord, QUEUE_OFFER_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS)) {
+                if (dropsPendingRecords) {
+                    LOGGER.debug("dropping record of killed reader [sequence={}]", nextSequence);
+                    return;
+                }
+
+                LOGGER.debug("waiting for sufficient space in shared queue...");
+            }
+
+            nextSequence++;
         } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
         }
     }
 
+    private boolean isAccepted(final String record) {
+        if (recordFilter != null && !recordFilter.accept(record)) {
+            counter.incrementFilterRejectedCount();
+            return false;
+        }
+
+        if (repeatSuppressor != null && repeatSuppressor.suppress(record, System.currentTimeMillis(), this::enqueue)) {
+            counter.incrementRepeatSuppressedCount();
+            return false;
+        }
+
+        return loadShedder == null || !loadShedder.shed(record, outputQueue.size());
+    }
+
     @Override
     public String toString() {
-        return Objects.toStringHelper(this).add("outputQueue", outputQueue).add("tailer", tailer)
+        return Objects.toStringHelper(this).add("outputQueue", outputQueue).add("recordFilter", recordFilter)
+                      .add("repeatSuppressor", repeatSuppressor)
+                      .add("loadShedder", loadShedder)
+                      .add("tailer", tailer)
                       .add("inputFile", inputFile).add("inputBufferSize", inputBufferSize)
+                      .add("caughtUpQuietPeriodInMs", caughtUpQuietPeriodInMs)
+                      .add("traceSamplingInterval", traceSamplingInterval)
                       .add("isConfigured", isConfigured).toString();
     }
 
@@ -0,0 +1,120 @@
+package de.zalando.pequod.flume.source;
+
+import java.util.Locale;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Severity of a log record, ordered from lowest to highest. Names follow the LOGLEVEL pattern of the logstash
+ * patterns.
+ */
+enum LogLevel {
+
+    TRACE,
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    FATAL;
+
+    private static final Map<String, LogLevel> LEVELS_BY_NAME = ImmutableMap.<String, LogLevel>builder()
+                                                                            .put("TRACE", TRACE).put("DEBUG", DEBUG)
+                                                                            .put("INFO", INFO).put("NOTICE", INFO)
+                                                                            .put("WARN", WARN).put("WARNING", WARN)
+                                                                            .put("ERR", ERROR).put("ERROR", ERROR)
+                                                                            .put("SEVERE", ERROR).put("FATAL", FATAL)
+                                                                            .put("CRIT", FATAL)
+                                                                            .put("CRITICAL", FATAL)
+                                                                            .put("ALERT", FATAL).put("EMERG", FATAL)
+                                                                            .put("EMERGENCY", FATAL).build();
+
+    /**
+     * max number of chars which are scanned for a level. The level is usually part of the record header.
+     */
+    private static final int MAX_SCAN_LENGTH = 256;
+
+    /**
+     * max number of whitespace separated tokens of the record header, i.e. in front of the message.
+     */
+    private static final int MAX_HEADER_TOKENS = 6;
+
+    private static final String LEVEL_KEY_PREFIX = "level=";
+
+    /**
+     * Finds the level of a record without applying the GROK pattern: returns the level of the first of the leading
+     * {@link #MAX_HEADER_TOKENS} tokens which is a level field. A token is a level field if it is a level name in upper
+     * case (e.g. "WARN") or a level name in any case which is delimited like a field, i.e. in brackets (e.g. "[warn]"),
+     * followed by a colon (e.g. "warning:") or as value of a "level=" key. Level names in the message, e.g. "alert"
+     * in "disk alert raised", are therefore ignored.
+     *
+     * @param   record  raw record
+     *
+     * @return  level or {@code null} if the record does not contain a level (e.g. stack trace lines)
+     */
+    static LogLevel find(final String record) {
+        final int length = Math.min(record.length(), MAX_SCAN_LENGTH);
+        int tokenStart = -1;
+        int numberOfTokens = 0;
+        for (int i = 0; i <= length && numberOfTokens < MAX_HEADER_TOKENS; i++) {
+            final boolean isWhitespace = i == length || Character.isWhitespace(record.charAt(i));
+            if (!isWhitespace && tokenStart < 0) {
+                tokenStart = i;
+            } else if (isWhitespace && tokenStart >= 0) {
+                final LogLevel level = fromField(record, tokenStart, i);
+                if (level != null) {
+                    return level;
+                }
+
+                tokenStart = -1;
+                numberOfTokens++;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return  level of the token [start, end) if it is a level field, {@code null} otherwise
+     */
+    private static LogLevel fromField(final String record, final int start, final int end) {
+        int nameStart = start;
+        int nameEnd = end;
+        boolean isDelimited = false;
+        if (record.charAt(nameEnd - 1) == ':') {
+            nameEnd--;
+            isDelimited = true;
+        }
+
+        if (nameEnd - nameStart > 2 && isBracket(record.charAt(nameStart), record.charAt(nameEnd - 1))) {
+            nameStart++;
+            nameEnd--;
+            isDelimited = true;
+        } else if (record.regionMatches(true, nameStart, LEVEL_KEY_PREFIX, 0, LEVEL_KEY_PREFIX.length())) {
+            nameStart += LEVEL_KEY_PREFIX.length();
+            isDelimited = true;
+        }
+
+        if (nameStart >= nameEnd) {
+            return null;
+        }
+
+        final String name = record.substring(nameStart, nameEnd);
+        final LogLevel level = fromName(name);
+        return level != null && (isDelimited || name.equals(name.toUpperCase(Locale.ROOT))) ? level : null;
+    }
+
+    private static boolean isBracket(final char opening, final char closing) {
+        return (opening == '[' && closing == ']') || (opening == '<' && closing == '>')
+                || (opening == '(' && closing == ')');
+    }
+
+    /**
+     * @param   name  level name in any case, e.g. "warn" or "WARNING"
+     *
+     * @return  level or {@code null} if the name is unknown
+     */
+    static LogLevel fromName(final String name) {
+        return LEVELS_BY_NAME.get(name.toUpperCase(Locale.ROOT));
+    }
+}
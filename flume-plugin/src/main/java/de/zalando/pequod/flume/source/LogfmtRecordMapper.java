@@ -0,0 +1,153 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.charset.Charset;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+
+/**
+ * {@link de.zalando.pequod.flume.source.RecordMapper} for logfmt records, i.e. space separated pairs like
+ * {@code level=info msg="user logged in" duration=5ms}. The record is parsed in a single pass over its bytes. Quoted
+ * values may contain spaces and the escapes \", \\, \n and \t, words without '=' are skipped. A record is mapped if it
+ * contains at least one (projected) pair; if a key occurs more than once, the last value wins.
+ */
+final class LogfmtRecordMapper implements RecordMapper {
+
+    private final FieldProjection projection;
+
+    /**
+     * @param  fieldNames  names of the fields to extract, empty for all fields
+     */
+    LogfmtRecordMapper(final List<String> fieldNames) {
+        this.projection = new FieldProjection(fieldNames);
+    }
+
+    @Override
+    public Map<String, String> map(final String line) {
+        checkArgument(line != null, "line must not be null");
+
+        final byte[] bytes = line.getBytes(Charsets.UTF_8);
+        return map(bytes, 0, bytes.length, Charsets.UTF_8);
+    }
+
+    @Override
+    public Map<String, String> map(final byte[] input, final int offset, final int length, final Charset charset) {
+        final byte[][] projectedNames = projection.isEmpty() ? null : projection.encode(charset);
+        final int end = offset + length;
+
+        HashMap<String, String> mappings = null;
+        int position = offset;
+        int keyStart;
+        int keyEnd;
+        int valueStart;
+        int valueEnd;
+        int index;
+        boolean isEscaped;
+        while (position < end) {
+            while (position < end && isSpace(input[position])) {
+                position++;
+            }
+
+            keyStart = position;
+            while (position < end && input[position] != '=' && input[position] != '"' && !isSpace(input[position])) {
+                position++;
+            }
+
+            keyEnd = position;
+            if (keyEnd == keyStart || position == end || input[position] != '=') {
+
+                // NOTE: no pair, so the rest of the word is skipped
+                while (position < end && !isSpace(input[position])) {
+                    position++;
+                }
+
+                continue;
+            }
+
+            position++;
+            isEscaped = false;
+            if (position < end && input[position] == '"') {
+                valueStart = ++position;
+                while (position < end && input[position] != '"') {
+                    if (input[position] == '\\') {
+                        isEscaped = true;
+                        position++;
+                    }
+
+                    position++;
+                }
+
+                valueEnd = Math.min(position, end);
+                position++;
+            } else {
+                valueStart = position;
+                while (position < end && !isSpace(input[position])) {
+                    position++;
+                }
+
+                valueEnd = position;
+            }
+
+            index = projectedNames == null ? -1 : FieldProjection.indexOf(projectedNames, input, keyStart, keyEnd);
+            if (projectedNames == null || index >= 0) {
+                if (mappings == null) {
+                    mappings = new HashMap<>();
+                }
+
+                mappings.put(projectedNames == null ? new String(input, keyStart, keyEnd - keyStart, charset)
+                                                    : projection.getFieldNames().get(index),
+                    isEscaped ? unescape(input, valueStart, valueEnd, charset)
+                              : new String(input, valueStart, valueEnd - valueStart, charset));
+
+                // NOTE: the rest of the record is not parsed once all projected fields have been found
+                if (projectedNames != null && mappings.size() == projectedNames.length) {
+                    break;
+                }
+            }
+        }
+
+        return mappings == null ? Collections.<String, String>emptyMap() : mappings;
+    }
+
+    private static String unescape(final byte[] input, final int start, final int end, final Charset charset) {
+        final byte[] unescaped = new byte[end - start];
+        int length = 0;
+        byte b;
+        for (int i = start; i < end; i++) {
+            b = input[i];
+            if (b == '\\' && i + 1 < end) {
+                b = input[++i];
+                if (b == 'n') {
+                    b = '\n';
+                } else if (b == 't') {
+                    b = '\t';
+                }
+            }
+
+            unescaped[length++] = b;
+        }
+
+        return new String(unescaped, 0, length, charset);
+    }
+
+    private static boolean isSpace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return projection.getFieldNames();
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("projection", projection).toString();
+    }
+}
@@ -0,0 +1,81 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Objects;
+
+import de.zalando.pequod.flume.instrumentation.EventTrace;
+
+/**
+ * Record read by the {@link de.zalando.pequod.flume.source.LogFileReader}. The sequence number reflects the position of
+ * the record in the file and is used to restore file order after parallel consumption. Sampled records carry their
+ * read time for latency tracing (see {@link de.zalando.pequod.flume.instrumentation.EventTrace}).
+ */
+final class Record {
+
+    private final long sequence;
+    private final String line;
+    private final int repeatCount;
+    private final long readTimeInNs;
+
+    public Record(final long sequence, final String line) {
+        this(sequence, line, 0);
+    }
+
+    public Record(final long sequence, final String line, final int repeatCount) {
+        this(sequence, line, repeatCount, EventTrace.NOT_TRACED);
+    }
+
+    /**
+     * @param  sequence      position of the record in the file
+     * @param  line          record
+     * @param  repeatCount   number of suppressed repetitions of the line this record summarizes, 0 for usual records
+     * @param  readTimeInNs  monotonic time the record has been read at or
+     *                       {@link de.zalando.pequod.flume.instrumentation.EventTrace#NOT_TRACED}
+     */
+    public Record(final long sequence, final String line, final int repeatCount, final long readTimeInNs) {
+        checkArgument(line != null, "line must not be null");
+
+        this.sequence = sequence;
+        this.line = line;
+        this.repeatCount = repeatCount;
+        this.readTimeInNs = readTimeInNs;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the line as read from the file. The tailer maps each byte of the file to a single char, so the bytes are
+     * restored by keeping the low-order 8 bits of each char, without decoding or encoding the line.
+     */
+    @SuppressWarnings("deprecation")
+    public byte[] getLineBytes() {
+        final byte[] bytes = new byte[line.length()];
+        line.getBytes(0, bytes.length, bytes, 0);
+        return bytes;
+    }
+
+    public int getRepeatCount() {
+        return repeatCount;
+    }
+
+    public long getReadTimeInNs() {
+        return readTimeInNs;
+    }
+
+    public boolean isTraced() {
+        return readTimeInNs != EventTrace.NOT_TRACED;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("sequence", sequence).add("line", line).add("repeatCount", repeatCount)
+                      .add("readTimeInNs", readTimeInNs).toString();
+    }
+}
@@ -0,0 +1,302 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Encodes the mapped fields of a record into an event body (see
+ * {@link de.zalando.pequod.flume.source.BodyFormat}). The fields are the ones the record mapping may contain, in order
+ * of the mapping definition, plus the field {@link #LINE_FIELD} which carries the line of records which could not be
+ * mapped. The Avro form is a record of optional strings:
+ *
+ * <pre>
+   ([long 0] | [long 1][long length][value UTF-8])*   (longs are zig-zag varints)
+ * </pre>
+ *
+ * <p>Field names which are no valid Avro names are sanitized in the schema: invalid characters are replaced by "_" and
+ * names starting with a digit are prefixed with "_". Fields whose sanitized names collide cannot be encoded as Avro.
+ * The JSON form is an object of the mapped fields. An encoder reuses its buffer and must therefore not be shared
+ * between consumers.</p>
+ */
+final class RecordBodyEncoder {
+
+    /**
+     * field carrying the line of records which could not be mapped.
+     */
+    static final String LINE_FIELD = "_line";
+
+    private static final String SCHEMA_NAME = "MappedRecord";
+    private static final String SCHEMA_NAMESPACE = "de.zalando.pequod.flume";
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(Charsets.US_ASCII);
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private final BodyFormat format;
+    private final List<String> fieldNames;
+    private final byte[][] jsonFieldPrefixes;
+    private final String schema;
+
+    private byte[] buffer;
+    private int position;
+
+    /**
+     * @param   format      structured body format
+     * @param   fieldNames  names of the fields the record mapping may contain, in order of the mapping definition
+     *
+     * @throws  IllegalArgumentException  if the format is Avro and the sanitized names of two fields are equal
+     */
+    RecordBodyEncoder(final BodyFormat format, final List<String> fieldNames) {
+        checkArgument(format != null && format.isStructured(), "format must be structured. Got %s", format);
+        checkArgument(fieldNames != null, "field names must not be null");
+
+        this.format = format;
+
+        final Set<String> allFieldNames = Sets.newLinkedHashSet(fieldNames);
+        allFieldNames.add(LINE_FIELD);
+        this.fieldNames = ImmutableList.copyOf(allFieldNames);
+
+        this.jsonFieldPrefixes = new byte[this.fieldNames.size()][];
+        this.buffer = new byte[INITIAL_BUFFER_SIZE];
+        for (int i = 0; i < jsonFieldPrefixes.length; i++) {
+            position = 0;
+            writeJsonString(this.fieldNames.get(i));
+            writeByte(':');
+            jsonFieldPrefixes[i] = Arrays.copyOf(buffer, position);
+        }
+
+        this.schema = format == BodyFormat.AVRO ? createSchema(this.fieldNames) : null;
+    }
+
+    private static String createSchema(final List<String> fieldNames) {
+        final Map<String, String> fieldNamesByAvroName = Maps.newHashMap();
+        final StringBuilder schema = new StringBuilder();
+        schema.append("{\"type\":\"record\",\"name\":\"").append(SCHEMA_NAME).append("\",\"namespace\":\"")
+              .append(SCHEMA_NAMESPACE).append("\",\"fields\":[");
+        for (int i = 0; i < fieldNames.size(); i++) {
+            if (i > 0) {
+                schema.append(',');
+            }
+
+            final String avroName = toAvroName(fieldNames.get(i));
+            final String collidingFieldName = fieldNamesByAvroName.put(avroName, fieldNames.get(i));
+            checkArgument(collidingFieldName == null,
+                "fields '%s' and '%s' have the same Avro name '%s', rename one of them in the record mapping",
+                collidingFieldName, fieldNames.get(i), avroName);
+
+            schema.append("{\"name\":\"").append(avroName)
+                  .append("\",\"type\":[\"null\",\"string\"],\"default\":null}");
+        }
+
+        return schema.append("]}").toString();
+    }
+
+    /**
+     * @return  name matching [A-Za-z_][A-Za-z0-9_]*
+     */
+    static String toAvroName(final String fieldName) {
+        final StringBuilder avroName = new StringBuilder(fieldName.length() + 1);
+        if (fieldName.isEmpty() || (fieldName.charAt(0) >= '0' && fieldName.charAt(0) <= '9')) {
+            avroName.append('_');
+        }
+
+        char c;
+        for (int i = 0; i < fieldName.length(); i++) {
+            c = fieldName.charAt(i);
+            avroName.append((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') ? c : '_');
+        }
+
+        return avroName.toString();
+    }
+
+    /**
+     * @return  JSON of the Avro schema of the encoded bodies, {@code null} if the format is not Avro
+     */
+    String getSchema() {
+        return schema;
+    }
+
+    List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    /**
+     * @param   recordMappings  mapped fields of the record
+     * @param   unmappedLine    the line if the record could not be mapped, {@code null} otherwise
+     *
+     * @return  encoded body
+     */
+    byte[] encode(final Map<String, String> recordMappings, final String unmappedLine) {
+        position = 0;
+        if (format == BodyFormat.AVRO) {
+            encodeAvro(recordMappings, unmappedLine);
+        } else {
+            encodeJson(recordMappings, unmappedLine);
+        }
+
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void encodeAvro(final Map<String, String> recordMappings, final String unmappedLine) {
+        String fieldName;
+        String value;
+        byte[] bytes;
+        for (int i = 0; i < fieldNames.size(); i++) {
+            fieldName = fieldNames.get(i);
+            value = recordMappings.get(fieldName);
+            if (value == null && unmappedLine != null && LINE_FIELD.equals(fieldName)) {
+                value = unmappedLine;
+            }
+
+            // NOTE: union branch 0 is null, branch 1 is string
+            if (value == null) {
+                writeAvroLong(0L);
+            } else {
+                bytes = value.getBytes(Charsets.UTF_8);
+                writeAvroLong(1L);
+                writeAvroLong(bytes.length);
+                writeBytes(bytes);
+            }
+        }
+    }
+
+    private void encodeJson(final Map<String, String> recordMappings, final String unmappedLine) {
+        writeByte('{');
+
+        boolean isFirst = true;
+        String fieldName;
+        String value;
+        for (int i = 0; i < fieldNames.size(); i++) {
+            fieldName = fieldNames.get(i);
+            value = recordMappings.get(fieldName);
+            if (value == null && unmappedLine != null && LINE_FIELD.equals(fieldName)) {
+                value = unmappedLine;
+            }
+
+            if (value != null) {
+                if (!isFirst) {
+                    writeByte(',');
+                }
+
+                writeBytes(jsonFieldPrefixes[i]);
+                writeJsonString(value);
+                isFirst = false;
+            }
+        }
+
+        writeByte('}');
+    }
+
+    private void writeAvroLong(final long value) {
+        ensureCapacity(10);
+
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0L) {
+            buffer[position++] = (byte) ((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+
+        buffer[position++] = (byte) zigZag;
+    }
+
+    private void writeJsonString(final String value) {
+        writeByte('"');
+
+        final int length = value.length();
+        int nonAsciiStart = -1;
+        char c;
+        for (int i = 0; i < length; i++) {
+            c = value.charAt(i);
+            if (c >= 0x80) {
+                if (nonAsciiStart < 0) {
+                    nonAsciiStart = i;
+                }
+
+                continue;
+            }
+
+            // NOTE: runs of non-ASCII chars are encoded at once, so that surrogate pairs stay together
+            if (nonAsciiStart >= 0) {
+                writeBytes(value.substring(nonAsciiStart, i).getBytes(Charsets.UTF_8));
+                nonAsciiStart = -1;
+            }
+
+            writeJsonChar(c);
+        }
+
+        if (nonAsciiStart >= 0) {
+            writeBytes(value.substring(nonAsciiStart).getBytes(Charsets.UTF_8));
+        }
+
+        writeByte('"');
+    }
+
+    private void writeJsonChar(final char c) {
+        switch (c) {
+
+            case '"' :
+            case '\\' :
+                writeByte('\\');
+                writeByte(c);
+                break;
+
+            case '\n' :
+                writeByte('\\');
+                writeByte('n');
+                break;
+
+            case '\r' :
+                writeByte('\\');
+                writeByte('r');
+                break;
+
+            case '\t' :
+                writeByte('\\');
+                writeByte('t');
+                break;
+
+            default :
+                if (c < 0x20) {
+                    ensureCapacity(6);
+                    buffer[position++] = '\\';
+                    buffer[position++] = 'u';
+                    buffer[position++] = '0';
+                    buffer[position++] = '0';
+                    buffer[position++] = HEX_DIGITS[c >> 4];
+                    buffer[position++] = HEX_DIGITS[c & 0xF];
+                } else {
+                    writeByte(c);
+                }
+        }
+    }
+
+    private void writeByte(final int b) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) b;
+    }
+
+    private void writeBytes(final byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void ensureCapacity(final int additionalBytes) {
+        if (position + additionalBytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + additionalBytes));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("format", format).add("fieldNames", fieldNames).toString();
+    }
+}
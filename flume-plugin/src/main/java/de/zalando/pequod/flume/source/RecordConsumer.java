@@ -2,29 +2,41 @@ package de.zalando.pequod.flume.source;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Strings.emptyToNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
 
 import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_BATCH_SIZE;
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_BODY_FORMAT;
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_BODY_SCHEMA_URL;
 import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_CHARSET;
-import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_FILE_RECORD_MAPPING;
 import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_MAX_EVENT_FLUSH_DELAY_IN_MS;
-import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_PATTERN_DIRECTORY;
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_PRESERVE_LINE_BYTES;
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_ROUTING_HEADER_FIELDS;
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_TIMESTAMP_FIELD;
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_TIMESTAMP_FORMAT;
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_TIMESTAMP_TIME_ZONE;
 import static de.zalando.pequod.flume.source.SourceConstants.DEFAULT_BATCH_SIZE;
+import static de.zalando.pequod.flume.source.SourceConstants.DEFAULT_BODY_FORMAT;
 import static de.zalando.pequod.flume.source.SourceConstants.DEFAULT_CHARSET;
 import static de.zalando.pequod.flume.source.SourceConstants.DEFAULT_FLUSH_DELAY_IN_MS;
-import static de.zalando.pequod.flume.source.SourceConstants.DEFAULT_PATTERN_DIRECTORY;
-
-import java.net.MalformedURLException;
-import java.net.URL;
+import static de.zalando.pequod.flume.source.SourceConstants.DEFAULT_PRESERVE_LINE_BYTES;
+import static de.zalando.pequod.flume.source.SourceConstants.DEFAULT_TIMESTAMP_FORMAT;
+import static de.zalando.pequod.flume.source.SourceConstants.DEFAULT_TIMESTAMP_TIME_ZONE;
+import static de.zalando.pequod.flume.source.SourceConstants.HEADER_AVRO_SCHEMA_URL;
+import static de.zalando.pequod.flume.source.SourceConstants.HEADER_REPEAT_COUNT;
+import static de.zalando.pequod.flume.source.SourceConstants.HEADER_TIMESTAMP;
 
 import java.nio.charset.Charset;
 
+import java.time.DateTimeException;
+import java.time.ZoneId;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.flume.ChannelException;
 import org.apache.flume.Context;
 import org.apache.flume.Event;
 import org.apache.flume.channel.ChannelProcessor;
@@ -35,42 +47,86 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
-import de.zalando.grok.GrokMapper;
+import de.zalando.pequod.flume.aggregation.WindowAggregator;
+import de.zalando.pequod.flume.batch.AdaptiveBatchSizer;
+import de.zalando.pequod.flume.instrumentation.EventTrace;
+import de.zalando.pequod.flume.instrumentation.LatencyHistogram;
 
 /**
- * Consumer for records read by {@link de.zalando.pequod.flume.source.LogFileReader}. Each record is mapped according to
- * the configured GROK pattern (see config parameter
- * {@link de.zalando.pequod.flume.source.SourceConstants#CONFIG_FILE_RECORD_MAPPING}) and creates an event out of the
- * record and the mapping data. Note that the mapping data is stored in the "fields" tag.
+ * Consumer for records read by {@link de.zalando.pequod.flume.source.LogFileReader}. Each record is mapped by the
+ * {@link de.zalando.pequod.flume.source.RecordMapper} of the configured record format (see config parameter
+ * {@link de.zalando.pequod.flume.source.SourceConstants#CONFIG_RECORD_FORMAT}) and creates an event out of the
+ * record and the mapping data. Note that the mapping data is stored in the headers or, depending on the configured
+ * {@link de.zalando.pequod.flume.source.BodyFormat}, encoded into the body.
  */
 final class RecordConsumer implements Runnable, Configurable {
 
     private ChannelProcessor channelProcessor;
-    private final BlockingQueue<String> inputQueue;
-    private GrokMapper recordMapper;
+    private final RecordQueue<Record> inputQueue;
+    private final TailFileSourceCounter counter;
+    private final ReorderBuffer reorderBuffer;
+    private final AdaptiveBatchSizer batchSizer;
+    private final WindowAggregator aggregator;
+    private final ReloadableRecordMapper recordMapperSource;
+    private RecordMapper recordMapper;
 
     private volatile boolean isRunning;
+    private volatile boolean isRetired;
+    private volatile long busyTimeInNs;
 
     private int eventBatchSize;
     private long maxEventFlushDelayInMs;
-    private String fileRecordMapping;
     private Charset charset;
+    private boolean preserveLineBytes;
+    private BodyFormat bodyFormat;
+    private List<String> routingHeaderFields;
+    private String bodySchemaUrl;
+    private RecordBodyEncoder bodyEncoder;
+    private String timestampField;
+    private TimestampParser timestampParser;
 
     private boolean isConfigured;
 
+    private long lastBatchCompletionTime;
+
+    // metrics accumulated between flushes, so that the shared counter is updated once per batch
+    private long mappingHits;
+    private long mappingMisses;
+    private long reportedBusyTimeInNs;
+    private final LatencyHistogram.Recorder mappingLatency;
+
     private static final long QUEUE_POLL_TIMEOUT_IN_MS = 10000L;
 
     private static final String THREAD_NAME_TEMPLATE = RecordConsumer.class.getSimpleName() + "(%s)";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RecordConsumer.class);
 
-    public RecordConsumer(final BlockingQueue<String> inputQueue) {
+    /**
+     * @param  inputQueue     queue shared with the {@link de.zalando.pequod.flume.source.LogFileReader}
+     * @param  counter        metrics of the source
+     * @param  reorderBuffer  stage restoring file order of the events of all consumers, null if order does not matter
+     * @param  batchSizer     controller adapting the event batch size, null if the configured batch size is used
+     * @param  aggregator     aggregation of mapped records shared by all consumers, null if records are not aggregated
+     * @param  recordMapper   provides the current record mapper shared by all consumers
+     */
+    public RecordConsumer(final RecordQueue<Record> inputQueue, final TailFileSourceCounter counter,
+            final ReorderBuffer reorderBuffer, final AdaptiveBatchSizer batchSizer, final WindowAggregator aggregator,
+            final ReloadableRecordMapper recordMapper) {
 
         checkArgument(inputQueue != null, "input queue must not be null");
+        checkArgument(counter != null, "counter must not be null");
 
         this.inputQueue = inputQueue;
+        this.counter = counter;
+        this.reorderBuffer = reorderBuffer;
+        this.batchSizer = batchSizer;
+        this.aggregator = aggregator;
+        this.recordMapperSource = recordMapper;
+        this.mappingLatency = counter.getMappingLatency().newRecorder();
         this.isConfigured = false;
     }
 
@@ -85,7 +141,6 @@ final class RecordConsumer implements Runnable, Configurable {
 
         eventBatchSize = context.getInteger(CONFIG_BATCH_SIZE, DEFAULT_BATCH_SIZE);
         maxEventFlushDelayInMs = context.getLong(CONFIG_MAX_EVENT_FLUSH_DELAY_IN_MS, DEFAULT_FLUSH_DELAY_IN_MS);
-        fileRecordMapping = context.getString(CONFIG_FILE_RECORD_MAPPING);
 
         final String charsetString = context.getString(CONFIG_CHARSET, DEFAULT_CHARSET);
         checkArgument(!isNullOrEmpty(charsetString), "charset [configKey=%s] must not be null or empty",
@@ -98,19 +153,30 @@ final class RecordConsumer implements Runnable, Configurable {
             "max event flush delay [configKey=%s] must not be lower than 1. Got %s", CONFIG_MAX_EVENT_FLUSH_DELAY_IN_MS,
             maxEventFlushDelayInMs);
 
-        checkArgument(!isNullOrEmpty(fileRecordMapping), "file record mapping [configKey=%s] must not be null or empty",
-            CONFIG_FILE_RECORD_MAPPING);
-
         charset = Charset.forName(charsetString);
-
-        final String patternDirectory = context.getString(CONFIG_PATTERN_DIRECTORY, DEFAULT_PATTERN_DIRECTORY);
-        final GrokMapper.Builder grokMapperBuilder = new GrokMapper.Builder();
-        try {
-            recordMapper = grokMapperBuilder.withPatternDefinitionsFromDirectory(new URL(patternDirectory))
-                                            .withRecordMappingDefinition(fileRecordMapping).build();
-        } catch (final MalformedURLException e) {
-            throw new IllegalArgumentException(String.format("illegal URL defined for pattern directory -> '%s'",
-                    patternDirectory));
+        preserveLineBytes = context.getBoolean(CONFIG_PRESERVE_LINE_BYTES, DEFAULT_PRESERVE_LINE_BYTES);
+
+        bodyFormat = BodyFormat.fromConfigValue(context.getString(CONFIG_BODY_FORMAT, DEFAULT_BODY_FORMAT));
+        routingHeaderFields = Lists.newArrayList(Splitter.on(',').trimResults().omitEmptyStrings().split(
+                    context.getString(CONFIG_ROUTING_HEADER_FIELDS, "")));
+        bodySchemaUrl = emptyToNull(context.getString(CONFIG_BODY_SCHEMA_URL));
+        checkArgument(bodySchemaUrl == null || bodyFormat == BodyFormat.AVRO,
+            "body schema URL [configKey=%s] requires body format [configKey=%s] 'avro'", CONFIG_BODY_SCHEMA_URL,
+            CONFIG_BODY_FORMAT);
+
+        timestampField = emptyToNull(context.getString(CONFIG_TIMESTAMP_FIELD));
+        if (timestampField != null) {
+            final TimestampFormat timestampFormat = TimestampFormat.fromConfigValue(context.getString(
+                        CONFIG_TIMESTAMP_FORMAT, DEFAULT_TIMESTAMP_FORMAT));
+            final String timeZone = context.getString(CONFIG_TIMESTAMP_TIME_ZONE, DEFAULT_TIMESTAMP_TIME_ZONE);
+            try {
+                timestampParser = new TimestampParser(timestampFormat, ZoneId.of(timeZone));
+            } catch (final DateTimeException e) {
+                throw new IllegalArgumentException(String.format("unknown time zone [configKey=%s] -> '%s'",
+                        CONFIG_TIMESTAMP_TIME_ZONE, timeZone), e);
+            }
+        } else {
+            timestampParser = null;
         }
 
         isConfigured = true;
@@ -128,6 +194,22 @@ final class RecordConsumer implements Runnable, Configurable {
         this.isRunning = false;
     }
 
+    /**
+     * Let's this instance stop as soon as its current event batch has been flushed. In contrast to {@link #kill()},
+     * records remaining in the queue are left to the other consumers.
+     */
+    public void retire() {
+        this.isRetired = true;
+        this.isRunning = false;
+    }
+
+    /**
+     * Returns the total time this consumer has spent on mapping and flushing, i.e. not waiting for records.
+     */
+    public long getBusyTimeInNs() {
+        return busyTimeInNs;
+    }
+
     private void setThreadName() {
         final Thread currentThread = Thread.currentThread();
         final String currentName = currentThread.getName();
@@ -147,61 +229,294 @@ final class RecordConsumer implements Runnable, Configurable {
 
     private void consume() {
         LOGGER.info("event consumer has been started");
+        counter.addConsumer(this);
+        try {
+            consumeRecords();
+        } finally {
+            counter.removeConsumer(this);
+        }
 
+        LOGGER.info("event consumer has been stopped");
+    }
+
+    private void consumeRecords() {
         checkState(isConfigured, "FLushService has not been configured");
         checkState(channelProcessor != null, "no channel process set");
+        checkState(recordMapperSource != null, "no record mapper set");
 
-        final ArrayList<Event> eventBatch = Lists.newArrayListWithCapacity(eventBatchSize);
+        final int maxEventBatchSize = batchSizer == null ? eventBatchSize : batchSizer.getMaxBatchSize();
+        final ArrayList<Event> eventBatch = Lists.newArrayListWithCapacity(maxEventBatchSize);
+        final long[] eventBatchSequences = new long[maxEventBatchSize];
         isRunning = true;
 
+        // NOTE: records are aggregated without locking, the partial is merged into the shared aggregator per window
+        final WindowAggregator.Partial aggregatorPartial = aggregator == null ? null : aggregator.createPartial();
+
         long lastFlushTime = System.currentTimeMillis();
+        lastBatchCompletionTime = System.nanoTime();
+        counter.setEventBatchSize(getEventBatchSize());
 
         Map<String, String> recordMappings;
         Event event;
-        String record;
-        while (isRunning || !inputQueue.isEmpty()) {
+        Record record;
+        byte[] lineBytes;
+        long busyStartTime;
+        while (!isRetired && (isRunning || !inputQueue.isEmpty())) {
             try {
 
-                record = inputQueue.poll(QUEUE_POLL_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+                // NOTE: a reloaded mapping is picked up between batches, so each batch is mapped consistently
+                if (eventBatch.isEmpty()) {
+                    updateRecordMapper();
+                }
+
+                // NOTE: a pending batch must not wait for the next record longer than its flush deadline
+                record = inputQueue.poll(getPollTimeoutInMs(eventBatch, lastFlushTime, aggregatorPartial),
+                        TimeUnit.MILLISECONDS);
+                busyStartTime = System.nanoTime();
                 LOGGER.debug("consuming [record={}]...", record);
 
                 if (record != null) {
-                    recordMappings = recordMapper.map(record);
-                    event = EventBuilder.withBody(record, charset, recordMappings);
-                    eventBatch.add(event);
-
-                    // NOTE: if kill is initiated, we want to get rid of our events as soon as possbile
-                    if (!isRunning || eventBatch.size() >= eventBatchSize || isFlushTime(lastFlushTime)) {
-                        flushEventBatch(eventBatch);
-                        lastFlushTime = System.currentTimeMillis();
+                    if (record.isTraced()) {
+                        counter.getTraceDequeueLatency().record(busyStartTime - record.getReadTimeInNs());
                     }
+
+                    try {
+                        // NOTE: the line bytes are matched directly, so only the mapped fields have to be decoded
+                        if (preserveLineBytes) {
+                            lineBytes = record.getLineBytes();
+                            recordMappings = recordMapper.map(lineBytes, 0, lineBytes.length, charset);
+                        } else {
+                            lineBytes = null;
+                            recordMappings = recordMapper.map(record.getLine());
+                        }
+
+                        mappingLatency.record(System.nanoTime() - busyStartTime);
+                        if (recordMappings.isEmpty()) {
+                            mappingMisses++;
+                        } else {
+                            mappingHits++;
+                        }
+
+                        // NOTE: a repeat summary stands for all suppressed repetitions of its line
+                        if (aggregatorPartial != null) {
+                            aggregatorPartial.add(recordMappings, Math.max(1, record.getRepeatCount()),
+                                System.currentTimeMillis());
+                        }
+
+                        if (aggregator == null || aggregator.isForwardingRawEvents()) {
+                            event = createEvent(record, recordMappings, lineBytes);
+                            eventBatchSequences[eventBatch.size()] = record.getSequence();
+                            eventBatch.add(event);
+                        }
+                    } catch (final RuntimeException e) {
+                        LOGGER.warn("dropping record which could not be consumed [sequence={}]", record.getSequence(),
+                            e);
+
+                        // NOTE: the events before the gap have to be released first, since they may precede it
+                        if (reorderBuffer != null) {
+                            if (!eventBatch.isEmpty()) {
+                                flushEventBatch(eventBatch, eventBatchSequences);
+                                lastFlushTime = System.currentTimeMillis();
+                            }
+
+                            reorderBuffer.skip(record.getSequence());
+                        }
+                    }
+                }
+
+                if (aggregatorPartial != null
+                        && aggregatorPartial.getTimeUntilWindowCloseInMs(System.currentTimeMillis()) == 0L) {
+                    flushAggregates(aggregatorPartial.pollClosedWindowEvents(System.currentTimeMillis()));
+                }
+
+                // NOTE: if kill is initiated, we want to get rid of our events as soon as possbile
+                if (!eventBatch.isEmpty()
+                        && (!isRunning || eventBatch.size() >= getEventBatchSize() || isFlushTime(lastFlushTime))) {
+                    flushEventBatch(eventBatch, eventBatchSequences);
+                    lastFlushTime = System.currentTimeMillis();
                 }
 
+                busyTimeInNs += System.nanoTime() - busyStartTime;
+
             } catch (final InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
 
-        flushEventBatch(eventBatch);
+        flushEventBatch(eventBatch, eventBatchSequences);
 
-        LOGGER.info("event consumer has been stopped");
+        // NOTE: windows of other consumers may only have waited for this partial
+        if (aggregatorPartial != null) {
+            aggregatorPartial.close();
+            flushAggregates(aggregator.pollClosedWindowEvents(System.currentTimeMillis()));
+        }
+    }
+
+    private void updateRecordMapper() {
+        final RecordMapper currentRecordMapper = recordMapperSource.get();
+        if (bodyFormat.isStructured() && currentRecordMapper != recordMapper) {
+            bodyEncoder = new RecordBodyEncoder(bodyFormat, currentRecordMapper.getFieldNames());
+            LOGGER.debug("encoding event bodies with [bodyEncoder={}]", bodyEncoder);
+        }
+
+        recordMapper = currentRecordMapper;
+    }
+
+    /**
+     * @param  lineBytes  bytes of the line if already restored, {@code null} otherwise
+     */
+    private Event createEvent(final Record record, final Map<String, String> recordMappings, final byte[] lineBytes) {
+        if (bodyFormat.isStructured()) {
+            final String unmappedLine = recordMappings.isEmpty()
+                ? new String(lineBytes == null ? record.getLineBytes() : lineBytes, charset) : null;
+            return EventBuilder.withBody(bodyEncoder.encode(recordMappings, unmappedLine),
+                    addTimestampHeader(recordMappings, addRecordHeaders(record, createRoutingHeaders(recordMappings))));
+        }
+
+        // NOTE: the mappings of a matched record are a fresh map, so the timestamp header may be added in place
+        final Map<String, String> headers = record.getRepeatCount() > 0 || record.isTraced()
+            ? addRecordHeaders(record, Maps.newHashMap(recordMappings)) : recordMappings;
+        addTimestampHeader(recordMappings, headers);
+        return lineBytes == null ? EventBuilder.withBody(record.getLine(), charset, headers)
+                                 : EventBuilder.withBody(lineBytes, headers);
+    }
+
+    private Map<String, String> createRoutingHeaders(final Map<String, String> recordMappings) {
+        final Map<String, String> headers = Maps.newHashMap();
+        String value;
+        for (final String field : routingHeaderFields) {
+            value = recordMappings.get(field);
+            if (value != null) {
+                headers.put(field, value);
+            }
+        }
+
+        if (bodySchemaUrl != null) {
+            headers.put(HEADER_AVRO_SCHEMA_URL, bodySchemaUrl);
+        }
+
+        return headers;
+    }
+
+    /**
+     * Adds the configured timestamp field as epoch millis, if the record has been mapped. Note that the header replaces
+     * a mapped field of the same name.
+     */
+    private Map<String, String> addTimestampHeader(final Map<String, String> recordMappings,
+            final Map<String, String> headers) {
+        if (timestampParser == null || recordMappings.isEmpty()) {
+            return headers;
+        }
+
+        final String value = recordMappings.get(timestampField);
+        if (value == null) {
+            return headers;
+        }
+
+        final long timestamp = timestampParser.parse(value);
+        if (timestamp == TimestampParser.UNPARSEABLE) {
+            counter.incrementTimestampFailureCount();
+            LOGGER.debug("could not parse [timestampField={}] -> '{}'", timestampField, value);
+        } else {
+            headers.put(HEADER_TIMESTAMP, String.valueOf(timestamp));
+        }
+
+        return headers;
+    }
+
+    private static Map<String, String> addRecordHeaders(final Record record, final Map<String, String> headers) {
+        if (record.getRepeatCount() > 0) {
+            headers.put(HEADER_REPEAT_COUNT, String.valueOf(record.getRepeatCount()));
+        }
+
+        if (record.isTraced()) {
+            headers.put(EventTrace.HEADER_READ_TIME, EventTrace.encode(record.getReadTimeInNs()));
+        }
+
+        return headers;
     }
 
     private boolean isFlushTime(final long lastFlush) {
         return System.currentTimeMillis() - lastFlush >= maxEventFlushDelayInMs;
     }
 
-    private void flushEventBatch(final List<Event> eventBatch) {
-        channelProcessor.processEventBatch(eventBatch);
+    private long getPollTimeoutInMs(final List<Event> eventBatch, final long lastFlush,
+            final WindowAggregator.Partial aggregatorPartial) {
+        final long now = System.currentTimeMillis();
+        long pollTimeout = QUEUE_POLL_TIMEOUT_IN_MS;
+        if (!eventBatch.isEmpty()) {
+            pollTimeout = Math.max(0L, lastFlush + maxEventFlushDelayInMs - now);
+        }
+
+        // NOTE: summaries of a closed window must not wait for the next record either
+        if (aggregatorPartial != null) {
+            pollTimeout = Math.min(pollTimeout, aggregatorPartial.getTimeUntilWindowCloseInMs(now));
+        }
+
+        return pollTimeout;
+    }
+
+    private void flushAggregates(final List<Event> summaryEvents) {
+        if (summaryEvents.isEmpty()) {
+            return;
+        }
+
+        // NOTE: summaries have no position in the file, so they bypass the reorder buffer
+        final int maxEventBatchSize = batchSizer == null ? eventBatchSize : batchSizer.getMaxBatchSize();
+        for (final List<Event> summaryBatch : Lists.partition(summaryEvents, maxEventBatchSize)) {
+            try {
+                channelProcessor.processEventBatch(summaryBatch);
+            } catch (final ChannelException e) {
+                LOGGER.warn("could not put [numberOfSummaryEvents={}] to channel -> summaries are lost",
+                    summaryBatch.size(), e);
+            }
+        }
+    }
+
+    private int getEventBatchSize() {
+        return batchSizer == null ? eventBatchSize : batchSizer.getBatchSize();
+    }
+
+    private void flushEventBatch(final List<Event> eventBatch, final long[] eventBatchSequences) {
+        final long flushStartTime = System.nanoTime();
+
+        counter.onBatchFlushed(eventBatch.size(), mappingHits, mappingMisses, busyTimeInNs - reportedBusyTimeInNs);
+        mappingHits = 0L;
+        mappingMisses = 0L;
+        reportedBusyTimeInNs = busyTimeInNs;
+        mappingLatency.flush();
+
+        if (reorderBuffer == null) {
+            channelProcessor.processEventBatch(eventBatch);
+            counter.onBatchAccepted(eventBatch.size());
+            EventTrace.recordLatencies(eventBatch, counter.getTraceChannelPutLatency());
+        } else {
+            reorderBuffer.submit(eventBatchSequences, eventBatch);
+        }
+
+        if (batchSizer != null) {
+            final long flushEndTime = System.nanoTime();
+            batchSizer.onBatchCompleted(eventBatch.size(), flushStartTime - lastBatchCompletionTime,
+                flushEndTime - flushStartTime);
+            lastBatchCompletionTime = flushEndTime;
+            counter.setEventBatchSize(batchSizer.getBatchSize());
+        }
+
         eventBatch.clear();
     }
 
     @Override
     public String toString() {
         return Objects.toStringHelper(this).add("channelProcessor", channelProcessor).add("inputQueue", inputQueue)
+                      .add("reorderBuffer", reorderBuffer).add("batchSizer", batchSizer)
+                      .add("aggregator", aggregator)
                       .add("recordMapper", recordMapper).add("isRunning", isRunning)
+                      .add("isRetired", isRetired)
                       .add("eventBatchSize", eventBatchSize).add("maxEventFlushDelayInMs", maxEventFlushDelayInMs)
-                      .add("fileRecordMapping", fileRecordMapping).add("charset", charset)
+                      .add("charset", charset).add("preserveLineBytes", preserveLineBytes)
+                      .add("bodyFormat", bodyFormat).add("routingHeaderFields", routingHeaderFields)
+                      .add("bodySchemaUrl", bodySchemaUrl).add("timestampField", timestampField)
+                      .add("timestampParser", timestampParser)
                       .add("isConfigured", isConfigured).toString();
     }
 }
@@ -0,0 +1,140 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_FILTER_EXCLUDE_LITERALS;
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_FILTER_EXCLUDE_PATTERN;
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_FILTER_EXCLUDE_PREFIXES;
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_FILTER_INCLUDE_LITERALS;
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_FILTER_INCLUDE_PATTERN;
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_FILTER_INCLUDE_PREFIXES;
+import static de.zalando.pequod.flume.source.SourceConstants.FILTER_LIST_SEPARATOR;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.flume.Context;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+/**
+ * Decides which records are passed on to the consumers before any mapping takes place. A record is accepted if it
+ * matches at least one include rule (or no include rule is configured) and no exclude rule. Each side may consist of
+ * prefixes, literals (matched in a single pass by an {@link de.zalando.pequod.flume.source.AhoCorasickMatcher}) and a
+ * regular expression. The rules are checked from cheapest to most expensive.
+ * <br></br>
+ * NOTE: the reader decodes each byte of a line as one char, so rules have to be ASCII. Other rules could never match
+ * and are rejected.
+ *
+ * <p>Instances are immutable and can be shared between threads.</p>
+ */
+final class RecordFilter {
+
+    private final List<String> includePrefixes;
+    private final AhoCorasickMatcher includeLiterals;
+    private final Pattern includePattern;
+    private final boolean hasIncludeRules;
+
+    private final List<String> excludePrefixes;
+    private final AhoCorasickMatcher excludeLiterals;
+    private final Pattern excludePattern;
+
+    private static final Splitter LIST_SPLITTER = Splitter.on(FILTER_LIST_SEPARATOR).omitEmptyStrings();
+
+    /**
+     * @param  includePrefixes  accepted record prefixes (may be empty)
+     * @param  includeLiterals  accepted record substrings (may be empty)
+     * @param  includePattern   accepted records (may be {@code null})
+     * @param  excludePrefixes  rejected record prefixes (may be empty)
+     * @param  excludeLiterals  rejected record substrings (may be empty)
+     * @param  excludePattern   rejected records (may be {@code null})
+     */
+    RecordFilter(final List<String> includePrefixes, final List<String> includeLiterals, final Pattern includePattern,
+            final List<String> excludePrefixes, final List<String> excludeLiterals, final Pattern excludePattern) {
+        this.includePrefixes = Lists.newArrayList(includePrefixes);
+        this.includeLiterals = includeLiterals.isEmpty() ? null : new AhoCorasickMatcher(includeLiterals);
+        this.includePattern = includePattern;
+        this.hasIncludeRules = !includePrefixes.isEmpty() || !includeLiterals.isEmpty() || includePattern != null;
+
+        this.excludePrefixes = Lists.newArrayList(excludePrefixes);
+        this.excludeLiterals = excludeLiterals.isEmpty() ? null : new AhoCorasickMatcher(excludeLiterals);
+        this.excludePattern = excludePattern;
+    }
+
+    /**
+     * Creates a filter according to the filter parameters of the given context.
+     *
+     * @param   context  source configuration
+     *
+     * @return  filter or {@code null} if no filter rules are configured
+     *
+     * @throws  IllegalArgumentException  if a rule contains non-ASCII characters
+     */
+    static RecordFilter create(final Context context) {
+        final RecordFilter recordFilter = new RecordFilter(getList(context, CONFIG_FILTER_INCLUDE_PREFIXES),
+                getList(context, CONFIG_FILTER_INCLUDE_LITERALS), getPattern(context, CONFIG_FILTER_INCLUDE_PATTERN),
+                getList(context, CONFIG_FILTER_EXCLUDE_PREFIXES), getList(context, CONFIG_FILTER_EXCLUDE_LITERALS),
+                getPattern(context, CONFIG_FILTER_EXCLUDE_PATTERN));
+
+        return recordFilter.hasRules() ? recordFilter : null;
+    }
+
+    private static List<String> getList(final Context context, final String configKey) {
+        final String value = getAsciiString(context, configKey);
+        return isNullOrEmpty(value) ? Lists.<String>newArrayList() : Lists.newArrayList(LIST_SPLITTER.split(value));
+    }
+
+    private static Pattern getPattern(final Context context, final String configKey) {
+        final String value = getAsciiString(context, configKey);
+        return isNullOrEmpty(value) ? null : Pattern.compile(value);
+    }
+
+    private static String getAsciiString(final Context context, final String configKey) {
+        final String value = context.getString(configKey);
+        checkArgument(value == null || CharMatcher.ASCII.matchesAllOf(value),
+            "filter rule [configKey=%s] must only contain ASCII characters. Got '%s'", configKey, value);
+        return value;
+    }
+
+    private boolean hasRules() {
+        return hasIncludeRules || !excludePrefixes.isEmpty() || excludeLiterals != null || excludePattern != null;
+    }
+
+    /**
+     * @param   record  raw record
+     *
+     * @return  true if the record is passed on to the consumers
+     */
+    boolean accept(final String record) {
+        if (startsWithAny(record, excludePrefixes) || (excludeLiterals != null && excludeLiterals.matches(record))
+                || (excludePattern != null && excludePattern.matcher(record).find())) {
+            return false;
+        }
+
+        return !hasIncludeRules || startsWithAny(record, includePrefixes)
+                || (includeLiterals != null && includeLiterals.matches(record))
+                || (includePattern != null && includePattern.matcher(record).find());
+    }
+
+    private static boolean startsWithAny(final String record, final List<String> prefixes) {
+        for (int i = 0; i < prefixes.size(); i++) {
+            if (record.startsWith(prefixes.get(i))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("includePrefixes", includePrefixes)
+                      .add("includeLiterals", includeLiterals).add("includePattern", includePattern)
+                      .add("excludePrefixes", excludePrefixes).add("excludeLiterals", excludeLiterals)
+                      .add("excludePattern", excludePattern).toString();
+    }
+}
@@ -0,0 +1,46 @@
+package de.zalando.pequod.flume.source;
+
+/**
+ * Format of the records of a source, which determines its {@link de.zalando.pequod.flume.source.RecordMapper} (see
+ * config parameter {@link de.zalando.pequod.flume.source.SourceConstants#CONFIG_RECORD_FORMAT}).
+ */
+enum RecordFormat {
+
+    /**
+     * records are matched against the configured GROK mapping.
+     */
+    GROK("grok"),
+
+    /**
+     * records are key=value pairs (logfmt).
+     */
+    LOGFMT("logfmt"),
+
+    /**
+     * records are JSON objects.
+     */
+    JSON("json"),
+
+    /**
+     * records starting with '{' are JSON objects, all other records are matched against the configured GROK mapping or,
+     * if no GROK mapping is configured, are key=value pairs.
+     */
+    AUTO("auto");
+
+    private final String configValue;
+
+    RecordFormat(final String configValue) {
+        this.configValue = configValue;
+    }
+
+    public static RecordFormat fromConfigValue(final String configValue) {
+        for (final RecordFormat format : values()) {
+            if (format.configValue.equals(configValue)) {
+                return format;
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("unknown record format [configKey=%s] -> '%s'",
+                SourceConstants.CONFIG_RECORD_FORMAT, configValue));
+    }
+}
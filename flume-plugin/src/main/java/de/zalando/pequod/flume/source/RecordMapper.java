@@ -0,0 +1,40 @@
+package de.zalando.pequod.flume.source;
+
+import java.nio.charset.Charset;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps a record to named fields (see config parameter
+ * {@link de.zalando.pequod.flume.source.SourceConstants#CONFIG_RECORD_FORMAT}). A mapper is shared by all consumers of
+ * a source and must therefore be thread-safe. The mappings of a mapped record are a fresh mutable map owned by the
+ * caller, records which cannot be mapped result in an empty map.
+ */
+interface RecordMapper {
+
+    /**
+     * @param   line  record
+     *
+     * @return  mapped fields, empty if the record cannot be mapped
+     */
+    Map<String, String> map(String line);
+
+    /**
+     * Maps the encoded record, so that only the mapped fields have to be decoded.
+     *
+     * @param   input    buffer containing the encoded record
+     * @param   offset   start of the record in the buffer
+     * @param   length   length of the record in bytes
+     * @param   charset  charset of the record
+     *
+     * @return  mapped fields, empty if the record cannot be mapped
+     */
+    Map<String, String> map(byte[] input, int offset, int length, Charset charset);
+
+    /**
+     * @return  names of the fields a mapping may contain, in order of their definition. Empty if the fields are not
+     *          known in advance.
+     */
+    List<String> getFieldNames();
+}
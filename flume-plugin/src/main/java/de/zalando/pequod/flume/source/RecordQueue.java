@@ -0,0 +1,44 @@
+package de.zalando.pequod.flume.source;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue which is shared between the {@link de.zalando.pequod.flume.source.LogFileReader} (the only producer) and its
+ * {@link de.zalando.pequod.flume.source.RecordConsumer}s (see config parameter
+ * {@link de.zalando.pequod.flume.source.SourceConstants#CONFIG_QUEUE_TYPE}).
+ *
+ * @param  <E>  element type
+ */
+interface RecordQueue<E> {
+
+    /**
+     * Inserts given element, waiting up to the specified wait time for space to become available.
+     *
+     * @param   element  element to insert (must not be null)
+     * @param   timeout  how long to wait before giving up
+     * @param   unit     unit of timeout
+     *
+     * @return  true if the element has been inserted, false if the wait time elapsed before space was available
+     *
+     * @throws  InterruptedException  if interrupted while waiting
+     */
+    boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Retrieves and removes the head of this queue, waiting up to the specified wait time for an element.
+     *
+     * @param   timeout  how long to wait before giving up
+     * @param   unit     unit of timeout
+     *
+     * @return  head of this queue or null if the wait time elapsed before an element was available
+     *
+     * @throws  InterruptedException  if interrupted while waiting
+     */
+    E poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    boolean isEmpty();
+
+    int size();
+
+    int capacity();
+}
@@ -0,0 +1,331 @@
+package de.zalando.pequod.flume.source;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_FILE_RECORD_MAPPING;
+import static de.zalando.pequod.flume.source.SourceConstants.CONFIG_FILE_RECORD_MAPPING_FILE;
+
+import java.io.IOException;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+
+import de.zalando.grok.GrokMapper;
+
+/**
+ * Provides the {@link de.zalando.pequod.flume.source.RecordMapper} shared by all consumers of a source. A GROK mapping
+ * is either configured inline or read from a mapping file. If run as task, the pattern directory and the mapping file
+ * are watched for changes: a new mapper is compiled in the background and swapped in atomically. The consumers pick up
+ * the current mapper between their event batches. If the new mapping cannot be compiled, the current mapper stays in
+ * place. Mappers of logfmt and JSON records need no compilation and are therefore never reloaded.
+ */
+final class ReloadableRecordMapper implements Runnable {
+
+    private final RecordFormat recordFormat;
+    private final List<String> recordFields;
+    private final boolean isUsingGrok;
+    private final String patternDirectory;
+    private final String fileRecordMapping;
+    private final Path fileRecordMappingFile;
+    private final TailFileSourceCounter counter;
+    private final AtomicReference<RecordMapper> recordMapper;
+
+    private volatile boolean isKilled;
+
+    /**
+     * time without further changes before a new mapper is compiled, so that a copied directory is reloaded only once.
+     */
+    private static final long QUIET_PERIOD_IN_MS = 500L;
+    private static final long WATCH_POLL_TIMEOUT_IN_MS = 1000L;
+
+    private static final String URL_PROTOCOL_FILE = "file";
+
+    private static final String THREAD_NAME_TEMPLATE = ReloadableRecordMapper.class.getSimpleName() + "(%s)";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReloadableRecordMapper.class);
+
+    /**
+     * Compiles the initial GROK mapper.
+     *
+     * @param   patternDirectory       location of the logstash patterns
+     * @param   fileRecordMapping      GROK mapping (may be {@code null} if a mapping file is given)
+     * @param   fileRecordMappingFile  file containing the GROK mapping (may be {@code null})
+     * @param   counter                metrics of the source
+     *
+     * @throws  IllegalArgumentException  if the mapping cannot be compiled
+     */
+    ReloadableRecordMapper(final String patternDirectory, final String fileRecordMapping,
+            final Path fileRecordMappingFile, final TailFileSourceCounter counter) {
+        this(RecordFormat.GROK, Collections.<String>emptyList(), patternDirectory, fileRecordMapping,
+            fileRecordMappingFile, counter);
+    }
+
+    /**
+     * Creates the initial mapper.
+     *
+     * @param   recordFormat           format of the records
+     * @param   recordFields           fields extracted from logfmt and JSON records, empty for all fields
+     * @param   patternDirectory       location of the logstash patterns
+     * @param   fileRecordMapping      GROK mapping (may be {@code null} if a mapping file is given)
+     * @param   fileRecordMappingFile  file containing the GROK mapping (may be {@code null})
+     * @param   counter                metrics of the source
+     *
+     * @throws  IllegalArgumentException  if the mapping cannot be compiled
+     */
+    ReloadableRecordMapper(final RecordFormat recordFormat, final List<String> recordFields,
+            final String patternDirectory, final String fileRecordMapping, final Path fileRecordMappingFile,
+            final TailFileSourceCounter counter) {
+        checkArgument(recordFormat != null, "record format must not be null");
+        checkArgument(recordFields != null, "record fields must not be null");
+        checkArgument(recordFormat != RecordFormat.GROK || !isNullOrEmpty(fileRecordMapping)
+                || fileRecordMappingFile != null,
+            "file record mapping [configKey=%s] or file record mapping file [configKey=%s] must be configured",
+            CONFIG_FILE_RECORD_MAPPING, CONFIG_FILE_RECORD_MAPPING_FILE);
+        checkArgument(counter != null, "counter must not be null");
+
+        this.recordFormat = recordFormat;
+        this.recordFields = recordFields;
+        this.isUsingGrok = isUsingGrok(recordFormat, fileRecordMapping, fileRecordMappingFile);
+        checkArgument(!isUsingGrok || !isNullOrEmpty(patternDirectory), "pattern directory must not be null or empty");
+
+        this.patternDirectory = patternDirectory;
+        this.fileRecordMapping = fileRecordMapping;
+        this.fileRecordMappingFile = fileRecordMappingFile;
+        this.counter = counter;
+
+        try {
+            this.recordMapper = new AtomicReference<>(compile());
+        } catch (final IOException e) {
+            throw new IllegalArgumentException(String.format("could not read [fileRecordMappingFile=%s]",
+                    fileRecordMappingFile), e);
+        }
+    }
+
+    /**
+     * Wraps a fixed mapper which is never reloaded (used by tests).
+     *
+     * @param  recordMapper  mapper to provide
+     * @param  counter       metrics of the source
+     */
+    ReloadableRecordMapper(final RecordMapper recordMapper, final TailFileSourceCounter counter) {
+        checkArgument(recordMapper != null, "record mapper must not be null");
+        checkArgument(counter != null, "counter must not be null");
+
+        this.recordFormat = null;
+        this.recordFields = Collections.emptyList();
+        this.isUsingGrok = false;
+        this.patternDirectory = null;
+        this.fileRecordMapping = null;
+        this.fileRecordMappingFile = null;
+        this.counter = counter;
+        this.recordMapper = new AtomicReference<>(recordMapper);
+    }
+
+    /**
+     * @return  current mapper
+     */
+    RecordMapper get() {
+        return recordMapper.get();
+    }
+
+    /**
+     * Compiles a new mapper from the current pattern directory and mapping and swaps it in.
+     *
+     * @return  true if the mapper has been replaced, false if the current mapper stays in place
+     */
+    boolean reload() {
+        try {
+            recordMapper.set(compile());
+            counter.incrementMappingReloadCount();
+            LOGGER.info("record mapping has been reloaded [patternDirectory={}, fileRecordMappingFile={}]",
+                patternDirectory, fileRecordMappingFile);
+            return true;
+        } catch (final IOException | RuntimeException e) {
+            counter.incrementMappingReloadFailureCount();
+            LOGGER.error("could not reload record mapping -> keeping current mapping", e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether the mapper depends on the GROK mapping and the pattern directory, i.e. may be reloaded.
+     */
+    boolean isUsingGrok() {
+        return isUsingGrok;
+    }
+
+    /**
+     * Returns whether records of given format are mapped by GROK, i.e. the pattern directory is needed.
+     */
+    static boolean isUsingGrok(final RecordFormat recordFormat, final String fileRecordMapping,
+            final Path fileRecordMappingFile) {
+        return recordFormat == RecordFormat.GROK
+                || (recordFormat == RecordFormat.AUTO
+                    && (!isNullOrEmpty(fileRecordMapping) || fileRecordMappingFile != null));
+    }
+
+    private RecordMapper compile() throws IOException {
+        switch (recordFormat) {
+
+            case LOGFMT :
+                return new LogfmtRecordMapper(recordFields);
+
+            case JSON :
+                return new JsonRecordMapper(recordFields);
+
+            case AUTO :
+                return new AutoDetectingRecordMapper(new JsonRecordMapper(recordFields),
+                        isUsingGrok ? compileGrokMapper() : new LogfmtRecordMapper(recordFields));
+
+            default :
+                return compileGrokMapper();
+        }
+    }
+
+    private RecordMapper compileGrokMapper() throws IOException {
+        final String mapping = fileRecordMappingFile == null
+            ? fileRecordMapping : new String(Files.readAllBytes(fileRecordMappingFile), Charsets.UTF_8).trim();
+        checkArgument(!isNullOrEmpty(mapping), "file record mapping must not be null or empty");
+
+        try {
+            return new GrokRecordMapper(new GrokMapper.Builder().withPatternDefinitionsFromDirectory(
+                        toUrl(patternDirectory)).withRecordMappingDefinition(mapping).build());
+        } catch (final MalformedURLException e) {
+            throw new IllegalArgumentException(String.format("illegal URL defined for pattern directory -> '%s'",
+                    patternDirectory));
+        }
+    }
+
+    /**
+     * Stops watching for changes.
+     */
+    void kill() {
+        isKilled = true;
+    }
+
+    private void setThreadName() {
+        final Thread currentThread = Thread.currentThread();
+        final String currentName = currentThread.getName();
+        currentThread.setName(String.format(THREAD_NAME_TEMPLATE, currentName));
+    }
+
+    @Override
+    public void run() {
+        setThreadName();
+
+        final Path patternDirectoryPath = toPath(patternDirectory).toAbsolutePath();
+        final Path mappingDirectoryPath = fileRecordMappingFile == null
+            ? null : fileRecordMappingFile.toAbsolutePath().getParent();
+
+        try (final WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            patternDirectoryPath.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            if (mappingDirectoryPath != null && !mappingDirectoryPath.equals(patternDirectoryPath)) {
+                mappingDirectoryPath.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            }
+
+            LOGGER.info("watching [patternDirectory={}, fileRecordMappingFile={}] for changes", patternDirectory,
+                fileRecordMappingFile);
+
+            while (!isKilled) {
+                if (awaitChange(watchService, WATCH_POLL_TIMEOUT_IN_MS, patternDirectoryPath)) {
+
+                    // NOTE: editors and deployments usually write several files or write in several steps
+                    while (awaitChange(watchService, QUIET_PERIOD_IN_MS, patternDirectoryPath)) {
+                        LOGGER.debug("record mapping is still changing...");
+                    }
+
+                    reload();
+                }
+            }
+        } catch (final IOException e) {
+            LOGGER.error("could not watch [patternDirectory={}, fileRecordMappingFile={}] -> mapping is not reloaded",
+                new Object[] {patternDirectory, fileRecordMappingFile, e});
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        LOGGER.info("stopped watching record mapping");
+    }
+
+    /**
+     * Returns the local path of the pattern directory, which may be given as file URL (like the pattern loader of the
+     * GROK mapper, relative file URLs such as "file:conf/logstash_patterns" are resolved against the working
+     * directory) or as plain path. Other URLs are returned as plain path, i.e. they do not denote a local directory.
+     */
+    static Path toPath(final String patternDirectory) {
+        try {
+            final URL url = new URL(patternDirectory);
+            if (URL_PROTOCOL_FILE.equals(url.getProtocol())) {
+                return FileSystems.getDefault().getPath(url.getPath());
+            }
+        } catch (final MalformedURLException e) {
+            // plain path
+        }
+
+        return FileSystems.getDefault().getPath(patternDirectory);
+    }
+
+    /**
+     * Returns the URL of the pattern directory as expected by the GROK mapper, i.e. a plain path is turned into a file
+     * URL.
+     */
+    static URL toUrl(final String patternDirectory) throws MalformedURLException {
+        try {
+            return new URL(patternDirectory);
+        } catch (final MalformedURLException e) {
+            return FileSystems.getDefault().getPath(patternDirectory).toAbsolutePath().toUri().toURL();
+        }
+    }
+
+    /**
+     * @return  true if the pattern directory or the mapping file has changed within the given time
+     */
+    private boolean awaitChange(final WatchService watchService, final long timeoutInMs,
+            final Path patternDirectoryPath) throws InterruptedException {
+        final WatchKey watchKey = watchService.poll(timeoutInMs, TimeUnit.MILLISECONDS);
+        if (watchKey == null) {
+            return false;
+        }
+
+        boolean hasChanged = false;
+        for (final WatchEvent<?> event : watchKey.pollEvents()) {
+            hasChanged |= patternDirectoryPath.equals(watchKey.watchable())
+                    || (fileRecordMappingFile != null
+                        && fileRecordMappingFile.getFileName().equals(event.context()));
+        }
+
+        watchKey.reset();
+        return hasChanged;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("recordFormat", recordFormat).add("recordFields", recordFields)
+                      .add("patternDirectory", patternDirectory)
+                      .add("fileRecordMapping", fileRecordMapping)
+                      .add("fileRecordMappingFile", fileRecordMappingFile).add("isKilled", isKilled).toString();
+    }
+}
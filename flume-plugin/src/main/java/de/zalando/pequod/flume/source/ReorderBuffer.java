@@ -0,0 +1,205 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.flume.ChannelException;
+import org.apache.flume.Event;
+import org.apache.flume.channel.ChannelProcessor;
+import org.apache.flume.event.EventBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+import de.zalando.pequod.flume.instrumentation.EventTrace;
+
+/**
+ * Bounded stage in front of {@link org.apache.flume.channel.ChannelProcessor#processEventBatch(java.util.List)} which
+ * restores file order of events created by parallel {@link de.zalando.pequod.flume.source.RecordConsumer}s. Events are
+ * buffered by their record sequence number and released in batches as soon as they form a gap-less run. A consumer
+ * submitting a sequence which lies beyond the window of [capacity] sequences waits until the window has advanced.
+ * <br></br>
+ * NOTE: if the channel rejects a batch, the events stay buffered and the release is retried, since dropping them would
+ * stall the window forever. For the same reason, a consumer which cannot create the event of a record has to
+ * {@link #skip(long)} its sequence.
+ */
+final class ReorderBuffer {
+
+    private final Event[] window;
+    private final int capacity;
+    private final int releaseBatchSize;
+    private final TailFileSourceCounter counter;
+
+    private final ReentrantLock lock;
+    private final Condition windowAdvanced;
+    private final ArrayList<Event> releaseBatch;
+
+    private ChannelProcessor channelProcessor;
+
+    // first sequence which has not been released yet
+    private long nextSequence;
+    private int bufferedEvents;
+
+    private static final long RELEASE_RETRY_DELAY_IN_MS = 1000L;
+
+    /**
+     * placeholder of a skipped sequence, which closes the gap without being released.
+     */
+    private static final Event SKIPPED = EventBuilder.withBody(new byte[0]);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReorderBuffer.class);
+
+    public ReorderBuffer(final int capacity, final int releaseBatchSize, final TailFileSourceCounter counter) {
+        checkArgument(capacity > 0, "capacity must not be lower than 1. Got %s", capacity);
+        checkArgument(releaseBatchSize > 0, "release batch size must not be lower than 1. Got %s", releaseBatchSize);
+        checkArgument(counter != null, "counter must not be null");
+
+        this.window = new Event[capacity];
+        this.capacity = capacity;
+        this.releaseBatchSize = releaseBatchSize;
+        this.counter = counter;
+        this.lock = new ReentrantLock();
+        this.windowAdvanced = lock.newCondition();
+        this.releaseBatch = Lists.newArrayListWithCapacity(releaseBatchSize);
+    }
+
+    public void setChannelProcessor(final ChannelProcessor channelProcessor) {
+        checkArgument(channelProcessor != null, "channel processor must not be null");
+        this.channelProcessor = channelProcessor;
+    }
+
+    /**
+     * Buffers given events and releases every gap-less run of events to the channel. Returns once all events have been
+     * buffered and the release has succeeded.
+     *
+     * @param  sequences  record sequence numbers of the events (ascending)
+     * @param  events     events to submit
+     */
+    public void submit(final long[] sequences, final List<Event> events) {
+        checkState(channelProcessor != null, "no channel processor set");
+
+        boolean isInterrupted = false;
+
+        lock.lock();
+        try {
+            long sequence;
+            for (int i = 0; i < events.size(); i++) {
+                sequence = sequences[i];
+
+                while (sequence - nextSequence >= capacity) {
+                    release();
+
+                    if (sequence - nextSequence >= capacity) {
+                        counter.incrementReorderWaitCount();
+                        isInterrupted |= awaitWindowAdvance();
+                    }
+                }
+
+                window[index(sequence)] = events.get(i);
+                bufferedEvents++;
+            }
+
+            counter.setReorderBufferSize(bufferedEvents);
+
+            while (!release()) {
+                isInterrupted |= awaitWindowAdvance();
+            }
+        } finally {
+            lock.unlock();
+
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Marks the sequence of a record which has been dropped, so that the following events can be released. Returns
+     * once the sequence has been buffered and the release has succeeded.
+     *
+     * @param  sequence  record sequence number without event
+     */
+    public void skip(final long sequence) {
+        submit(new long[] {sequence}, Collections.singletonList(SKIPPED));
+    }
+
+    /**
+     * Releases all events forming a gap-less run starting at the next expected sequence.
+     *
+     * @return  false if the channel did not accept the events
+     */
+    private boolean release() {
+        long sequence;
+        Event event;
+
+        while (true) {
+            releaseBatch.clear();
+            sequence = nextSequence;
+            while (releaseBatch.size() < releaseBatchSize && sequence - nextSequence < capacity
+                    && (event = window[index(sequence)]) != null) {
+                if (event != SKIPPED) {
+                    releaseBatch.add(event);
+                }
+
+                sequence++;
+            }
+
+            if (sequence == nextSequence) {
+                return true;
+            }
+
+            if (!releaseBatch.isEmpty()) {
+                try {
+                    channelProcessor.processEventBatch(releaseBatch);
+                    counter.onBatchAccepted(releaseBatch.size());
+                    EventTrace.recordLatencies(releaseBatch, counter.getTraceChannelPutLatency());
+                } catch (final ChannelException e) {
+                    LOGGER.warn("could not release [numberOfEvents={}] -> retrying in {} ms",
+                        new Object[] {releaseBatch.size(), RELEASE_RETRY_DELAY_IN_MS}, e);
+                    return false;
+                }
+            }
+
+            for (long released = nextSequence; released < sequence; released++) {
+                window[index(released)] = null;
+            }
+
+            // NOTE: skipped sequences occupy the window like events
+            bufferedEvents -= (int) (sequence - nextSequence);
+            nextSequence = sequence;
+
+            counter.addToReorderReleasedCount(releaseBatch.size());
+            counter.setReorderBufferSize(bufferedEvents);
+            windowAdvanced.signalAll();
+        }
+    }
+
+    private boolean awaitWindowAdvance() {
+        try {
+            windowAdvanced.await(RELEASE_RETRY_DELAY_IN_MS, TimeUnit.MILLISECONDS);
+            return false;
+        } catch (final InterruptedException e) {
+            return true;
+        }
+    }
+
+    private int index(final long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("capacity", capacity).add("releaseBatchSize", releaseBatchSize)
+                      .add("nextSequence", nextSequence).add("bufferedEvents", bufferedEvents).toString();
+    }
+}
@@ -0,0 +1,164 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.function.ObjIntConsumer;
+
+import com.google.common.base.Objects;
+
+/**
+ * Suppresses floods of repeated records. The first occurrence of a record is passed on; identical records (or records
+ * which only differ in their digits, see {@link #RepeatSuppressor(int, long, boolean)}) arriving within the
+ * configured window after it are only counted. When the window of a record has expired, a summary carrying the number
+ * of suppressed repetitions is emitted.
+ *
+ * <p>Recently seen records are kept in a direct mapped table of 64 bit hashes, so each record is hashed once without
+ * any allocation. Records are not copied: the table only references the first occurrence, which is needed as body of
+ * the summary. Two different records mapped to the same slot evict each other (emitting the summary of the older
+ * one), so only records with equal 64 bit hashes are considered repetitions.</p>
+ *
+ * <p>Summaries of expired windows are emitted when the next record is read, by a sweep of the reader while no records
+ * arrive or when the reader stops.</p>
+ *
+ * <p>This class is not thread-safe: the reader synchronizes on the instance while using it.</p>
+ */
+final class RepeatSuppressor {
+
+    private final int mask;
+    private final long windowInMs;
+    private final boolean normalizeDigits;
+
+    private final long[] hashes;
+    private final String[] lines;
+    private final long[] windowStartTimes;
+    private final int[] repeatCounts;
+
+    private long lastSweepTime;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * @param  tableSize        number of distinct records which are tracked at the same time, rounded up to the next
+     *                          power of two
+     * @param  windowInMs       time in ms after the first occurrence of a record in which repetitions are suppressed
+     * @param  normalizeDigits  if true, records only differing in their digits (e.g. timestamps or ids) are considered
+     *                          repetitions
+     */
+    RepeatSuppressor(final int tableSize, final long windowInMs, final boolean normalizeDigits) {
+        checkArgument(tableSize > 0 && tableSize <= (1 << 30), "table size must be between 1 and 2^30. Got %s",
+            tableSize);
+        checkArgument(windowInMs > 0L, "window must not be lower than 1 ms. Got %s", windowInMs);
+
+        final int capacity = Integer.highestOneBit(tableSize) == tableSize ? tableSize
+                                                                           : Integer.highestOneBit(tableSize) << 1;
+        this.mask = capacity - 1;
+        this.windowInMs = windowInMs;
+        this.normalizeDigits = normalizeDigits;
+        this.hashes = new long[capacity];
+        this.lines = new String[capacity];
+        this.windowStartTimes = new long[capacity];
+        this.repeatCounts = new int[capacity];
+    }
+
+    /**
+     * @param   record          record which has just been read
+     * @param   now             current time in ms
+     * @param   summaryHandler  receives summaries (record, number of suppressed repetitions) of expired windows
+     *
+     * @return  true if the record is a repetition and must be dropped
+     */
+    boolean suppress(final String record, final long now, final ObjIntConsumer<String> summaryHandler) {
+        if (now - lastSweepTime >= windowInMs) {
+            flushExpired(now, summaryHandler);
+            lastSweepTime = now;
+        }
+
+        final long hash = hash(record);
+        final int slot = (int) (hash ^ (hash >>> 32)) & mask;
+
+        if (lines[slot] != null && hashes[slot] == hash && now - windowStartTimes[slot] < windowInMs) {
+            if (repeatCounts[slot] < Integer.MAX_VALUE) {
+                repeatCounts[slot]++;
+            }
+
+            return true;
+        }
+
+        flush(slot, summaryHandler);
+        hashes[slot] = hash;
+        lines[slot] = record;
+        windowStartTimes[slot] = now;
+        return false;
+    }
+
+    /**
+     * Emits summaries of all records with expired window.
+     *
+     * @param  now             current time in ms
+     * @param  summaryHandler  receives summaries (record, number of suppressed repetitions)
+     */
+    void flushExpired(final long now, final ObjIntConsumer<String> summaryHandler) {
+        for (int slot = 0; slot < lines.length; slot++) {
+            if (lines[slot] != null && now - windowStartTimes[slot] >= windowInMs) {
+                flush(slot, summaryHandler);
+                lines[slot] = null;
+            }
+        }
+    }
+
+    /**
+     * Emits summaries of all records with suppressed repetitions, regardless of their window.
+     *
+     * @param  summaryHandler  receives summaries (record, number of suppressed repetitions)
+     */
+    void flushAll(final ObjIntConsumer<String> summaryHandler) {
+        for (int slot = 0; slot < lines.length; slot++) {
+            flush(slot, summaryHandler);
+            lines[slot] = null;
+        }
+    }
+
+    private void flush(final int slot, final ObjIntConsumer<String> summaryHandler) {
+        if (repeatCounts[slot] > 0) {
+            summaryHandler.accept(lines[slot], repeatCounts[slot]);
+            repeatCounts[slot] = 0;
+        }
+    }
+
+    long getWindowInMs() {
+        return windowInMs;
+    }
+
+    /**
+     * FNV-1a hash over the chars of the record. If digits are normalized, each run of digits counts as a single '0'.
+     */
+    private long hash(final String record) {
+        long hash = FNV_OFFSET_BASIS;
+        boolean isInDigitRun = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (normalizeDigits && c >= '0' && c <= '9') {
+                if (isInDigitRun) {
+                    continue;
+                }
+
+                isInDigitRun = true;
+                c = '0';
+            } else {
+                isInDigitRun = false;
+            }
+
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("tableSize", lines.length).add("windowInMs", windowInMs)
+                      .add("normalizeDigits", normalizeDigits).toString();
+    }
+}
@@ -0,0 +1,168 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Objects;
+
+/**
+ * Preallocated, lock-free single-producer / multi-consumer ring buffer. Each slot carries a sequence number which tells
+ * the producer whether the slot is free and the consumers whether the slot has been published. Consumers claim slots
+ * via CAS on a shared head sequence, so no consumer ever blocks another one.<br></br>
+ * NOTE: only one thread (the {@link de.zalando.pequod.flume.source.LogFileReader}) may call
+ * {@link #offer(Object, long, java.util.concurrent.TimeUnit)}. The capacity is rounded up to the next power of two.
+ *
+ * @param  <E>  element type
+ */
+final class RingBufferRecordQueue<E> implements RecordQueue<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final int capacity;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+
+    // next sequence to be claimed by a consumer
+    private final AtomicLong head;
+
+    // next sequence to be published by the producer (only written by the producer)
+    private volatile long tail;
+
+    public RingBufferRecordQueue(final int requestedCapacity, final WaitStrategy waitStrategy) {
+        checkArgument(requestedCapacity > 0, "capacity must not be lower than 1. Got %s", requestedCapacity);
+        checkArgument(waitStrategy != null, "wait strategy must not be null");
+
+        this.capacity = requestedCapacity == 1 ? 1 : Integer.highestOneBit(requestedCapacity - 1) << 1;
+        checkArgument(capacity > 0, "capacity is too large. Got %s", requestedCapacity);
+
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+
+        this.waitStrategy = waitStrategy;
+        this.head = new AtomicLong();
+        this.tail = 0L;
+    }
+
+    @Override
+    public boolean offer(final E element, final long timeout, final TimeUnit unit) throws InterruptedException {
+        checkArgument(element != null, "element must not be null");
+
+        if (tryOffer(element)) {
+            return true;
+        }
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int attempt = 0;
+        do {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            if (System.nanoTime() - deadline >= 0L) {
+                return false;
+            }
+
+            waitStrategy.idle(attempt++);
+        } while (!tryOffer(element));
+
+        return true;
+    }
+
+    private boolean tryOffer(final E element) {
+        final long position = tail;
+        final int index = (int) position & mask;
+
+        if (sequences.get(index) != position) {
+
+            // slot has not been consumed yet -> queue is full
+            return false;
+        }
+
+        slots.lazySet(index, element);
+        sequences.lazySet(index, position + 1L); // publishes the element to the consumers
+        tail = position + 1L;
+        return true;
+    }
+
+    @Override
+    public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        E element = tryPoll();
+        if (element != null) {
+            return element;
+        }
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int attempt = 0;
+        do {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            if (System.nanoTime() - deadline >= 0L) {
+                return null;
+            }
+
+            waitStrategy.idle(attempt++);
+            element = tryPoll();
+        } while (element == null);
+
+        return element;
+    }
+
+    private E tryPoll() {
+        long position;
+        int index;
+        long difference;
+
+        while (true) {
+            position = head.get();
+            index = (int) position & mask;
+            difference = sequences.get(index) - (position + 1L);
+
+            if (difference == 0L) {
+                if (head.compareAndSet(position, position + 1L)) {
+                    final E element = slots.get(index);
+                    slots.lazySet(index, null);
+                    sequences.lazySet(index, position + capacity); // hands the slot back to the producer
+                    return element;
+                }
+            } else if (difference < 0L) {
+
+                // slot has not been published yet -> queue is empty
+                return null;
+            }
+
+            // another consumer claimed the slot in the meantime -> retry with the new head
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        final long size = tail - head.get();
+        return (int) Math.max(0L, Math.min(size, capacity));
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("capacity", capacity).add("size", size())
+                      .add("waitStrategy", waitStrategy).toString();
+    }
+}
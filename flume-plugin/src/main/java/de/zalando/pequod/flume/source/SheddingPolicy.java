@@ -0,0 +1,41 @@
+package de.zalando.pequod.flume.source;
+
+/**
+ * Defines which records a {@link de.zalando.pequod.flume.source.LoadShedder} drops while the shared queue is above
+ * its high watermark (see config parameter
+ * {@link de.zalando.pequod.flume.source.SourceConstants#CONFIG_SHEDDING_POLICY}).
+ */
+enum SheddingPolicy {
+
+    /**
+     * never drops records: the reader waits for free space in the shared queue.
+     */
+    NONE("none"),
+
+    /**
+     * keeps 1 in N records.
+     */
+    SAMPLE("sample"),
+
+    /**
+     * drops records with a level lower than the configured min level. Records without level are kept.
+     */
+    LEVEL("level");
+
+    private final String configValue;
+
+    SheddingPolicy(final String configValue) {
+        this.configValue = configValue;
+    }
+
+    public static SheddingPolicy fromConfigValue(final String configValue) {
+        for (final SheddingPolicy policy : values()) {
+            if (policy.configValue.equals(configValue)) {
+                return policy;
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("unknown shedding policy [configKey=%s] -> '%s'",
+                SourceConstants.CONFIG_SHEDDING_POLICY, configValue));
+    }
+}
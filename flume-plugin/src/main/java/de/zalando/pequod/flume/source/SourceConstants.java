@@ -1,5 +1,7 @@
 package de.zalando.pequod.flume.source;
 
+import java.util.TimeZone;
+
 final class SourceConstants {
 
     // -- config keys
@@ -10,7 +12,29 @@ final class SourceConstants {
     public static final String CONFIG_BATCH_SIZE = "eventBatchSize";
 
     /**
-     * max time in ms which can pass till the current event batch has to flushed to the channel.
+     * set to true to adapt the event batch size between minEventBatchSize and maxEventBatchSize according to arrival
+     * rate and channel commit latency. eventBatchSize is used as initial batch size then.
+     */
+    public static final String CONFIG_ADAPTIVE_BATCH_SIZING = "adaptiveEventBatchSizing";
+
+    /**
+     * lower bound of the adaptive event batch size.
+     */
+    public static final String CONFIG_MIN_BATCH_SIZE = "minEventBatchSize";
+
+    /**
+     * upper bound of the adaptive event batch size. NOTE: must not exceed the transaction capacity of the channel.
+     */
+    public static final String CONFIG_MAX_BATCH_SIZE = "maxEventBatchSize";
+
+    /**
+     * time in ms which filling and committing an adaptive event batch should take.
+     */
+    public static final String CONFIG_TARGET_BATCH_LATENCY_IN_MS = "targetEventBatchLatencyInMs";
+
+    /**
+     * max time in ms which can pass till the current event batch has to flushed to the channel. The deadline is enforced
+     * even if no further records arrive.
      */
     public static final String CONFIG_MAX_EVENT_FLUSH_DELAY_IN_MS = "maxEventFlushDelayInMs";
 
@@ -19,11 +43,72 @@ final class SourceConstants {
      */
     public static final String CONFIG_FILE_RECORD_MAPPING = "fileRecordMapping";
 
+    /**
+     * file containing the GROK pattern, takes precedence over fileRecordMapping.
+     */
+    public static final String CONFIG_FILE_RECORD_MAPPING_FILE = "fileRecordMappingFile";
+
+    /**
+     * how records are mapped to fields: "grok" (fileRecordMapping), "logfmt" (key=value pairs), "json" (JSON objects)
+     * or "auto" (JSON objects by their first byte '{', other records by grok or, without mapping, as logfmt).
+     */
+    public static final String CONFIG_RECORD_FORMAT = "recordFormat";
+
+    /**
+     * comma separated fields which are extracted from logfmt and JSON records, all fields if empty.
+     */
+    public static final String CONFIG_RECORD_FIELDS = "recordFields";
+
+    /**
+     * set to true to watch the pattern directory and the mapping file and to reload the mapping on changes.
+     */
+    public static final String CONFIG_RELOAD_RECORD_MAPPING = "reloadRecordMapping";
+
     /**
      * file charset.
      */
     public static final String CONFIG_CHARSET = "charset";
 
+    /**
+     * pass the bytes of each line as read from the file on as event body instead of re-encoding the line with the
+     * configured charset. Only the mapped fields are decoded.
+     */
+    public static final String CONFIG_PRESERVE_LINE_BYTES = "preserveLineBytes";
+
+    /**
+     * where the mapped fields of a record are stored: "line" (line as body, fields as headers), "json" or "avro"
+     * (fields as body, only routing info as headers).
+     */
+    public static final String CONFIG_BODY_FORMAT = "bodyFormat";
+
+    /**
+     * comma separated mapped fields which are additionally kept as headers if the fields are encoded into the body,
+     * e.g. to route events with a multiplexing channel selector.
+     */
+    public static final String CONFIG_ROUTING_HEADER_FIELDS = "routingHeaderFields";
+
+    /**
+     * URL of the Avro schema of the body, passed on in header {@link #HEADER_AVRO_SCHEMA_URL} of each event.
+     */
+    public static final String CONFIG_BODY_SCHEMA_URL = "bodySchemaUrl";
+
+    /**
+     * mapped field holding the time of the record, e.g. "record_time". Its value is passed on as epoch millis in header
+     * {@link #HEADER_TIMESTAMP}.
+     */
+    public static final String CONFIG_TIMESTAMP_FIELD = "timestampField";
+
+    /**
+     * format of the timestamp field, named like the logstash pattern matching it: "FLUME_TIMESTAMP",
+     * "SYSLOGTIMESTAMP" or "HTTPDATE".
+     */
+    public static final String CONFIG_TIMESTAMP_FORMAT = "timestampFormat";
+
+    /**
+     * time zone of timestamps without offset, e.g. "Europe/Berlin".
+     */
+    public static final String CONFIG_TIMESTAMP_TIME_ZONE = "timestampTimeZone";
+
     /**
      * target file.
      */
@@ -44,13 +129,170 @@ final class SourceConstants {
      */
     public static final String CONFIG_NUMBER_OF_CONSUMERS = "numberOfConsumers";
 
+    /**
+     * set to true to grow and shrink the number of consumers between minNumberOfConsumers and maxNumberOfConsumers
+     * according to the shared queue fill level and the consumer busy time.
+     */
+    public static final String CONFIG_ELASTIC_CONSUMERS = "elasticConsumers";
+
+    /**
+     * number of consumers which are always running if elasticConsumers is true.
+     */
+    public static final String CONFIG_MIN_NUMBER_OF_CONSUMERS = "minNumberOfConsumers";
+
+    /**
+     * max number of consumers running at the same time if elasticConsumers is true.
+     */
+    public static final String CONFIG_MAX_NUMBER_OF_CONSUMERS = "maxNumberOfConsumers";
+
+    /**
+     * time in ms between two decisions whether to add or retire consumers.
+     */
+    public static final String CONFIG_CONSUMER_SCALING_INTERVAL_IN_MS = "consumerScalingIntervalInMs";
+
+    /**
+     * threads the log file reader and its consumers run on: "fixed" (platform thread pool per source), "virtual"
+     * (virtual threads, falls back to "fixed" if not available) or "shared" (one agent-wide executor).
+     */
+    public static final String CONFIG_EXECUTION_MODE = "executionMode";
+
     /**
      * capacity of the queue which is shared between the log file reader and its consumer.
      */
     public static final String CONFIG_QUEUE_CAPACITY = "sharedQueueCapacity";
 
     /**
-     * capacity of the queue which is shared between the log file reader and its consumer.
+     * implementation of the queue which is shared between the log file reader and its consumers: "ringBuffer"
+     * (lock-free, capacity is rounded up to the next power of two) or "blocking" (fair ArrayBlockingQueue).
+     */
+    public static final String CONFIG_QUEUE_TYPE = "sharedQueueType";
+
+    /**
+     * how the reader and the consumers wait on a full / empty ring buffer: "busySpin", "yield" or "park".
+     */
+    public static final String CONFIG_QUEUE_WAIT_STRATEGY = "sharedQueueWaitStrategy";
+
+    /**
+     * set to true to put events to the channel in file order, even if there is more than 1 consumer.
+     */
+    public static final String CONFIG_PRESERVE_RECORD_ORDER = "preserveRecordOrder";
+
+    /**
+     * max number of sequence numbers an event may be ahead of the oldest unreleased one while restoring file order.
+     */
+    public static final String CONFIG_REORDER_BUFFER_CAPACITY = "reorderBufferCapacity";
+
+    /**
+     * comma separated prefixes: records starting with one of them are passed on to the consumers.
+     */
+    public static final String CONFIG_FILTER_INCLUDE_PREFIXES = "filterIncludePrefixes";
+
+    /**
+     * comma separated literals: records containing one of them are passed on to the consumers.
+     */
+    public static final String CONFIG_FILTER_INCLUDE_LITERALS = "filterIncludeLiterals";
+
+    /**
+     * regular expression: matching records are passed on to the consumers.
+     */
+    public static final String CONFIG_FILTER_INCLUDE_PATTERN = "filterIncludePattern";
+
+    /**
+     * comma separated prefixes: records starting with one of them are dropped before mapping.
+     */
+    public static final String CONFIG_FILTER_EXCLUDE_PREFIXES = "filterExcludePrefixes";
+
+    /**
+     * comma separated literals: records containing one of them are dropped before mapping.
+     */
+    public static final String CONFIG_FILTER_EXCLUDE_LITERALS = "filterExcludeLiterals";
+
+    /**
+     * regular expression: matching records are dropped before mapping.
+     */
+    public static final String CONFIG_FILTER_EXCLUDE_PATTERN = "filterExcludePattern";
+
+    /**
+     * set to true to pass on only the first occurrence of repeated records within repeatWindowInMs, followed by a
+     * summary event carrying the number of suppressed repetitions in header "repeat_count".
+     */
+    public static final String CONFIG_SUPPRESS_REPEATS = "suppressRepeatedRecords";
+
+    /**
+     * time in ms after the first occurrence of a record in which repetitions are suppressed.
+     */
+    public static final String CONFIG_REPEAT_WINDOW_IN_MS = "repeatWindowInMs";
+
+    /**
+     * number of distinct records which are tracked for repetitions at the same time.
+     */
+    public static final String CONFIG_REPEAT_TABLE_SIZE = "repeatTableSize";
+
+    /**
+     * set to true to consider records which only differ in their digits (e.g. timestamps) as repetitions.
+     */
+    public static final String CONFIG_REPEAT_IGNORE_DIGITS = "repeatIgnoreDigits";
+
+    /**
+     * comma separated names of mapped fields (e.g. "logLevel,status"): if set, mapped records are counted per window
+     * and combination of the values of these fields and a summary event per combination is created at window close.
+     */
+    public static final String CONFIG_AGGREGATION_KEY_FIELDS = "aggregationKeyFields";
+
+    /**
+     * name of a mapped field with numeric values (e.g. response time) whose quantiles are part of the summary events.
+     */
+    public static final String CONFIG_AGGREGATION_VALUE_FIELD = "aggregationValueField";
+
+    /**
+     * comma separated quantiles of the value field which are part of the summary events.
+     */
+    public static final String CONFIG_AGGREGATION_QUANTILES = "aggregationQuantiles";
+
+    /**
+     * length of an aggregation window in ms.
+     */
+    public static final String CONFIG_AGGREGATION_WINDOW_IN_MS = "aggregationWindowInMs";
+
+    /**
+     * set to false to put only summary events, but no raw events to the channel.
+     */
+    public static final String CONFIG_AGGREGATION_FORWARD_RAW_EVENTS = "aggregationForwardRawEvents";
+
+    /**
+     * which records the reader drops while the shared queue is above its high watermark: "none" (wait for free space),
+     * "sample" (keep 1 in loadSheddingSampleRate records) or "level" (drop records below loadSheddingMinLevel).
+     */
+    public static final String CONFIG_SHEDDING_POLICY = "loadSheddingPolicy";
+
+    /**
+     * fill level of the shared queue in percent at which load shedding starts.
+     */
+    public static final String CONFIG_SHEDDING_HIGH_WATERMARK = "loadSheddingHighWatermark";
+
+    /**
+     * fill level of the shared queue in percent below which load shedding stops.
+     */
+    public static final String CONFIG_SHEDDING_LOW_WATERMARK = "loadSheddingLowWatermark";
+
+    /**
+     * keep 1 in N records while shedding with policy "sample".
+     */
+    public static final String CONFIG_SHEDDING_SAMPLE_RATE = "loadSheddingSampleRate";
+
+    /**
+     * lowest level which is kept while shedding with policy "level".
+     */
+    public static final String CONFIG_SHEDDING_MIN_LEVEL = "loadSheddingMinLevel";
+
+    /**
+     * regular expression: matching records are never shed.
+     */
+    public static final String CONFIG_SHEDDING_PRIORITY_PATTERN = "loadSheddingPriorityPattern";
+
+    /**
+     * max time to wait in ms for the reader to catch up with the end of file before it stops (after having received a
+     * kill signal).
      */
     public static final String CONFIG_LAST_READ_WAIT_TIME_FOR_KILL_IN_MS = "lastReadWaitTimeForKillInMs";
 
@@ -69,19 +311,79 @@ final class SourceConstants {
      */
     public static final String CONFIG_TAILER_REOPEN = "tailerReopen";
 
+    /**
+     * every n-th read record is traced from read until it is acked by the sink (0 to disable tracing).
+     */
+    public static final String CONFIG_TRACE_SAMPLING_INTERVAL = "traceSamplingInterval";
+
+    // -- config values
+
+    public static final String QUEUE_TYPE_RING_BUFFER = "ringBuffer";
+    public static final String QUEUE_TYPE_BLOCKING = "blocking";
+    public static final char FILTER_LIST_SEPARATOR = ',';
+
+    // -- event headers
+
+    /**
+     * header of repeat summary events: number of suppressed repetitions of the event body.
+     */
+    public static final String HEADER_REPEAT_COUNT = "repeat_count";
+
+    /**
+     * header of events with Avro body: URL of the schema, as expected by the Avro event serializers of Flume.
+     */
+    public static final String HEADER_AVRO_SCHEMA_URL = "flume.avro.schema.url";
+
+    /**
+     * header of events with a parsed timestamp field: epoch millis, as set by the timestamp interceptor of Flume.
+     */
+    public static final String HEADER_TIMESTAMP = "timestamp";
+
     // -- default values
 
     public static final String DEFAULT_CHARSET = "UTF-8";
+    public static final boolean DEFAULT_PRESERVE_LINE_BYTES = false;
+    public static final String DEFAULT_BODY_FORMAT = "line";
+    public static final String DEFAULT_RECORD_FORMAT = "grok";
+    public static final String DEFAULT_TIMESTAMP_FORMAT = "FLUME_TIMESTAMP";
+    public static final String DEFAULT_TIMESTAMP_TIME_ZONE = TimeZone.getDefault().getID();
     public static final int DEFAULT_BATCH_SIZE = 10;
     public static final long DEFAULT_FLUSH_DELAY_IN_MS = 1000L;
+    public static final boolean DEFAULT_ADAPTIVE_BATCH_SIZING = false;
+    public static final int DEFAULT_MIN_BATCH_SIZE = 1;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final long DEFAULT_TARGET_BATCH_LATENCY_IN_MS = 100L;
     public static final int DEFAULT_INPUT_BUFFER_SIZE = 1024;
     public static final String DEFAULT_PATTERN_DIRECTORY = "./conf/logstash_patterns";
     public static final int DEFAULT_NUMBER_OF_CONSUMERS = 2;
+    public static final String DEFAULT_EXECUTION_MODE = "fixed";
+    public static final boolean DEFAULT_ELASTIC_CONSUMERS = false;
+    public static final int DEFAULT_MIN_NUMBER_OF_CONSUMERS = 1;
+    public static final int DEFAULT_MAX_NUMBER_OF_CONSUMERS = Runtime.getRuntime().availableProcessors();
+    public static final long DEFAULT_CONSUMER_SCALING_INTERVAL_IN_MS = 1000L;
     public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    public static final String DEFAULT_QUEUE_TYPE = QUEUE_TYPE_RING_BUFFER;
+    public static final String DEFAULT_QUEUE_WAIT_STRATEGY = "park";
     public static final long DEFAULT_TAILER_DELAY_MS = 500L;
     public static final boolean DEFAULT_TAILER_START_FROM_END = true;
     public static final boolean DEFAULT_TAILER_REOPEN = true;
     public static final long DEFAULT_LAST_READ_WAIT_TIME_FOR_KILL_IN_MS = 10000L;
+    public static final boolean DEFAULT_PRESERVE_RECORD_ORDER = false;
+    public static final boolean DEFAULT_RELOAD_RECORD_MAPPING = false;
+    public static final int DEFAULT_REORDER_BUFFER_CAPACITY = 10000;
+    public static final boolean DEFAULT_SUPPRESS_REPEATS = false;
+    public static final long DEFAULT_REPEAT_WINDOW_IN_MS = 10000L;
+    public static final int DEFAULT_REPEAT_TABLE_SIZE = 1024;
+    public static final boolean DEFAULT_REPEAT_IGNORE_DIGITS = true;
+    public static final String DEFAULT_AGGREGATION_QUANTILES = "0.5,0.9,0.99";
+    public static final long DEFAULT_AGGREGATION_WINDOW_IN_MS = 60000L;
+    public static final boolean DEFAULT_AGGREGATION_FORWARD_RAW_EVENTS = true;
+    public static final String DEFAULT_SHEDDING_POLICY = "none";
+    public static final int DEFAULT_SHEDDING_HIGH_WATERMARK = 80;
+    public static final int DEFAULT_SHEDDING_LOW_WATERMARK = 50;
+    public static final int DEFAULT_SHEDDING_SAMPLE_RATE = 10;
+    public static final String DEFAULT_SHEDDING_MIN_LEVEL = "WARN";
+    public static final int DEFAULT_TRACE_SAMPLING_INTERVAL = 0;
 
     private SourceConstants() { }
 }
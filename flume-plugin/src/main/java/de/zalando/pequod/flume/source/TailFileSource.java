@@ -6,38 +6,64 @@ import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 import com.google.common.base.Objects;
+import org.apache.flume.ChannelException;
 import org.apache.flume.Context;
+import org.apache.flume.Event;
 import org.apache.flume.FlumeException;
 import org.apache.flume.source.AbstractEventDrivenSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
+import de.zalando.pequod.flume.aggregation.WindowAggregator;
+import de.zalando.pequod.flume.batch.AdaptiveBatchSizer;
+
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Strings.isNullOrEmpty;
 import static de.zalando.pequod.flume.source.SourceConstants.*;
 import static java.nio.file.Files.exists;
 import static java.nio.file.Files.isDirectory;
 
 /**
  * Flume source which reads a configured target file according to tail semantics and maps all
- * read records according to a configured GROK pattern.
+ * read records according to the configured record format, e.g. a GROK pattern.
  */
 public final class TailFileSource extends AbstractEventDrivenSource {
 
+    private RecordQueue<Record> sharedQueue;
     private LogFileReader logFileReader;
     private final List<RecordConsumer> consumers;
+    private ReorderBuffer reorderBuffer;
+    private AdaptiveBatchSizer batchSizer;
+    private WindowAggregator aggregator;
+    private ReloadableRecordMapper recordMapper;
+    private boolean reloadRecordMapping;
+    private int maxEventBatchSize;
+    private TailFileSourceCounter counter;
+    private Supplier<RecordConsumer> consumerFactory;
+    private ElasticConsumerPool consumerPool;
     private int numberOfConsumers;
+    private int maxNumberOfConsumers;
+    private boolean isElastic;
+    private long consumerScalingIntervalInMs;
     private boolean isConfigured;
     
+    private ExecutionMode executionMode;
     private ExecutorService executor;
+    private final List<Future<?>> tasks;
 
     private static final int NUMBER_OF_READERS = 1;
+    private static final int NUMBER_OF_SCALERS = 1;
+    private static final int NUMBER_OF_MAPPING_WATCHERS = 1;
     
     
     private static final long AWAIT_TERMINATION_WAIT_TIME = 500L;
@@ -45,6 +71,7 @@ public final class TailFileSource extends AbstractEventDrivenSource {
 
     public TailFileSource() {
         consumers = Lists.newArrayList();
+        tasks = Lists.newArrayList();
         isConfigured = false;
     }
 
@@ -54,10 +81,12 @@ public final class TailFileSource extends AbstractEventDrivenSource {
         try {
             LOGGER.info("configuring source...");
 
-            final int queueCapacity = context.getInteger(CONFIG_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY);
-            checkArgument(queueCapacity > 0, "queue capacity [configKey=%s] must not be lower than 1", CONFIG_QUEUE_CAPACITY);
-            
-            final ArrayBlockingQueue<String> sharedQueue = new ArrayBlockingQueue<>(queueCapacity, true);
+            counter = new TailFileSourceCounter(getName());
+            executionMode = ExecutionMode.fromConfigValue(context.getString(CONFIG_EXECUTION_MODE,
+                    DEFAULT_EXECUTION_MODE));
+
+            sharedQueue = createSharedQueue(context);
+            counter.setSharedQueue(sharedQueue);
             configureReader(context, sharedQueue);
             configureConsumers(context,sharedQueue);
             isConfigured = true;
@@ -71,42 +100,256 @@ public final class TailFileSource extends AbstractEventDrivenSource {
         }
     }
 
-    private void configureReader(final Context context, final BlockingQueue<String> sharedQueue)  {
-        logFileReader = new LogFileReader(sharedQueue);
+    private RecordQueue<Record> createSharedQueue(final Context context) {
+        final int queueCapacity = context.getInteger(CONFIG_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY);
+        checkArgument(queueCapacity > 0, "queue capacity [configKey=%s] must not be lower than 1", CONFIG_QUEUE_CAPACITY);
+
+        final String queueType = context.getString(CONFIG_QUEUE_TYPE, DEFAULT_QUEUE_TYPE);
+        if (QUEUE_TYPE_BLOCKING.equals(queueType)) {
+            return new BlockingRecordQueue<>(queueCapacity);
+        }
+
+        checkArgument(QUEUE_TYPE_RING_BUFFER.equals(queueType), "unknown queue type [configKey=%s] -> '%s'",
+                CONFIG_QUEUE_TYPE, queueType);
+
+        final WaitStrategy waitStrategy = WaitStrategy.fromConfigValue(context.getString(CONFIG_QUEUE_WAIT_STRATEGY,
+                DEFAULT_QUEUE_WAIT_STRATEGY));
+        return new RingBufferRecordQueue<>(queueCapacity, waitStrategy);
+    }
+
+    private void configureReader(final Context context, final RecordQueue<Record> sharedQueue)  {
+        logFileReader = new LogFileReader(sharedQueue, RecordFilter.create(context), createRepeatSuppressor(context),
+                createLoadShedder(context, sharedQueue), counter);
+        counter.setLogFileReader(logFileReader);
         logFileReader.configure(context);
     }
     
-    private void configureConsumers(final Context context, final BlockingQueue<String> sharedQueue) throws IOException {
+    private RepeatSuppressor createRepeatSuppressor(final Context context) {
+        if (!context.getBoolean(CONFIG_SUPPRESS_REPEATS, DEFAULT_SUPPRESS_REPEATS)) {
+            return null;
+        }
+
+        final long windowInMs = context.getLong(CONFIG_REPEAT_WINDOW_IN_MS, DEFAULT_REPEAT_WINDOW_IN_MS);
+        checkArgument(windowInMs > 0L, "repeat window [configKey=%s] must not be lower than 1. Got %s",
+            CONFIG_REPEAT_WINDOW_IN_MS, windowInMs);
+
+        final int tableSize = context.getInteger(CONFIG_REPEAT_TABLE_SIZE, DEFAULT_REPEAT_TABLE_SIZE);
+        checkArgument(tableSize > 0, "repeat table size [configKey=%s] must not be lower than 1. Got %s",
+            CONFIG_REPEAT_TABLE_SIZE, tableSize);
+
+        return new RepeatSuppressor(tableSize, windowInMs,
+                context.getBoolean(CONFIG_REPEAT_IGNORE_DIGITS, DEFAULT_REPEAT_IGNORE_DIGITS));
+    }
+
+    private LoadShedder createLoadShedder(final Context context, final RecordQueue<Record> sharedQueue) {
+        final SheddingPolicy policy = SheddingPolicy.fromConfigValue(context.getString(CONFIG_SHEDDING_POLICY,
+                DEFAULT_SHEDDING_POLICY));
+        if (policy == SheddingPolicy.NONE) {
+            return null;
+        }
+
+        final int highWatermark = context.getInteger(CONFIG_SHEDDING_HIGH_WATERMARK, DEFAULT_SHEDDING_HIGH_WATERMARK);
+        checkArgument(highWatermark > 0 && highWatermark <= 100,
+            "high watermark [configKey=%s] must be between 1 and 100 percent. Got %s", CONFIG_SHEDDING_HIGH_WATERMARK,
+            highWatermark);
+
+        final int lowWatermark = context.getInteger(CONFIG_SHEDDING_LOW_WATERMARK, DEFAULT_SHEDDING_LOW_WATERMARK);
+        checkArgument(lowWatermark >= 0 && lowWatermark <= highWatermark,
+            "low watermark [configKey=%s] must be between 0 and the high watermark %s. Got %s",
+            CONFIG_SHEDDING_LOW_WATERMARK, highWatermark, lowWatermark);
+
+        final int sampleRate = context.getInteger(CONFIG_SHEDDING_SAMPLE_RATE, DEFAULT_SHEDDING_SAMPLE_RATE);
+        checkArgument(sampleRate > 0, "sample rate [configKey=%s] must not be lower than 1. Got %s",
+            CONFIG_SHEDDING_SAMPLE_RATE, sampleRate);
+
+        final String minLevelName = context.getString(CONFIG_SHEDDING_MIN_LEVEL, DEFAULT_SHEDDING_MIN_LEVEL);
+        final LogLevel minLevel = LogLevel.fromName(minLevelName);
+        checkArgument(minLevel != null, "unknown level [configKey=%s] -> '%s'", CONFIG_SHEDDING_MIN_LEVEL,
+            minLevelName);
+
+        final String priorityPattern = context.getString(CONFIG_SHEDDING_PRIORITY_PATTERN);
+
+        final long capacity = sharedQueue.capacity();
+        return new LoadShedder(policy, (int) Math.max(1L, capacity * highWatermark / 100),
+                (int) (capacity * lowWatermark / 100), sampleRate, minLevel,
+                isNullOrEmpty(priorityPattern) ? null : Pattern.compile(priorityPattern), counter);
+    }
+
+    private void configureConsumers(final Context context, final RecordQueue<Record> sharedQueue) throws IOException {
+
+        final RecordFormat recordFormat = RecordFormat.fromConfigValue(context.getString(CONFIG_RECORD_FORMAT,
+                    DEFAULT_RECORD_FORMAT));
+        final List<String> recordFields = Lists.newArrayList(Splitter.on(',').trimResults().omitEmptyStrings().split(
+                    context.getString(CONFIG_RECORD_FIELDS, "")));
 
         final String patternDirectory = context.getString(CONFIG_PATTERN_DIRECTORY, DEFAULT_PATTERN_DIRECTORY);
-        final Path patternDirectoryPath = FileSystems.getDefault().getPath(patternDirectory);
-        checkArgument(exists(patternDirectoryPath), "[patternDirectory=%s] does not exist", patternDirectory);
-        checkArgument(isDirectory(patternDirectoryPath), "[patternDirectory=%s] is not a directory", patternDirectory);
 
-        numberOfConsumers = context.getInteger(CONFIG_NUMBER_OF_CONSUMERS, DEFAULT_NUMBER_OF_CONSUMERS);
-        checkArgument(numberOfConsumers > 0, "there has to be at least 1 consumer! configured: [numberOfConsumers=%s]",
-                numberOfConsumers);
+        // NOTE: the pattern directory may be given as file URL or as plain path
+        final Path patternDirectoryPath = ReloadableRecordMapper.toPath(patternDirectory);
 
-        for (int i = 0; i < numberOfConsumers; i++) {
-            final RecordConsumer recordConsumer = new RecordConsumer(sharedQueue);
+        final String fileRecordMappingFile = context.getString(CONFIG_FILE_RECORD_MAPPING_FILE);
+        Path fileRecordMappingPath = null;
+        if (!isNullOrEmpty(fileRecordMappingFile)) {
+            fileRecordMappingPath = FileSystems.getDefault().getPath(fileRecordMappingFile);
+            checkArgument(exists(fileRecordMappingPath), "[fileRecordMappingFile=%s] does not exist",
+                fileRecordMappingFile);
+        }
+
+        final String fileRecordMapping = context.getString(CONFIG_FILE_RECORD_MAPPING);
+        if (ReloadableRecordMapper.isUsingGrok(recordFormat, fileRecordMapping, fileRecordMappingPath)) {
+            checkArgument(exists(patternDirectoryPath), "[patternDirectory=%s] does not exist", patternDirectory);
+            checkArgument(isDirectory(patternDirectoryPath), "[patternDirectory=%s] is not a directory",
+                patternDirectory);
+        }
+
+        recordMapper = new ReloadableRecordMapper(recordFormat, recordFields, patternDirectory, fileRecordMapping,
+                fileRecordMappingPath, counter);
+        reloadRecordMapping = context.getBoolean(CONFIG_RELOAD_RECORD_MAPPING, DEFAULT_RELOAD_RECORD_MAPPING)
+                && recordMapper.isUsingGrok();
+
+        final BodyFormat bodyFormat = BodyFormat.fromConfigValue(context.getString(CONFIG_BODY_FORMAT,
+                    DEFAULT_BODY_FORMAT));
+        checkArgument(!bodyFormat.isStructured() || !recordMapper.get().getFieldNames().isEmpty(),
+            "body format [configKey=%s] '%s' requires the mapped fields to be known in advance, i.e. record format "
+                + "'grok' or record fields [configKey=%s]", CONFIG_BODY_FORMAT, bodyFormat, CONFIG_RECORD_FIELDS);
+        checkArgument(bodyFormat != BodyFormat.AVRO || !reloadRecordMapping,
+            "body format [configKey=%s] '%s' requires a fixed schema, i.e. [configKey=%s] has to be false",
+            CONFIG_BODY_FORMAT, bodyFormat, CONFIG_RELOAD_RECORD_MAPPING);
+        if (bodyFormat == BodyFormat.AVRO) {
+            LOGGER.info("event bodies are encoded as Avro records with [schema={}]",
+                new RecordBodyEncoder(bodyFormat, recordMapper.get().getFieldNames()).getSchema());
+        }
+
+        isElastic = context.getBoolean(CONFIG_ELASTIC_CONSUMERS, DEFAULT_ELASTIC_CONSUMERS);
+        if (isElastic) {
+            numberOfConsumers = context.getInteger(CONFIG_MIN_NUMBER_OF_CONSUMERS, DEFAULT_MIN_NUMBER_OF_CONSUMERS);
+            checkArgument(numberOfConsumers > 0,
+                "there has to be at least 1 consumer! configured: [minNumberOfConsumers=%s]", numberOfConsumers);
+
+            maxNumberOfConsumers = context.getInteger(CONFIG_MAX_NUMBER_OF_CONSUMERS, DEFAULT_MAX_NUMBER_OF_CONSUMERS);
+            checkArgument(maxNumberOfConsumers >= numberOfConsumers,
+                "max number of consumers [configKey=%s] must not be lower than min number of consumers %s. Got %s",
+                CONFIG_MAX_NUMBER_OF_CONSUMERS, numberOfConsumers, maxNumberOfConsumers);
+
+            consumerScalingIntervalInMs = context.getLong(CONFIG_CONSUMER_SCALING_INTERVAL_IN_MS,
+                    DEFAULT_CONSUMER_SCALING_INTERVAL_IN_MS);
+            checkArgument(consumerScalingIntervalInMs > 0L,
+                "consumer scaling interval [configKey=%s] must not be lower than 1. Got %s",
+                CONFIG_CONSUMER_SCALING_INTERVAL_IN_MS, consumerScalingIntervalInMs);
+        } else {
+            numberOfConsumers = context.getInteger(CONFIG_NUMBER_OF_CONSUMERS, DEFAULT_NUMBER_OF_CONSUMERS);
+            checkArgument(numberOfConsumers > 0,
+                "there has to be at least 1 consumer! configured: [numberOfConsumers=%s]", numberOfConsumers);
+            maxNumberOfConsumers = numberOfConsumers;
+        }
+
+        if (context.getBoolean(CONFIG_ADAPTIVE_BATCH_SIZING, DEFAULT_ADAPTIVE_BATCH_SIZING)) {
+            batchSizer = new AdaptiveBatchSizer(context.getInteger(CONFIG_MIN_BATCH_SIZE, DEFAULT_MIN_BATCH_SIZE),
+                    context.getInteger(CONFIG_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE),
+                    context.getInteger(CONFIG_BATCH_SIZE, DEFAULT_BATCH_SIZE),
+                    context.getLong(CONFIG_TARGET_BATCH_LATENCY_IN_MS, DEFAULT_TARGET_BATCH_LATENCY_IN_MS));
+        }
+
+        maxEventBatchSize = batchSizer == null ? context.getInteger(CONFIG_BATCH_SIZE, DEFAULT_BATCH_SIZE)
+                                               : batchSizer.getMaxBatchSize();
+        aggregator = createAggregator(context);
+
+        final boolean preserveRecordOrder = context.getBoolean(CONFIG_PRESERVE_RECORD_ORDER,
+                DEFAULT_PRESERVE_RECORD_ORDER);
+        checkArgument(!preserveRecordOrder || aggregator == null || aggregator.isForwardingRawEvents(),
+            "record order [configKey=%s] can only be preserved if raw events are forwarded [configKey=%s]",
+            CONFIG_PRESERVE_RECORD_ORDER, CONFIG_AGGREGATION_FORWARD_RAW_EVENTS);
+        if (preserveRecordOrder) {
+            final int reorderBufferCapacity = context.getInteger(CONFIG_REORDER_BUFFER_CAPACITY,
+                    DEFAULT_REORDER_BUFFER_CAPACITY);
+            checkArgument(reorderBufferCapacity > 0,
+                "reorder buffer capacity [configKey=%s] must not be lower than 1. Got %s",
+                CONFIG_REORDER_BUFFER_CAPACITY, reorderBufferCapacity);
+
+            reorderBuffer = new ReorderBuffer(reorderBufferCapacity, maxEventBatchSize, counter);
+        }
+
+        consumerFactory = () -> {
+            final RecordConsumer recordConsumer = new RecordConsumer(sharedQueue, counter, reorderBuffer,
+                    batchSizer, aggregator, recordMapper);
             recordConsumer.configure(context);
-            consumers.add(recordConsumer);
+            return recordConsumer;
+        };
+
+        for (int i = 0; i < numberOfConsumers; i++) {
+            consumers.add(consumerFactory.get());
         }
     }
     
+    private WindowAggregator createAggregator(final Context context) {
+        final String keyFields = context.getString(CONFIG_AGGREGATION_KEY_FIELDS);
+        if (isNullOrEmpty(keyFields)) {
+            return null;
+        }
+
+        final Splitter listSplitter = Splitter.on(',').trimResults().omitEmptyStrings();
+        final List<String> quantileStrings = Lists.newArrayList(listSplitter.split(
+                    context.getString(CONFIG_AGGREGATION_QUANTILES, DEFAULT_AGGREGATION_QUANTILES)));
+        final double[] quantiles = new double[quantileStrings.size()];
+        for (int i = 0; i < quantiles.length; i++) {
+            try {
+                quantiles[i] = Double.parseDouble(quantileStrings.get(i));
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("illegal quantile [configKey=%s] -> '%s'",
+                        CONFIG_AGGREGATION_QUANTILES, quantileStrings.get(i)), e);
+            }
+
+            checkArgument(quantiles[i] >= 0.0 && quantiles[i] <= 1.0,
+                "quantiles [configKey=%s] must be between 0 and 1. Got %s", CONFIG_AGGREGATION_QUANTILES,
+                quantiles[i]);
+        }
+
+        final long windowInMs = context.getLong(CONFIG_AGGREGATION_WINDOW_IN_MS, DEFAULT_AGGREGATION_WINDOW_IN_MS);
+        checkArgument(windowInMs > 0L, "aggregation window [configKey=%s] must not be lower than 1. Got %s",
+            CONFIG_AGGREGATION_WINDOW_IN_MS, windowInMs);
+
+        return new WindowAggregator(Lists.newArrayList(listSplitter.split(keyFields)),
+                context.getString(CONFIG_AGGREGATION_VALUE_FIELD), quantiles, windowInMs,
+                context.getBoolean(CONFIG_AGGREGATION_FORWARD_RAW_EVENTS, DEFAULT_AGGREGATION_FORWARD_RAW_EVENTS));
+    }
+
     @Override
     protected void doStart() throws FlumeException {
         LOGGER.info("starting source...");
         checkState(isConfigured, "source has not been configured");
 
-        executor = Executors.newFixedThreadPool(numberOfConsumers + NUMBER_OF_READERS);
+        counter.start();
+
+        if (reorderBuffer != null) {
+            reorderBuffer.setChannelProcessor(getChannelProcessor());
+        }
+
+        executor = executionMode.newExecutor(maxNumberOfConsumers + NUMBER_OF_READERS
+                + (isElastic ? NUMBER_OF_SCALERS : 0) + (reloadRecordMapping ? NUMBER_OF_MAPPING_WATCHERS : 0));
 
         for (RecordConsumer recordConsumer : consumers) {
             recordConsumer.setChannelProcessor(getChannelProcessor());
-            executor.submit(recordConsumer);
         }
 
-        executor.submit(logFileReader);
+        if (isElastic) {
+            consumerPool = new ElasticConsumerPool(sharedQueue, consumers, () -> {
+                        final RecordConsumer recordConsumer = consumerFactory.get();
+                        recordConsumer.setChannelProcessor(getChannelProcessor());
+                        return recordConsumer;
+                    }, maxNumberOfConsumers, consumerScalingIntervalInMs, counter);
+            consumerPool.start(executor);
+            tasks.add(executor.submit(consumerPool));
+        } else {
+            for (RecordConsumer recordConsumer : consumers) {
+                tasks.add(executor.submit(recordConsumer));
+            }
+        }
+
+        tasks.add(executor.submit(logFileReader));
+
+        if (reloadRecordMapping) {
+            tasks.add(executor.submit(recordMapper));
+        }
 
         LOGGER.info("source has been started");
     }
@@ -117,20 +360,60 @@ public final class TailFileSource extends AbstractEventDrivenSource {
         LOGGER.info("stopping source...");
       
         logFileReader.kill();
-        consumers.stream().forEach(RecordConsumer::kill);
+        recordMapper.kill();
+        if (consumerPool == null) {
+            consumers.stream().forEach(RecordConsumer::kill);
+        } else {
 
-        executor.shutdown();
-        
-        while (!executor.isTerminated()) {
+            // stops scaling and all consumers of the pool
+            consumerPool.kill();
+        }
+
+        // a shared executor keeps running for other sources, so only the tasks of this source are awaited
+        for (final Future<?> task : tasks) {
+            awaitCompletion(task);
+        }
+
+        tasks.clear();
+
+        if (aggregator != null) {
+            flushAggregates();
+        }
+
+        if (!executionMode.isShared()) {
+            executor.shutdown();
+        }
+
+        counter.stop();
+
+        LOGGER.info("source has been stopped");
+    }
+
+    private void flushAggregates() {
+        final List<Event> summaryEvents = aggregator.closeAll();
+        for (final List<Event> summaryBatch : Lists.partition(summaryEvents, maxEventBatchSize)) {
+            try {
+                getChannelProcessor().processEventBatch(summaryBatch);
+            } catch (final ChannelException e) {
+                LOGGER.warn("could not put [numberOfSummaryEvents={}] to channel -> summaries are lost",
+                    summaryBatch.size(), e);
+            }
+        }
+    }
+
+    private void awaitCompletion(final Future<?> task) {
+        while (!task.isDone()) {
             LOGGER.debug("waiting for source to stop...");
             try {
-                executor.awaitTermination(AWAIT_TERMINATION_WAIT_TIME, TimeUnit.MILLISECONDS);
+                task.get(AWAIT_TERMINATION_WAIT_TIME, TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException e) {
+                // check again
+            } catch (final ExecutionException e) {
+                LOGGER.warn("source task terminated abnormally", e.getCause());
             } catch (final InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
-
-        LOGGER.info("source has been stopped");
     }
 
     @Override
@@ -138,8 +421,16 @@ public final class TailFileSource extends AbstractEventDrivenSource {
         return Objects.toStringHelper(this)
                 .add("logFileReader", logFileReader)
                 .add("consumers", consumers)
+                .add("reorderBuffer", reorderBuffer)
+                .add("batchSizer", batchSizer)
+                .add("aggregator", aggregator)
+                .add("recordMapper", recordMapper)
+                .add("reloadRecordMapping", reloadRecordMapping)
+                .add("consumerPool", consumerPool)
                 .add("numberOfConsumers", numberOfConsumers)
+                .add("maxNumberOfConsumers", maxNumberOfConsumers)
                 .add("isConfigured", isConfigured)
+                .add("executionMode", executionMode)
                 .add("executor", executor)
                 .toString();
     }
@@ -0,0 +1,392 @@
+package de.zalando.pequod.flume.source;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.flume.instrumentation.MonitoredCounterGroup;
+import org.apache.flume.instrumentation.SourceCounter;
+
+import de.zalando.pequod.flume.instrumentation.LatencyHistogram;
+
+/**
+ * Pipeline metrics of a {@link de.zalando.pequod.flume.source.TailFileSource}, registered via JMX as
+ * "org.apache.flume.other:type=[source name]". The usual source metrics (records received, events accepted by the
+ * channel, flushed batches) are kept by a Flume {@link org.apache.flume.instrumentation.SourceCounter}, registered as
+ * "org.apache.flume.source:type=[source name]" and started and stopped together with this counter.
+ */
+public final class TailFileSourceCounter extends MonitoredCounterGroup implements TailFileSourceCounterMBean {
+
+    private static final String COUNTER_REORDER_BUFFER_SIZE = "tail.reorder.buffer.size";
+    private static final String COUNTER_REORDER_BUFFER_MAX_SIZE = "tail.reorder.buffer.max.size";
+    private static final String COUNTER_REORDER_RELEASED = "tail.reorder.released";
+    private static final String COUNTER_REORDER_WAIT = "tail.reorder.wait";
+    private static final String COUNTER_EVENT_BATCH_SIZE = "tail.event.batch.size";
+    private static final String COUNTER_CONSUMERS = "tail.consumers";
+    private static final String COUNTER_FILTER_REJECTED = "tail.filter.rejected";
+    private static final String COUNTER_REPEAT_SUPPRESSED = "tail.repeat.suppressed";
+    private static final String COUNTER_MAPPING_RELOADS = "tail.mapping.reloads";
+    private static final String COUNTER_MAPPING_RELOAD_FAILURES = "tail.mapping.reload.failures";
+    private static final String COUNTER_TIMESTAMP_FAILURES = "tail.timestamp.failures";
+    private static final String COUNTER_SHED_ACTIVE = "tail.shed.active";
+    private static final String COUNTER_SHED_SAMPLED = "tail.shed.sampled";
+    private static final String COUNTER_SHED_LEVEL = "tail.shed.level";
+    private static final String COUNTER_SHED_PRIORITY_KEPT = "tail.shed.priority.kept";
+    private static final String COUNTER_MAPPING_HITS = "tail.mapping.hits";
+    private static final String COUNTER_MAPPING_MISSES = "tail.mapping.misses";
+    private static final String COUNTER_CONSUMER_BUSY_TIME = "tail.consumer.busy.time";
+
+    private static final String[] ATTRIBUTES = {
+        COUNTER_REORDER_BUFFER_SIZE, COUNTER_REORDER_BUFFER_MAX_SIZE, COUNTER_REORDER_RELEASED, COUNTER_REORDER_WAIT,
+        COUNTER_EVENT_BATCH_SIZE, COUNTER_SHED_ACTIVE, COUNTER_SHED_SAMPLED, COUNTER_SHED_LEVEL,
+        COUNTER_SHED_PRIORITY_KEPT, COUNTER_CONSUMERS,
+        COUNTER_FILTER_REJECTED, COUNTER_REPEAT_SUPPRESSED, COUNTER_MAPPING_RELOADS, COUNTER_MAPPING_RELOAD_FAILURES,
+        COUNTER_MAPPING_HITS, COUNTER_MAPPING_MISSES, COUNTER_CONSUMER_BUSY_TIME, COUNTER_TIMESTAMP_FAILURES
+    };
+
+    private final SourceCounter sourceCounter;
+
+    /**
+     * time from read until a traced record is taken from the shared queue by a consumer.
+     */
+    private final LatencyHistogram traceDequeueLatency;
+
+    /**
+     * time from read until a traced event has been put to the channel.
+     */
+    private final LatencyHistogram traceChannelPutLatency;
+
+    /**
+     * time spent by the configured record mapper on a single record.
+     */
+    private final LatencyHistogram mappingLatency;
+
+    /**
+     * consumers which are currently running, so that their busy time can be reported individually.
+     */
+    private final List<RecordConsumer> consumers;
+
+    private volatile RecordQueue<?> sharedQueue;
+    private volatile LogFileReader logFileReader;
+
+    private static final double MEDIAN = 50.0;
+    private static final double PERCENTILE_99 = 99.0;
+
+    public TailFileSourceCounter(final String name) {
+        super(Type.OTHER, name, ATTRIBUTES);
+
+        sourceCounter = new SourceCounter(name);
+        traceDequeueLatency = new LatencyHistogram();
+        traceChannelPutLatency = new LatencyHistogram();
+        mappingLatency = new LatencyHistogram();
+        consumers = new CopyOnWriteArrayList<>();
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        sourceCounter.start();
+    }
+
+    @Override
+    public void stop() {
+        sourceCounter.stop();
+        super.stop();
+    }
+
+    public SourceCounter getSourceCounter() {
+        return sourceCounter;
+    }
+
+    public LatencyHistogram getMappingLatency() {
+        return mappingLatency;
+    }
+
+    void setSharedQueue(final RecordQueue<?> sharedQueue) {
+        this.sharedQueue = sharedQueue;
+    }
+
+    void setLogFileReader(final LogFileReader logFileReader) {
+        this.logFileReader = logFileReader;
+    }
+
+    void addConsumer(final RecordConsumer consumer) {
+        consumers.add(consumer);
+    }
+
+    void removeConsumer(final RecordConsumer consumer) {
+        consumers.remove(consumer);
+    }
+
+    /**
+     * Counts a flushed event batch and its mapping results.
+     *
+     * @param  numberOfEvents   number of events in the batch
+     * @param  mappingHits      number of records matched by the GROK pattern since the last flush
+     * @param  mappingMisses    number of records not matched by the GROK pattern since the last flush
+     * @param  busyTimeInNs     time the consumer has been busy since the last flush
+     */
+    public void onBatchFlushed(final int numberOfEvents, final long mappingHits, final long mappingMisses,
+            final long busyTimeInNs) {
+        if (numberOfEvents > 0) {
+            sourceCounter.incrementAppendBatchReceivedCount();
+            sourceCounter.addToEventReceivedCount(numberOfEvents);
+        }
+
+        addAndGet(COUNTER_MAPPING_HITS, mappingHits);
+        addAndGet(COUNTER_MAPPING_MISSES, mappingMisses);
+        addAndGet(COUNTER_CONSUMER_BUSY_TIME, busyTimeInNs);
+    }
+
+    /**
+     * Counts a batch of events which has been put to the channel.
+     */
+    public void onBatchAccepted(final int numberOfEvents) {
+        if (numberOfEvents > 0) {
+            sourceCounter.incrementAppendBatchAcceptedCount();
+            sourceCounter.addToEventAcceptedCount(numberOfEvents);
+        }
+    }
+
+    public LatencyHistogram getTraceDequeueLatency() {
+        return traceDequeueLatency;
+    }
+
+    public LatencyHistogram getTraceChannelPutLatency() {
+        return traceChannelPutLatency;
+    }
+
+    @Override
+    public long getReorderBufferSize() {
+        return get(COUNTER_REORDER_BUFFER_SIZE);
+    }
+
+    public void setReorderBufferSize(final long size) {
+        set(COUNTER_REORDER_BUFFER_SIZE, size);
+        if (size > get(COUNTER_REORDER_BUFFER_MAX_SIZE)) {
+            set(COUNTER_REORDER_BUFFER_MAX_SIZE, size);
+        }
+    }
+
+    @Override
+    public long getReorderBufferMaxSize() {
+        return get(COUNTER_REORDER_BUFFER_MAX_SIZE);
+    }
+
+    @Override
+    public long getReorderReleasedCount() {
+        return get(COUNTER_REORDER_RELEASED);
+    }
+
+    public long addToReorderReleasedCount(final long delta) {
+        return addAndGet(COUNTER_REORDER_RELEASED, delta);
+    }
+
+    @Override
+    public long getReorderWaitCount() {
+        return get(COUNTER_REORDER_WAIT);
+    }
+
+    public long incrementReorderWaitCount() {
+        return increment(COUNTER_REORDER_WAIT);
+    }
+
+    @Override
+    public long getEventBatchSize() {
+        return get(COUNTER_EVENT_BATCH_SIZE);
+    }
+
+    public void setEventBatchSize(final long eventBatchSize) {
+        set(COUNTER_EVENT_BATCH_SIZE, eventBatchSize);
+    }
+
+    @Override
+    public long getShedActive() {
+        return get(COUNTER_SHED_ACTIVE);
+    }
+
+    public void setShedding(final boolean isShedding) {
+        set(COUNTER_SHED_ACTIVE, isShedding ? 1L : 0L);
+    }
+
+    @Override
+    public long getShedSampledCount() {
+        return get(COUNTER_SHED_SAMPLED);
+    }
+
+    public long incrementShedSampledCount() {
+        return increment(COUNTER_SHED_SAMPLED);
+    }
+
+    @Override
+    public long getShedLevelCount() {
+        return get(COUNTER_SHED_LEVEL);
+    }
+
+    public long incrementShedLevelCount() {
+        return increment(COUNTER_SHED_LEVEL);
+    }
+
+    @Override
+    public long getShedPriorityKeptCount() {
+        return get(COUNTER_SHED_PRIORITY_KEPT);
+    }
+
+    public long incrementShedPriorityKeptCount() {
+        return increment(COUNTER_SHED_PRIORITY_KEPT);
+    }
+
+    @Override
+    public long getNumberOfConsumers() {
+        return get(COUNTER_CONSUMERS);
+    }
+
+    public void setNumberOfConsumers(final long numberOfConsumers) {
+        set(COUNTER_CONSUMERS, numberOfConsumers);
+    }
+
+    @Override
+    public long getFilterRejectedCount() {
+        return get(COUNTER_FILTER_REJECTED);
+    }
+
+    public long incrementFilterRejectedCount() {
+        return increment(COUNTER_FILTER_REJECTED);
+    }
+
+    @Override
+    public long getRepeatSuppressedCount() {
+        return get(COUNTER_REPEAT_SUPPRESSED);
+    }
+
+    public long incrementRepeatSuppressedCount() {
+        return increment(COUNTER_REPEAT_SUPPRESSED);
+    }
+
+    @Override
+    public long getMappingReloadCount() {
+        return get(COUNTER_MAPPING_RELOADS);
+    }
+
+    public long incrementMappingReloadCount() {
+        return increment(COUNTER_MAPPING_RELOADS);
+    }
+
+    @Override
+    public long getMappingReloadFailureCount() {
+        return get(COUNTER_MAPPING_RELOAD_FAILURES);
+    }
+
+    public long incrementMappingReloadFailureCount() {
+        return increment(COUNTER_MAPPING_RELOAD_FAILURES);
+    }
+
+    @Override
+    public long getTimestampFailureCount() {
+        return get(COUNTER_TIMESTAMP_FAILURES);
+    }
+
+    public long incrementTimestampFailureCount() {
+        return increment(COUNTER_TIMESTAMP_FAILURES);
+    }
+
+    @Override
+    public long getTraceDequeueLatencyMedianInMicros() {
+        return traceDequeueLatency.getValueAtPercentileInMicros(MEDIAN);
+    }
+
+    @Override
+    public long getTraceDequeueLatency99thPercentileInMicros() {
+        return traceDequeueLatency.getValueAtPercentileInMicros(PERCENTILE_99);
+    }
+
+    @Override
+    public long getTraceDequeueLatencyMaxInMicros() {
+        return traceDequeueLatency.getMaxInMicros();
+    }
+
+    @Override
+    public long getTraceChannelPutLatencyMedianInMicros() {
+        return traceChannelPutLatency.getValueAtPercentileInMicros(MEDIAN);
+    }
+
+    @Override
+    public long getTraceChannelPutLatency99thPercentileInMicros() {
+        return traceChannelPutLatency.getValueAtPercentileInMicros(PERCENTILE_99);
+    }
+
+    @Override
+    public long getTraceChannelPutLatencyMaxInMicros() {
+        return traceChannelPutLatency.getMaxInMicros();
+    }
+
+    @Override
+    public long getMappingHitCount() {
+        return get(COUNTER_MAPPING_HITS);
+    }
+
+    @Override
+    public long getMappingMissCount() {
+        return get(COUNTER_MAPPING_MISSES);
+    }
+
+    @Override
+    public long getMappingLatencyMedianInMicros() {
+        return mappingLatency.getValueAtPercentileInMicros(MEDIAN);
+    }
+
+    @Override
+    public long getMappingLatency99thPercentileInMicros() {
+        return mappingLatency.getValueAtPercentileInMicros(PERCENTILE_99);
+    }
+
+    @Override
+    public long getMappingLatencyMaxInMicros() {
+        return mappingLatency.getMaxInMicros();
+    }
+
+    @Override
+    public long getFlushedBatchCount() {
+        return sourceCounter.getAppendBatchReceivedCount();
+    }
+
+    @Override
+    public long getFlushedBatchMeanSize() {
+        final long flushedBatchCount = sourceCounter.getAppendBatchReceivedCount();
+        return flushedBatchCount == 0L ? 0L : sourceCounter.getEventReceivedCount() / flushedBatchCount;
+    }
+
+    @Override
+    public long getConsumerBusyTimeInMs() {
+        return TimeUnit.NANOSECONDS.toMillis(get(COUNTER_CONSUMER_BUSY_TIME));
+    }
+
+    @Override
+    public long[] getConsumerBusyTimesInMs() {
+        final RecordConsumer[] currentConsumers = consumers.toArray(new RecordConsumer[0]);
+        final long[] busyTimesInMs = new long[currentConsumers.length];
+        for (int i = 0; i < currentConsumers.length; i++) {
+            busyTimesInMs[i] = TimeUnit.NANOSECONDS.toMillis(currentConsumers[i].getBusyTimeInNs());
+        }
+
+        return busyTimesInMs;
+    }
+
+    @Override
+    public long getSharedQueueSize() {
+        final RecordQueue<?> queue = sharedQueue;
+        return queue == null ? 0L : queue.size();
+    }
+
+    @Override
+    public long getSharedQueueCapacity() {
+        final RecordQueue<?> queue = sharedQueue;
+        return queue == null ? 0L : queue.capacity();
+    }
+
+    @Override
+    public long getReadLagInBytes() {
+        final LogFileReader reader = logFileReader;
+        return reader == null ? 0L : reader.getReadLagInBytes();
+    }
+}
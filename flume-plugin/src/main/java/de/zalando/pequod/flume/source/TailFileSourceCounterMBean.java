@@ -0,0 +1,79 @@
+package de.zalando.pequod.flume.source;
+
+/**
+ * JMX view of {@link de.zalando.pequod.flume.source.TailFileSourceCounter}.
+ */
+public interface TailFileSourceCounterMBean {
+
+    long getReorderBufferSize();
+
+    long getReorderBufferMaxSize();
+
+    long getReorderReleasedCount();
+
+    long getReorderWaitCount();
+
+    long getEventBatchSize();
+
+    long getShedActive();
+
+    long getShedSampledCount();
+
+    long getShedLevelCount();
+
+    long getShedPriorityKeptCount();
+
+    long getNumberOfConsumers();
+
+    long getFilterRejectedCount();
+
+    long getRepeatSuppressedCount();
+
+    long getMappingReloadCount();
+
+    long getMappingReloadFailureCount();
+
+    long getTimestampFailureCount();
+
+    long getTraceDequeueLatencyMedianInMicros();
+
+    long getTraceDequeueLatency99thPercentileInMicros();
+
+    long getTraceDequeueLatencyMaxInMicros();
+
+    long getTraceChannelPutLatencyMedianInMicros();
+
+    long getTraceChannelPutLatency99thPercentileInMicros();
+
+    long getTraceChannelPutLatencyMaxInMicros();
+
+    long getMappingHitCount();
+
+    long getMappingMissCount();
+
+    long getMappingLatencyMedianInMicros();
+
+    long getMappingLatency99thPercentileInMicros();
+
+    long getMappingLatencyMaxInMicros();
+
+    long getFlushedBatchCount();
+
+    long getFlushedBatchMeanSize();
+
+    long getConsumerBusyTimeInMs();
+
+    long[] getConsumerBusyTimesInMs();
+
+    long getSharedQueueSize();
+
+    long getSharedQueueCapacity();
+
+    long getReadLagInBytes();
+
+    long getStartTime();
+
+    long getStopTime();
+
+    String getType();
+}
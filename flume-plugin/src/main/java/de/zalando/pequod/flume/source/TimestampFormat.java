@@ -0,0 +1,183 @@
+package de.zalando.pequod.flume.source;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats of timestamp fields (see config parameter
+ * {@link de.zalando.pequod.flume.source.SourceConstants#CONFIG_TIMESTAMP_FORMAT}), named like the logstash patterns
+ * matching them. A format parses a timestamp without its fraction of a second, the fraction is handled by the
+ * {@link de.zalando.pequod.flume.source.TimestampParser}. Fields are read as runs of digits or letters, so the number
+ * of separators between them does not matter (e.g. "Oct  9" of syslog).
+ */
+enum TimestampFormat {
+
+    /**
+     * default layout of the Flume log4j configuration, e.g. "19 Oct 2014 08:28:01".
+     */
+    FLUME_TIMESTAMP {
+        @Override
+        long parseSecondInMs(final Cursor cursor, final ZoneId zone, final long nowInMs) {
+            final int day = cursor.nextNumber();
+            final int month = cursor.nextMonth();
+            final int year = cursor.nextNumber();
+            return toEpochMs(LocalDateTime.of(year, month, day, cursor.nextNumber(), cursor.nextNumber(),
+                        cursor.nextSecond()).atZone(zone));
+        }
+    },
+
+    /**
+     * syslog timestamp without year, e.g. "Oct 19 08:28:01". The year is the current one, unless the timestamp would be
+     * more than one day ahead, i.e. the record has been written in the last year.
+     */
+    SYSLOGTIMESTAMP {
+        @Override
+        long parseSecondInMs(final Cursor cursor, final ZoneId zone, final long nowInMs) {
+            final int month = cursor.nextMonth();
+            final int day = cursor.nextNumber();
+            final LocalDateTime time = LocalDateTime.of(
+                    ZonedDateTime.ofInstant(Instant.ofEpochMilli(nowInMs), zone).getYear(), month, day,
+                    cursor.nextNumber(), cursor.nextNumber(), cursor.nextSecond());
+
+            final long timeInMs = toEpochMs(time.atZone(zone));
+            return timeInMs - nowInMs > MAX_SYSLOG_AHEAD_IN_MS ? toEpochMs(time.minusYears(1L).atZone(zone)) : timeInMs;
+        }
+    },
+
+    /**
+     * timestamp of the common log format, e.g. "19/Oct/2014:08:28:01 +0200". The configured time zone is not used.
+     */
+    HTTPDATE {
+        @Override
+        long parseSecondInMs(final Cursor cursor, final ZoneId zone, final long nowInMs) {
+            final int day = cursor.nextNumber();
+            final int month = cursor.nextMonth();
+            final int year = cursor.nextNumber();
+            final LocalDateTime time = LocalDateTime.of(year, month, day, cursor.nextNumber(), cursor.nextNumber(),
+                    cursor.nextSecond());
+
+            final int offset = cursor.nextNumber();
+            return TimeUnit.SECONDS.toMillis(time.toEpochSecond(
+                        ZoneOffset.ofHoursMinutes(offset / 100, offset % 100)));
+        }
+    };
+
+    private static final long MAX_SYSLOG_AHEAD_IN_MS = TimeUnit.DAYS.toMillis(1L);
+
+    private static final String[] MONTHS = {
+        "jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"
+    };
+
+    /**
+     * @param   value    timestamp without fraction of a second
+     * @param   zone     time zone of timestamps without offset
+     * @param   nowInMs  current time, to complete timestamps without year
+     *
+     * @return  epoch millis of the second of the timestamp
+     *
+     * @throws  IllegalArgumentException  if the value does not match this format
+     * @throws  java.time.DateTimeException  if a field of the value is out of range
+     */
+    long parseSecondInMs(final String value, final ZoneId zone, final long nowInMs) {
+        return parseSecondInMs(new Cursor(value), zone, nowInMs);
+    }
+
+    abstract long parseSecondInMs(Cursor cursor, ZoneId zone, long nowInMs);
+
+    private static long toEpochMs(final ZonedDateTime time) {
+        return TimeUnit.SECONDS.toMillis(time.toEpochSecond());
+    }
+
+    public static TimestampFormat fromConfigValue(final String configValue) {
+        for (final TimestampFormat format : values()) {
+            if (format.name().equals(configValue)) {
+                return format;
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("unknown timestamp format [configKey=%s] -> '%s'",
+                SourceConstants.CONFIG_TIMESTAMP_FORMAT, configValue));
+    }
+
+    /**
+     * Reads the fields of a timestamp one after another, skipping the separators in between.
+     */
+    static final class Cursor {
+
+        private final String value;
+        private int position;
+
+        Cursor(final String value) {
+            this.value = value;
+        }
+
+        /**
+         * @return  next number, which may be signed (e.g. a time zone offset)
+         */
+        int nextNumber() {
+            skipSeparators();
+
+            boolean isNegative = false;
+            if (position < value.length() && (value.charAt(position) == '+' || value.charAt(position) == '-')) {
+                isNegative = value.charAt(position) == '-';
+                position++;
+            }
+
+            final int start = position;
+            int number = 0;
+            char c;
+            while (position < value.length() && (c = value.charAt(position)) >= '0' && c <= '9') {
+                number = number * 10 + (c - '0');
+                position++;
+            }
+
+            if (position == start) {
+                throw new IllegalArgumentException("no number at [position=" + start + "] of '" + value + "'");
+            }
+
+            return isNegative ? -number : number;
+        }
+
+        /**
+         * @return  seconds, where a leap second is read as the last second of the minute
+         */
+        int nextSecond() {
+            return Math.min(nextNumber(), 59);
+        }
+
+        /**
+         * @return  month (1 to 12) of the next word, which may be the full or abbreviated English month name
+         */
+        int nextMonth() {
+            skipSeparators();
+
+            final int start = position;
+            while (position < value.length() && Character.isLetter(value.charAt(position))) {
+                position++;
+            }
+
+            if (position - start >= 3) {
+                for (int i = 0; i < MONTHS.length; i++) {
+                    if (value.regionMatches(true, start, MONTHS[i], 0, 3)) {
+                        return i + 1;
+                    }
+                }
+            }
+
+            throw new IllegalArgumentException("no month at [position=" + start + "] of '" + value + "'");
+        }
+
+        private void skipSeparators() {
+            char c;
+            while (position < value.length() && !Character.isLetterOrDigit(c = value.charAt(position)) && c != '+'
+                    && c != '-') {
+                position++;
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package de.zalando.pequod.flume.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+
+import com.google.common.base.Objects;
+
+/**
+ * Parses timestamp fields of a {@link de.zalando.pequod.flume.source.TimestampFormat} into epoch millis. Consecutive
+ * records mostly carry timestamps of the same second, so the parser remembers the last timestamp without its fraction
+ * of a second and only parses the fraction as long as the rest of the timestamp does not change. The fraction is the
+ * run of digits after the first '.' or ',' of the timestamp. A parser is not thread-safe and must therefore not be
+ * shared between consumers.
+ */
+final class TimestampParser {
+
+    /**
+     * result of timestamps which do not match the format.
+     */
+    static final long UNPARSEABLE = Long.MIN_VALUE;
+
+    private final TimestampFormat format;
+    private final ZoneId zone;
+    private final Clock clock;
+
+    // last timestamp, its fraction bounds and the epoch millis of its second
+    private String lastValue;
+    private int lastFractionStart;
+    private int lastFractionEnd;
+    private long lastSecondInMs;
+
+    /**
+     * @param  format  format of the timestamps
+     * @param  zone    time zone of timestamps without offset
+     */
+    TimestampParser(final TimestampFormat format, final ZoneId zone) {
+        this(format, zone, Clock.system(zone));
+    }
+
+    /**
+     * @param  clock  provides the current year for timestamps without year
+     */
+    TimestampParser(final TimestampFormat format, final ZoneId zone, final Clock clock) {
+        checkArgument(format != null, "format must not be null");
+        checkArgument(zone != null, "zone must not be null");
+        checkArgument(clock != null, "clock must not be null");
+
+        this.format = format;
+        this.zone = zone;
+        this.clock = clock;
+    }
+
+    /**
+     * @return  epoch millis of the timestamp or {@link #UNPARSEABLE}
+     */
+    long parse(final String value) {
+        final int length = value.length();
+        int fractionStart = length;
+        char c;
+        for (int i = 0; i < length - 1; i++) {
+            c = value.charAt(i);
+            if ((c == '.' || c == ',') && isDigit(value.charAt(i + 1))) {
+                fractionStart = i;
+                break;
+            }
+        }
+
+        int fractionEnd = fractionStart == length ? length : fractionStart + 1;
+        while (fractionEnd < length && isDigit(value.charAt(fractionEnd))) {
+            fractionEnd++;
+        }
+
+        if (!isSameSecond(value, fractionStart, fractionEnd)) {
+            lastSecondInMs = parseSecondInMs(value.substring(0, fractionStart) + value.substring(fractionEnd));
+            lastValue = value;
+            lastFractionStart = fractionStart;
+            lastFractionEnd = fractionEnd;
+        }
+
+        if (lastSecondInMs == UNPARSEABLE) {
+            return UNPARSEABLE;
+        }
+
+        // NOTE: only milliseconds are kept, i.e. "5" is 500 ms and "123456" is 123 ms
+        int fractionInMs = 0;
+        int scale = 100;
+        for (int i = fractionStart + 1; i < fractionEnd && scale > 0; i++) {
+            fractionInMs += (value.charAt(i) - '0') * scale;
+            scale /= 10;
+        }
+
+        return lastSecondInMs + fractionInMs;
+    }
+
+    private boolean isSameSecond(final String value, final int fractionStart, final int fractionEnd) {
+        return lastValue != null && fractionStart == lastFractionStart
+                && value.length() - fractionEnd == lastValue.length() - lastFractionEnd
+                && value.regionMatches(0, lastValue, 0, fractionStart)
+                && value.regionMatches(fractionEnd, lastValue, lastFractionEnd, value.length() - fractionEnd);
+    }
+
+    private long parseSecondInMs(final String valueWithoutFraction) {
+        try {
+            return format.parseSecondInMs(valueWithoutFraction, zone, clock.millis());
+        } catch (final IllegalArgumentException | DateTimeException e) {
+            return UNPARSEABLE;
+        }
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("format", format).add("zone", zone).toString();
+    }
+}
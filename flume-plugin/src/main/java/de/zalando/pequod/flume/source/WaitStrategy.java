@@ -0,0 +1,79 @@
+package de.zalando.pequod.flume.source;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Defines how a thread waits for free space or new elements in a
+ * {@link de.zalando.pequod.flume.source.RingBufferRecordQueue} (see config parameter
+ * {@link de.zalando.pequod.flume.source.SourceConstants#CONFIG_QUEUE_WAIT_STRATEGY}).
+ */
+enum WaitStrategy {
+
+    /**
+     * lowest latency, but keeps a core busy while waiting.
+     */
+    BUSY_SPIN("busySpin") {
+        @Override
+        void idle(final int attempt) {
+            // just try again
+        }
+    },
+
+    /**
+     * gives up the core to other runnable threads while waiting.
+     */
+    YIELD("yield") {
+        @Override
+        void idle(final int attempt) {
+            Thread.yield();
+        }
+    },
+
+    /**
+     * parks the waiting thread with exponential back off (up to 20 ms). Cheapest option in terms of CPU usage.
+     * <br></br>
+     * NOTE: the cap bounds both the wake-up delay once the wait ends and the wake-ups of an idle thread (about 50 per
+     * second).
+     */
+    PARK("park") {
+        @Override
+        void idle(final int attempt) {
+            if (attempt < SPIN_ATTEMPTS_BEFORE_PARK) {
+                return;
+            }
+
+            final int shift = Math.min(attempt - SPIN_ATTEMPTS_BEFORE_PARK, MAX_PARK_SHIFT);
+            LockSupport.parkNanos(Math.min(MIN_PARK_TIME_IN_NS << shift, MAX_PARK_TIME_IN_NS));
+        }
+    };
+
+    private final String configValue;
+
+    private static final int SPIN_ATTEMPTS_BEFORE_PARK = 100;
+    private static final int MAX_PARK_SHIFT = 20;
+    private static final long MIN_PARK_TIME_IN_NS = 1000L;
+    private static final long MAX_PARK_TIME_IN_NS = TimeUnit.MILLISECONDS.toNanos(20L);
+
+    WaitStrategy(final String configValue) {
+        this.configValue = configValue;
+    }
+
+    /**
+     * Waits a little before the caller retries its operation.
+     *
+     * @param  attempt  number of failed attempts so far (starting with 0)
+     */
+    abstract void idle(int attempt);
+
+    public static WaitStrategy fromConfigValue(final String configValue) {
+        for (final WaitStrategy waitStrategy : values()) {
+            if (waitStrategy.configValue.equals(configValue)) {
+                return waitStrategy;
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("unknown wait strategy [configKey=%s] -> '%s'",
+                SourceConstants.CONFIG_QUEUE_WAIT_STRATEGY, configValue));
+    }
+}
@@ -0,0 +1,67 @@
+package de.zalando.pequod.flume.aggregation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public final class QuantileSketchTest {
+
+    @Test
+    public void testQuantilesAreWithinRelativeAccuracy() {
+        final QuantileSketch sketch = new QuantileSketch(0.01);
+        for (int i = 1; i <= 10000; i++) {
+            sketch.add(i);
+        }
+
+        assertEquals(10000L, sketch.getCount());
+        assertEquals(1.0, sketch.getMin(), 0.0);
+        assertEquals(10000.0, sketch.getMax(), 0.0);
+        assertEquals(5000.0, sketch.getQuantile(0.5), 5000.0 * 0.01);
+        assertEquals(9900.0, sketch.getQuantile(0.99), 9900.0 * 0.01);
+        assertEquals(10000.0, sketch.getQuantile(1.0), 10000.0 * 0.01);
+    }
+
+    @Test
+    public void testWideValueRange() {
+        final QuantileSketch sketch = new QuantileSketch(0.01);
+        final Random random = new Random(42L);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(Math.pow(10.0, random.nextDouble() * 12.0 - 6.0));
+        }
+
+        sketch.add(0.0);
+
+        assertEquals(0.0, sketch.getQuantile(0.0), 0.0);
+        assertTrue(sketch.getQuantile(0.5) > 1e-3 && sketch.getQuantile(0.5) < 1e3);
+    }
+
+    @Test
+    public void testMergedSketchEqualsSketchOfAllValues() {
+        final QuantileSketch all = new QuantileSketch(0.01);
+        final QuantileSketch low = new QuantileSketch(0.01);
+        final QuantileSketch high = new QuantileSketch(0.01);
+        for (int i = 1; i <= 1000; i++) {
+            all.add(i);
+            (i <= 10 ? low : high).add(i);
+        }
+
+        high.add(0.0, 3);
+        all.add(0.0, 3);
+        low.merge(high);
+
+        assertEquals(all.getCount(), low.getCount());
+        assertEquals(all.getSum(), low.getSum(), 0.0);
+        assertEquals(all.getMin(), low.getMin(), 0.0);
+        assertEquals(all.getMax(), low.getMax(), 0.0);
+        assertEquals(all.getQuantile(0.5), low.getQuantile(0.5), 0.0);
+        assertEquals(all.getQuantile(0.99), low.getQuantile(0.99), 0.0);
+    }
+
+    @Test
+    public void testEmptySketch() {
+        assertTrue(Double.isNaN(new QuantileSketch(0.01).getQuantile(0.5)));
+    }
+}
@@ -0,0 +1,124 @@
+package de.zalando.pequod.flume.aggregation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.flume.Event;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+public final class WindowAggregatorTest {
+
+    private static final long WINDOW_IN_MS = 60000L;
+
+    private final WindowAggregator aggregator = new WindowAggregator(Arrays.asList("logLevel", "status"), "duration",
+            new double[] {0.5, 0.99}, WINDOW_IN_MS, false);
+
+    @Test
+    public void testSummaryEventsPerKeyAtWindowClose() {
+        final WindowAggregator.Partial partial = aggregator.createPartial();
+        final long windowStart = 10 * WINDOW_IN_MS;
+        for (int i = 1; i <= 100; i++) {
+            partial.add(ImmutableMap.of("logLevel", "INFO", "status", "200", "duration", String.valueOf(i)), 1,
+                windowStart + i);
+        }
+
+        partial.add(ImmutableMap.of("logLevel", "ERROR", "status", "500", "duration", "oops"), 1, windowStart + 200);
+        partial.add(ImmutableMap.of("logLevel", "ERROR"), 1, windowStart + 300);
+
+        assertTrue("window is still open", partial.pollClosedWindowEvents(windowStart + 400).isEmpty());
+        assertEquals(WINDOW_IN_MS - 400, partial.getTimeUntilWindowCloseInMs(windowStart + 400));
+
+        final Map<String, Map<String, String>> summaries = toHeadersByBody(partial.pollClosedWindowEvents(
+                    windowStart + WINDOW_IN_MS));
+        assertEquals(3, summaries.size());
+
+        final Map<String, String> info = summaries.get("logLevel=INFO status=200");
+        assertEquals("100", info.get(WindowAggregator.HEADER_COUNT));
+        assertEquals(String.valueOf(windowStart), info.get(WindowAggregator.HEADER_WINDOW_START));
+        assertEquals(String.valueOf(windowStart + WINDOW_IN_MS), info.get(WindowAggregator.HEADER_WINDOW_END));
+        assertEquals("1.0", info.get("duration_min"));
+        assertEquals("100.0", info.get("duration_max"));
+        assertEquals(50.0, Double.parseDouble(info.get("duration_p50")), 1.0);
+        assertEquals(99.0, Double.parseDouble(info.get("duration_p99")), 1.0);
+
+        final Map<String, String> error = summaries.get("logLevel=ERROR status=500");
+        assertEquals("1", error.get(WindowAggregator.HEADER_COUNT));
+        assertTrue("non-numeric values are only counted", !error.containsKey("duration_p50"));
+
+        assertEquals("1", summaries.get("logLevel=ERROR status=").get(WindowAggregator.HEADER_COUNT));
+    }
+
+    @Test
+    public void testCloseAll() {
+        final WindowAggregator.Partial partial = aggregator.createPartial();
+        partial.add(ImmutableMap.of("logLevel", "WARN", "status", "404"), 1, 1000L);
+        partial.close();
+
+        final List<Event> summaryEvents = aggregator.closeAll();
+        assertEquals(1, summaryEvents.size());
+        assertTrue(aggregator.closeAll().isEmpty());
+    }
+
+    @Test
+    public void testWindowIsSummarizedOnceAllPartialsHaveMergedIt() {
+        final WindowAggregator.Partial first = aggregator.createPartial();
+        final WindowAggregator.Partial second = aggregator.createPartial();
+        final WindowAggregator.Partial idle = aggregator.createPartial();
+        final Map<String, String> fields = ImmutableMap.of("logLevel", "INFO", "status", "200", "duration", "5");
+
+        first.add(fields, 1, 100L);
+        second.add(fields, 3, 200L);
+
+        // the first partial merges its window when its next record belongs to the next window
+        first.add(fields, 1, WINDOW_IN_MS + 100L);
+        assertEquals(0L, first.getTimeUntilWindowCloseInMs(WINDOW_IN_MS + 100L));
+        assertTrue("second partial has not merged yet", first.pollClosedWindowEvents(WINDOW_IN_MS + 100L).isEmpty());
+        assertEquals(WINDOW_IN_MS, idle.getTimeUntilWindowCloseInMs(WINDOW_IN_MS + 100L));
+
+        assertEquals(0L, second.getTimeUntilWindowCloseInMs(WINDOW_IN_MS + 100L));
+
+        final List<Event> summaryEvents = second.pollClosedWindowEvents(WINDOW_IN_MS + 100L);
+        assertEquals(1, summaryEvents.size());
+
+        final Map<String, String> headers = summaryEvents.get(0).getHeaders();
+        assertEquals("4", headers.get(WindowAggregator.HEADER_COUNT));
+        assertEquals("20.0", headers.get("duration_sum"));
+        assertEquals("0", headers.get(WindowAggregator.HEADER_WINDOW_START));
+    }
+
+    private static Map<String, Map<String, String>> toHeadersByBody(final List<Event> events) {
+        final Map<String, Map<String, String>> headersByBody = Maps.newHashMap();
+        for (final Event event : events) {
+            headersByBody.put(new String(event.getBody()), event.getHeaders());
+        }
+
+        return headersByBody;
+    }
+
+    @Test
+    public void testKeyFieldNamedCountKeepsItsValue() {
+        final WindowAggregator countAggregator = new WindowAggregator(Arrays.asList("count"), null, new double[0],
+                WINDOW_IN_MS, false);
+        final WindowAggregator.Partial partial = countAggregator.createPartial();
+        partial.add(ImmutableMap.of("count", "7"), 3, 0L);
+
+        final List<Event> events = partial.pollClosedWindowEvents(WINDOW_IN_MS);
+        assertEquals(1, events.size());
+        assertEquals("7", events.get(0).getHeaders().get("count"));
+        assertEquals("3", events.get(0).getHeaders().get(WindowAggregator.HEADER_COUNT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeyFieldNamedLikeSummaryHeaderIsRejected() {
+        new WindowAggregator(Arrays.asList("logLevel", WindowAggregator.HEADER_COUNT), null, new double[0],
+            WINDOW_IN_MS, false);
+    }
+}
@@ -0,0 +1,58 @@
+package de.zalando.pequod.flume.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public final class AdaptiveBatchSizerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    @Test
+    public void testInitialBatchSizeIsBounded() {
+        assertEquals(10, new AdaptiveBatchSizer(1, 100, 10, 100L).getBatchSize());
+        assertEquals(100, new AdaptiveBatchSizer(1, 100, 1000, 100L).getBatchSize());
+        assertEquals(5, new AdaptiveBatchSizer(5, 100, 1, 100L).getBatchSize());
+    }
+
+    @Test
+    public void testBatchSizeGrowsUnderLoad() {
+        final AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(1, 1000, 10, 100L);
+
+        // 10 events within 1 ms, committed within 1 ms -> 0.2 ms per event -> 500 events fit into 100 ms
+        for (int i = 0; i < 50; i++) {
+            batchSizer.onBatchCompleted(batchSizer.getBatchSize(), batchSizer.getBatchSize() * MS / 10,
+                batchSizer.getBatchSize() * MS / 10);
+        }
+
+        assertEquals(500, batchSizer.getBatchSize());
+    }
+
+    @Test
+    public void testBatchSizeShrinksWhenIdle() {
+        final AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(2, 100, 100, 100L);
+
+        // 1 event per second
+        for (int i = 0; i < 50; i++) {
+            batchSizer.onBatchCompleted(1, 1000L * MS, MS);
+        }
+
+        assertEquals(2, batchSizer.getBatchSize());
+    }
+
+    @Test
+    public void testSlowCommitsLimitBatchSize() {
+        final AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(1, 1000, 1000, 100L);
+
+        // events are available immediately, but each event adds 1 ms to the round trip
+        for (int i = 0; i < 50; i++) {
+            final int batchSize = batchSizer.getBatchSize();
+            batchSizer.onBatchCompleted(batchSize, 0L, batchSize * MS);
+        }
+
+        assertTrue("batch size must fit into target latency", batchSizer.getBatchSize() <= 100);
+    }
+}
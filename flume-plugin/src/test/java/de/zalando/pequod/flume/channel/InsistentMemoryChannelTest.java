@@ -0,0 +1,235 @@
+package de.zalando.pequod.flume.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static de.zalando.pequod.flume.channel.ChannelConstants.DEFAULT_CAPACITY;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.apache.flume.Context;
+import org.apache.flume.Event;
+import org.apache.flume.Transaction;
+import org.apache.flume.conf.Configurables;
+import org.apache.flume.event.EventBuilder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.junit.rules.TemporaryFolder;
+
+import de.zalando.pequod.flume.instrumentation.ChannelOperationCounter;
+
+public final class InsistentMemoryChannelTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private InsistentMemoryChannel channel;
+
+    @Before
+    public void setUp() {
+        channel = new InsistentMemoryChannel();
+
+        final Context context = new Context();
+        context.put(ChannelConstants.CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS, "60000");
+        Configurables.configure(channel, context);
+        channel.start();
+    }
+
+    private void put(final int numberOfEvents, final boolean commit) {
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+        for (int i = 0; i < numberOfEvents; i++) {
+            channel.put(EventBuilder.withBody(new byte[] {(byte) i}));
+        }
+
+        if (commit) {
+            transaction.commit();
+        } else {
+            transaction.rollback();
+        }
+
+        transaction.close();
+    }
+
+    private void take(final int numberOfEvents) {
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+        for (int i = 0; i < numberOfEvents; i++) {
+            channel.take();
+        }
+
+        transaction.commit();
+        transaction.close();
+    }
+
+    @Test
+    public void testOnlyCommittedEventsArePending() throws InterruptedException {
+        put(3, true);
+        put(2, false);
+        assertEquals(3L, channel.getPendingEventCount());
+
+        take(1);
+        assertEquals(2L, channel.getPendingEventCount());
+        assertFalse(channel.awaitDrained(1L));
+
+        take(2);
+        assertEquals(0L, channel.getPendingEventCount());
+        assertTrue(channel.awaitDrained(1L));
+    }
+
+    @Test
+    public void testOperationsAndFillAreCounted() {
+        final ChannelOperationCounter operationCounter = channel.getOperationCounter();
+        assertEquals(DEFAULT_CAPACITY, operationCounter.getChannelCapacity());
+
+        put(3, true);
+        put(2, false);
+        take(1);
+
+        assertEquals(5L, operationCounter.getPutCount());
+        assertEquals(1L, operationCounter.getTakeCount());
+        assertEquals(2L, operationCounter.getCommitCount());
+        assertEquals(1L, operationCounter.getRollbackCount());
+        assertEquals(2L, operationCounter.getChannelSize());
+        assertEquals(DEFAULT_CAPACITY, operationCounter.getChannelCapacity());
+    }
+
+    @Test(timeout = 5000L)
+    public void testDrainedChannelStopsWithoutWaiting() {
+        put(1, true);
+        take(1);
+
+        // configured wait time is only an upper bound
+        channel.stop();
+    }
+
+    @Test(timeout = 5000L)
+    public void testRemainingEventsAreRestoredFromSnapshot() {
+        channel.stop();
+
+        final File snapshotFile = new File(folder.getRoot(), "channel.snapshot");
+        final Context context = new Context();
+        context.put(ChannelConstants.CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS, "60000");
+        context.put(ChannelConstants.CONFIG_TRANSACTION_CAPACITY, "2");
+        context.put(ChannelConstants.CONFIG_SNAPSHOT_FILE, snapshotFile.getAbsolutePath());
+        Configurables.configure(channel, context);
+        channel.start();
+
+        put(2, true);
+        put(1, true);
+        take(1);
+
+        // does not wait for the remaining events to be taken
+        channel.stop();
+        assertTrue(snapshotFile.exists());
+
+        channel.start();
+        assertFalse(snapshotFile.exists());
+        assertEquals(2L, channel.getPendingEventCount());
+
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+
+        final Event first = channel.take();
+        final Event second = channel.take();
+        transaction.commit();
+        transaction.close();
+
+        assertEquals(1, first.getBody()[0]);
+        assertEquals(0, second.getBody()[0]);
+    }
+
+    /**
+     * Restarts the stopped channel with a snapshot file.
+     */
+    private File startWithSnapshot(final int capacity) {
+        final File snapshotFile = new File(folder.getRoot(), "channel.snapshot");
+        final Context context = new Context();
+        context.put(ChannelConstants.CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS, "60000");
+        context.put(ChannelConstants.CONFIG_CAPACITY, String.valueOf(capacity));
+        context.put(ChannelConstants.CONFIG_TRANSACTION_CAPACITY, "2");
+        context.put("keep-alive", "0");
+        context.put(ChannelConstants.CONFIG_SNAPSHOT_FILE, snapshotFile.getAbsolutePath());
+        Configurables.configure(channel, context);
+        channel.start();
+        return snapshotFile;
+    }
+
+    @Test(timeout = 5000L)
+    public void testOnlyEventsNotPutBackAreKeptIfSnapshotDoesNotFit() {
+        channel.stop();
+
+        final File snapshotFile = startWithSnapshot(4);
+        put(2, true);
+        put(1, true);
+        channel.stop();
+
+        startWithSnapshot(2);
+
+        assertFalse(snapshotFile.exists());
+        assertEquals(1, getFailedFiles().length);
+
+        final File failedFile = getFailedFiles()[0];
+        assertEquals(2L, channel.getPendingEventCount());
+        take(2);
+        channel.stop();
+
+        // the remaining event is restored once, without the events already put back
+        assertTrue(failedFile.renameTo(snapshotFile));
+        startWithSnapshot(2);
+        assertEquals(1L, channel.getPendingEventCount());
+    }
+
+    @Test(timeout = 5000L)
+    public void testCompleteEventsOfTruncatedSnapshotAreRestored() throws IOException {
+        channel.stop();
+
+        final File snapshotFile = startWithSnapshot(4);
+        put(2, true);
+        put(1, true);
+        channel.stop();
+
+        try (final RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+            file.setLength(file.length() - 1L);
+        }
+
+        startWithSnapshot(4);
+        assertFalse(snapshotFile.exists());
+        assertEquals(1, getFailedFiles().length);
+        assertEquals(2L, channel.getPendingEventCount());
+    }
+
+    @Test(timeout = 5000L)
+    public void testEventsOfEarlierFailedRestoreAreKept() throws InterruptedException {
+        channel.stop();
+
+        startWithSnapshot(4);
+        put(2, true);
+        put(1, true);
+        channel.stop();
+        startWithSnapshot(2);
+        take(2);
+        channel.stop();
+
+        // the failed files are named by the time of the restore
+        Thread.sleep(10L);
+        startWithSnapshot(4);
+        put(2, true);
+        put(1, true);
+        channel.stop();
+        startWithSnapshot(2);
+
+        assertEquals(2, getFailedFiles().length);
+    }
+
+    private File[] getFailedFiles() {
+        return folder.getRoot().listFiles((dir, name) ->
+                    name.startsWith("channel.snapshot.") && name.endsWith(".failed"));
+    }
+}
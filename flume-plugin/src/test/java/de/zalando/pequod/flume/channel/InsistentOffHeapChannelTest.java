@@ -0,0 +1,90 @@
+package de.zalando.pequod.flume.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.apache.flume.ChannelException;
+import org.apache.flume.Context;
+import org.apache.flume.Event;
+import org.apache.flume.Transaction;
+import org.apache.flume.conf.Configurables;
+import org.apache.flume.event.EventBuilder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public final class InsistentOffHeapChannelTest {
+
+    private InsistentOffHeapChannel channel;
+
+    @Before
+    public void setUp() {
+        channel = new InsistentOffHeapChannel();
+        channel.setName("offHeapChannelTest");
+
+        final Context context = new Context();
+        context.put(ChannelConstants.CONFIG_CAPACITY, "3");
+        context.put(ChannelConstants.CONFIG_TRANSACTION_CAPACITY, "3");
+        context.put(ChannelConstants.CONFIG_KEEP_ALIVE, "0");
+        context.put(ChannelConstants.CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS, "0");
+        Configurables.configure(channel, context);
+        channel.start();
+    }
+
+    @After
+    public void tearDown() {
+        channel.stop();
+    }
+
+    private void put(final String... bodies) {
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+        try {
+            for (final String body : bodies) {
+                channel.put(EventBuilder.withBody(body, Charsets.UTF_8));
+            }
+
+            transaction.commit();
+        } catch (final ChannelException e) {
+            transaction.rollback();
+            throw e;
+        } finally {
+            transaction.close();
+        }
+    }
+
+    private String take(final boolean commit) {
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+
+        final Event event = channel.take();
+        if (commit) {
+            transaction.commit();
+        } else {
+            transaction.rollback();
+        }
+
+        transaction.close();
+        return event == null ? null : new String(event.getBody(), Charsets.UTF_8);
+    }
+
+    @Test
+    public void testRolledBackTakeIsReturnedToHead() {
+        put("a", "b");
+
+        assertEquals("a", take(false));
+        assertEquals("a", take(true));
+        assertEquals("b", take(true));
+        assertNull(take(true));
+        assertEquals(0L, channel.getPendingEventCount());
+    }
+
+    @Test(expected = ChannelException.class)
+    public void testCommitFailsIfCapacityIsExceeded() {
+        put("a", "b");
+        put("c", "d");
+    }
+}
@@ -0,0 +1,140 @@
+package de.zalando.pequod.flume.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.flume.Context;
+import org.apache.flume.Event;
+import org.apache.flume.Transaction;
+import org.apache.flume.conf.Configurables;
+import org.apache.flume.event.EventBuilder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+
+public final class InsistentSpillableChannelTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File spillDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        spillDirectory = temporaryFolder.newFolder("spill");
+    }
+
+    private InsistentSpillableChannel createChannel() {
+        final InsistentSpillableChannel channel = new InsistentSpillableChannel();
+        channel.setName("spillableChannelTest");
+
+        final Context context = new Context();
+        context.put(ChannelConstants.CONFIG_CAPACITY, "2");
+        context.put(ChannelConstants.CONFIG_TRANSACTION_CAPACITY, "2");
+        context.put(ChannelConstants.CONFIG_KEEP_ALIVE, "0");
+        context.put(ChannelConstants.CONFIG_WAIT_TIME_SINCE_LAST_PUT_BEFORE_STOP_IN_MS, "0");
+        context.put(ChannelConstants.CONFIG_SPILL_DIRECTORY, spillDirectory.getAbsolutePath());
+        context.put(ChannelConstants.CONFIG_SPILL_SEGMENT_SIZE_IN_BYTES, "1024");
+        Configurables.configure(channel, context);
+        channel.start();
+        return channel;
+    }
+
+    private static void put(final InsistentSpillableChannel channel, final String... bodies) {
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+        for (final String body : bodies) {
+            channel.put(EventBuilder.withBody(body, Charsets.UTF_8));
+        }
+
+        transaction.commit();
+        transaction.close();
+    }
+
+    private static String take(final InsistentSpillableChannel channel) {
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+
+        final Event event = channel.take();
+        transaction.commit();
+        transaction.close();
+        return event == null ? null : new String(event.getBody(), Charsets.UTF_8);
+    }
+
+    @Test
+    public void testSpilledEventsAreTakenInOrderAndDeleted() {
+        final InsistentSpillableChannel channel = createChannel();
+        put(channel, "a", "b");
+        put(channel, "c", "d");
+        assertEquals(1, spillDirectory.list().length);
+
+        assertEquals("a", take(channel));
+
+        // memory has room again, but the channel keeps spilling until the spilled events have been taken
+        put(channel, "e");
+        assertEquals("b", take(channel));
+        assertEquals("c", take(channel));
+        assertEquals("d", take(channel));
+        assertEquals("e", take(channel));
+        assertNull(take(channel));
+        assertEquals(0, spillDirectory.list().length);
+
+        channel.stop();
+    }
+
+    @Test
+    public void testSpilledEventsAreRecoveredOnRestart() {
+        final InsistentSpillableChannel channel = createChannel();
+        put(channel, "a", "b");
+        put(channel, "c", "d");
+        channel.stop();
+
+        final InsistentSpillableChannel restartedChannel = createChannel();
+        assertEquals(2L, restartedChannel.getPendingEventCount());
+        assertEquals("c", take(restartedChannel));
+        assertEquals("d", take(restartedChannel));
+        assertNull(take(restartedChannel));
+
+        restartedChannel.stop();
+    }
+
+    @Test
+    public void testPartiallyTakenSegmentIsRecoveredAfterTakenEvents() {
+        final InsistentSpillableChannel channel = createChannel();
+        put(channel, "a", "b");
+        put(channel, "c", "d");
+        put(channel, "e", "f");
+        assertEquals("a", take(channel));
+        assertEquals("b", take(channel));
+        assertEquals("c", take(channel));
+
+        // the take of "d" is rolled back, so it has to be recovered as well
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+        assertEquals("d", new String(channel.take().getBody(), Charsets.UTF_8));
+        transaction.rollback();
+        transaction.close();
+        channel.stop();
+
+        final InsistentSpillableChannel restartedChannel = createChannel();
+        assertEquals(3L, restartedChannel.getPendingEventCount());
+        assertEquals("d", take(restartedChannel));
+        assertEquals("e", take(restartedChannel));
+        restartedChannel.stop();
+
+        // the position is saved again on each stop
+        final InsistentSpillableChannel secondRestartedChannel = createChannel();
+        assertEquals(1L, secondRestartedChannel.getPendingEventCount());
+        assertEquals("f", take(secondRestartedChannel));
+        assertNull(take(secondRestartedChannel));
+
+        secondRestartedChannel.stop();
+    }
+}
@@ -0,0 +1,69 @@
+package de.zalando.pequod.flume.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.flume.Event;
+import org.apache.flume.event.EventBuilder;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+
+public final class OffHeapEventRingTest {
+
+    private static byte[] encode(final String body) {
+        final Map<String, String> headers = ImmutableMap.of("logLevel", "INFO");
+        return EventCodec.encode(EventBuilder.withBody(body, Charsets.UTF_8, headers));
+    }
+
+    @Test
+    public void testEventsAreReadInOrderAcrossSegments() {
+        final OffHeapEventRing ring = new OffHeapEventRing(256, 64);
+
+        // each entry takes 33 bytes, so every segment holds one entry and skips the rest
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                final byte[] entry = encode("record-" + i);
+                assertTrue(ring.hasSpaceFor(Collections.singletonList(entry)));
+                ring.write(entry);
+            }
+
+            assertFalse(ring.hasSpaceFor(Collections.singletonList(encode("record-4"))));
+
+            for (int i = 0; i < 4; i++) {
+                final Event event = ring.read();
+                assertEquals("record-" + i, new String(event.getBody(), Charsets.UTF_8));
+                assertEquals("INFO", event.getHeaders().get("logLevel"));
+            }
+
+            assertNull(ring.read());
+        }
+    }
+
+    @Test
+    public void testSpaceIsFreedByReads() {
+
+        // each entry takes 33 bytes, so there is room for three entries
+        final OffHeapEventRing ring = new OffHeapEventRing(128, 128);
+        ring.write(encode("a"));
+        ring.write(encode("b"));
+        ring.write(encode("c"));
+        assertFalse(ring.hasSpaceFor(Collections.singletonList(encode("d"))));
+
+        assertEquals("a", new String(ring.read().getBody(), Charsets.UTF_8));
+        assertTrue(ring.hasSpaceFor(Collections.singletonList(encode("d"))));
+        ring.write(encode("d"));
+
+        assertEquals("b", new String(ring.read().getBody(), Charsets.UTF_8));
+        assertEquals("c", new String(ring.read().getBody(), Charsets.UTF_8));
+        assertEquals("d", new String(ring.read().getBody(), Charsets.UTF_8));
+        assertTrue(ring.isEmpty());
+    }
+}
@@ -0,0 +1,45 @@
+package de.zalando.pequod.flume.instrumentation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public final class ChannelOperationCounterTest {
+
+    @Test
+    public void testOperationsAreCounted() {
+        final ChannelOperationCounter counter = new ChannelOperationCounter("channelOperationCounterTest");
+        counter.onPut(TimeUnit.MICROSECONDS.toNanos(10L));
+        counter.onPut(TimeUnit.MICROSECONDS.toNanos(30L));
+        counter.onTake(TimeUnit.MICROSECONDS.toNanos(20L), true);
+        counter.onTake(TimeUnit.MICROSECONDS.toNanos(20L), false);
+        counter.onCommit(TimeUnit.MICROSECONDS.toNanos(100L));
+        counter.onRollback();
+
+        assertEquals(2L, counter.getPutCount());
+        assertEquals(1L, counter.getTakeCount());
+        assertEquals(1L, counter.getEmptyTakeCount());
+        assertEquals(1L, counter.getCommitCount());
+        assertEquals(1L, counter.getRollbackCount());
+
+        assertEquals(30L, counter.getPutLatencyMaxInMicros());
+        assertEquals(30L, counter.getPutLatency99thPercentileInMicros());
+        assertEquals(20L, counter.getTakeLatencyMaxInMicros());
+        assertEquals(100L, counter.getCommitLatencyMaxInMicros());
+    }
+
+    @Test
+    public void testFillPercentageIsRelativeToCapacity() {
+        final ChannelOperationCounter counter = new ChannelOperationCounter("channelOperationCounterTest");
+        counter.setChannelFill(25L, 100L);
+        assertEquals(25L, counter.getChannelSize());
+        assertEquals(100L, counter.getChannelCapacity());
+        assertEquals(25.0, counter.getChannelFillPercentage(), 0.0);
+
+        // unknown capacity
+        counter.setChannelFill(25L, 0L);
+        assertEquals(0.0, counter.getChannelFillPercentage(), 0.0);
+    }
+}
@@ -0,0 +1,62 @@
+package de.zalando.pequod.flume.instrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.flume.Event;
+import org.apache.flume.event.EventBuilder;
+
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public final class EventTraceTest {
+
+    private static Event createEvent(final long readTime) {
+        final Event event = EventBuilder.withBody(new byte[0], Maps.<String, String>newHashMap());
+        if (readTime != EventTrace.NOT_TRACED) {
+            event.getHeaders().put(EventTrace.HEADER_READ_TIME, EventTrace.encode(readTime));
+        }
+
+        return event;
+    }
+
+    @Test
+    public void testReadTimeIsRemovedFromEvent() {
+        final long readTime = System.nanoTime();
+        final Event event = createEvent(readTime);
+
+        assertEquals(readTime, EventTrace.getReadTime(event));
+        assertEquals(readTime, EventTrace.removeReadTime(event));
+        assertFalse(event.getHeaders().containsKey(EventTrace.HEADER_READ_TIME));
+        assertEquals(EventTrace.NOT_TRACED, EventTrace.removeReadTime(event));
+    }
+
+    @Test
+    public void testNegativeReadTimeIsDecoded() {
+        assertEquals(-42L, EventTrace.getReadTime(createEvent(-42L)));
+    }
+
+    @Test
+    public void testReadTimeOfOtherJvmIsIgnored() {
+        final Event event = createEvent(EventTrace.NOT_TRACED);
+        event.getHeaders().put(EventTrace.HEADER_READ_TIME, Long.toString(System.nanoTime(), Character.MAX_RADIX));
+
+        assertEquals(EventTrace.NOT_TRACED, EventTrace.getReadTime(event));
+        assertEquals(EventTrace.NOT_TRACED, EventTrace.removeReadTime(event));
+        assertFalse(event.getHeaders().containsKey(EventTrace.HEADER_READ_TIME));
+    }
+
+    @Test
+    public void testOnlyTracedEventsAreRecorded() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        EventTrace.recordLatencies(Arrays.asList(createEvent(System.nanoTime()), createEvent(EventTrace.NOT_TRACED)),
+            histogram);
+        EventTrace.recordLatencies(Collections.<Event>emptyList(), histogram);
+
+        assertEquals(1L, histogram.getCount());
+    }
+}
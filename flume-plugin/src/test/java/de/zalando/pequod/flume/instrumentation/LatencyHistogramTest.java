@@ -0,0 +1,72 @@
+package de.zalando.pequod.flume.instrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public final class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverAllValues() {
+        long previousUpperBound = -1L;
+        for (int i = 0; i <= LatencyHistogram.getBucketIndex(Long.MAX_VALUE); i++) {
+            final long upperBound = LatencyHistogram.getBucketUpperBound(i);
+            assertEquals(i, LatencyHistogram.getBucketIndex(previousUpperBound + 1L));
+            assertEquals(i, LatencyHistogram.getBucketIndex(upperBound));
+            previousUpperBound = upperBound;
+        }
+
+        assertEquals(Long.MAX_VALUE, previousUpperBound);
+    }
+
+    @Test
+    public void testPercentilesAreWithinRelativeError() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        assertEquals(1000L, histogram.getCount());
+        assertEquals(1000L, histogram.getMaxInMicros());
+        assertEquals(500L, histogram.getMeanInMicros());
+
+        final long median = histogram.getValueAtPercentileInMicros(50.0);
+        assertTrue("median " + median, median >= 500L && median <= 500L * 17L / 16L);
+
+        final long percentile99 = histogram.getValueAtPercentileInMicros(99.0);
+        assertTrue("99th percentile " + percentile99, percentile99 >= 990L && percentile99 <= 1000L);
+    }
+
+    @Test
+    public void testRecorderAddsLatenciesOnFlush() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LatencyHistogram.Recorder recorder = histogram.newRecorder();
+        for (int i = 1; i <= 1000; i++) {
+            recorder.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        assertEquals(0L, histogram.getCount());
+
+        recorder.flush();
+        assertEquals(1000L, histogram.getCount());
+        assertEquals(1000L, histogram.getMaxInMicros());
+        assertEquals(500L, histogram.getMeanInMicros());
+
+        final long median = histogram.getValueAtPercentileInMicros(50.0);
+        assertTrue("median " + median, median >= 500L && median <= 500L * 17L / 16L);
+
+        // nothing is added twice
+        recorder.flush();
+        assertEquals(1000L, histogram.getCount());
+    }
+
+    @Test
+    public void testEmptyHistogramReportsZero() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getValueAtPercentileInMicros(99.9));
+        assertEquals(0L, histogram.getMeanInMicros());
+    }
+}
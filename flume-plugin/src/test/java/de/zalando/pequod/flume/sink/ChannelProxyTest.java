@@ -0,0 +1,136 @@
+package de.zalando.pequod.flume.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.apache.flume.Context;
+import org.apache.flume.Event;
+import org.apache.flume.Transaction;
+import org.apache.flume.channel.MemoryChannel;
+import org.apache.flume.conf.Configurables;
+import org.apache.flume.event.EventBuilder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+import de.zalando.pequod.flume.channel.InsistentMemoryChannel;
+import de.zalando.pequod.flume.instrumentation.ChannelOperationCounter;
+import de.zalando.pequod.flume.instrumentation.EventTrace;
+
+public final class ChannelProxyTest {
+
+    private MemoryChannel channel;
+    private InsistentAvroSinkCounter counter;
+    private ChannelOperationCounter operationCounter;
+    private ChannelProxy channelProxy;
+
+    @Before
+    public void setUp() {
+        channel = new MemoryChannel();
+
+        final Context context = new Context();
+        context.put("keep-alive", "0");
+        Configurables.configure(channel, context);
+        channel.start();
+
+        counter = new InsistentAvroSinkCounter("channelProxyTest");
+        operationCounter = new ChannelOperationCounter("channelProxyTest-channel");
+        channelProxy = new ChannelProxy(channel, counter, operationCounter, null);
+    }
+
+    @After
+    public void tearDown() {
+        channel.stop();
+    }
+
+    private void put(final Event event) {
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+        channel.put(event);
+        transaction.commit();
+        transaction.close();
+    }
+
+    @Test
+    public void testTracedEventIsRecordedOnTakeAndAckWithoutReadTimeHeader() {
+        final Event tracedEvent = EventBuilder.withBody(new byte[0], Maps.<String, String>newHashMap());
+        tracedEvent.getHeaders().put(EventTrace.HEADER_READ_TIME, EventTrace.encode(System.nanoTime()));
+        put(tracedEvent);
+        put(EventBuilder.withBody(new byte[0]));
+
+        final Transaction transaction = channelProxy.getTransaction();
+        transaction.begin();
+
+        final Event first = channelProxy.take();
+        final Event second = channelProxy.take();
+        assertEquals(1L, counter.getTraceTakeLatency().getCount());
+        assertEquals(0L, counter.getTraceAckLatency().getCount());
+
+        transaction.commit();
+        transaction.close();
+
+        // the monotonic read time must not reach the next hop
+        assertFalse(first.getHeaders().containsKey(EventTrace.HEADER_READ_TIME));
+        assertFalse(second.getHeaders().containsKey(EventTrace.HEADER_READ_TIME));
+        assertEquals(1L, counter.getTraceTakeLatency().getCount());
+        assertEquals(1L, counter.getTraceAckLatency().getCount());
+    }
+
+    @Test
+    public void testOperationsOfSinkAreCounted() {
+        put(EventBuilder.withBody(new byte[0]));
+
+        final Transaction transaction = channelProxy.getTransaction();
+        transaction.begin();
+        channelProxy.take();
+        channelProxy.take();
+        transaction.rollback();
+        transaction.close();
+
+        assertEquals(1L, operationCounter.getTakeCount());
+        assertEquals(1L, operationCounter.getEmptyTakeCount());
+        assertEquals(0L, operationCounter.getCommitCount());
+        assertEquals(1L, operationCounter.getRollbackCount());
+    }
+
+    @Test
+    public void testFillOfDrainableChannelIsReportedWithItsCapacity() {
+        final InsistentMemoryChannel drainableChannel = new InsistentMemoryChannel();
+        final Context context = new Context();
+        context.put("capacity", "10");
+        context.put("transactionCapacity", "10");
+        context.put("keep-alive", "0");
+        Configurables.configure(drainableChannel, context);
+        drainableChannel.start();
+
+        try {
+            final ChannelProxy drainableChannelProxy = new ChannelProxy(drainableChannel, counter, operationCounter,
+                    null);
+
+            Transaction transaction = drainableChannelProxy.getTransaction();
+            transaction.begin();
+            drainableChannelProxy.put(EventBuilder.withBody(new byte[0]));
+            drainableChannelProxy.put(EventBuilder.withBody(new byte[0]));
+            transaction.commit();
+            transaction.close();
+
+            transaction = drainableChannelProxy.getTransaction();
+            transaction.begin();
+            drainableChannelProxy.take();
+            transaction.commit();
+            transaction.close();
+
+            assertEquals(2L, operationCounter.getPutCount());
+            assertEquals(1L, operationCounter.getTakeCount());
+            assertEquals(2L, operationCounter.getCommitCount());
+            assertEquals(1L, operationCounter.getChannelSize());
+            assertEquals(10L, operationCounter.getChannelCapacity());
+            assertEquals(10.0, operationCounter.getChannelFillPercentage(), 0.0);
+        } finally {
+            drainableChannel.stop();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package de.zalando.pequod.flume.sink;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.Properties;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.flume.Context;
+import org.apache.flume.channel.MemoryChannel;
+import org.apache.flume.conf.Configurables;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class InsistentAvroSinkTest {
+
+    private MemoryChannel channel;
+    private InsistentAvroSink sink;
+
+    @Before
+    public void setUp() {
+        channel = new MemoryChannel();
+        channel.setName("insistentAvroSinkTest-memory");
+
+        final Context channelContext = new Context();
+        channelContext.put("keep-alive", "0");
+        Configurables.configure(channel, channelContext);
+        channel.start();
+
+        sink = new InsistentAvroSink();
+        sink.setName("insistentAvroSinkTest");
+        sink.setChannel(channel);
+
+        // nothing listens on the port: the sink must not try to connect before it delivers a batch
+        final Context sinkContext = new Context();
+        sinkContext.put("hostname", "localhost");
+        sinkContext.put("port", "1");
+        sinkContext.put(SinkConstants.CONFIG_MAX_IN_FLIGHT_BATCHES, "2");
+        Configurables.configure(sink, sinkContext);
+    }
+
+    @After
+    public void tearDown() {
+        channel.stop();
+    }
+
+    @Test
+    public void testPipelinedSinkKeepsAvroSinkDisconnected() {
+        assertFalse(sink.initializeRpcClient(new Properties()).isActive());
+    }
+
+    @Test
+    public void testPipelinedDeliveryMetricsDoNotReplaceSinkMetrics() throws Exception {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+        sink.start();
+        try {
+            assertTrue(mBeanServer.isRegistered(new ObjectName("org.apache.flume.sink:type=insistentAvroSinkTest")));
+            assertTrue(mBeanServer.isRegistered(
+                    new ObjectName("org.apache.flume.sink:type=insistentAvroSinkTest-delivery")));
+        } finally {
+            sink.stop();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package de.zalando.pequod.flume.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.flume.ChannelException;
+import org.apache.flume.Context;
+import org.apache.flume.Event;
+import org.apache.flume.EventDeliveryException;
+import org.apache.flume.Sink.Status;
+import org.apache.flume.Transaction;
+import org.apache.flume.api.RpcClient;
+import org.apache.flume.channel.MemoryChannel;
+import org.apache.flume.conf.Configurables;
+import org.apache.flume.event.EventBuilder;
+import org.apache.flume.instrumentation.SinkCounter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import de.zalando.pequod.flume.batch.AdaptiveBatchSizer;
+
+public final class PipelinedDeliveryTest {
+
+    private MemoryChannel channel;
+    private InsistentAvroSinkCounter counter;
+    private SinkCounter sinkCounter;
+
+    @Before
+    public void setUp() {
+        channel = new MemoryChannel();
+        channel.setName("pipelinedDeliveryTest");
+
+        final Context context = new Context();
+        context.put("keep-alive", "0");
+        Configurables.configure(channel, context);
+        channel.start();
+
+        counter = new InsistentAvroSinkCounter("pipelinedDeliveryTest");
+        sinkCounter = new SinkCounter("pipelinedDeliveryTest");
+    }
+
+    @After
+    public void tearDown() {
+        channel.stop();
+    }
+
+    private void put(final int numberOfEvents) {
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+        for (int i = 0; i < numberOfEvents; i++) {
+            channel.put(EventBuilder.withBody(new byte[] {(byte) i}));
+        }
+
+        transaction.commit();
+        transaction.close();
+    }
+
+    private Event take() {
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+
+        final Event event = channel.take();
+        transaction.commit();
+        transaction.close();
+        return event;
+    }
+
+    @Test(timeout = 10000L)
+    public void testNextBatchIsSentBeforePreviousBatchHasBeenAcked() throws EventDeliveryException {
+        put(4);
+
+        final CountDownLatch secondBatchSent = new CountDownLatch(2);
+        final List<List<Event>> batches = new CopyOnWriteArrayList<>();
+        final PipelinedDelivery delivery = new PipelinedDelivery(channel, () ->
+                    new TestClient() {
+                        @Override
+                        public void appendBatch(final List<Event> events) {
+                            secondBatchSent.countDown();
+                            try {
+
+                                // the first batch is acked only after the second one has been sent
+                                secondBatchSent.await(5L, TimeUnit.SECONDS);
+                            } catch (final InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+
+                            batches.add(events);
+                        }
+                    }, 2, 2, 2, null, counter, sinkCounter);
+
+        assertEquals(Status.READY, delivery.process());
+        assertEquals(Status.READY, delivery.process());
+        delivery.stop();
+
+        assertEquals(0L, secondBatchSent.getCount());
+        assertEquals(2, batches.size());
+        assertNull(take());
+    }
+
+    @Test(timeout = 10000L)
+    public void testFailedBatchIsRolledBack() {
+        put(2);
+
+        final PipelinedDelivery delivery = new PipelinedDelivery(channel, () ->
+                    new TestClient() {
+                        @Override
+                        public void appendBatch(final List<Event> events) throws EventDeliveryException {
+                            throw new EventDeliveryException("next hop is down");
+                        }
+                    }, 1, 2, 2, null, counter, sinkCounter);
+
+        try {
+            delivery.process();
+            delivery.stop();
+            delivery.process();
+            fail("failed batch has not been reported");
+        } catch (final EventDeliveryException e) {
+            assertTrue(e.getMessage().contains("next hop is down"));
+        }
+
+        final Event event = take();
+        assertNotNull(event);
+        assertEquals(0, event.getBody()[0]);
+    }
+
+    @Test(timeout = 10000L)
+    public void testUncheckedFailureOfSendDoesNotBlockLaterBatches() {
+        put(4);
+
+        final AtomicBoolean hasFailed = new AtomicBoolean();
+        final List<Event> delivered = new CopyOnWriteArrayList<>();
+        final PipelinedDelivery delivery = new PipelinedDelivery(channel, () ->
+                    new TestClient() {
+                        @Override
+                        public void appendBatch(final List<Event> events) {
+                            if (hasFailed.compareAndSet(false, true)) {
+                                throw new IllegalStateException("broken connection");
+                            }
+
+                            delivered.addAll(events);
+                        }
+                    }, 1, 2, 2, null, counter, sinkCounter);
+
+        drain(delivery);
+
+        assertEquals(4, delivered.size());
+        assertEquals(4L, sinkCounter.getEventDrainSuccessCount());
+        assertNull(take());
+    }
+
+    @Test(timeout = 10000L)
+    public void testFailedTransactionDoesNotBlockLaterBatches() {
+        final AtomicBoolean hasFailed = new AtomicBoolean();
+        final MemoryChannel failingChannel = new MemoryChannel() {
+            @Override
+            public Transaction getTransaction() {
+                if (hasFailed.compareAndSet(false, true)) {
+                    throw new ChannelException("channel is stopping");
+                }
+
+                return super.getTransaction();
+            }
+        };
+
+        final Context context = new Context();
+        context.put("keep-alive", "0");
+        Configurables.configure(failingChannel, context);
+        failingChannel.start();
+        channel.stop();
+        channel = failingChannel;
+        hasFailed.set(true);
+        put(4);
+        hasFailed.set(false);
+
+        final List<Event> delivered = new CopyOnWriteArrayList<>();
+        final PipelinedDelivery delivery = new PipelinedDelivery(channel, () ->
+                    new TestClient() {
+                        @Override
+                        public void appendBatch(final List<Event> events) {
+                            delivered.addAll(events);
+                        }
+                    }, 1, 2, 2, null, counter, sinkCounter);
+
+        drain(delivery);
+
+        assertEquals(4, delivered.size());
+        assertNull(take());
+    }
+
+    @Test(timeout = 10000L)
+    public void testBatchLimitedByBatchSizerIsCountedAsComplete() {
+        put(4);
+
+        final List<List<Event>> batches = new CopyOnWriteArrayList<>();
+        final PipelinedDelivery delivery = new PipelinedDelivery(channel, () ->
+                    new TestClient() {
+                        @Override
+                        public void appendBatch(final List<Event> events) {
+                            batches.add(events);
+                        }
+                    }, 1, 1, 10, new AdaptiveBatchSizer(1, 10, 2, 100L), counter, sinkCounter);
+
+        drain(delivery);
+
+        assertEquals(2, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(2L, sinkCounter.getBatchCompleteCount());
+        assertEquals(0L, sinkCounter.getBatchUnderflowCount());
+    }
+
+    /**
+     * Processes batches until the channel is empty, ignoring failures, and stops the delivery.
+     */
+    private static void drain(final PipelinedDelivery delivery) {
+        Status status = Status.READY;
+        while (status == Status.READY) {
+            try {
+                status = delivery.process();
+            } catch (final EventDeliveryException e) {
+                status = Status.READY;
+            }
+        }
+
+        delivery.stop();
+    }
+
+    private abstract static class TestClient implements RpcClient {
+
+        @Override
+        public int getBatchSize() {
+            return 2;
+        }
+
+        @Override
+        public void append(final Event event) throws EventDeliveryException {
+            appendBatch(Lists.newArrayList(event));
+        }
+
+        @Override
+        public boolean isActive() {
+            return true;
+        }
+
+        @Override
+        public void close() { }
+    }
+}
@@ -0,0 +1,123 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public final class ElasticConsumerPoolTest {
+
+    private RecordQueue<Record> queue;
+    private TailFileSourceCounter counter;
+    private ElasticConsumerPool pool;
+
+    @Before
+    public void setup() {
+        queue = new BlockingRecordQueue<>(10);
+        counter = new TailFileSourceCounter("elasticConsumerPoolTest");
+
+        final List<RecordConsumer> initialConsumers = Lists.newArrayList(createConsumer());
+        pool = new ElasticConsumerPool(queue, initialConsumers, this::createConsumer, 3, 1000L, counter);
+
+        // consumers are only created, never run: scaling decisions depend on the queue fill level only
+        pool.start(new AbstractExecutorService() {
+                @Override
+                public void execute(final Runnable command) { }
+
+                @Override
+                public void shutdown() { }
+
+                @Override
+                public List<Runnable> shutdownNow() {
+                    return Collections.emptyList();
+                }
+
+                @Override
+                public boolean isShutdown() {
+                    return false;
+                }
+
+                @Override
+                public boolean isTerminated() {
+                    return false;
+                }
+
+                @Override
+                public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+                    return false;
+                }
+            });
+    }
+
+    @Test
+    public void testScalesUpToMaxOnFullQueue() throws InterruptedException {
+        fillQueue(6);
+
+        pool.scale();
+        assertEquals(2, pool.getNumberOfConsumers());
+
+        pool.scale();
+        assertEquals(3, pool.getNumberOfConsumers());
+        assertEquals(3L, counter.getNumberOfConsumers());
+    }
+
+    @Test
+    public void testScalesDownToMinAfterIdleIntervals() throws InterruptedException {
+        fillQueue(6);
+        pool.scale();
+        pool.scale();
+        drainQueue();
+
+        for (int i = 1; i < ElasticConsumerPool.SCALE_DOWN_INTERVALS; i++) {
+            pool.scale();
+            assertEquals("consumers must not be retired before enough idle intervals", 3,
+                pool.getNumberOfConsumers());
+        }
+
+        pool.scale();
+        assertEquals(2, pool.getNumberOfConsumers());
+
+        for (int i = 0; i < 2 * ElasticConsumerPool.SCALE_DOWN_INTERVALS; i++) {
+            pool.scale();
+        }
+
+        assertEquals(1, pool.getNumberOfConsumers());
+    }
+
+    @Test
+    public void testModerateQueueFillKeepsConsumers() throws InterruptedException {
+        fillQueue(6);
+        pool.scale();
+        drainQueue();
+        fillQueue(3);
+
+        for (int i = 0; i < 2 * ElasticConsumerPool.SCALE_DOWN_INTERVALS; i++) {
+            pool.scale();
+        }
+
+        assertEquals(2, pool.getNumberOfConsumers());
+    }
+
+    private RecordConsumer createConsumer() {
+        return new RecordConsumer(queue, counter, null, null, null, null);
+    }
+
+    private void fillQueue(final int numberOfRecords) throws InterruptedException {
+        for (int i = 0; i < numberOfRecords; i++) {
+            queue.offer(new Record(i, "record " + i), 1L, TimeUnit.SECONDS);
+        }
+    }
+
+    private void drainQueue() throws InterruptedException {
+        while (!queue.isEmpty()) {
+            queue.poll(1L, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public final class ExecutionModeTest {
+
+    @Test
+    public void testFromConfigValue() {
+        assertSame(ExecutionMode.FIXED, ExecutionMode.fromConfigValue("fixed"));
+        assertSame(ExecutionMode.VIRTUAL, ExecutionMode.fromConfigValue("virtual"));
+        assertSame(ExecutionMode.SHARED, ExecutionMode.fromConfigValue("shared"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownConfigValue() {
+        ExecutionMode.fromConfigValue("cached");
+    }
+
+    @Test
+    public void testVirtualModeRunsBlockingTasks() throws InterruptedException {
+
+        // falls back to platform threads on JVMs without virtual threads
+        final ExecutorService executor = ExecutionMode.VIRTUAL.newExecutor(2);
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 2; i++) {
+                executor.submit(() -> {
+                        started.countDown();
+                        release.await();
+                        return null;
+                    });
+            }
+
+            assertTrue("both tasks must run concurrently", started.await(5L, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+
+        assertTrue(executor.awaitTermination(5L, TimeUnit.SECONDS));
+        assertFalse(ExecutionMode.VIRTUAL.isShared());
+    }
+
+    @Test
+    public void testSharedModeReusesExecutor() {
+        assertSame(ExecutionMode.SHARED.newExecutor(3), ExecutionMode.SHARED.newExecutor(5));
+        assertTrue(ExecutionMode.SHARED.isShared());
+    }
+}
@@ -0,0 +1,46 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public final class JsonRecordMapperTest {
+
+    @Test
+    public void testMembersOfObject() {
+        final RecordMapper mapper = new JsonRecordMapper(Collections.<String>emptyList());
+
+        final Map<String, String> mappings = mapper.map(
+                " {\"level\" : \"warn\", \"msg\":\"Gr\\u00f6\\u00dfe \\\"max\\\"\\n\", \"status\":503, \"ok\":false,"
+                + " \"user\":{\"id\":7,\"roles\":[\"a}\",\"b\"]}, \"trace\":null}");
+
+        assertEquals(ImmutableMap.builder().put("level", "warn").put("msg", "Gr\u00f6\u00dfe \"max\"\n")
+                                 .put("status", "503").put("ok", "false")
+                                 .put("user", "{\"id\":7,\"roles\":[\"a}\",\"b\"]}").build(), mappings);
+    }
+
+    @Test
+    public void testProjectionStopsAfterProjectedFields() {
+        final RecordMapper mapper = new JsonRecordMapper(ImmutableList.of("status"));
+
+        // NOTE: the rest of the record is not parsed, so it need not be valid
+        assertEquals(ImmutableMap.of("status", "200"), mapper.map("{\"msg\":\"ignored\",\"status\":200,\"x\":"));
+    }
+
+    @Test
+    public void testInvalidRecordIsNotMapped() {
+        final RecordMapper mapper = new JsonRecordMapper(Collections.<String>emptyList());
+
+        assertTrue(mapper.map("INFO no JSON").isEmpty());
+        assertTrue(mapper.map("{\"level\":\"info\" \"msg\":\"missing comma\"}").isEmpty());
+        assertTrue(mapper.map("{\"msg\":\"unterminated}").isEmpty());
+        assertTrue(mapper.map("{}").isEmpty());
+    }
+}
@@ -0,0 +1,86 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public final class LoadShedderTest {
+
+    private final TailFileSourceCounter counter = new TailFileSourceCounter("test");
+
+    @Test
+    public void testFindLevel() {
+        assertSame(LogLevel.ERROR, LogLevel.find("23 Jan 2015 10:15:42,123 ERROR something failed"));
+        assertSame(LogLevel.WARN, LogLevel.find("2015-01-23 10:15:42 [main] warning: disk almost full"));
+        assertNull(LogLevel.find("\tat de.zalando.Foo.bar(Foo.java:42)"));
+        assertSame(LogLevel.ERROR, LogLevel.find("2015-01-23 10:15:42 [error] upstream timed out"));
+        assertSame(LogLevel.INFO, LogLevel.find("ts=2015-01-23T10:15:42Z level=info msg=started"));
+    }
+
+    @Test
+    public void testLevelNamesInMessageAreIgnored() {
+        assertNull(LogLevel.find("Jan 23 10:15:42 host app: disk alert raised"));
+        assertNull(LogLevel.find("2015-01-23 10:15:42 please notice the new terms"));
+        assertNull(LogLevel.find("10.0.0.1 - - [23/Jan/2015:10:15:42] \"GET /health HTTP/1.1\" 200 42 ERROR"));
+    }
+
+    @Test
+    public void testNothingIsShedBelowHighWatermark() {
+        final LoadShedder shedder = new LoadShedder(SheddingPolicy.SAMPLE, 80, 50, 10, LogLevel.WARN, null, counter);
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(shedder.shed("DEBUG noise", 79));
+        }
+
+        assertEquals(0L, counter.getShedActive());
+    }
+
+    @Test
+    public void testSamplingKeepsOneInN() {
+        final LoadShedder shedder = new LoadShedder(SheddingPolicy.SAMPLE, 80, 50, 10, LogLevel.WARN, null, counter);
+
+        int kept = 0;
+        for (int i = 0; i < 100; i++) {
+            if (!shedder.shed("DEBUG noise", 80)) {
+                kept++;
+            }
+        }
+
+        assertEquals(10, kept);
+        assertEquals(90L, counter.getShedSampledCount());
+        assertEquals(1L, counter.getShedActive());
+    }
+
+    @Test
+    public void testLevelPolicyKeepsImportantRecords() {
+        final LoadShedder shedder = new LoadShedder(SheddingPolicy.LEVEL, 80, 50, 10, LogLevel.WARN,
+                Pattern.compile("payment"), counter);
+
+        assertTrue(shedder.shed("10:15:42 DEBUG noise", 90));
+        assertTrue(shedder.shed("10:15:42 INFO noise", 90));
+        assertFalse(shedder.shed("10:15:42 INFO payment received", 90));
+        assertFalse(shedder.shed("10:15:42 WARN disk almost full", 90));
+        assertFalse(shedder.shed("10:15:42 ERROR something failed", 90));
+        assertFalse(shedder.shed("\tat de.zalando.Foo.bar(Foo.java:42)", 90));
+
+        assertEquals(2L, counter.getShedLevelCount());
+        assertEquals(1L, counter.getShedPriorityKeptCount());
+    }
+
+    @Test
+    public void testSheddingStopsBelowLowWatermark() {
+        final LoadShedder shedder = new LoadShedder(SheddingPolicy.LEVEL, 80, 50, 10, LogLevel.WARN, null, counter);
+
+        assertTrue(shedder.shed("DEBUG noise", 80));
+        assertTrue(shedder.shed("DEBUG noise", 60));
+        assertFalse(shedder.shed("DEBUG noise", 49));
+        assertFalse(shedder.shed("DEBUG noise", 79));
+        assertEquals(0L, counter.getShedActive());
+    }
+}
@@ -0,0 +1,69 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.file.Files;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.flume.Context;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+
+public final class LogFileReaderTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test(timeout = 10000L)
+    public void testNoReadLagAfterReadingLfLines() throws Exception {
+        assertEquals(0L, readAndGetLag("first\nsecond\nthird\n"));
+    }
+
+    @Test(timeout = 10000L)
+    public void testNoReadLagAfterReadingCrlfLines() throws Exception {
+        assertEquals(0L, readAndGetLag("first\r\nsecond\r\nthird\r\n"));
+    }
+
+    /**
+     * Reads all lines of a file with the given content and returns the read lag once the last line has been queued.
+     */
+    private long readAndGetLag(final String content) throws IOException, InterruptedException {
+        final File inputFile = temporaryFolder.newFile("input.log");
+        Files.write(inputFile.toPath(), content.getBytes(Charsets.UTF_8));
+
+        final RecordQueue<Record> queue = new BlockingRecordQueue<>(10);
+        final LogFileReader reader = new LogFileReader(queue, null, null, null,
+                new TailFileSourceCounter("logFileReaderTest"));
+
+        final Context context = new Context();
+        context.put(SourceConstants.CONFIG_TARGET_FILE, inputFile.getPath());
+        context.put(SourceConstants.CONFIG_TAILER_DELAY_MS, "10");
+        context.put(SourceConstants.CONFIG_TAILER_START_FROM_END, "false");
+        context.put(SourceConstants.CONFIG_LAST_READ_WAIT_TIME_FOR_KILL_IN_MS, "0");
+        reader.configure(context);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.execute(reader);
+            while (queue.size() < 3) {
+                Thread.sleep(10L);
+            }
+
+            return reader.getReadLagInBytes();
+        } finally {
+            reader.kill();
+            executor.shutdownNow();
+            executor.awaitTermination(5L, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public final class LogfmtRecordMapperTest {
+
+    @Test
+    public void testPairsWithQuotedAndEscapedValues() {
+        final RecordMapper mapper = new LogfmtRecordMapper(Collections.<String>emptyList());
+
+        final Map<String, String> mappings = mapper.map(
+                "level=warn msg=\"Größe \\\"max\\\" überschritten\" took=5ms  empty= stray words");
+
+        assertEquals(ImmutableMap.of("level", "warn", "msg", "Größe \"max\" überschritten", "took", "5ms", "empty",
+                ""), mappings);
+    }
+
+    @Test
+    public void testProjectionOfEncodedRecordSlice() {
+        final RecordMapper mapper = new LogfmtRecordMapper(ImmutableList.of("status", "path"));
+        final byte[] buffer = "xxpath=/api status=200 user=7\nyy".getBytes(Charsets.UTF_8);
+
+        final Map<String, String> mappings = mapper.map(buffer, 2, buffer.length - 5, Charsets.UTF_8);
+
+        assertEquals(ImmutableMap.of("path", "/api", "status", "200"), mappings);
+        assertEquals(ImmutableList.of("status", "path"), mapper.getFieldNames());
+    }
+
+    @Test
+    public void testRecordWithoutPairsIsNotMapped() {
+        final RecordMapper mapper = new LogfmtRecordMapper(Collections.<String>emptyList());
+
+        assertTrue(mapper.map("java.lang.IllegalStateException: no pairs").isEmpty());
+        assertTrue(new LogfmtRecordMapper(ImmutableList.of("status")).map("level=info").isEmpty());
+    }
+}
@@ -0,0 +1,72 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+
+public final class RecordBodyEncoderTest {
+
+    @Test
+    public void testAvroRecordOfOptionalStrings() {
+        final RecordBodyEncoder encoder = new RecordBodyEncoder(BodyFormat.AVRO,
+                Arrays.asList("level", "code", "message"));
+        final Map<String, String> recordMappings = ImmutableMap.of("level", "WARN", "message", "Größe");
+
+        final byte[] body = encoder.encode(recordMappings, null);
+
+        // branch 1, length 4 (zig-zag 8), "WARN" | branch 0 | branch 1, length 7 (zig-zag 14), "Größe" | branch 0
+        final byte[] expected = new byte[] {
+            2, 8, 'W', 'A', 'R', 'N', 0, 2, 14, 'G', 'r', (byte) 0xC3, (byte) 0xB6, (byte) 0xC3, (byte) 0x9F, 'e', 0
+        };
+        assertArrayEquals(expected, body);
+        assertEquals("{\"type\":\"record\",\"name\":\"MappedRecord\",\"namespace\":\"de.zalando.pequod.flume\","
+                + "\"fields\":[{\"name\":\"level\",\"type\":[\"null\",\"string\"],\"default\":null},"
+                + "{\"name\":\"code\",\"type\":[\"null\",\"string\"],\"default\":null},"
+                + "{\"name\":\"message\",\"type\":[\"null\",\"string\"],\"default\":null},"
+                + "{\"name\":\"_line\",\"type\":[\"null\",\"string\"],\"default\":null}]}", encoder.getSchema());
+    }
+
+    @Test
+    public void testInvalidAvroNamesAreSanitized() {
+        assertEquals("http_status", RecordBodyEncoder.toAvroName("http.status"));
+        assertEquals("user_agent", RecordBodyEncoder.toAvroName("user-agent"));
+        assertEquals("_2xx", RecordBodyEncoder.toAvroName("2xx"));
+        assertEquals("_", RecordBodyEncoder.toAvroName(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCollidingAvroNamesAreRejected() {
+        new RecordBodyEncoder(BodyFormat.AVRO, Arrays.asList("user-agent", "user.agent"));
+    }
+
+    @Test
+    public void testJsonObjectOfMappedFields() {
+        final RecordBodyEncoder encoder = new RecordBodyEncoder(BodyFormat.JSON,
+                Arrays.asList("level", "code", "message"));
+        final Map<String, String> recordMappings = ImmutableMap.of("level", "WARN", "message",
+                "say \"Größe\"\t\\ \u0001 😀");
+
+        final byte[] body = encoder.encode(recordMappings, null);
+
+        assertEquals("{\"level\":\"WARN\",\"message\":\"say \\\"Größe\\\"\\t\\\\ \\u0001 😀\"}",
+            new String(body, Charsets.UTF_8));
+    }
+
+    @Test
+    public void testUnmappedLineIsKept() {
+        final RecordBodyEncoder encoder = new RecordBodyEncoder(BodyFormat.JSON, Arrays.asList("level", "message"));
+
+        final byte[] body = encoder.encode(Collections.<String, String>emptyMap(), "no match");
+
+        assertEquals("{\"_line\":\"no match\"}", new String(body, Charsets.UTF_8));
+        assertEquals(Arrays.asList("level", "message", RecordBodyEncoder.LINE_FIELD), encoder.getFieldNames());
+    }
+}
@@ -0,0 +1,118 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.Charset;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.flume.Context;
+import org.apache.flume.Event;
+import org.apache.flume.channel.ChannelProcessor;
+import org.apache.flume.channel.ReplicatingChannelSelector;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public final class RecordConsumerTest {
+
+    private static final String POISON_LINE = "poison";
+
+    /**
+     * mapper failing on {@link #POISON_LINE}.
+     */
+    private static final RecordMapper FAILING_MAPPER = new RecordMapper() {
+        @Override
+        public Map<String, String> map(final String line) {
+            if (POISON_LINE.equals(line)) {
+                throw new IllegalStateException("cannot map " + line);
+            }
+
+            return Maps.newHashMap();
+        }
+
+        @Override
+        public Map<String, String> map(final byte[] input, final int offset, final int length,
+                final Charset charset) {
+            return map(new String(input, offset, length, charset));
+        }
+
+        @Override
+        public List<String> getFieldNames() {
+            return Collections.emptyList();
+        }
+    };
+
+    @Test(timeout = 30000L)
+    public void testFailedRecordDoesNotStallOrderedRelease() throws Exception {
+        final TailFileSourceCounter counter = new TailFileSourceCounter("recordConsumerTest");
+        final RecordQueue<Record> queue = new BlockingRecordQueue<>(100);
+        final ReorderBuffer reorderBuffer = new ReorderBuffer(10, 10, counter);
+        final ReloadableRecordMapper recordMapper = new ReloadableRecordMapper(FAILING_MAPPER, counter);
+
+        final List<String> released = Lists.newArrayList();
+        final ChannelProcessor channelProcessor = new ChannelProcessor(new ReplicatingChannelSelector()) {
+            @Override
+            public void processEventBatch(final List<Event> events) {
+                synchronized (released) {
+                    for (final Event event : events) {
+                        released.add(new String(event.getBody(), Charsets.UTF_8));
+                    }
+                }
+            }
+        };
+        reorderBuffer.setChannelProcessor(channelProcessor);
+
+        final List<String> expected = Lists.newArrayList();
+        for (int i = 0; i < 50; i++) {
+            if (i == 7) {
+                queue.offer(new Record(i, POISON_LINE), 1L, TimeUnit.SECONDS);
+            } else {
+                queue.offer(new Record(i, "record " + i), 1L, TimeUnit.SECONDS);
+                expected.add("record " + i);
+            }
+        }
+
+        final List<RecordConsumer> consumers = Lists.newArrayList();
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 2; i++) {
+                final RecordConsumer consumer = new RecordConsumer(queue, counter, reorderBuffer, null, null,
+                        recordMapper);
+                final Context context = new Context();
+                context.put(SourceConstants.CONFIG_BATCH_SIZE, "5");
+                consumer.configure(context);
+                consumer.setChannelProcessor(channelProcessor);
+                consumers.add(consumer);
+                executor.execute(consumer);
+            }
+
+            while (true) {
+                synchronized (released) {
+                    if (released.size() >= expected.size()) {
+                        break;
+                    }
+                }
+
+                Thread.sleep(10L);
+            }
+
+            assertEquals(expected, released);
+        } finally {
+            for (final RecordConsumer consumer : consumers) {
+                consumer.kill();
+            }
+
+            executor.shutdownNow();
+            executor.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+}
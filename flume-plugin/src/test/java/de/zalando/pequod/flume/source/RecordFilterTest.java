@@ -0,0 +1,71 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.flume.Context;
+
+import org.junit.Test;
+
+public final class RecordFilterTest {
+
+    @Test
+    public void testAhoCorasickMatcher() {
+        final AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList("he", "she", "his", "hers", "größe"));
+
+        assertTrue(matcher.matches("ushers"));
+        assertTrue(matcher.matches("this"));
+        assertTrue(matcher.matches("xxshe"));
+        assertTrue(matcher.matches("Schuhgröße 42"));
+        assertFalse(matcher.matches("hxs hi s"));
+        assertFalse(matcher.matches("Größe"));
+        assertFalse(matcher.matches(""));
+    }
+
+    @Test
+    public void testNoRulesCreateNoFilter() {
+        assertNull(RecordFilter.create(new Context()));
+    }
+
+    @Test
+    public void testExcludeRules() {
+        final Context context = new Context();
+        context.put(SourceConstants.CONFIG_FILTER_EXCLUDE_PREFIXES, "#");
+        context.put(SourceConstants.CONFIG_FILTER_EXCLUDE_LITERALS, "GET /health,GET /metrics");
+        context.put(SourceConstants.CONFIG_FILTER_EXCLUDE_PATTERN, "DEBUG|TRACE");
+
+        final RecordFilter recordFilter = RecordFilter.create(context);
+
+        assertFalse(recordFilter.accept("# comment"));
+        assertFalse(recordFilter.accept("10.0.0.1 - - \"GET /health HTTP/1.1\" 200"));
+        assertFalse(recordFilter.accept("10.0.0.1 - - \"GET /metrics HTTP/1.1\" 200"));
+        assertFalse(recordFilter.accept("10:15:42 DEBUG noise"));
+        assertTrue(recordFilter.accept("10.0.0.1 - - \"GET /articles HTTP/1.1\" 200"));
+    }
+
+    @Test
+    public void testIncludeRules() {
+        final Context context = new Context();
+        context.put(SourceConstants.CONFIG_FILTER_INCLUDE_LITERALS, "ERROR,WARN");
+        context.put(SourceConstants.CONFIG_FILTER_INCLUDE_PREFIXES, "\t");
+        context.put(SourceConstants.CONFIG_FILTER_EXCLUDE_LITERALS, "expected");
+
+        final RecordFilter recordFilter = RecordFilter.create(context);
+
+        assertTrue(recordFilter.accept("10:15:42 ERROR something failed"));
+        assertTrue(recordFilter.accept("\tat de.zalando.Foo.bar(Foo.java:42)"));
+        assertFalse(recordFilter.accept("10:15:42 INFO all good"));
+        assertFalse(recordFilter.accept("10:15:42 WARN expected timeout"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonAsciiRuleIsRejected() {
+        final Context context = new Context();
+        context.put(SourceConstants.CONFIG_FILTER_INCLUDE_LITERALS, "ERROR,Größe");
+
+        RecordFilter.create(context);
+    }
+}
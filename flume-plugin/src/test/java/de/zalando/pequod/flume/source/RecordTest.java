@@ -0,0 +1,49 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+import de.zalando.grok.GrokMapper;
+
+public final class RecordTest {
+
+    @Test
+    public void testLineBytesRestoreTheBytesOfTheFile() {
+        final byte[] fileBytes = "WARN Größe 42 € überschritten".getBytes(Charsets.UTF_8);
+        final Record record = new Record(0L, tail(fileBytes));
+
+        assertArrayEquals(fileBytes, record.getLineBytes());
+    }
+
+    @Test
+    public void testMappingOfLineBytesDecodesFields() {
+        final GrokMapper mapper = new GrokMapper.Builder().withDefaultPatternDefinitions()
+                                                          .withRecordMappingDefinition(
+                                                              "%{LOGLEVEL:level} %{GREEDYDATA:message}").build();
+        final byte[] lineBytes = new Record(0L, tail("WARN Größe 42 € überschritten".getBytes(Charsets.UTF_8)))
+                .getLineBytes();
+
+        final Map<String, String> mapping = mapper.map(lineBytes, 0, lineBytes.length, Charsets.UTF_8);
+
+        assertEquals("WARN", mapping.get("level"));
+        assertEquals("Größe 42 € überschritten", mapping.get("message"));
+    }
+
+    /**
+     * @return  the line as handed over by the tailer, which maps each byte to a char
+     */
+    private static String tail(final byte[] bytes) {
+        final StringBuilder line = new StringBuilder();
+        for (final byte b : bytes) {
+            line.append((char) b);
+        }
+
+        return line.toString();
+    }
+}
@@ -0,0 +1,142 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+
+public final class ReloadableRecordMapperTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String patternDirectory;
+    private Path mappingFile;
+    private TailFileSourceCounter counter;
+
+    @Before
+    public void setUp() throws IOException {
+        final File patterns = temporaryFolder.newFolder("patterns");
+        Files.write(patterns.toPath().resolve("base"), "WORD \\b\\w+\\b\nNUMBER \\d+\n".getBytes(Charsets.UTF_8));
+        patternDirectory = patterns.toURI().toURL().toString();
+
+        mappingFile = temporaryFolder.newFile("mapping").toPath();
+        writeMapping("%{WORD:level} %{NUMBER:status}");
+
+        counter = new TailFileSourceCounter("test");
+    }
+
+    private void writeMapping(final String mapping) throws IOException {
+        Files.write(mappingFile, mapping.getBytes(Charsets.UTF_8));
+    }
+
+    @Test
+    public void testMappingIsReadFromFile() {
+        final ReloadableRecordMapper recordMapper = new ReloadableRecordMapper(patternDirectory, null, mappingFile,
+                counter);
+
+        assertEquals("200", recordMapper.get().map("INFO 200").get("status"));
+    }
+
+    @Test
+    public void testChangedMappingIsSwappedIn() throws IOException {
+        final ReloadableRecordMapper recordMapper = new ReloadableRecordMapper(patternDirectory, null, mappingFile,
+                counter);
+        final RecordMapper initialMapper = recordMapper.get();
+
+        writeMapping("%{WORD:level} %{NUMBER:code}");
+
+        assertTrue(recordMapper.reload());
+        assertNotSame(initialMapper, recordMapper.get());
+        assertEquals("200", recordMapper.get().map("INFO 200").get("code"));
+        assertEquals(1L, counter.getMappingReloadCount());
+    }
+
+    @Test(timeout = 20000L)
+    public void testWatcherSwapsInChangedMapping() throws IOException, InterruptedException {
+        final ReloadableRecordMapper recordMapper = new ReloadableRecordMapper(patternDirectory, null, mappingFile,
+                counter);
+        final RecordMapper initialMapper = recordMapper.get();
+
+        final Thread watcher = new Thread(recordMapper);
+        watcher.start();
+        try {
+
+            // NOTE: the watcher may not have registered yet, so the mapping is rewritten after each quiet period
+            while (recordMapper.get() == initialMapper) {
+                writeMapping("%{WORD:level} %{NUMBER:code}");
+                for (int i = 0; i < 30 && recordMapper.get() == initialMapper; i++) {
+                    Thread.sleep(50L);
+                }
+            }
+        } finally {
+            recordMapper.kill();
+            watcher.join();
+        }
+
+        assertEquals("200", recordMapper.get().map("INFO 200").get("code"));
+        assertEquals(1L, counter.getMappingReloadCount());
+    }
+
+    @Test
+    public void testBrokenMappingKeepsCurrentMapper() throws IOException {
+        final ReloadableRecordMapper recordMapper = new ReloadableRecordMapper(patternDirectory, null, mappingFile,
+                counter);
+        final RecordMapper initialMapper = recordMapper.get();
+
+        writeMapping("%{WORD:level} (unclosed");
+
+        assertFalse(recordMapper.reload());
+        assertSame(initialMapper, recordMapper.get());
+        assertEquals(1L, counter.getMappingReloadFailureCount());
+    }
+
+    @Test
+    public void testAutoFormatMapsJsonAndGrokRecords() {
+        final ReloadableRecordMapper recordMapper = new ReloadableRecordMapper(RecordFormat.AUTO,
+                ImmutableList.<String>of(), patternDirectory, null, mappingFile, counter);
+
+        assertTrue(recordMapper.isUsingGrok());
+        assertEquals("201", recordMapper.get().map("{\"level\":\"INFO\",\"status\":201}").get("status"));
+        assertEquals("200", recordMapper.get().map("INFO 200").get("status"));
+    }
+
+    @Test
+    public void testAutoFormatWithoutRecordFieldsHasUnknownFields() {
+        final ReloadableRecordMapper recordMapper = new ReloadableRecordMapper(RecordFormat.AUTO,
+                ImmutableList.<String>of(), patternDirectory, null, mappingFile, counter);
+
+        // JSON records may contain any member, so a structured body cannot be encoded
+        assertTrue(recordMapper.get().getFieldNames().isEmpty());
+        assertEquals("x", recordMapper.get().map("{\"level\":\"INFO\",\"other\":\"x\"}").get("other"));
+
+        final ReloadableRecordMapper projectingMapper = new ReloadableRecordMapper(RecordFormat.AUTO,
+                ImmutableList.of("level", "status"), patternDirectory, null, mappingFile, counter);
+        assertEquals(ImmutableList.of("level", "status"), projectingMapper.get().getFieldNames());
+    }
+
+    @Test
+    public void testLogfmtFormatNeedsNoMapping() {
+        final ReloadableRecordMapper recordMapper = new ReloadableRecordMapper(RecordFormat.LOGFMT,
+                ImmutableList.of("status"), null, null, null, counter);
+
+        assertFalse(recordMapper.isUsingGrok());
+        assertEquals(ImmutableList.of("status"), recordMapper.get().getFieldNames());
+        assertEquals("200", recordMapper.get().map("level=INFO status=200").get("status"));
+    }
+}
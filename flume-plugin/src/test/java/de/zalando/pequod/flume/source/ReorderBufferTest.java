@@ -0,0 +1,113 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.flume.Event;
+import org.apache.flume.channel.ChannelProcessor;
+import org.apache.flume.channel.ReplicatingChannelSelector;
+import org.apache.flume.event.EventBuilder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+public final class ReorderBufferTest {
+
+    private List<String> released;
+    private TailFileSourceCounter counter;
+
+    @Before
+    public void setup() {
+        released = Lists.newArrayList();
+        counter = new TailFileSourceCounter("reorderBufferTest");
+    }
+
+    private ReorderBuffer createReorderBuffer(final int capacity, final int releaseBatchSize) {
+        final ReorderBuffer reorderBuffer = new ReorderBuffer(capacity, releaseBatchSize, counter);
+        reorderBuffer.setChannelProcessor(new ChannelProcessor(new ReplicatingChannelSelector()) {
+                @Override
+                public void processEventBatch(final List<Event> events) {
+                    assertTrue("release batch too large", events.size() <= releaseBatchSize);
+                    synchronized (released) {
+                        for (final Event event : events) {
+                            released.add(new String(event.getBody(), Charsets.UTF_8));
+                        }
+                    }
+                }
+            });
+        return reorderBuffer;
+    }
+
+    private static List<Event> events(final String... bodies) {
+        final List<Event> events = Lists.newArrayList();
+        for (final String body : bodies) {
+            events.add(EventBuilder.withBody(body, Charsets.UTF_8));
+        }
+
+        return events;
+    }
+
+    @Test
+    public void testEventsAreReleasedInSequenceOrder() {
+        final ReorderBuffer reorderBuffer = createReorderBuffer(10, 2);
+
+        reorderBuffer.submit(new long[] {1, 3}, events("1", "3"));
+        assertTrue("nothing must be released while sequence 0 is missing", released.isEmpty());
+        assertEquals(2L, counter.getReorderBufferSize());
+
+        reorderBuffer.submit(new long[] {0, 2, 4}, events("0", "2", "4"));
+        assertEquals(Arrays.asList("0", "1", "2", "3", "4"), released);
+        assertEquals(0L, counter.getReorderBufferSize());
+        assertEquals(5L, counter.getReorderReleasedCount());
+        assertEquals(5L, counter.getReorderBufferMaxSize());
+    }
+
+    @Test
+    public void testSubmitBeyondWindowWaitsForPredecessors() throws Exception {
+        final ReorderBuffer reorderBuffer = createReorderBuffer(2, 10);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            final Future<?> blocked = executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            reorderBuffer.submit(new long[] {1, 2, 3}, events("1", "2", "3"));
+                        }
+                    });
+
+            while (counter.getReorderWaitCount() == 0L) {
+                Thread.sleep(10L);
+            }
+
+            reorderBuffer.submit(new long[] {0}, events("0"));
+            blocked.get(10L, TimeUnit.SECONDS);
+
+            assertEquals(Arrays.asList("0", "1", "2", "3"), released);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSkippedSequenceClosesGap() {
+        final ReorderBuffer reorderBuffer = createReorderBuffer(10, 10);
+
+        reorderBuffer.submit(new long[] {0, 2, 3}, events("0", "2", "3"));
+        assertEquals(Arrays.asList("0"), released);
+
+        reorderBuffer.skip(1);
+        assertEquals(Arrays.asList("0", "2", "3"), released);
+        assertEquals(0L, counter.getReorderBufferSize());
+        assertEquals(3L, counter.getReorderReleasedCount());
+    }
+}
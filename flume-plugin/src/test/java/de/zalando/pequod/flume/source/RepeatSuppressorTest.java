@@ -0,0 +1,60 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public final class RepeatSuppressorTest {
+
+    private final List<String> summaries = Lists.newArrayList();
+    private final ObjIntConsumer<String> summaryHandler = (record, repeatCount) ->
+            summaries.add(record + " x" + repeatCount);
+
+    @Test
+    public void testRepetitionsWithinWindowAreSummarized() {
+        final RepeatSuppressor suppressor = new RepeatSuppressor(16, 1000L, false);
+
+        assertFalse(suppressor.suppress("connection refused", 0L, summaryHandler));
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(suppressor.suppress("connection refused", i, summaryHandler));
+        }
+
+        assertFalse(suppressor.suppress("something else", 10L, summaryHandler));
+        assertTrue(summaries.isEmpty());
+
+        // window has expired -> summary precedes the next first occurrence
+        assertFalse(suppressor.suppress("connection refused", 1000L, summaryHandler));
+        assertEquals(Lists.newArrayList("connection refused x5"), summaries);
+    }
+
+    @Test
+    public void testDigitsAreIgnoredIfConfigured() {
+        final RepeatSuppressor suppressor = new RepeatSuppressor(16, 1000L, true);
+
+        assertFalse(suppressor.suppress("10:15:42,123 timeout after 30 ms [id=4711]", 0L, summaryHandler));
+        assertTrue(suppressor.suppress("10:15:43,007 timeout after 31 ms [id=4712]", 1L, summaryHandler));
+        assertFalse(suppressor.suppress("10:15:43,007 timeout after 31 s [id=4712]", 2L, summaryHandler));
+
+        suppressor.flushAll(summaryHandler);
+        assertEquals(Lists.newArrayList("10:15:42,123 timeout after 30 ms [id=4711] x1"), summaries);
+    }
+
+    @Test
+    public void testSingleOccurrencesProduceNoSummary() {
+        final RepeatSuppressor suppressor = new RepeatSuppressor(1, 1000L, false);
+
+        assertFalse(suppressor.suppress("a", 0L, summaryHandler));
+        assertFalse(suppressor.suppress("b", 1L, summaryHandler));
+        assertFalse(suppressor.suppress("a", 2L, summaryHandler));
+        suppressor.flushAll(summaryHandler);
+
+        assertTrue(summaries.isEmpty());
+    }
+}
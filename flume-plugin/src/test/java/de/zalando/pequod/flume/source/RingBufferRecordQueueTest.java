@@ -0,0 +1,101 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public final class RingBufferRecordQueueTest {
+
+    private static final int NUMBER_OF_RECORDS = 200000;
+    private static final int NUMBER_OF_CONSUMERS = 4;
+
+    @Test
+    public void testCapacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(1, new RingBufferRecordQueue<String>(1, WaitStrategy.PARK).capacity());
+        assertEquals(16, new RingBufferRecordQueue<String>(10, WaitStrategy.PARK).capacity());
+        assertEquals(16384, new RingBufferRecordQueue<String>(10000, WaitStrategy.PARK).capacity());
+    }
+
+    @Test
+    public void testFifoOrder() throws Exception {
+        final RingBufferRecordQueue<String> queue = new RingBufferRecordQueue<>(4, WaitStrategy.BUSY_SPIN);
+
+        assertTrue(queue.isEmpty());
+        assertTrue(queue.offer("a", 0L, TimeUnit.MILLISECONDS));
+        assertTrue(queue.offer("b", 0L, TimeUnit.MILLISECONDS));
+        assertEquals(2, queue.size());
+
+        assertEquals("a", queue.poll(0L, TimeUnit.MILLISECONDS));
+        assertEquals("b", queue.poll(0L, TimeUnit.MILLISECONDS));
+        assertNull(queue.poll(10L, TimeUnit.MILLISECONDS));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testOfferTimesOutIfFull() throws Exception {
+        final RingBufferRecordQueue<String> queue = new RingBufferRecordQueue<>(2, WaitStrategy.YIELD);
+
+        assertTrue(queue.offer("a", 0L, TimeUnit.MILLISECONDS));
+        assertTrue(queue.offer("b", 0L, TimeUnit.MILLISECONDS));
+        assertFalse(queue.offer("c", 10L, TimeUnit.MILLISECONDS));
+
+        assertEquals("a", queue.poll(0L, TimeUnit.MILLISECONDS));
+        assertTrue(queue.offer("c", 0L, TimeUnit.MILLISECONDS));
+        assertEquals("b", queue.poll(0L, TimeUnit.MILLISECONDS));
+        assertEquals("c", queue.poll(0L, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testEachRecordIsConsumedExactlyOnce() throws Exception {
+        final RingBufferRecordQueue<Integer> queue = new RingBufferRecordQueue<>(1024, WaitStrategy.PARK);
+        final ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_CONSUMERS);
+
+        try {
+            final List<Future<boolean[]>> results = Lists.newArrayList();
+            for (int i = 0; i < NUMBER_OF_CONSUMERS; i++) {
+                results.add(executor.submit(new Callable<boolean[]>() {
+                            @Override
+                            public boolean[] call() throws Exception {
+                                final boolean[] seen = new boolean[NUMBER_OF_RECORDS];
+                                Integer record;
+                                while ((record = queue.poll(500L, TimeUnit.MILLISECONDS)) != null) {
+                                    seen[record] = true;
+                                }
+
+                                return seen;
+                            }
+                        }));
+            }
+
+            for (int i = 0; i < NUMBER_OF_RECORDS; i++) {
+                assertTrue(queue.offer(i, 10L, TimeUnit.SECONDS));
+            }
+
+            final int[] counts = new int[NUMBER_OF_RECORDS];
+            for (final Future<boolean[]> result : results) {
+                final boolean[] seen = result.get(30L, TimeUnit.SECONDS);
+                for (int i = 0; i < NUMBER_OF_RECORDS; i++) {
+                    counts[i] += seen[i] ? 1 : 0;
+                }
+            }
+
+            for (int i = 0; i < NUMBER_OF_RECORDS; i++) {
+                assertEquals("record " + i + " must be consumed exactly once", 1, counts[i]);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
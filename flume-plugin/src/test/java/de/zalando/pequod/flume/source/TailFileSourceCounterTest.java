@@ -0,0 +1,39 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public final class TailFileSourceCounterTest {
+
+    private final TailFileSourceCounter counter = new TailFileSourceCounter("tailFileSourceCounterTest");
+
+    @Test
+    public void testFlushedBatchesAreCounted() {
+        counter.onBatchFlushed(10, 9L, 1L, TimeUnit.MILLISECONDS.toNanos(3L));
+        counter.onBatchFlushed(0, 0L, 0L, TimeUnit.MILLISECONDS.toNanos(2L));
+        counter.onBatchFlushed(20, 20L, 0L, 0L);
+        counter.onBatchAccepted(10);
+
+        assertEquals(2L, counter.getFlushedBatchCount());
+        assertEquals(15L, counter.getFlushedBatchMeanSize());
+        assertEquals(30L, counter.getSourceCounter().getEventReceivedCount());
+        assertEquals(10L, counter.getSourceCounter().getEventAcceptedCount());
+        assertEquals(1L, counter.getSourceCounter().getAppendBatchAcceptedCount());
+        assertEquals(29L, counter.getMappingHitCount());
+        assertEquals(1L, counter.getMappingMissCount());
+        assertEquals(5L, counter.getConsumerBusyTimeInMs());
+    }
+
+    @Test
+    public void testSharedQueueDepthIsReadFromQueue() throws InterruptedException {
+        final RecordQueue<Record> queue = new BlockingRecordQueue<>(4);
+        counter.setSharedQueue(queue);
+        queue.offer(new Record(0L, "line", 0), 1L, TimeUnit.SECONDS);
+
+        assertEquals(1L, counter.getSharedQueueSize());
+        assertEquals(4L, counter.getSharedQueueCapacity());
+    }
+}
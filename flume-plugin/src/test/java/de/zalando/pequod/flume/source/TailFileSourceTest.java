@@ -0,0 +1,58 @@
+package de.zalando.pequod.flume.source;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.flume.Context;
+import org.apache.flume.conf.Configurables;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class TailFileSourceTest {
+
+    /**
+     * patterns bundled with the grok-mapper module, relative to the working directory of the build.
+     */
+    private static final String BUNDLED_PATTERN_DIRECTORY = "../grok-mapper/src/main/resources/logstash_patterns";
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File logFile;
+
+    @Before
+    public void setUp() throws IOException {
+        logFile = temporaryFolder.newFile("app.log");
+    }
+
+    private void configureGrokSource(final String patternDirectory) {
+        final Context context = new Context();
+        context.put(SourceConstants.CONFIG_TARGET_FILE, logFile.getAbsolutePath());
+        context.put(SourceConstants.CONFIG_RECORD_FORMAT, "grok");
+        context.put(SourceConstants.CONFIG_PATTERN_DIRECTORY, patternDirectory);
+        context.put(SourceConstants.CONFIG_FILE_RECORD_MAPPING, "%{SYSLOGLINE}");
+
+        final TailFileSource source = new TailFileSource();
+        source.setName("tailFileSourceTest");
+        Configurables.configure(source, context);
+    }
+
+    @Test
+    public void testGrokSourceIsConfiguredWithBundledPatternsAsPath() {
+        configureGrokSource(BUNDLED_PATTERN_DIRECTORY);
+    }
+
+    @Test
+    public void testGrokSourceIsConfiguredWithBundledPatternsAsFileUrl() throws IOException {
+        configureGrokSource(new File(BUNDLED_PATTERN_DIRECTORY).toURI().toURL().toString());
+        configureGrokSource("file:" + BUNDLED_PATTERN_DIRECTORY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingPatternDirectoryIsRejected() {
+        configureGrokSource(new File(temporaryFolder.getRoot(), "missing").getAbsolutePath());
+    }
+}
@@ -0,0 +1,78 @@
+package de.zalando.pequod.flume.source;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import org.junit.Test;
+
+public final class TimestampParserTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+    @Test
+    public void testFlumeTimestamp() {
+        final TimestampParser parser = new TimestampParser(TimestampFormat.FLUME_TIMESTAMP, ZONE);
+
+        assertEquals(toEpochMs(2014, 10, 19, 8, 28, 1, ZONE) + 123L, parser.parse("19 Oct 2014 08:28:01,123"));
+    }
+
+    @Test
+    public void testSyslogTimestampOfCurrentYear() {
+        final Clock clock = Clock.fixed(Instant.ofEpochMilli(toEpochMs(2014, 10, 19, 12, 0, 0, ZONE)), ZONE);
+        final TimestampParser parser = new TimestampParser(TimestampFormat.SYSLOGTIMESTAMP, ZONE, clock);
+
+        assertEquals(toEpochMs(2014, 10, 9, 8, 28, 1, ZONE), parser.parse("Oct  9 08:28:01"));
+    }
+
+    @Test
+    public void testSyslogTimestampOfLastYear() {
+        final Clock clock = Clock.fixed(Instant.ofEpochMilli(toEpochMs(2015, 1, 1, 0, 0, 5, ZONE)), ZONE);
+        final TimestampParser parser = new TimestampParser(TimestampFormat.SYSLOGTIMESTAMP, ZONE, clock);
+
+        assertEquals(toEpochMs(2014, 12, 31, 23, 59, 59, ZONE), parser.parse("Dec 31 23:59:59"));
+    }
+
+    @Test
+    public void testHttpDateUsesItsOffset() {
+        final TimestampParser parser = new TimestampParser(TimestampFormat.HTTPDATE, ZONE);
+
+        assertEquals(toEpochMs(2014, 10, 19, 8, 28, 1, ZoneOffset.ofHours(-5)),
+            parser.parse("19/Oct/2014:08:28:01 -0500"));
+    }
+
+    @Test
+    public void testFractionOfCachedSecond() {
+        final TimestampParser parser = new TimestampParser(TimestampFormat.FLUME_TIMESTAMP, ZONE);
+        final long second = toEpochMs(2014, 10, 19, 8, 28, 1, ZONE);
+
+        assertEquals(second + 5L, parser.parse("19 Oct 2014 08:28:01,005"));
+        assertEquals(second + 900L, parser.parse("19 Oct 2014 08:28:01.9"));
+        assertEquals(second + 123L, parser.parse("19 Oct 2014 08:28:01,123456"));
+        assertEquals(second + 1000L, parser.parse("19 Oct 2014 08:28:02,000"));
+        assertEquals(second, parser.parse("19 Oct 2014 08:28:01"));
+    }
+
+    @Test
+    public void testUnparseableTimestamp() {
+        final TimestampParser parser = new TimestampParser(TimestampFormat.FLUME_TIMESTAMP, ZONE);
+
+        assertEquals(TimestampParser.UNPARSEABLE, parser.parse("Oct 19 08:28:01"));
+        assertEquals(TimestampParser.UNPARSEABLE, parser.parse("31 Feb 2014 08:28:01,000"));
+        assertEquals(TimestampParser.UNPARSEABLE, parser.parse("31 Feb 2014 08:28:01,001"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownFormat() {
+        TimestampFormat.fromConfigValue("ISO8601");
+    }
+
+    private static long toEpochMs(final int year, final int month, final int day, final int hour, final int minute,
+            final int second, final ZoneId zone) {
+        return ZonedDateTime.of(year, month, day, hour, minute, second, 0, zone).toInstant().toEpochMilli();
+    }
+}
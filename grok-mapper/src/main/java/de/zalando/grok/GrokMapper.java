@@ -9,10 +9,14 @@ import java.io.IOException;
 
 import java.net.URL;
 
+import java.nio.charset.Charset;
+
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 
 import javax.annotation.Nonnull;
@@ -22,9 +26,12 @@ import org.joni.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 //J-
 
@@ -64,6 +71,7 @@ import com.google.common.collect.Maps;
 public final class GrokMapper {
 
     private final Regex regex;
+    private final List<String> fieldNames;
 
     // see  (?<name>subexp)
     private static final String NAMED_RULE_REF_REGEX_PATTERN_TEMPLATE = "(?<%s>%s)";
@@ -86,6 +94,23 @@ public final class GrokMapper {
             regexExpression);
 
         regex = new Regex(regexExpression);
+        fieldNames = collectFieldNames();
+    }
+
+    private List<String> collectFieldNames() {
+        if (regex.numberOfNames() == 0) {
+            return ImmutableList.of();
+        }
+
+        final TreeMap<Integer, String> namesByBackRef = Maps.newTreeMap();
+        final Iterator<NameEntry> nameEntryIterator = regex.namedBackrefIterator();
+        NameEntry nameEntry;
+        while (nameEntryIterator.hasNext()) {
+            nameEntry = nameEntryIterator.next();
+            namesByBackRef.put(nameEntry.getBackRefs()[0], getRuleName(nameEntry));
+        }
+
+        return ImmutableList.copyOf(Sets.newLinkedHashSet(namesByBackRef.values()));
     }
 
     private String expandRule(final String rule, final Map<String, String> configuredRules) {
@@ -137,8 +162,32 @@ public final class GrokMapper {
     public Map<String, String> map(@Nonnull final String input) {
         checkNotNull(input, "input most not be null");
 
-        final Matcher matcher = regex.matcher(input.getBytes());
-        final int result = matcher.search(0, input.length(), Option.DEFAULT);
+        final byte[] bytes = input.getBytes(Charsets.UTF_8);
+        return map(bytes, 0, bytes.length, Charsets.UTF_8);
+    }
+
+    /**
+     * Maps given encoded input record according to record mapping definition (specified in {#Builder}). The record is
+     * matched on its bytes, only the mapped fields are decoded.
+     *
+     * @param   input    buffer containing the input record
+     * @param   offset   index of the first byte of the record
+     * @param   length   number of bytes of the record
+     * @param   charset  charset of the record, has to be ASCII compatible (like UTF-8 or ISO-8859-1)
+     *
+     * @return  record mapping which might be empty (but never null)
+     */
+    @Nonnull
+    public Map<String, String> map(@Nonnull final byte[] input, final int offset, final int length,
+            @Nonnull final Charset charset) {
+        checkNotNull(input, "input most not be null");
+        checkNotNull(charset, "charset most not be null");
+        checkArgument(offset >= 0 && length >= 0 && offset + length <= input.length,
+            "[offset=%s, length=%s] out of bounds of input with [length=%s]", offset, length, input.length);
+
+        final int end = offset + length;
+        final Matcher matcher = regex.matcher(input, offset, end);
+        final int result = matcher.search(offset, end, Option.DEFAULT);
 
         if (result == -1) {
             return Collections.emptyMap();
@@ -168,13 +217,26 @@ public final class GrokMapper {
                     lastMatchEnd = matchEnd;
                 }
 
-                mappings.put(getRuleName(nameEntry), input.substring(matchBegin, matchEnd));
+                // NOTE: the region is relative to the beginning of the record
+                mappings.put(getRuleName(nameEntry),
+                    new String(input, offset + matchBegin, matchEnd - matchBegin, charset));
             }
 
             return mappings;
         }
     }
 
+    /**
+     * Returns the names of all fields a record mapping may contain, in order of their appearance in the record mapping
+     * definition. Fields of sub expressions nested in other fields are included, although they are not mapped.
+     *
+     * @return  field names (never null)
+     */
+    @Nonnull
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
     private String getRuleName(final NameEntry nameEntry) {
         return new String(nameEntry.name, nameEntry.nameP, nameEntry.nameEnd - nameEntry.nameP);
     }
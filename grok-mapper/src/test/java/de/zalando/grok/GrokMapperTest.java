@@ -7,12 +7,14 @@ import static org.junit.Assert.assertTrue;
 
 import java.net.URL;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Maps;
 
 public final class GrokMapperTest {
@@ -57,6 +59,52 @@ public final class GrokMapperTest {
         assertEquals("my test message", mapping.get(KEY_DATA));
     }
 
+    @Test
+    public void testRecordMappingOfNonAsciiRecord() {
+        final GrokMapper mapper = builder.withDefaultPatternDefinitions()
+                                         .withRecordMappingDefinition(RECORD_MAPPING_DEFINITION).build();
+
+        final Map<String, String> mapping = mapper.map("WARN Gr\u00f6\u00dfe \u00fcberschritten");
+
+        assertEquals("WARN", mapping.get(KEY_LOG_LEVEL));
+        assertEquals("Gr\u00f6\u00dfe \u00fcberschritten", mapping.get(KEY_DATA));
+    }
+
+    @Test
+    public void testRecordMappingOfEncodedRecordSlice() {
+        final GrokMapper mapper = builder.withDefaultPatternDefinitions()
+                                         .withRecordMappingDefinition(RECORD_MAPPING_DEFINITION).build();
+
+        final byte[] buffer = "xxINFO Stra\u00dfe 1\nyy".getBytes(Charsets.UTF_8);
+        final Map<String, String> mapping = mapper.map(buffer, 2, buffer.length - 5, Charsets.UTF_8);
+
+        assertEquals("INFO", mapping.get(KEY_LOG_LEVEL));
+        assertEquals("Stra\u00dfe 1", mapping.get(KEY_DATA));
+    }
+
+    @Test
+    public void testFieldNamesInOrderOfMappingDefinition() {
+        final GrokMapper mapper = builder.withDefaultPatternDefinitions()
+                                         .withRecordMappingDefinition(
+                                             "%{SYSLOGTIMESTAMP:timestamp} %{LOGLEVEL:logLevel} %{GREEDYDATA:message}")
+                                         .build();
+
+        assertEquals(Arrays.asList("timestamp", "logLevel", "message"), mapper.getFieldNames());
+    }
+
+    @Test
+    public void testRecordMappingOfFlumeTimestamp() {
+        final GrokMapper mapper = builder.withDefaultPatternDefinitions()
+                                         .withRecordMappingDefinition(
+                                             "%{FLUME_TIMESTAMP:record_time} %{LOGLEVEL:logLevel} %{GREEDYDATA:message}")
+                                         .build();
+
+        final Map<String, String> mapping = mapper.map("19 Oct 2014 08:28:01,123 INFO channel started");
+
+        assertEquals("19 Oct 2014 08:28:01,123", mapping.get("record_time"));
+        assertEquals("INFO", mapping.get(KEY_LOG_LEVEL));
+    }
+
     @Test
     public void testRecordMappingWithoutDefaultPatterns() {
         final GrokMapper mapper = builder.withRecordMappingDefinition(RECORD_MAPPING_DEFINITION).build();